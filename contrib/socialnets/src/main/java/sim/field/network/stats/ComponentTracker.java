@@ -0,0 +1,173 @@
+/*
+  Copyright 2010 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.network.stats;
+import sim.field.network.*;
+import sim.field.network.algo.*;
+import sim.util.*;
+
+/**
+   Keeps track of the connected components of a Network (the weakly connected components, if it is directed) as the
+   Network changes, so that you can ask for the number of components, or the size of a node's component, every step
+   without recomputing them.
+
+   <p>A ComponentTracker attaches itself to the Network as a NetworkListener when it is made, and holds a union-find
+   structure over the Network's nodes.  Adding a node or an edge updates it in nearly O(1) time.  Removing an edge or a
+   node may split a component, which union-find can't undo, so instead the tracker just notes that it is out of date, and
+   rebuilds itself from the Network in O(#nodes + #edges) the next time you ask it something.  So the tracker is cheapest
+   for networks which mostly grow.  Call detach() when you no longer need it.
+*/
+
+public class ComponentTracker implements NetworkListener
+    {
+    final Network network;
+    int[] parent = new int[0];      // the parent of each node in the union-find forest, by index in allNodes
+    int[] size = new int[0];        // the number of nodes in each root's component
+    int numNodes;
+    int numComponents;
+    int largest;
+    boolean dirty = true;           // whether the structure must be rebuilt before use
+
+    /** Builds a tracker for the components of the given network, and adds it to the network as a listener. */
+    public ComponentTracker(Network network)
+        {
+        this.network = network;
+        network.addListener(this);
+        }
+
+    /** Removes the tracker from its network's listeners.  It should no longer be used. */
+    public void detach()
+        {
+        network.removeListener(this);
+        }
+
+    public Network getNetwork() { return network; }
+
+    /** Returns the number of connected components. */
+    public int getNumComponents()
+        {
+        update();
+        return numComponents;
+        }
+
+    /** Returns whether the network has at most one component. */
+    public boolean isConnected()
+        {
+        return getNumComponents() <= 1;
+        }
+
+    /** Returns the number of nodes in the largest component, or 0 if the network has no nodes. */
+    public int getLargestComponentSize()
+        {
+        update();
+        return largest;
+        }
+
+    /** Returns the number of nodes in the component holding the given node. */
+    public int getComponentSize(Object node)
+        {
+        update();
+        return size[find(network.getNodeIndex(node))];
+        }
+
+    /** Returns whether there is a path between the two nodes, ignoring the direction of edges. */
+    public boolean inSameComponent(Object node1, Object node2)
+        {
+        update();
+        return find(network.getNodeIndex(node1)) == find(network.getNodeIndex(node2));
+        }
+
+    /** Returns a Bag of Bags of nodes, one for each component, ordered by their first node in allNodes,
+        each holding its nodes in allNodes order. */
+    public Bag getComponents()
+        {
+        update();
+        int[] labels = new int[numNodes];
+        for(int i = 0; i < numNodes; i++)
+            labels[i] = find(i);
+        return ConnectivityStatistics.getComponents(network, labels, numNodes);
+        }
+
+    // rebuilds the structure from the network if it is out of date
+    void update()
+        {
+        if (!dirty) return;
+        int[] labels = ConnectedComponents.getLabels(network, 1);
+        numNodes = labels.length;
+        parent = labels;
+        size = new int[Math.max(numNodes, 16)];
+        for(int i = 0; i < numNodes; i++)
+            size[labels[i]]++;
+        numComponents = 0;
+        largest = 0;
+        for(int i = 0; i < numNodes; i++)
+            if (labels[i] == i)
+                {
+                numComponents++;
+                if (size[i] > largest) largest = size[i];
+                }
+        if (parent.length < size.length)
+            {
+            int[] p = new int[size.length];
+            System.arraycopy(parent, 0, p, 0, numNodes);
+            parent = p;
+            }
+        dirty = false;
+        }
+
+    int find(int i)
+        {
+        while(parent[i] != i)
+            {
+            parent[i] = parent[parent[i]];     // path halving
+            i = parent[i];
+            }
+        return i;
+        }
+
+    public void nodeAdded(Network network, Object node)
+        {
+        if (dirty) return;
+        if (network.allNodes.numObjs != numNodes + 1) { dirty = true; return; }      // someone changed allNodes
+        if (numNodes == parent.length)
+            {
+            int[] p = new int[numNodes * 2];
+            System.arraycopy(parent, 0, p, 0, numNodes);
+            parent = p;
+            int[] s = new int[numNodes * 2];
+            System.arraycopy(size, 0, s, 0, numNodes);
+            size = s;
+            }
+        parent[numNodes] = numNodes;
+        size[numNodes] = 1;
+        numNodes++;
+        numComponents++;
+        if (largest < 1) largest = 1;
+        }
+
+    public void edgeAdded(Network network, Edge edge)
+        {
+        if (dirty) return;
+        int a = find(network.getNodeIndex(edge.getFrom()));
+        int b = find(network.getNodeIndex(edge.getTo()));
+        if (a == b) return;
+        if (size[a] < size[b]) { int t = a; a = b; b = t; }
+        parent[b] = a;          // the smaller component joins the larger
+        size[a] += size[b];
+        numComponents--;
+        if (size[a] > largest) largest = size[a];
+        }
+
+    public void edgeRemoved(Network network, Edge edge)
+        {
+        if (!edge.getFrom().equals(edge.getTo()))       // removing a self-loop changes nothing
+            dirty = true;
+        }
+
+    public void nodeRemoved(Network network, Object node, int index) { dirty = true; }
+
+    public void networkChanged(Network network) { dirty = true; }
+    }
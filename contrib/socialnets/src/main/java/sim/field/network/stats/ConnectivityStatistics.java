@@ -6,6 +6,7 @@
 
 package sim.field.network.stats;
 import sim.field.network.*;
+import sim.field.network.algo.*;
 
 import sim.util.*;
 
@@ -18,217 +19,66 @@ public class ConnectivityStatistics
     public static boolean isStronglyConnected( final Network network )
         {
         if( network.isDirected() )
-            {
-            final Bag bag = getStronglyConnectedComponents(network);
-            return( bag.numObjs == 1 );
-            }
+            return( StronglyConnectedComponents.getNumComponents(StronglyConnectedComponents.getLabels(network)) == 1 );
         else
             return false; // return a false if the network is undirected
         }
 
     /**
-       Computes the strongly connected components of an ORIENTED graph.
+       Computes the strongly connected components of an ORIENTED graph, using Tarjan's algorithm (see
+       sim.field.network.algo.StronglyConnectedComponents) in O(#nodes + #edges).
        @return Bag containing the connected components (each element in the bag is another bag of nodes).
+       The components are ordered by their first node in allNodes, and each holds its nodes in allNodes order.
     */
     public static Bag getStronglyConnectedComponents( final Network network )
         {
         if( !network.isDirected() )
             throw new RuntimeException( "Connect.getStronglyConnectedComponents should be called only with directed graphs" );
-        Bag result = new Bag();
-        final int N = NetworkStatistics.getNumberNodes(network);
-        double[] finishingTime = new double[N];  // double vector to allow the use of heap later on 
-        int[] color = new int[N]; // 0=WHITE, 1=GRAY, 2=BLACK
-        int time = 0;
-
-        for( int i = 0 ; i < N ; i++ )
-            color[i] = 0;
-
-        for( int i = 0 ; i < N ; i++ )
-            if( color[i] == 0 )
-                {
-                IntBag myStack = new IntBag();
-                myStack.push(i);
-                while( !myStack.isEmpty() )
-                    {
-                    int j = myStack.pop();
-                    if( color[j] == 0 ) // if it's a white node
-                        {
-                        color[j] = 1;
-                        myStack.push(j);
-                        time++;
-                        final Bag edgesOut = network.getEdgesOut(network.allNodes.objs[j]);
-                        for( int k = 0 ; k < edgesOut.numObjs ; k++ )
-                            {
-                            final Edge edge = (Edge)(edgesOut.objs[k]);
-                            final int toNode = network.getNodeIndex(edge.to());
-                            if( color[toNode] == 0 )
-                                myStack.push(toNode);
-                            }
-                        }
-                    else
-                        {
-                        color[j] = 2;
-                        time++;
-                        finishingTime[j] = -time; //negative value, such that heap is in descending order
-                        }
-                    }
-                }
-
-        Integer[] indexes = new Integer[N];
-        for( int i = 0 ; i < N ; i++ )
-            indexes[i] = new Integer(i);
-
-        DoubleHeap heap = new DoubleHeap( finishingTime, indexes, N );
-
-        for( int i = 0 ; i < N ; i++ )
-            color[i] = 0;
-
-        while( !heap.isEmpty() )
-            {
-            final int i = ((Integer)(heap.extractMin())).intValue();
-            if( color[i] == 0 )
-                {
-                Bag component = new Bag(); // the objects in the current strongly connected component
-                IntBag myStack = new IntBag();
-                myStack.push(i);
-                while( !myStack.isEmpty() )
-                    {
-                    final int j = myStack.pop();
-                    if( color[j] == 0 ) // if it's a white node
-                        {
-                        color[j] = 1;
-                        component.add( network.allNodes.objs[j] );
-                        final Bag edgesOut = network.getEdgesIn(network.allNodes.objs[j]); // here we use the in-edges, because the graph should have been transposed
-                        for( int k = 0 ; k < edgesOut.numObjs ; k++ )
-                            {
-                            final Edge edge = (Edge)(edgesOut.objs[k]);
-                            final int toNode = network.getNodeIndex(edge.from());  // this is now edge.from() because the graph should have been transposed
-                            if( color[toNode] == 0 )
-                                myStack.push(toNode);
-                            }
-                        }
-                    }
-                        
-                result.add( component );
-                }
-            }
-
-        return result;
+        int[] labels = StronglyConnectedComponents.getLabels(network);
+        return getComponents(network, labels, StronglyConnectedComponents.getNumComponents(labels));
         }
                 
     /** 
      * Computes the connected components of an undirected OR
      * the weakly connected components of an directed graph
-     * graph using DFS.
-     * @return A Bag of Bags of nodes. 
+     * graph using union-find (see sim.field.network.algo.ConnectedComponents).
+     * @return A Bag of Bags of nodes, ordered by their first node in allNodes, each holding its nodes in allNodes order.
      */
     public static Bag getConnectedComponents( final Network network)
         {
-        return new ConnectedComponentFactory(network).getComponents(); 
+        int[] labels = ConnectedComponents.getLabels(network, 1);
+        return getComponents(network, labels, labels.length);
         } 
         
     /** 
      * Determines whether the graph is connected (for undirected graphs) OR
-     * weakly connected (for directed graphs) 
+     * weakly connected (for directed graphs).  A graph with no nodes is connected.
      */
     public static boolean isConnected( final Network network)
         {
-        return new ConnectedComponentFactory(network).isConnected(); 
+        return ConnectedComponents.getNumComponents(ConnectedComponents.getLabels(network, 1)) <= 1;
         } 
 
-    static class ConnectedComponentFactory
+    // gathers the nodes into a Bag for each component, given component labels from 0 to numLabels - 1
+    static Bag getComponents( final Network network, final int[] labels, final int numLabels )
         {
-        final Network network;
-        final int n;
-        final Bag components;
-                
-        //instead of making a new hashtable, stick all nodes in it
-        //and remove them as they get visited,
-        //I rely on the hashtable inside the Network and 
-        //the nodes' indices in the allNodes bag. 
-        final boolean[] visited;
-        int countVisited;
-                
-        public ConnectedComponentFactory( final Network network)
-            {
-            this.network = network;
-            n = network.allNodes.numObjs;
-            visited = new boolean[n];
-            for(int i=0;i<n;i++)
-                visited[i]=false;
-            countVisited = 0;
-            components = new Bag(n);
-            }
-
-        public Bag getComponents()
-            {
-            boolean directed = network.isDirected();
-            for( int i = 0 ; i < n; i++ )
-                {
-                if(!visited[i])
-                    {
-                    Bag component = new Bag();  
-                    components.add(component);
-                    if(directed)
-                        exploreWD(network.allNodes.objs[i], i, component);
-                    else
-                        exploreU(network.allNodes.objs[i], i, component);
-                    }
-                }
-            return components;
-            }
-
-        public boolean isConnected()
-            {
-            if(network.isDirected())
-                exploreWD(network.allNodes.objs[0], 0, null);
-            else
-                exploreU(network.allNodes.objs[0], 0, null);
-            return (countVisited ==n);
-            }
-        /**
-         * explore for Weakly connected components in a Directed graph
-         * The Bag 'component' can be null if I'm only interested in whether the graph is connected.
-         */
-        private void exploreWD(Object nodeObj, int nodeIndex, Bag component)
-            {
-            visited[nodeIndex]=true; countVisited++;
-            if(component!=null)
-                component.add(nodeObj);
-            Bag temp;
-            temp = network.getEdgesOut( nodeObj );
-            for(int i=0;i<temp.numObjs;i++)
-                {
-                Object node2 = ((Edge)temp.objs[i]).getOtherNode(nodeObj);
-                int node2Index = network.getNodeIndex(node2); 
-                if(!visited[node2Index])
-                    exploreWD(node2, node2Index, component);
-                }
-            temp = network.getEdgesIn ( nodeObj );
-            for(int i=0;i<temp.numObjs;i++)
-                {
-                Object node2 = ((Edge)temp.objs[i]).getOtherNode(nodeObj);
-                int node2Index = network.getNodeIndex(node2); 
-                if(!visited[node2Index])
-                    exploreWD(node2, node2Index, component);
-                }       
-            }
-
-        // The Bag 'component' can be null if I'm only interested in whether the graph is connected.
-        private void exploreU(Object nodeObj, int nodeIndex, Bag component)
+        final int N = labels.length;
+        int[] sizes = new int[numLabels];
+        for( int i = 0 ; i < N ; i++ )
+            sizes[labels[i]]++;
+        Bag[] bags = new Bag[numLabels];
+        Bag result = new Bag();
+        for( int i = 0 ; i < N ; i++ )
             {
-            visited[nodeIndex]=true;countVisited++;
-            if(component!=null) component.add(nodeObj);
-            Bag temp = network.getEdgesOut( nodeObj );
-            for(int i=0;i<temp.numObjs;i++)
+            Bag component = bags[labels[i]];
+            if( component == null )
                 {
-                Object node2 = ((Edge)temp.objs[i]).getOtherNode(nodeObj);
-                int node2Index = network.getNodeIndex(node2); 
-                if(!visited[node2Index])
-                    exploreU(node2, node2Index, component);
+                component = bags[labels[i]] = new Bag(sizes[labels[i]]);
+                result.add(component);
                 }
+            component.add(network.allNodes.objs[i]);
             }
-                
+        return result;
         }
 
     static class FlowData
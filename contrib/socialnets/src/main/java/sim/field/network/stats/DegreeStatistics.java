@@ -9,6 +9,11 @@ import sim.field.network.*;
 import java.util.*;
 import sim.util.*;
 
+/**
+   Degree statistics of a Network.  These ordinarily iterate over every node, but if a DegreeTracker is attached to
+   the Network, they ask it instead, which takes O(1) time.
+*/
+
 public class DegreeStatistics 
     {
     /**
@@ -25,6 +30,9 @@ public class DegreeStatistics
     public static int getMinInDegree( final Network network )
         {
         int N = NetworkStatistics.getNumberNodes(network);
+        DegreeTracker tracker = DegreeTracker.getTracker(network);
+        if( tracker != null && N > 0 )
+            return tracker.getMinInDegree();
         int min = Integer.MAX_VALUE;
         for( int i = 0 ; i < N; i++ )
             {
@@ -41,6 +49,9 @@ public class DegreeStatistics
     public static int getMinOutDegree( final Network network )
         {
         int N = NetworkStatistics.getNumberNodes(network);
+        DegreeTracker tracker = DegreeTracker.getTracker(network);
+        if( tracker != null && N > 0 )
+            return tracker.getMinOutDegree();
         int min = Integer.MAX_VALUE;
         for( int i = 0 ; i < N; i++ )
             {
@@ -57,6 +68,9 @@ public class DegreeStatistics
     public static int getMaxInDegree( final Network network )
         {
         int N = NetworkStatistics.getNumberNodes(network);
+        DegreeTracker tracker = DegreeTracker.getTracker(network);
+        if( tracker != null && N > 0 )
+            return tracker.getMaxInDegree();
         int max = Integer.MIN_VALUE;
         for( int i = 0 ; i < N; i++ )
             {
@@ -73,6 +87,9 @@ public class DegreeStatistics
     public static int getMaxOutDegree( final Network network )
         {
         int N = NetworkStatistics.getNumberNodes(network);
+        DegreeTracker tracker = DegreeTracker.getTracker(network);
+        if( tracker != null && N > 0 )
+            return tracker.getMaxOutDegree();
         int max = Integer.MIN_VALUE;
         for( int i = 0 ; i < N; i++ )
             {
@@ -118,16 +135,19 @@ public class DegreeStatistics
          *                                              = [Sum(x^2)-(S^2)/n]/(n-1). 
          *                                              = [Sum(x^2)n-S^2]/[n(n-1)]
          */
-        int sumSq=0;
-        int sum = NetworkStatistics.getNumberActualEdges(network);
+        long sumSq=0;
+        long sum = NetworkStatistics.getNumberActualEdges(network);
         int N = NetworkStatistics.getNumberNodes(network);
-        for( int i = 0 ; i < N; i++ )
+        DegreeTracker tracker = DegreeTracker.getTracker(network);
+        if( tracker != null )
+            sumSq = tracker.getSumOfSquaredInDegrees();
+        else for( int i = 0 ; i < N; i++ )
             {
             Bag temp = network.getEdgesIn( network.allNodes.objs[i] );
             final int inD = temp.numObjs;
             sumSq += inD*inD;
             }
-        return (double)(sumSq*N-sum*sum)/(N*(N-1)); //I hope hotspot will reuse N-1 ;)
+        return (double)(sumSq*N-sum*sum)/(((double)N)*(N-1)); //I hope hotspot will reuse N-1 ;)
         }
 
     /**
@@ -143,20 +163,23 @@ public class DegreeStatistics
          *                                              = [Sum(x^2)-(S^2)/n]/(n-1). 
          *                                              = [Sum(x^2)n-S^2]/[n(n-1)]
          */
-        int sumSq=0;
-        int sum=NetworkStatistics.getNumberActualEdges(network);
+        long sumSq=0;
+        long sum=NetworkStatistics.getNumberActualEdges(network);
         int N = NetworkStatistics.getNumberNodes(network);
-        for( int i = 0 ; i < N; i++ )
+        DegreeTracker tracker = DegreeTracker.getTracker(network);
+        if( tracker != null )
+            sumSq = tracker.getSumOfSquaredOutDegrees();
+        else for( int i = 0 ; i < N; i++ )
             {
             Bag temp = network.getEdgesOut( network.allNodes.objs[i] );
             final int outD = temp.numObjs;
             sumSq += outD*outD;
             }
-        return (double)(sumSq*N-sum*sum)/(N*(N-1)); //I hope hotspot will reuse N-1 ;)
+        return (double)(sumSq*N-sum*sum)/(((double)N)*(N-1)); //I hope hotspot will reuse N-1 ;)
         }
 
     //If one needs both the in and out degree histographs, 
-    //I could avoid iterating through indexOutInHash twice
+    //I could avoid iterating through the snapshot twice
     //by computing them in the same loop. 
     //TODO I could receive 2 IntBags for in and out degrees
     //(one can be null if I should not care about it)
@@ -164,14 +187,15 @@ public class DegreeStatistics
     //so the pointers would be useless.
     static public int[] getDegreeHistogram(final Network network, boolean out)
         {
-        int n = network.allNodes.numObjs;
+        DegreeTracker tracker = DegreeTracker.getTracker(network);
+        if(tracker != null)
+            return tracker.getDegreeHistogram(!out);
+        NetworkSnapshot snapshot = network.getSnapshot();
+        int n = snapshot.numNodes;
         int[] histogram = new int[n];
-        Iterator i = network.indexOutInHash.values().iterator();
         for(int k=0;k<n;k++)
             {
-            Network.IndexOutIn ioi= (Network.IndexOutIn)i.next();
-            Bag b = out?ioi.out:ioi.in;
-            int degree = (b==null)?0:b.numObjs;
+            int degree = out?snapshot.getOutDegree(k):snapshot.getInDegree(k);
             if(degree>=histogram.length)//for multigraphs
                 {
                 int[]   newhistogram  = new int[degree+1];
@@ -0,0 +1,325 @@
+/*
+  Copyright 2010 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.network.stats;
+import sim.field.network.*;
+import sim.util.*;
+
+/**
+   Keeps track of the degrees of the nodes of a Network, and of aggregates over them -- the number of edges, the number of
+   isolated nodes, and the histogram, minimum, maximum, mean, and variance of the in and out degrees -- as the Network
+   changes, so that you can chart them every step without iterating over every node.
+
+   <p>A DegreeTracker attaches itself to the Network as a NetworkListener when it is made.  It holds the in and out degree
+   of each node, by index in allNodes, along with a histogram of them and their sums and sums of squares.  Adding or removing
+   an edge or a node updates these in O(1) time, except that removing a node of the minimum or maximum degree may have to
+   scan the histogram for the new one.  Changes reported by networkChanged(...) make the tracker rebuild itself from the
+   Network in O(#nodes + #edges) the next time you ask it something.  Call detach() when you no longer need it.
+
+   <p>A degree here is the number of Edges in a node's in or out Bag.  In an undirected Network these are the same Bag, so
+   the in and out degrees are the same, and a self-loop counts twice.
+
+   <p>DegreeStatistics and NetworkStatistics look for a DegreeTracker attached to the Network they are given, and if there
+   is one, ask it rather than iterating over the nodes.
+*/
+
+public class DegreeTracker implements NetworkListener
+    {
+    final Network network;
+    Degrees in;                 // the same as out if the network is undirected
+    Degrees out;
+    int numNodes;
+    int numEdges;
+    int numIsolated;            // the nodes with no edges in or out
+    boolean dirty = true;       // whether the structure must be rebuilt before use
+
+    /** Builds a tracker for the degrees of the given network, and adds it to the network as a listener. */
+    public DegreeTracker(Network network)
+        {
+        this.network = network;
+        network.addListener(this);
+        }
+
+    /** Returns the DegreeTracker attached to the given network, or null if there is none. */
+    public static DegreeTracker getTracker(Network network)
+        {
+        return (DegreeTracker)(network.getListener(DegreeTracker.class));
+        }
+
+    /** Removes the tracker from its network's listeners.  It should no longer be used. */
+    public void detach()
+        {
+        network.removeListener(this);
+        }
+
+    public Network getNetwork() { return network; }
+
+    /** Returns the number of nodes. */
+    public int getNumNodes()
+        {
+        update();
+        return numNodes;
+        }
+
+    /** Returns the number of edges.  As in NetworkStatistics.getNumberActualEdges(...), self-loops are included. */
+    public int getNumEdges()
+        {
+        update();
+        return numEdges;
+        }
+
+    /** Returns the number of nodes with no edges in or out. */
+    public int getNumIsolatedNodes()
+        {
+        update();
+        return numIsolated;
+        }
+
+    /** Returns the in degree of the given node. */
+    public int getInDegree(Object node)
+        {
+        update();
+        return in.degree[network.getNodeIndex(node)];
+        }
+
+    /** Returns the out degree of the given node. */
+    public int getOutDegree(Object node)
+        {
+        update();
+        return out.degree[network.getNodeIndex(node)];
+        }
+
+    /** Returns the minimum in degree, or 0 if there are no nodes. */
+    public int getMinInDegree() { update(); return in.min; }
+
+    /** Returns the minimum out degree, or 0 if there are no nodes. */
+    public int getMinOutDegree() { update(); return out.min; }
+
+    /** Returns the maximum in degree, or 0 if there are no nodes. */
+    public int getMaxInDegree() { update(); return in.max; }
+
+    /** Returns the maximum out degree, or 0 if there are no nodes. */
+    public int getMaxOutDegree() { update(); return out.max; }
+
+    /** Returns the sum of the in degrees. */
+    public long getSumOfInDegrees() { update(); return in.sum; }
+
+    /** Returns the sum of the out degrees. */
+    public long getSumOfOutDegrees() { update(); return out.sum; }
+
+    /** Returns the sum of the squares of the in degrees. */
+    public long getSumOfSquaredInDegrees() { update(); return in.sumSquares; }
+
+    /** Returns the sum of the squares of the out degrees. */
+    public long getSumOfSquaredOutDegrees() { update(); return out.sumSquares; }
+
+    /** Returns the mean in degree, or 0 if there are no nodes. */
+    public double getMeanInDegree() { update(); return in.getMean(numNodes); }
+
+    /** Returns the mean out degree, or 0 if there are no nodes. */
+    public double getMeanOutDegree() { update(); return out.getMean(numNodes); }
+
+    /** Returns the sample variance of the in degree, or 0 if there are fewer than two nodes. */
+    public double getVarInDegree() { update(); return in.getVariance(numNodes); }
+
+    /** Returns the sample variance of the out degree, or 0 if there are fewer than two nodes. */
+    public double getVarOutDegree() { update(); return out.getVariance(numNodes); }
+
+    /** Returns the number of nodes with the given in degree (if in is true) or out degree. */
+    public int getNumNodesWithDegree(int degree, boolean in)
+        {
+        update();
+        int[] histogram = (in ? this.in : out).histogram;
+        return (degree < 0 || degree >= histogram.length) ? 0 : histogram[degree];
+        }
+
+    /** Returns a new histogram of the in degrees (if in is true) or out degrees, as in DegreeStatistics.getDegreeHistogram(...):
+        element d holds the number of nodes of degree d, and the array has at least as many elements as there are nodes. */
+    public int[] getDegreeHistogram(boolean in)
+        {
+        update();
+        Degrees degrees = (in ? this.in : out);
+        int[] histogram = new int[Math.max(numNodes, degrees.max + 1)];
+        System.arraycopy(degrees.histogram, 0, histogram, 0, Math.min(histogram.length, degrees.histogram.length));
+        return histogram;
+        }
+
+    // rebuilds the structure from the network if it is out of date
+    void update()
+        {
+        if (!dirty) return;
+        numNodes = network.allNodes.numObjs;
+        out = new Degrees(numNodes);
+        in = (network.isDirected() ? new Degrees(numNodes) : out);
+        numIsolated = 0;
+        for(int i = 0; i < numNodes; i++)
+            {
+            Network.IndexOutIn ioi = (Network.IndexOutIn)(network.indexOutInHash.get(network.allNodes.objs[i]));
+            int o = (ioi.out == null ? 0 : ioi.out.numObjs);
+            out.degree[i] = o;
+            if (in != out)
+                in.degree[i] = (ioi.in == null ? 0 : ioi.in.numObjs);
+            if (o == 0 && in.degree[i] == 0) numIsolated++;
+            }
+        out.rebuild(numNodes);
+        if (in != out) in.rebuild(numNodes);
+        numEdges = (int)(in == out ? out.sum / 2 : out.sum);
+        dirty = false;
+        }
+
+    boolean isIsolated(int i) { return out.degree[i] == 0 && in.degree[i] == 0; }
+
+    public void nodeAdded(Network network, Object node)
+        {
+        if (dirty) return;
+        if (network.allNodes.numObjs != numNodes + 1) { dirty = true; return; }      // someone changed allNodes
+        out.addNode(numNodes);
+        if (in != out) in.addNode(numNodes);
+        numNodes++;
+        numIsolated++;
+        }
+
+    public void nodeRemoved(Network network, Object node, int index)
+        {
+        if (dirty) return;
+        if (isIsolated(index)) numIsolated--;
+        numNodes--;
+        out.removeNode(index, numNodes);
+        if (in != out) in.removeNode(index, numNodes);
+        }
+
+    public void edgeAdded(Network network, Edge edge)
+        {
+        if (dirty) return;
+        int from = network.getNodeIndex(edge.getFrom());
+        int to = network.getNodeIndex(edge.getTo());
+        if (isIsolated(from)) numIsolated--;
+        if (to != from && isIsolated(to)) numIsolated--;
+        out.increment(from);
+        in.increment(to);
+        numEdges++;
+        }
+
+    public void edgeRemoved(Network network, Edge edge)
+        {
+        if (dirty) return;
+        int from = network.getNodeIndex(edge.getFrom());
+        int to = network.getNodeIndex(edge.getTo());
+        out.decrement(from);
+        in.decrement(to);
+        numEdges--;
+        if (isIsolated(from)) numIsolated++;
+        if (to != from && isIsolated(to)) numIsolated++;
+        }
+
+    public void networkChanged(Network network) { dirty = true; }
+
+    /** The in or out degrees of each node, and their histogram and aggregates. */
+    static class Degrees
+        {
+        int[] degree;
+        int[] histogram;        // the number of nodes of each degree, with room for at least max + 1
+        long sum;
+        long sumSquares;
+        int min;
+        int max;
+
+        Degrees(int numNodes)
+            {
+            degree = new int[Math.max(numNodes, 16)];
+            histogram = new int[16];
+            }
+
+        // computes the histogram and aggregates from the degrees of the first numNodes nodes
+        void rebuild(int numNodes)
+            {
+            min = Integer.MAX_VALUE;
+            max = 0;
+            for(int i = 0; i < numNodes; i++)
+                {
+                int d = degree[i];
+                if (d >= histogram.length) grow(d);
+                histogram[d]++;
+                sum += d;
+                sumSquares += ((long) d) * d;
+                if (d < min) min = d;
+                if (d > max) max = d;
+                }
+            if (numNodes == 0) min = 0;
+            }
+
+        void grow(int d)
+            {
+            int[] h = new int[Math.max(d + 1, histogram.length * 2)];
+            System.arraycopy(histogram, 0, h, 0, histogram.length);
+            histogram = h;
+            }
+
+        // adds a node of degree 0 at the given index, which is the number of nodes before
+        void addNode(int index)
+            {
+            if (index == degree.length)
+                {
+                int[] d = new int[index * 2];
+                System.arraycopy(degree, 0, d, 0, index);
+                degree = d;
+                }
+            degree[index] = 0;
+            histogram[0]++;
+            min = 0;
+            }
+
+        // removes the node at the given index, moving the last node, now at index numNodes, there
+        void removeNode(int index, int numNodes)
+            {
+            int d = degree[index];
+            histogram[d]--;
+            sum -= d;
+            sumSquares -= ((long) d) * d;
+            degree[index] = degree[numNodes];
+            if (numNodes == 0) { min = max = 0; return; }
+            if (histogram[d] == 0)
+                {
+                if (d == min) while(histogram[min] == 0) min++;
+                if (d == max) while(histogram[max] == 0) max--;
+                }
+            }
+
+        void increment(int i)
+            {
+            int d = degree[i]++;
+            if (d + 1 >= histogram.length) grow(d + 1);
+            histogram[d]--;
+            histogram[d + 1]++;
+            sum++;
+            sumSquares += 2 * d + 1;
+            if (d + 1 > max) max = d + 1;
+            if (d == min && histogram[d] == 0) min = d + 1;
+            }
+
+        void decrement(int i)
+            {
+            int d = degree[i]--;
+            histogram[d]--;
+            histogram[d - 1]++;
+            sum--;
+            sumSquares -= 2 * d - 1;
+            if (d - 1 < min) min = d - 1;
+            if (d == max && histogram[d] == 0) max = d - 1;
+            }
+
+        double getMean(int numNodes)
+            {
+            return numNodes == 0 ? 0 : ((double) sum) / numNodes;
+            }
+
+        double getVariance(int numNodes)
+            {
+            if (numNodes < 2) return 0;
+            return (((double) sumSquares) * numNodes - ((double) sum) * sum) / (((double) numNodes) * (numNodes - 1));
+            }
+        }
+    }
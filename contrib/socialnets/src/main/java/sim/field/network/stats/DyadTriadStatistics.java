@@ -39,183 +39,197 @@ public class DyadTriadStatistics {
     /**
      * Computes the triad census (Wasserman and Faust, pages 564-567). 
      * It assumes a single asymmetric relation where weights are irrelevant.
+     * Self-loops are ignored, as are parallel edges beyond the first.
+     * Runs in the calling thread: see getTriadCensus(...).
      * @return 16-length int array
-     * 
+     * @throws RuntimeException if some count does not fit in an int (use getTriadCensus instead)
      */     
     public static int[] triadCensus( final Network network)
         {                       
-        int[] census = new int[16];
-        for(int i=0;i<16;i++) census[i]=0;
-        int n = network.allNodes.numObjs;
-        if(n<3)
-            return census;// should I through an exception instead? 
-        Edge[][] adjMatrix = network.getAdjacencyMatrix();
+        long[] census = getTriadCensus(network, 1);
+        int[] result = new int[16];
+        for(int i=0;i<16;i++)
+            {
+            if (census[i] > Integer.MAX_VALUE)
+                throw new RuntimeException("Triad count too large for an int: use getTriadCensus(...)");
+            result[i] = (int)census[i];
+            }
+        return result;
+        }
 
-        //md, ad, nd= mutual, asymmetric and null dyads in the triad (MAN notation)
-        //c = edge count in the triad
-        //c_ij = edge count in dyad ij
-        //m_ij, a_ij, n_ij = {1,0} depending on whether the ij dyad is M, A and N
-        //in_i, out_i = in and out degree of node i 
-        //e_uv = {1,0} dependinf on whether there is an edge between u and v 
-        for(int i=0; i<n;i++)
+    // the MAN class of a triad v, u, w, indexed by a code with 1 for edge vu, 2 for uv, 4 for vw, 8 for wv, 16 for uw, and 32 for wu
+    static final int[] TRICODES = 
+        {
+        TRIAD_003, TRIAD_012, TRIAD_012, TRIAD_102, TRIAD_012, TRIAD_021D, TRIAD_021C, TRIAD_111U,
+        TRIAD_012, TRIAD_021C, TRIAD_021U, TRIAD_111D, TRIAD_102, TRIAD_111U, TRIAD_111D, TRIAD_201,
+        TRIAD_012, TRIAD_021C, TRIAD_021D, TRIAD_111U, TRIAD_021U, TRIAD_030T, TRIAD_030T, TRIAD_120U,
+        TRIAD_021C, TRIAD_030C, TRIAD_030T, TRIAD_120C, TRIAD_111D, TRIAD_120C, TRIAD_120D, TRIAD_210,
+        TRIAD_012, TRIAD_021U, TRIAD_021C, TRIAD_111D, TRIAD_021C, TRIAD_030T, TRIAD_030C, TRIAD_120C,
+        TRIAD_021D, TRIAD_030T, TRIAD_030T, TRIAD_120D, TRIAD_111U, TRIAD_120U, TRIAD_120C, TRIAD_210,
+        TRIAD_102, TRIAD_111D, TRIAD_111U, TRIAD_201, TRIAD_111D, TRIAD_120D, TRIAD_120C, TRIAD_210,
+        TRIAD_111U, TRIAD_120C, TRIAD_120U, TRIAD_210, TRIAD_201, TRIAD_210, TRIAD_210, TRIAD_300
+        };
+
+    /**
+     * Computes the triad census with the algorithm of Batagelj and Mrvar ("A subquadratic triad census algorithm
+     * for large sparse networks with small maximum degree", Social Networks 23, 2001).  Only the connected triads
+     * are visited, each just once, from the dyads they contain: this takes O(m * maxDegree) time rather than
+     * O(n^3), and the 003 triads are found by subtracting the others from n choose 3.  The nodes are divided among
+     * the given number of threads (or Parallel.CPUS), in ranges of about equal work.  Self-loops are ignored, as are
+     * parallel edges beyond the first.
+     * @return 16-length long array, indexed by TRIAD_003 ... TRIAD_300
+     */
+    public static long[] getTriadCensus( final Network network, int numThreads )
+        {
+        final NetworkSnapshot snapshot = network.getSnapshot();
+        final int n = snapshot.numNodes;
+        long[] census = new long[16];
+        if (n < 3) return census;
+
+        // the neighbors of each node, without regard to direction, sorted and without duplicates or self-loops,
+        // each with a code of 1 if there is an edge to it and 2 if there is an edge from it (3 for both)
+        final int[] offsets = new int[n + 1];
+        final int[] neighbors;
+        final byte[] codes;
             {
-            Edge[] adj_i = adjMatrix[i]; 
-            for(int j=i+1;j<n;j++)
+            final int[] outOffsets = snapshot.outOffsets;
+            final int[] outTargets = snapshot.outTargets;
+            final int[] inOffsets = snapshot.inOffsets;
+            final int[] inSources = snapshot.inSources;
+            final boolean directed = snapshot.directed;
+            final int[] counts = new int[n + 1];
+            final long[] keys = new long[directed ? outTargets.length + inSources.length : outTargets.length];
+            final int[] start = new int[n + 1];
+            for(int v = 0; v < n; v++)
+                start[v + 1] = start[v] + (outOffsets[v + 1] - outOffsets[v]) + (directed ? inOffsets[v + 1] - inOffsets[v] : 0);
+            Parallel.run(n, numThreads, Parallel.MIN_PARALLEL_WORK, new Parallel.Task()
                 {
-                Edge[] adj_j = adjMatrix[j]; 
-                int e_ij=(adj_i[j]==null)?0:1; 
-                int e_ji=(adj_j[i]==null)?0:1;
-                int c_ij;
-                int m_ij=0;
-////                            ad and nd are never used. Thy are not completelly deleted 
-////                            cause I might need them for debugging                           
-////                            int a_ij=0, n_ij=0;
-////                            switch (c_ij=e_ij+e_ji)
-////                            {
-////                                    case 0: n_ij++;break;
-////                                    case 1: a_ij++;break;
-////                                    case 2: m_ij++;break;
-////                            }
-                if((c_ij=e_ij+e_ji)==2)
-                    m_ij++;
-
-                for(int k=j+1;k<n;k++)
+                public void run(int thread, int from, int to)
                     {
-                    int md=m_ij;
-////                                    ad and nd are never used. Thy are not completelly deleted 
-////                                    cause I might need them for debugging  
-////                                    int ad=a_ij, nd=n_ij,
-                    int c=c_ij=e_ij+e_ji;
-                    Edge[] adj_k = adjMatrix[k]; 
-                    int c_ik, c_jk;
-                    int e_ik = (adj_i[k]==null)?0:1;
-                    int e_jk = (adj_j[k]==null)?0:1;
-                    int e_ki = (adj_k[i]==null)?0:1;
-                    int e_kj = (adj_k[j]==null)?0:1;
-                                        
-////                                    switch (c_ik=e_ik+e_ki)
-////                                    {
-////                                            case 0: nd++;break;
-////                                            case 1: ad++;break;
-////                                            case 2: md++;break;
-////                                    }
-                    if((c_ik=e_ik+e_ki)==2)
-                        md++;
-                                        
-////                                    switch (c_jk=e_jk+e_kj)
-////                                    {
-////                                            case 0: nd++;break;
-////                                            case 1: ad++;break;
-////                                            case 2: md++;break;
-////                                    }
-                    if((c_jk=e_jk+e_kj)==2)
-                        md++;
-                                                
-                    c+=c_ik+c_jk;
-                    switch (c)
+                    for(int v = from; v < to; v++)
                         {
-                        case 0: census[TRIAD_003]++;break;
-                        case 1: census[TRIAD_012]++;break;
-                        case 2: if(md==1)
+                        int k = start[v];
+                        for(int j = outOffsets[v]; j < outOffsets[v + 1]; j++)
+                            if (outTargets[j] != v)
+                                keys[k++] = (((long) outTargets[j]) << 2) | (directed ? 1 : 3);
+                        if (directed)
+                            for(int j = inOffsets[v]; j < inOffsets[v + 1]; j++)
+                                if (inSources[j] != v)
+                                    keys[k++] = (((long) inSources[j]) << 2) | 2;
+                        java.util.Arrays.sort(keys, start[v], k);
+                        // merge the duplicates in place
+                        int size = 0;
+                        for(int j = start[v]; j < k; j++)
                             {
-                            census[TRIAD_102]++;
-                            break;
+                            if (size > 0 && (keys[start[v] + size - 1] >>> 2) == (keys[j] >>> 2))
+                                keys[start[v] + size - 1] |= keys[j];
+                            else keys[start[v] + size++] = keys[j];
                             }
-                            // now I must decide between the three 021s (D, U and C)
-                            // f=sum out degree for the unconnected nodes 
-                            //f(D) =0, f(U)=2, f(C)=1 
-                            //
-                            int f = (c_ij==0)?//i and j are "down" in the 021 MAN diagram 
-                                e_jk+e_ik:
-                                (c_ik==0)?//i and k are "down"
-                                e_ij+e_kj:
-                                e_ji+e_ki;
-                            switch(f)                               
-                                {
-                                case 0: census[TRIAD_021D]++;break;
-                                case 1: census[TRIAD_021C]++;break;
-                                case 2: census[TRIAD_021U]++;break;
-                                }
-                            break;
-                        case 3: if(md==1)
-                                {
-                                //here's how I can tell the 111s apart D has <1,0> and U has <0,1>
-                                //(the other nodes are <1,1> and <1,2> in both cases.
-                                //
-                                //I use the <o,i> notation to say out degree and in-degree of a node. 
-
-                                if(c_ij==2)//k is the discriminating node (either <0,1> or <1,0>)
-                                    census[(e_ki+e_ki==0)?TRIAD_111U:TRIAD_111D]++;
-                                else if(c_ik==2)//look at j
-                                    census[(e_ji+e_jk==0)?TRIAD_111U:TRIAD_111D]++;
-                                else//look and i
-                                    census[(e_ij+e_ik==0)?TRIAD_111U:TRIAD_111D]++;                                                                 
-                                }
-                            else                                                            
-                                // I must decide between 030T and 030C
-                                // 030C is all <1,1>, while 030T has a <0,2> and a <2, 0>
-                                // so it;s enough to look at atmost 2 nodes for <1,1>
-                                census[(e_ij+e_ik==1 && e_ji+e_ki==1 && e_ji+e_jk==1 && e_ij+e_kj==1)? TRIAD_030C: TRIAD_030T]++;
-                            break;
-                        case 4: if(md==2)
-                                census[TRIAD_201]++;
-                            else
-                                {
-                                //120: D, C or U?
-                                // <1,1> => C
-                                // <2,0> => D
-                                // <0,2> => U
-                                // they all got <1,2> and <2,1>
-                                int in, out; 
-                                                                        
-                                out =  e_ij+e_ik; //in of i.
-                                in = e_ji+e_ki; //out of i
-                                if(in+out==2)
-                                    {//i is the node
-                                    switch(out)
-                                        {
-                                        case 0:  census[TRIAD_120U]++; break;
-                                        case 1:  census[TRIAD_120C]++; break;
-                                        case 2:  census[TRIAD_120D]++; break;
-                                        }
-                                    break;
-                                    }
-                                                                        
-                                in =  e_ij+e_kj; //in of j.
-                                out = e_ji+e_jk; //out of j
-                                if(in+out==2)
-                                    {//j is the node
-                                    switch(out)
-                                        {
-                                        case 0:  census[TRIAD_120U]++; break;
-                                        case 1:  census[TRIAD_120C]++; break;
-                                        case 2:  census[TRIAD_120D]++; break;
-                                        }
-                                    break;
-                                    }
-                                                                        
-                                in =  e_ik+e_jk; //in of k.
-                                out = e_ki+e_kj; //out of k
-                                if(in+out==2)
-                                    {//k is the node
-                                    switch(out)
-                                        {
-                                        case 0:  census[TRIAD_120U]++; break;
-                                        case 1:  census[TRIAD_120C]++; break;
-                                        case 2:  census[TRIAD_120D]++; break;
-                                        }
-                                    break;
-                                    }
-                                }
-                            break;
-                        case 5: census[TRIAD_210]++;break;
-                        case 6: census[TRIAD_300]++;break;
-                        }                                                
+                        counts[v] = size;
+                        }
                     }
+                });
+            for(int v = 0; v < n; v++)
+                offsets[v + 1] = offsets[v] + counts[v];
+            neighbors = new int[offsets[n]];
+            codes = new byte[offsets[n]];
+            for(int v = 0; v < n; v++)
+                for(int j = 0; j < counts[v]; j++)
+                    {
+                    long key = keys[start[v] + j];
+                    neighbors[offsets[v] + j] = (int)(key >>> 2);
+                    codes[offsets[v] + j] = (byte)(key & 3);
+                    }
+            }
+
+        // divide the nodes into ranges of about equal work: node v visits the union of its neighbors and
+        // each larger neighbor's
+        final long[] work = new long[n + 1];
+        for(int v = 0; v < n; v++)
+            {
+            long w = 1;
+            for(int j = offsets[v]; j < offsets[v + 1]; j++)
+                {
+                int u = neighbors[j];
+                if (v < u) w += (offsets[v + 1] - offsets[v]) + (offsets[u + 1] - offsets[u]);
                 }
+            work[v + 1] = work[v] + w;
             }
+        final int threads = (work[n] < Parallel.MIN_PARALLEL_WORK ? 1 : Math.min(Parallel.threads(numThreads), n));
+        final long[][] counts = new long[threads][16];
+        Parallel.run(threads, threads, 1, new Parallel.Task()
+            {
+            public void run(int thread, int from, int to)
+                {
+                for(int t = from; t < to; t++)
+                    countTriads(n, offsets, neighbors, codes, 
+                        findNode(work, work[n] * t / threads), findNode(work, work[n] * (t + 1) / threads), counts[t]);
+                }
+            });
+
+        long total = ((long) n) * (n - 1) * (n - 2) / 6;
+        for(int t = 0; t < threads; t++)
+            for(int i = 0; i < 16; i++)
+                census[i] += counts[t][i];
+        long sum = 0;
+        for(int i = 1; i < 16; i++)
+            sum += census[i];
+        census[TRIAD_003] = total - sum;
         return census;
         }
+
+    // returns the first node v whose work ends after the given amount
+    static int findNode(long[] work, long amount)
+        {
+        int lo = 0;
+        int hi = work.length - 1;
+        while(lo < hi)
+            {
+            int mid = (lo + hi) >>> 1;
+            if (work[mid + 1] <= amount) lo = mid + 1;
+            else hi = mid;
+            }
+        return lo;
+        }
+
+    // adds the triads counted from each dyad v, u with from <= v < to and v < u
+    static void countTriads(int n, int[] offsets, int[] neighbors, byte[] codes, int from, int to, long[] census)
+        {
+        for(int v = from; v < to; v++)
+            for(int j = offsets[v]; j < offsets[v + 1]; j++)
+                {
+                int u = neighbors[j];
+                if (u <= v) continue;
+                int dyad = codes[j];            // 1 for vu, 2 for uv
+
+                // walk through the union of the neighbors of v and u, except v and u themselves
+                int a = offsets[v];
+                int aEnd = offsets[v + 1];
+                int b = offsets[u];
+                int bEnd = offsets[u + 1];
+                int size = 0;
+                while(a < aEnd || b < bEnd)
+                    {
+                    int w;
+                    int vw = 0;                 // 1 for vw, 2 for wv
+                    int uw = 0;                 // 1 for uw, 2 for wu
+                    if (b >= bEnd || (a < aEnd && neighbors[a] < neighbors[b]))
+                        { w = neighbors[a]; vw = codes[a++]; }
+                    else if (a >= aEnd || neighbors[b] < neighbors[a])
+                        { w = neighbors[b]; uw = codes[b++]; }
+                    else
+                        { w = neighbors[a]; vw = codes[a++]; uw = codes[b++]; }
+                    if (w == u || w == v) continue;
+                    size++;
+                    // count each triad from just one of its dyads: here if w > u, or if v < w < u and w is not
+                    // adjacent to v (if it is, the triad is counted from the dyad v, w instead)
+                    if (u < w || (v < w && vw == 0))
+                        census[TRICODES[dyad + 4 * vw + 16 * uw]]++;
+                    }
+                // the triads with v, u and a node adjacent to neither
+                census[dyad == 3 ? TRIAD_102 : TRIAD_012] += n - size - 2;
+                }
+        }
         
     /**
      * Returns the number of direct triads 
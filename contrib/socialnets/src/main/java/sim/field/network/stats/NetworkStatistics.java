@@ -20,7 +20,7 @@ public class NetworkStatistics
     */
     public static int getNumberNodes( final Network network )
         {
-        return network.allNodes.numObjs;
+        return network.getAllNodes().numObjs;
         }
 
     /**
@@ -43,6 +43,9 @@ public class NetworkStatistics
     */
     public static int getNumberActualEdges( final Network network )
         {
+        DegreeTracker tracker = DegreeTracker.getTracker(network);
+        if( tracker != null )
+            return tracker.getNumEdges();
         int actualTies= 0;
         int N = getNumberNodes( network );
         for( int i = 0 ; i < N; i++ )
@@ -76,12 +79,14 @@ public class NetworkStatistics
         {
         Bag result = new Bag();
         int N = getNumberNodes(network);
-        Iterator i = network.indexOutInHash.values().iterator();
+        DegreeTracker tracker = DegreeTracker.getTracker(network);
+        if( tracker != null && tracker.getNumIsolatedNodes() == 0 )
+            return result;
+        NetworkSnapshot snapshot = network.getSnapshot();
         for( int k = 0 ; k < N ; k++ )
             {
-            Network.IndexOutIn ioi = (Network.IndexOutIn)i.next();
-            if(( ioi.in == null || ioi.in.numObjs == 0 ) && ( ioi.out == null || ioi.out.numObjs == 0 )) 
-                result.add( network.allNodes.objs[ioi.index]);
+            if( snapshot.getInDegree(k) == 0 && snapshot.getOutDegree(k) == 0 )
+                result.add( network.allNodes.objs[k]);
             }
         return result;
         }
@@ -93,11 +98,13 @@ public class NetworkStatistics
         {       
         int N = getNumberNodes(network);
         int count = 0;
-        Iterator i = network.indexOutInHash.values().iterator();
-        for( int k = 0 ; k < N ; k++ )//this way I avoid doing N procedure calls.
+        DegreeTracker tracker = DegreeTracker.getTracker(network);
+        if( tracker != null )
+            return ((double)(N-tracker.getNumIsolatedNodes()))/N;
+        NetworkSnapshot snapshot = network.getSnapshot();
+        for( int k = 0 ; k < N ; k++ )//this way I avoid doing N hash lookups.
             {
-            Network.IndexOutIn ioi = (Network.IndexOutIn)i.next();
-            if(( ioi.in == null || ioi.in.numObjs == 0 ) && ( ioi.out == null || ioi.out.numObjs == 0 )) 
+            if( snapshot.getInDegree(k) == 0 && snapshot.getOutDegree(k) == 0 )
                 count++;
             }
         return ((double)(N-count))/N;
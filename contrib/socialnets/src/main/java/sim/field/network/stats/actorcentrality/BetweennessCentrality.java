@@ -6,68 +6,199 @@
 
 package sim.field.network.stats.actorcentrality;
 import sim.field.network.*;
-import sim.field.network.stats.*;
+import sim.util.*;
+import ec.util.MersenneTwisterFast;
 
 /**
- * 
+ *
  * Actor Betweenness Centrality:
  * <ul>
- * <li>For undirected graphs (Wasserman and Faust, page 190) I count the geodesics between k and j just once 
- * (look for <code>j &lt k</code> in <code>getValue()</code>)</li>
+ * <li>For undirected graphs (Wasserman and Faust, page 190) I count the geodesics between k and j just once
+ * (the sums from both ends are halved)</li>
  * <li>For directed graphs (Wasserman and Faust, page 201) the geodesics from k to j are different from those from j to k, hence the
- * x2 in <code>getMaxValue()</code>. I am not 100% sure about the x2 in 
+ * x2 in <code>getMaxValue()</code>. I am not 100% sure about the x2 in
  * <code>getMaxCummulativeDifference()</code></li>
  * </ul>
- * 
+ *
+ * <p>The values are computed in the constructor with Brandes' algorithm, which runs a breadth-first search from each
+ * source node and then accumulates the dependencies of the source on each node in reverse order: O(nm) time and
+ * O(n + m) memory per thread, rather than the O(n^3) of counting geodesics through every triple of nodes.  The sources
+ * are divided into a fixed number of blocks, which are divided among the threads, and the blocks' sums are added up in
+ * order, so the values are the same however many threads are used.  Pairs of nodes with no path between them contribute
+ * nothing.  Geodesics are counted in hops, and parallel edges count as different geodesics.  Self-loops lie on no
+ * geodesic, so they are ignored: a network gives the same values with or without them.  (Versions before Brandes'
+ * algorithm counted self-loops as paths in their own right, which gave meaningless values.)
+ *
+ * <p>For large networks, the approximate constructors run the search from only a random sample of the sources (chosen
+ * with the given random number generator, normally your SimState's) and scale the sums up by n / (sample size).  The sample
+ * size may be given directly, or as an error bound: with probability at least 1 - delta, every node's standardized value
+ * (getStandardizedValue(...)) is then within epsilon of its exact value.
+ *
  * @author Gabriel Catalin Balan
  */
-//TODO I believe that they say "transform the directed graph into and undirected one -by 
+//TODO I believe that they say "transform the directed graph into and undirected one -by
 //ignoring edges ij when there's no ji-, perform the standard computation and x2 the results."
 
 public class BetweennessCentrality extends FreemanNodeIndex {
-    final long[][][]g3;//g_{ikj}= # shortest paths between i and j that go through k
-    final long[][]g2;  //g_{ij} = # shortest paths between i and j 
-        
+    // the number of blocks the sources are divided into
+    static final int NUM_BLOCKS = 32;
+
+    final double[] values;
+
+    /** Computes the exact betweenness of every node, in the calling thread. */
     public BetweennessCentrality(final Network network)
+        {
+        this(network, 1);
+        }
+
+    /** Computes the exact betweenness of every node with the given number of threads (or Parallel.CPUS). */
+    public BetweennessCentrality(final Network network, int numThreads)
         {
         super(network);
-        g3 = NetworkStatistics.getNumberShortestPathsWithIntermediatesMatrix(   network,
-            UnitEdgeMetric.defaultInstance,
-            0d);
-        g2 = NetworkStatistics.getNumberShortestPathsMatrix(    network, 
-            UnitEdgeMetric.defaultInstance,
-            0d);
-        //(since the weights are integer values (hops), precisison is 0)
+        int n = network.allNodes.numObjs;
+        int[] sources = new int[n];
+        for(int i = 0; i < n; i++) sources[i] = i;
+        values = compute(network.getSnapshot(), sources, 1.0, numThreads);
         }
-        
-    //note that g3[][0][0] is zero, so we are consistent with the idea that i must be distinct from k and j in g3[k][i][j];
-    public double getValue(final Object node) {
-        int index = network.getNodeIndex(node);
+
+    /** Estimates the betweenness of every node from numSources source nodes sampled without replacement. */
+    public BetweennessCentrality(final Network network, int numSources, MersenneTwisterFast random, int numThreads)
+        {
+        super(network);
         int n = network.allNodes.numObjs;
-        double sum = 0;
+        int[] sources = sampleSources(n, numSources, random);
+        values = compute(network.getSnapshot(), sources, (sources.length == 0 ? 1.0 : ((double) n) / sources.length), numThreads);
+        }
 
+    /** Estimates the betweenness of every node so that, with probability at least 1 - delta, each standardized value is
+        within epsilon of the exact one. */
+    public BetweennessCentrality(final Network network, double epsilon, double delta, MersenneTwisterFast random, int numThreads)
+        {
+        // a node's standardized value is n / (n - 1) times its average dependency over the sources, divided by n - 2
+        this(network, getNumSources(network.allNodes.numObjs,
+                epsilon * (network.allNodes.numObjs - 1) / Math.max(network.allNodes.numObjs, 2), delta), random, numThreads);
+        }
 
-        if(network.isDirected())
-            for(int k=0;k<n;k++)
+    /** Returns how many sources must be sampled so that, with probability at least 1 - delta, a per-source average over
+        values between 0 and 1 is within epsilon of its true value for all numNodes nodes at once (by Hoeffding's inequality
+        and the union bound). */
+    public static int getNumSources(int numNodes, double epsilon, double delta)
+        {
+        if (!(epsilon > 0) || !(delta > 0 && delta < 1))
+            throw new RuntimeException("Epsilon must be positive and delta between 0 and 1: " + epsilon + ", " + delta);
+        double k = Math.ceil(Math.log(2.0 * Math.max(numNodes, 1) / delta) / (2 * epsilon * epsilon));
+        return (int)Math.min(k, numNodes);
+        }
+
+    // returns numSources distinct nodes, in the order they were picked
+    static int[] sampleSources(int n, int numSources, MersenneTwisterFast random)
+        {
+        if (numSources < 0) throw new RuntimeException("Invalid number of sources: " + numSources);
+        if (numSources > n) numSources = n;
+        int[] nodes = new int[n];
+        for(int i = 0; i < n; i++) nodes[i] = i;
+        for(int i = 0; i < numSources; i++)      // partial shuffle
+            {
+            int j = i + random.nextInt(n - i);
+            int t = nodes[i]; nodes[i] = nodes[j]; nodes[j] = t;
+            }
+        int[] sources = new int[numSources];
+        System.arraycopy(nodes, 0, sources, 0, numSources);
+        return sources;
+        }
+
+    // runs Brandes' algorithm from each of the sources and returns the sums of the dependencies times scale
+    static double[] compute(final NetworkSnapshot snapshot, final int[] sources, double scale, int numThreads)
+        {
+        final int n = snapshot.numNodes;
+        final int numBlocks = Math.min(NUM_BLOCKS, sources.length);
+        final double[][] sums = new double[numBlocks][];
+        Parallel.run(numBlocks, numThreads, 2, new Parallel.Task()
+            {
+            public void run(int thread, int from, int to)
+                {
+                int[] dist = new int[n];
+                double[] sigma = new double[n];
+                double[] delta = new double[n];
+                int[] order = new int[n];
+                java.util.Arrays.fill(dist, -1);
+                for(int b = from; b < to; b++)
+                    {
+                    double[] sum = sums[b] = new double[n];
+                    int end = (int)(((long) sources.length) * (b + 1) / numBlocks);
+                    for(int i = (int)(((long) sources.length) * b / numBlocks); i < end; i++)
+                        accumulate(snapshot, sources[i], dist, sigma, delta, order, sum);
+                    }
+                }
+            });
+
+        double[] values = new double[n];
+        for(int b = 0; b < numBlocks; b++)
+            for(int v = 0; v < n; v++)
+                values[v] += sums[b][v];
+        if (!snapshot.directed) scale *= 0.5;     // each pair was counted from both ends
+        for(int v = 0; v < n; v++)
+            values[v] *= scale;
+        return values;
+        }
+
+    // adds the dependencies of source s on every other node to sum.  dist must be all -1, and is left that way.
+    static void accumulate(NetworkSnapshot snapshot, int s, int[] dist, double[] sigma, double[] delta, int[] order, double[] sum)
+        {
+        final int[] outOffsets = snapshot.outOffsets;
+        final int[] outTargets = snapshot.outTargets;
+        final int[] inOffsets = snapshot.inOffsets;
+        final int[] inSources = snapshot.inSources;
+
+        // breadth-first search, counting the geodesics to each node
+        int size = 0;
+        dist[s] = 0;
+        sigma[s] = 1;
+        order[size++] = s;
+        for(int head = 0; head < size; head++)
+            {
+            int v = order[head];
+            int dv = dist[v] + 1;
+            double sv = sigma[v];
+            for(int j = outOffsets[v]; j < outOffsets[v + 1]; j++)
                 {
-                if(k==index) continue;
-                long[] g2_k = g2[k];
-                long[] g3_ki = g3[k][index];
-                for(int j=0;j<n;j++)
-                    sum  += ((double)g3_ki[j])/g2_k[j];
-                }               
-        else
-            for(int k=1;k<n;k++)//I start from 1 since no j can be <0.
+                int w = outTargets[j];
+                if (dist[w] < 0)
+                    {
+                    dist[w] = dv;
+                    sigma[w] = 0;
+                    order[size++] = w;
+                    }
+                if (dist[w] == dv) sigma[w] += sv;
+                }
+            }
+
+        // accumulate the dependencies, farthest nodes first
+        for(int i = 0; i < size; i++) delta[order[i]] = 0;
+        for(int i = size - 1; i > 0; i--)
+            {
+            int w = order[i];
+            int dw = dist[w] - 1;
+            double coefficient = (1 + delta[w]) / sigma[w];
+            for(int j = inOffsets[w]; j < inOffsets[w + 1]; j++)
                 {
-                if(k==index) continue;
-                long[] g2_k = g2[k];
-                long[] g3_ki = g3[k][index];
-                for(int j=0;j<k;j++)
-                    sum  += ((double)g3_ki[j])/g2_k[j];
-                }               
-        return sum;
+                int v = inSources[j];
+                if (dist[v] == dw) delta[v] += sigma[v] * coefficient;
+                }
+            sum[w] += delta[w];
+            }
+        for(int i = 0; i < size; i++) dist[order[i]] = -1;
+        }
+
+    public double getValue(final Object node)
+        {
+        return values[network.getNodeIndex(node)];
         }
 
+    public double getValue(final int nodeIndex)
+        {
+        return values[nodeIndex];
+        }
 
     public double getMaxCummulativeDifference()
         {
@@ -77,7 +208,7 @@ public class BetweennessCentrality extends FreemanNodeIndex {
             return value;
         return .5*value;
         }
-        
+
     public double getMaxValue()
         {
         int n = network.allNodes.numObjs;
@@ -5,33 +5,144 @@
 */
 
 package sim.field.network.stats.actorcentrality;
-import sim.field.network.stats.*;
 import sim.field.network.*;
+import sim.util.*;
+import ec.util.MersenneTwisterFast;
 /**
  * Sabidussi's index of Actor Closeness Centrality (Wasserman and Faust, page 184)
  *
+ * <p>The values are computed in the constructor by a breadth-first search from each node, with the nodes divided among
+ * the threads; unlike an all-pairs distance matrix, this needs only O(n + m) memory per thread.  A node which cannot
+ * reach every other node has closeness 0.
+ *
+ * <p>For large networks, the approximate constructors search from only a random sample of the nodes, backwards
+ * along the edges, and estimate each node's total distance to the others as n / (sample size) times its total distance to
+ * the sample (Eppstein and Wang).  The sample size may be given directly, or as an error bound: with probability at least
+ * 1 - delta, every node's estimated average distance to the others is then within epsilon times the diameter of the exact one.
+ *
  * @author Gabriel Catalin Balan
  */
 public class ClosenessCentrality extends FreemanNodeIndex {
-    final double[][] allDistances;
+    final double[] sums;            // the total distance from each node to the others
+
+    /** Computes the exact closeness of every node, in the calling thread. */
     public ClosenessCentrality(final Network network)
+        {
+        this(network, 1);
+        }
+
+    /** Computes the exact closeness of every node with the given number of threads (or Parallel.CPUS). */
+    public ClosenessCentrality(final Network network, int numThreads)
         {
         super(network);
-        allDistances = NetworkStatistics.getShortestPathsMatrix(network, UnitEdgeMetric.defaultInstance);               
+        final NetworkSnapshot snapshot = network.getSnapshot();
+        final int n = snapshot.numNodes;
+        sums = new double[n];
+        Parallel.run(n, numThreads, 2, new Parallel.Task()
+            {
+            public void run(int thread, int from, int to)
+                {
+                int[] dist = new int[n];
+                int[] queue = new int[n];
+                java.util.Arrays.fill(dist, -1);
+                for(int v = from; v < to; v++)
+                    {
+                    int size = search(snapshot.outOffsets, snapshot.outTargets, v, dist, queue);
+                    long sum = 0;
+                    for(int i = 0; i < size; i++)
+                        {
+                        sum += dist[queue[i]];
+                        dist[queue[i]] = -1;
+                        }
+                    sums[v] = (size < n ? Double.POSITIVE_INFINITY : sum);
+                    }
+                }
+            });
+        }
+
+    /** Estimates the closeness of every node from numSources nodes sampled without replacement. */
+    public ClosenessCentrality(final Network network, int numSources, MersenneTwisterFast random, int numThreads)
+        {
+        super(network);
+        final NetworkSnapshot snapshot = network.getSnapshot();
+        final int n = snapshot.numNodes;
+        final int[] sources = BetweennessCentrality.sampleSources(n, numSources, random);
+        final int numBlocks = Math.min(BetweennessCentrality.NUM_BLOCKS, sources.length);
+        final double[][] blockSums = new double[numBlocks][];
+        Parallel.run(numBlocks, numThreads, 2, new Parallel.Task()
+            {
+            public void run(int thread, int from, int to)
+                {
+                int[] dist = new int[n];
+                int[] queue = new int[n];
+                java.util.Arrays.fill(dist, -1);
+                for(int b = from; b < to; b++)
+                    {
+                    double[] sum = blockSums[b] = new double[n];
+                    int end = (int)(((long) sources.length) * (b + 1) / numBlocks);
+                    for(int i = (int)(((long) sources.length) * b / numBlocks); i < end; i++)
+                        {
+                        // the distances from every node to the source
+                        search(snapshot.inOffsets, snapshot.inSources, sources[i], dist, queue);
+                        for(int v = 0; v < n; v++)
+                            {
+                            if (dist[v] < 0) sum[v] = Double.POSITIVE_INFINITY;
+                            else sum[v] += dist[v];
+                            dist[v] = -1;
+                            }
+                        }
+                    }
+                }
+            });
+
+        sums = new double[n];
+        for(int b = 0; b < numBlocks; b++)
+            for(int v = 0; v < n; v++)
+                sums[v] += blockSums[b][v];
+        if (sources.length > 0)
+            for(int v = 0; v < n; v++)
+                sums[v] *= ((double) n) / sources.length;
+        }
+
+    /** Estimates the closeness of every node so that, with probability at least 1 - delta, each node's average distance to
+        the others is within epsilon times the diameter of the exact one. */
+    public ClosenessCentrality(final Network network, double epsilon, double delta, MersenneTwisterFast random, int numThreads)
+        {
+        this(network, BetweennessCentrality.getNumSources(network.allNodes.numObjs, epsilon, delta), random, numThreads);
+        }
+
+    // breadth-first search from s, leaving the distances in dist and the nodes reached in queue; returns how many
+    static int search(int[] offsets, int[] ends, int s, int[] dist, int[] queue)
+        {
+        int size = 0;
+        dist[s] = 0;
+        queue[size++] = s;
+        for(int head = 0; head < size; head++)
+            {
+            int v = queue[head];
+            int dv = dist[v] + 1;
+            for(int j = offsets[v]; j < offsets[v + 1]; j++)
+                {
+                int w = ends[j];
+                if (dist[w] < 0)
+                    {
+                    dist[w] = dv;
+                    queue[size++] = w;
+                    }
+                }
+            }
+        return size;
         }
 
     public double getValue(final Object node) {
-//              double[] distances = NetworkStatistics.getShortestPaths(network, node, UnitEdgeMetric.defaultInstance);
-
-        double[] distances = allDistances[network.getNodeIndex(node)];
-                
-        double sum = 0;
-        int n= distances.length;
-        for(int i=0;i<distances.length; i++)
-            sum+=distances[i];
-        //I want to return 1/[Sum_{j!=i} disntance(i,j)] 
+        return getValue(network.getNodeIndex(node));
+        }
+
+    public double getValue(final int nodeIndex)
+        {
+        //I want to return 1/[Sum_{j!=i} disntance(i,j)]
         //but the hop distance(i, i) is 0, so I don't bother not adding it
-        return 1d/sum;
+        return 1d/sums[nodeIndex];
         }
 
     //TODO double check this, I back engineered it from the standardized value on page 186
@@ -41,9 +152,9 @@ public class ClosenessCentrality extends FreemanNodeIndex {
         int n = network.allNodes.numObjs;
         return ((double)(n-2))/(2*n-3);
         }
-        
+
     public double getMaxValue()
         {
-        return 1d/(network.allNodes.numObjs-1); 
+        return 1d/(network.allNodes.numObjs-1);
         }
     }
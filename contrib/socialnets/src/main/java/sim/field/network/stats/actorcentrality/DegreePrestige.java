@@ -24,8 +24,7 @@ public class DegreePrestige extends FreemanNodeIndex
         }
 
     public double getValue(final Object node) {
-        Network.IndexOutIn inout = (Network.IndexOutIn)network.indexOutInHash.get(node);
-        return inout.in.numObjs;
+        return network.getSnapshot().getInDegree(network.getNodeIndex(node));
         }
         
     public double getMaxValue()
@@ -7,8 +7,8 @@
 package sim.field.network.stats.actorcentrality;
 import sim.field.network.stats.*;
 import sim.field.network.*;
+import sim.util.*;
 import sim.util.mantissa.linalg.*;
-import java.util.*;
 /**
  * Actor Information Centrality (Wasserman and Faust, page 195 for undirected and page 201 for
  * directed graphs).
@@ -17,13 +17,28 @@ import java.util.*;
  * 
  * <p>It requires a matrix inversion that should be reused by all <code>getMeasure()</code> calls.
  * 
+ * <p>The dense constructors invert the matrix in O(n^3) time and O(n^2) memory, optionally dividing the work among
+ * threads.  For large sparse undirected networks, the iterative constructor instead finds each diagonal element of the
+ * inverse by solving a system with the preconditioned conjugate gradient method.  The matrix is a sparse one plus a
+ * matrix of all ones, so each iteration takes O(n + m) time, and the solutions are divided among the threads.  This needs
+ * the matrix to be positive definite, as it is for a connected network with weights no greater than 1.
+ * 
  * @author Gabriel Catalin Balan
  */
 public class InformationCentrality extends NodeIndex 
     {
     final double normalizationDenominator;
     final double[] ci;
+    /** The most iterations of each solution made by the iterative constructor, per node in the network, before giving up. */
+    public static final int MAX_ITERATIONS_PER_NODE = 10;
+
     public InformationCentrality(final Network network, final EdgeMetric weightFn)
+        {
+        this(network, weightFn, 1);
+        }
+
+    /** Inverts the matrix with the given number of threads (or Parallel.CPUS). */
+    public InformationCentrality(final Network network, final EdgeMetric weightFn, int numThreads)
         {
         super(network);
         int n = network.allNodes.numObjs;
@@ -35,12 +50,9 @@ public class InformationCentrality extends NodeIndex
         for(int i=0;i<n;i++)
             indirect[i]=i;
         int isolated = 0;
-        Iterator nodeIO = network.indexOutInHash.values().iterator();
-        for(int k=0;k<n;k++)
+        for(int index=0;index<n;index++)
             {
-            Network.IndexOutIn ioi = (Network.IndexOutIn)nodeIO.next();
-            int index= ioi.index;
-            if(ioi.out == null)
+            if(network.getEdgesOut(network.allNodes.objs[index]).numObjs == 0)
                 {       
                 isolated++;
                 indirect[n-isolated] = indirect[index];
@@ -57,20 +69,17 @@ public class InformationCentrality extends NodeIndex
                 a.setElement(i, j, 1);
         //TODO too many functioncalls
                                 
-        nodeIO = network.indexOutInHash.values().iterator();
-        for(int k=0;k<n;k++)
+        for(int index=0;index<n;index++)
             {
-            Network.IndexOutIn ioi = (Network.IndexOutIn)nodeIO.next();
-            int index= ioi.index;
-            if(ioi.out == null) continue;
-            int outDegree = ioi.out.numObjs;
+            Object nodeObj =  network.allNodes.objs[index];
+            Bag out = network.getEdgesOut(nodeObj);
+            int outDegree = out.numObjs;
+            if(outDegree == 0) continue;
             int indirectIndex = indirect[index];
-            Object nodeObj =  network.allNodes.objs[ioi.index];
             for(int i=0;i<outDegree;i++)
                 {
-                Edge e = (Edge)ioi.out.objs[i];
-                // this is getNodeIndex without the function call
-                int j = ((Network.IndexOutIn)network.indexOutInHash.get(e.getOtherNode(nodeObj))).index;
+                Edge e = (Edge)out.objs[i];
+                int j = network.getNodeIndex(e.getOtherNode(nodeObj));
                 a.setElement(indirectIndex, indirect[j], 1-weightFn.getWeight(e));
                 // multigraphs will have edges ignored here
                 }
@@ -83,7 +92,7 @@ public class InformationCentrality extends NodeIndex
         //TODO maybe we could find a in-place matrix multiplication procedure
         try
             {
-            c = a.getInverse(0.0);
+            c = a.getInverse(0.0, numThreads);
             for(int i=0;i<nonIsolatedN;i++)
                 {
                 T+=c.getElement(i, i);
@@ -110,6 +119,144 @@ public class InformationCentrality extends NodeIndex
         normalizationDenominator = sum;
         }
 
+
+    /** Computes the centrality of an undirected network iteratively, solving each system until its residual is no
+        more than tolerance, with the solutions divided among the given number of threads (or Parallel.CPUS).  Parallel
+        edges' weights are added up, whereas the dense constructors use just one of them, and self-loops are ignored.
+        Throws a RuntimeException if the network is directed, or if the matrix turns out not to be positive definite. */
+    public InformationCentrality(final Network network, final EdgeMetric weightFn, final double tolerance, int numThreads)
+        {
+        super(network);
+        if (network.isDirected())
+            throw new RuntimeException("The iterative InformationCentrality works only with undirected networks");
+        NetworkSnapshot snapshot = network.getSnapshot();
+        int n = snapshot.numNodes;
+
+        // the non isolated nodes are numbered compactly
+        int[] compact = new int[n];
+        int nonIsolatedN = 0;
+        for(int i=0;i<n;i++)
+            compact[i] = (snapshot.getOutDegree(i) > 0 ? nonIsolatedN++ : -1);
+        ci = new double[n];
+        if (nonIsolatedN == 0)
+            throw new RuntimeException("Singular Matrix");
+
+        // the matrix is J + M, where J is all ones, and M has each actor's degree on its diagonal
+        // and minus the edge weights elsewhere
+        int[] rows = new int[snapshot.numEdges + nonIsolatedN];
+        int[] columns = new int[rows.length];
+        double[] values = new double[rows.length];
+        int size = 0;
+        for(int i=0;i<n;i++)
+            {
+            if (compact[i] < 0) continue;
+            rows[size] = columns[size] = compact[i];
+            values[size++] = snapshot.getOutDegree(i);
+            // the snapshot of an IntNetworkAdapter has no Edges, but getEdgesOut(...) has them in the same order
+            Bag edges = network.getEdgesOut(network.allNodes.objs[i]);
+            for(int j=snapshot.outOffsets[i];j<snapshot.outOffsets[i+1];j++)
+                if (snapshot.outTargets[j] != i)
+                    {
+                    rows[size] = compact[i];
+                    columns[size] = compact[snapshot.outTargets[j]];
+                    values[size++] = -weightFn.getWeight((Edge)(edges.objs[j-snapshot.outOffsets[i]]));
+                    }
+            }
+        final SparseMatrix m = new SparseMatrix(nonIsolatedN, nonIsolatedN, rows, columns, values, size);
+        final double[] preconditioner = m.getDiagonal();
+        for(int i=0;i<nonIsolatedN;i++)
+            preconditioner[i] = 1/(preconditioner[i] + 1);
+
+        // the diagonal of the inverse, and the sum of its first row (which is also its first column)
+        final int N = nonIsolatedN;
+        final double[] diagonal = new double[N];
+        final double[] firstRow = new double[1];
+        Parallel.run(N + 1, numThreads, 2, new Parallel.Task()
+            {
+            public void run(int thread, int from, int to)
+                {
+                double[][] work = new double[5][N];
+                for(int i=from;i<to;i++)
+                    {
+                    double[] x = solve(m, preconditioner, (i == N ? 0 : i), tolerance, work);
+                    if (i < N) diagonal[i] = x[i];
+                    else
+                        {
+                        double sum = 0;
+                        for(int j=0;j<N;j++) sum += x[j];
+                        firstRow[0] = sum;
+                        }
+                    }
+                }
+            });
+
+        double R=firstRow[0], T=0;
+        for(int i=0;i<N;i++)
+            T+=diagonal[i];
+        for(int i=0;i<n;i++)
+            ci[i]= (compact[i]<0)? Double.POSITIVE_INFINITY : diagonal[compact[i]];
+        double k = (T-2*R)/N;
+        double sum = 0;
+        for(int i=0;i<n;i++)
+            {
+            ci[i]=1d/(ci[i]+k);
+            sum+=ci[i];
+            }       
+        normalizationDenominator = sum;
+        }
+
+    // solves (J + m) x = e_c by the conjugate gradient method with a diagonal preconditioner, returning x, which is work[0]
+    static double[] solve(SparseMatrix m, double[] preconditioner, int c, double tolerance, double[][] work)
+        {
+        int n = preconditioner.length;
+        double[] x = work[0], r = work[1], z = work[2], p = work[3], q = work[4];
+        java.util.Arrays.fill(x, 0);
+        java.util.Arrays.fill(r, 0);
+        r[c] = 1;
+        double rz = 0;
+        for(int i=0;i<n;i++)
+            {
+            z[i] = preconditioner[i]*r[i];
+            p[i] = z[i];
+            rz += r[i]*z[i];
+            }
+        int maxIterations = MAX_ITERATIONS_PER_NODE * n + 100;
+        for(int iteration=0;iteration<maxIterations;iteration++)
+            {
+            // q = (J + m) p
+            m.mul(p, q, 1);
+            double sumP = 0;
+            for(int i=0;i<n;i++) sumP += p[i];
+            double pq = 0;
+            for(int i=0;i<n;i++)
+                {
+                q[i] += sumP;
+                pq += p[i]*q[i];
+                }
+            if (!(pq > 0))
+                throw new RuntimeException("The matrix is not positive definite");
+            double alpha = rz/pq;
+            double rr = 0;
+            for(int i=0;i<n;i++)
+                {
+                x[i] += alpha*p[i];
+                r[i] -= alpha*q[i];
+                rr += r[i]*r[i];
+                }
+            if (Math.sqrt(rr) <= tolerance) return x;
+            double rzNew = 0;
+            for(int i=0;i<n;i++)
+                {
+                z[i] = preconditioner[i]*r[i];
+                rzNew += r[i]*z[i];
+                }
+            double beta = rzNew/rz;
+            rz = rzNew;
+            for(int i=0;i<n;i++)
+                p[i] = z[i] + beta*p[i];
+            }
+        throw new RuntimeException("Information centrality did not converge in " + maxIterations + " iterations");
+        }
         
     public double getValue(Object node) {
         return ci[network.getNodeIndex(node)];
@@ -7,6 +7,7 @@
 package sim.field.network.stats.actorcentrality;
 import sim.field.network.stats.*;
 import sim.field.network.*;
+import sim.util.*;
 import sim.util.mantissa.linalg.*;
 
 /**
@@ -27,6 +28,12 @@ import sim.util.mantissa.linalg.*;
  *   the centrality range" 
  * (<a href="http://pbil.univ-lyon1.fr/library/sna/html/bonpow.html">R documentation</a>).
  * 
+ * <p>The dense constructors solve the system directly in O(n^3) time and O(n^2) memory, the LU factorization
+ * optionally divided among threads.  For large sparse networks, the iterative constructor instead
+ * repeats x = R 1 + beta R x, starting from x = R 1, over a sparse copy of R: O(n + m) memory, and O(n + m) time per
+ * iteration.  This converges only if |beta| is less than 1 / (the largest eigenvalue of R), which is the usual range
+ * of beta for power centrality.
+ * 
  * @author Gabriel Catalin Balan
  */
 public class PowerPrestige extends NodeIndex 
@@ -34,15 +41,21 @@ public class PowerPrestige extends NodeIndex
     final double[] prestige;
     final double scalingDenominator;
         
+    /** The most iterations made by the iterative constructor before giving up. */
+    public static final int MAX_ITERATIONS = 100000;
+
     public PowerPrestige(final Network network, EdgeMetric metric){this(network, 1, metric);}
-    public PowerPrestige(final Network network,  double beta, EdgeMetric metric)
+    public PowerPrestige(final Network network,  double beta, EdgeMetric metric){this(network, beta, metric, 1);}
+
+    /** Solves for the prestige directly, with the given number of threads (or Parallel.CPUS). */
+    public PowerPrestige(final Network network,  double beta, EdgeMetric metric, int numThreads)
         {
         super(network);
         int n = network.allNodes.numObjs;
         prestige = new double[n];
         Edge[][] adjM = network.getAdjacencyMatrix();
         //I-betaR
-        GeneralSquareMatrix I_bR = new GeneralSquareMatrix(n);
+        double[] I_bRData = new double[n*n];
                 
         //R1 = is a square matrix with val_ij = Sum_k(R_ik) for all j. 
         //A simple column vector is enough, the rest is redundancy
@@ -56,24 +69,20 @@ public class PowerPrestige extends NodeIndex
                 Edge e = adjMi[j];
                 double val = (e==null? 0: metric.getWeight(e));
                 sum+=val;
-                I_bR.setElement(i, j, (i==j?1:0)-beta* val);
+                I_bRData[i*n+j] = (i==j?1:0)-beta* val;
                 }
             Rsum[i]=sum;
             }
-        SquareMatrix I_bR_1;
+        GeneralSquareMatrix I_bR = new GeneralSquareMatrix(n, I_bRData);
         try
             {
-            I_bR_1 = I_bR.getInverse(0.0);
-            //prestige = multiplyByR1(I_bR_1, Rsum)
+            //prestige = (I-betaR)^-1 R1, without the inverse
+            Matrix x = I_bR.solve(new GeneralMatrix(n, 1, Rsum), 0.0, numThreads);
             double sumsq = 0;//for scaling purposes
             for(int i=0;i<n;i++)
                 {
-//                              double[] matrix_i = I_bR_1[i];
-                double sum = 0;
-                for(int k=0;k<n;k++)
-                    sum+= I_bR_1.getElement(i,k)*Rsum[k];   
-                prestige[i]=sum;
-                sumsq += sum*sum;
+                prestige[i]=x.getElement(i, 0);
+                sumsq += prestige[i]*prestige[i];
                 }
             scalingDenominator = Math.sqrt(sumsq/n);//remember, this will be used to divide the prestige values
             }catch(SingularMatrixException ex)
@@ -82,9 +91,60 @@ public class PowerPrestige extends NodeIndex
             }
         }
 
+    /** Computes the prestige by iteration over a sparse matrix, until no value changes by more than tolerance times
+        the largest value, with the given number of threads (or Parallel.CPUS).  Parallel edges' weights are added up,
+        whereas the dense constructors use just one of them.  Throws a RuntimeException if the iteration does not
+        converge, in which case beta is too large for it: use a dense constructor instead. */
+    public PowerPrestige(final Network network, double beta, EdgeMetric metric, double tolerance, int numThreads)
+        {
+        super(network);
+        NetworkSnapshot snapshot = network.getSnapshot();
+        int n = snapshot.numNodes;
+        int[] rows = new int[snapshot.numEdges];
+        double[] weights = new double[snapshot.numEdges];
+        for(int i=0;i<n;i++)
+            {
+            // the snapshot of an IntNetworkAdapter has no Edges, but getEdgesOut(...) has them in the same order
+            Bag edges = network.getEdgesOut(network.allNodes.objs[i]);
+            for(int j=snapshot.outOffsets[i];j<snapshot.outOffsets[i+1];j++)
+                {
+                rows[j]=i;
+                weights[j]=metric.getWeight((Edge)(edges.objs[j-snapshot.outOffsets[i]]));
+                }
+            }
+        SparseMatrix R = new SparseMatrix(n, n, rows, snapshot.outTargets, weights, snapshot.numEdges);
+
+        double[] ones = new double[n];
+        java.util.Arrays.fill(ones, 1.0);
+        double[] Rsum = R.mul(ones, new double[n], numThreads);
+        prestige = (double[])(Rsum.clone());
+        double[] Rx = new double[n];
+        for(int iteration=0;;iteration++)
+            {
+            if (iteration == MAX_ITERATIONS)
+                throw new RuntimeException("Power prestige did not converge in " + MAX_ITERATIONS + " iterations: beta may be too large");
+            R.mul(prestige, Rx, numThreads);
+            double change = 0;
+            double max = 0;
+            for(int i=0;i<n;i++)
+                {
+                double value = Rsum[i] + beta*Rx[i];
+                change = Math.max(change, Math.abs(value - prestige[i]));
+                max = Math.max(max, Math.abs(value));
+                prestige[i] = value;
+                }
+            if (Double.isInfinite(max) || Double.isNaN(max))
+                throw new RuntimeException("Power prestige diverged: beta is too large");
+            if (change <= tolerance*max) break;
+            }
+        double sumsq = 0;
+        for(int i=0;i<n;i++)
+            sumsq += prestige[i]*prestige[i];
+        scalingDenominator = Math.sqrt(sumsq/n);
+        }
+
     public double getValue(final Object node) {
-        Network.IndexOutIn inout = (Network.IndexOutIn)network.indexOutInHash.get(node);
-        return prestige[inout.index];
+        return prestige[network.getNodeIndex(node)];
         }
         
     public double getValue(final int nodeIndex)
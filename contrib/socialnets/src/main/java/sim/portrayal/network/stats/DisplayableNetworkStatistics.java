@@ -67,13 +67,11 @@ public class DisplayableNetworkStatistics
         {
         final int n = net.allNodes.numObjs;
         double[] data = new double[n];
-        Iterator i = net.indexOutInHash.values().iterator();
+        NetworkSnapshot snapshot = net.getSnapshot();
         maxDegree = 0;
         for(int k=0;k<n;k++)
             {
-            Network.IndexOutIn ioi= (Network.IndexOutIn)i.next();   
-            Bag b = (out ? ioi.out : ioi.in);
-            int d = (b==null)? 0: b.numObjs;
+            int d = (out ? snapshot.getOutDegree(k) : snapshot.getInDegree(k));
             data[k]= d;
             if(d>maxDegree) maxDegree = d;
             }               
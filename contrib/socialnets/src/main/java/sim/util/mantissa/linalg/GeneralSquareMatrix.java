@@ -1,6 +1,7 @@
 package sim.util.mantissa.linalg;
 
 import java.io.Serializable;
+import sim.util.Parallel;
 
 /** This class implements general square matrices of linear algebra.
 
@@ -124,7 +125,7 @@ public class GeneralSquareMatrix
     public double getDeterminant(double epsilon) {
         try {
             if (permutations == null)
-                computeLUFactorization(epsilon);
+                computeLUFactorization(epsilon, 1);
             double d = upper.getDeterminant(epsilon);
             return evenPermutations ? d : -d;
             } catch (SingularMatrixException e) {
@@ -133,6 +134,23 @@ public class GeneralSquareMatrix
         }
 
     public Matrix solve(Matrix b, double epsilon)
+        throws SingularMatrixException {
+        return solve(b, epsilon, 1);
+        }
+
+    /** Solve the <tt>A.X = B</tt> equation, using several threads for
+     * the LU factorization (if it has not already been computed) and
+     * for the triangular systems. The result is the same however many
+     * threads are used.
+     * @param b second term of the equation
+     * @param epsilon threshold on matrix elements below which the
+     * matrix is considered singular
+     * @param numThreads number of threads to use, or
+     * {@link sim.util.Parallel#CPUS} for one per processor
+     * @return a matrix X such that <tt>A.X = B</tt>, where A is the instance
+     * @exception SingularMatrixException if the matrix is singular
+     */
+    public Matrix solve(Matrix b, double epsilon, int numThreads)
         throws SingularMatrixException {
         // validity check
         if (b.getRows() != rows) {
@@ -140,7 +158,7 @@ public class GeneralSquareMatrix
             }
 
         if (permutations == null) {
-            computeLUFactorization(epsilon);
+            computeLUFactorization(epsilon, numThreads);
             }
 
         // apply the permutations to the second member
@@ -155,7 +173,7 @@ public class GeneralSquareMatrix
         Matrix permB = MatrixFactory.buildMatrix(b.getRows(), bCols, permData);
 
         // solve the permuted system
-        return upper.solve(lower.solve(permB, epsilon), epsilon);
+        return upper.solve(lower.solve(permB, epsilon, numThreads), epsilon, numThreads);
 
         }
 
@@ -167,63 +185,113 @@ public class GeneralSquareMatrix
         return new NonNullRange(0, rows);
         }
 
-    private void computeLUFactorization(double epsilon)
+    /** Compute the LU factorization with partial pivoting.
+     * The factorization is blocked: the columns are factored BLOCK_SIZE
+     * at a time, and then the rest of the matrix is updated with the
+     * whole block at once, the rows being divided among the threads.
+     * Each element receives the same updates in the same order as in
+     * the unblocked algorithm, so the factors do not depend on the
+     * number of threads.
+     */
+    private void computeLUFactorization(double epsilon, int numThreads)
         throws SingularMatrixException {
         // build a working copy of the matrix data
-        double[] work = new double[rows * columns];
-        for (int index = 0; index < work.length; ++index) {
-            work[index] = data[index];
-            }
+        final double[] work = new double[rows * columns];
+        System.arraycopy(data, 0, work, 0, work.length);
 
         // initialize the permutations table to identity
-        permutations = new int[rows];
+        final int[] permutations = new int[rows];
         for (int i = 0; i < rows; ++i) {
             permutations[i] = i;
             }
         evenPermutations = true;
 
-        for (int k = 0; k < rows; ++k) {
+        for (int k0 = 0; k0 < rows; k0 += BLOCK_SIZE) {
+            final int kStart = k0;
+            final int kEnd   = Math.min(k0 + BLOCK_SIZE, rows);
+
+            // factor the block of columns
+            for (int k = kStart; k < kEnd; ++k) {
+
+                // find the maximal element in the column
+                double maxElt = Math.abs(work[permutations[k] * columns + k]);
+                int    jMax   = k;
+                for (int i = k + 1; i < rows; ++i) {
+                    double curElt = Math.abs(work[permutations[i] * columns + k]);
+                    if (curElt > maxElt) {
+                        maxElt = curElt;
+                        jMax   = i;
+                        }
+                    }
 
-            // find the maximal element in the column
-            double maxElt = Math.abs(work[permutations[k] * columns + k]);
-            int    jMax   = k;
-            for (int i = k + 1; i < rows; ++i) {
-                double curElt = Math.abs(work[permutations[i] * columns + k]);
-                if (curElt > maxElt) {
-                    maxElt = curElt;
-                    jMax   = i;
+                if (maxElt < epsilon) {
+                    throw new SingularMatrixException();
                     }
-                }
 
-            if (maxElt < epsilon) {
-                throw new SingularMatrixException();
-                }
+                if (k != jMax) {
+                    // do the permutation to have a large enough diagonal element
+                    int tmp            = permutations[k];
+                    permutations[k]    = permutations[jMax];
+                    permutations[jMax] = tmp;
+                    evenPermutations   = ! evenPermutations;
+                    }
 
-            if (k != jMax) {
-                // do the permutation to have a large enough diagonal element
-                int tmp            = permutations[k];
-                permutations[k]    = permutations[jMax];
-                permutations[jMax] = tmp;
-                evenPermutations   = ! evenPermutations;
-                }
+                double inv = 1.0 / work[permutations[k] * columns + k];
 
-            double inv = 1.0 / work[permutations[k] * columns + k];
+                // compute the contribution of the row to the triangular matrices,
+                // within the block for now
+                for (int i = k + 1; i < rows; ++i) {
+                    double factor = inv * work[permutations[i] * columns + k];
 
-            // compute the contribution of the row to the triangular matrices
-            for (int i = k + 1; i < rows; ++i) {
-                double factor = inv * work[permutations[i] * columns + k];
+                    // lower triangular matrix
+                    work[permutations[i] * columns + k] = factor;
 
-                // lower triangular matrix
-                work[permutations[i] * columns + k] = factor;
+                    // upper triangular matrix
+                    int index1 = permutations[i] * columns + k;
+                    int index2 = permutations[k] * columns + k;
+                    for (int j = k + 1; j < kEnd; ++j) {
+                        work[++index1] -= factor * work[++index2];
+                        }
+                    }
+                }
 
-                // upper triangular matrix
-                int index1 = permutations[i] * columns + k;
-                int index2 = permutations[k] * columns + k;
-                for (int j = k + 1; j < columns; ++j) {
-                    work[++index1] -= factor * work[++index2];
+            if (kEnd == columns) {
+                break;
+                }
+
+            // update the rest of the block's rows
+            for (int k = kStart; k < kEnd; ++k) {
+                for (int i = k + 1; i < kEnd; ++i) {
+                    double factor = work[permutations[i] * columns + k];
+                    int index1 = permutations[i] * columns;
+                    int index2 = permutations[k] * columns;
+                    for (int j = kEnd; j < columns; ++j) {
+                        work[index1 + j] -= factor * work[index2 + j];
+                        }
                     }
                 }
+
+            // update the rows below the block, a few columns at a time
+            double updates = ((double) (rows - kEnd)) * (columns - kEnd) * (kEnd - kStart);
+            Parallel.run(rows - kEnd, threads(numThreads, updates), 1, new Parallel.Task() {
+                public void run(int thread, int from, int to) {
+                    for (int j0 = kEnd; j0 < columns; j0 += 4 * BLOCK_SIZE) {
+                        int j1 = Math.min(j0 + 4 * BLOCK_SIZE, columns);
+                        for (int i = kEnd + from; i < kEnd + to; ++i) {
+                            int index1 = permutations[i] * columns;
+                            for (int k = kStart; k < kEnd; ++k) {
+                                double factor = work[index1 + k];
+                                int index2 = permutations[k] * columns;
+                                for (int j = j0; j < j1; ++j) {
+                                    work[index1 + j] -= factor * work[index2 + j];
+                                    }
+                                }
+                            }
+                        }
+                    }
+                });
             }
+        this.permutations = permutations;
 
         // build the matrices
         double[] lowerData = new double[rows * columns];
@@ -251,9 +319,6 @@ public class GeneralSquareMatrix
                 }
             }
 
-        // release the memory as soon as possible
-        work = null;
-
         lower = new LowerTriangularMatrix(rows, lowerData);
         upper = new UpperTriangularMatrix(rows, upperData);
 
@@ -1,6 +1,7 @@
 package sim.util.mantissa.linalg;
 
 import java.io.Serializable;
+import sim.util.Parallel;
 
 /** This class factor all services common to matrices.
 
@@ -197,7 +198,7 @@ public abstract class Matrix
 
             // assign the zeros after the non null range
             while (j < columns) {
-                resultData[resultIndex++] = 0.0;
+                resultData[resultIndex] = 0.0;
                 ++resultIndex;
                 ++j;
                 }
@@ -266,7 +267,7 @@ public abstract class Matrix
 
             // assign the zeros after the non null range
             while (j < columns) {
-                resultData[resultIndex++] = 0.0;
+                resultData[resultIndex] = 0.0;
                 ++resultIndex;
                 ++j;
                 }
@@ -285,6 +286,23 @@ public abstract class Matrix
      * @exception IllegalArgumentException if there is a dimension mismatch
      */
     public Matrix mul(Matrix m) {
+        return mul(m, 1);
+        }
+
+    /** Multiply the instance by a matrix, using several threads.
+     * This method multiplies the instance by a matrix. It returns a new
+     * matrix and does not modify the instance. The product is computed
+     * BLOCK_SIZE rows and columns at a time so that they stay in the
+     * cache, and the blocks of rows are divided among the threads. Each
+     * element is summed in the same order however many threads are used,
+     * so the result does not depend on their number.
+     * @param m matrix by which to multiply
+     * @param numThreads number of threads to use, or
+     * {@link sim.util.Parallel#CPUS} for one per processor
+     * @return a new matrix containing the result
+     * @exception IllegalArgumentException if there is a dimension mismatch
+     */
+    public Matrix mul(final Matrix m, int numThreads) {
 
         // validity check
         if (columns != m.rows) {
@@ -295,42 +313,70 @@ public abstract class Matrix
                 + " matrix");
             }
 
-        double[] resultData = new double[rows * m.columns];
-        int resultIndex     = 0;
-        int lowerElements   = 0;
-        int upperElements   = 0;
-
+        final double[] resultData = new double[rows * m.columns];
+        final NonNullRange[] rowRanges  = new NonNullRange[rows];
+        final NonNullRange[] mRowRanges = new NonNullRange[m.rows];
         for (int i = 0; i < rows; ++i) {
-            for (int j = 0; j < m.columns; ++j) {
-                double value = 0.0;
-
-                // compute the tighter possible indices of the internal loop
-                NonNullRange r = NonNullRange.intersection(getRangeForRow(i),
-                    m.getRangeForColumn(j));
-
-                if (r.begin < r.end) {
-                    int k    = r.begin;
-                    int idx  = i * columns + k;
-                    int midx = k * m.columns + j;
-                    while (k++ < r.end) {
-                        value += data[idx++] * m.data[midx];
-                        midx  += m.columns;
+            rowRanges[i] = getRangeForRow(i);
+            }
+        for (int k = 0; k < m.rows; ++k) {
+            mRowRanges[k] = m.getRangeForRow(k);
+            }
+
+        final int numBlocks = (rows + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        final int[] lower = new int[numBlocks];
+        final int[] upper = new int[numBlocks];
+        Parallel.run(numBlocks, threads(numThreads, ((double) rows) * columns * m.columns), 1, new Parallel.Task() {
+            public void run(int thread, int from, int to) {
+                for (int b = from; b < to; ++b) {
+                    int i0 = b * BLOCK_SIZE;
+                    int i1 = Math.min(i0 + BLOCK_SIZE, rows);
+
+                    // for each element, the products are summed in order of k
+                    for (int k0 = 0; k0 < columns; k0 += BLOCK_SIZE) {
+                        int k1 = Math.min(k0 + BLOCK_SIZE, columns);
+                        for (int j0 = 0; j0 < m.columns; j0 += BLOCK_SIZE) {
+                            int j1 = Math.min(j0 + BLOCK_SIZE, m.columns);
+                            for (int i = i0; i < i1; ++i) {
+                                int kEnd = Math.min(k1, rowRanges[i].end);
+                                int resultRow = i * m.columns;
+                                for (int k = Math.max(k0, rowRanges[i].begin); k < kEnd; ++k) {
+                                    double a = data[i * columns + k];
+                                    int jEnd = Math.min(j1, mRowRanges[k].end);
+                                    int mRow = k * m.columns;
+                                    for (int j = Math.max(j0, mRowRanges[k].begin); j < jEnd; ++j) {
+                                        resultData[resultRow + j] += a * m.data[mRow + j];
+                                        }
+                                    }
+                                }
+                            }
                         }
 
                     // count the affected upper and lower elements
                     // (in order to deduce the shape of the resulting matrix)
-                    if (j < i) {
-                        ++lowerElements;
-                        } else if (i < j) {
-                        ++upperElements;
+                    for (int i = i0; i < i1; ++i) {
+                        int begin = m.columns;
+                        int end   = 0;
+                        for (int k = rowRanges[i].begin; k < rowRanges[i].end; ++k) {
+                            if (mRowRanges[k].begin < mRowRanges[k].end) {
+                                begin = Math.min(begin, mRowRanges[k].begin);
+                                end   = Math.max(end, mRowRanges[k].end);
+                                }
+                            }
+                        if (begin < end) {
+                            lower[b] += Math.max(0, Math.min(end, i) - begin);
+                            upper[b] += Math.max(0, end - Math.max(begin, i + 1));
+                            }
                         }
-
                     }
-
-                // store the element value
-                resultData[resultIndex++] = value;
-
                 }
+            });
+
+        int lowerElements = 0;
+        int upperElements = 0;
+        for (int b = 0; b < numBlocks; ++b) {
+            lowerElements += lower[b];
+            upperElements += upper[b];
             }
 
         return MatrixFactory.buildMatrix(rows, m.columns, resultData,
@@ -458,6 +504,20 @@ public abstract class Matrix
 
         }
 
+    /** Returns how many threads to use for an operation of the given number
+     * of multiplications: just one if there are too few to be worth starting
+     * threads for.
+     */
+    static int threads(int numThreads, double work) {
+        return (work < PARALLEL_WORK ? 1 : numThreads);
+        }
+
+    /** Size of the square blocks in which the blocked operations work. */
+    static final int BLOCK_SIZE = 64;
+
+    /** Number of multiplications below which operations run in the calling thread. */
+    static final double PARALLEL_WORK = 1 << 20;
+
     /** number of rows of the matrix. */
     protected final int rows;
 
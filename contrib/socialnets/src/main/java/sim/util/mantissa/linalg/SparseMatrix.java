@@ -0,0 +1,264 @@
+/*
+  Copyright 2010 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.util.mantissa.linalg;
+
+import java.io.Serializable;
+import sim.util.Parallel;
+
+/** This class implements sparse matrices, which hold only their non
+ * null elements.
+
+ * <p>The elements are held in compressed sparse row form: the elements
+ * of row i are numbered offsets[i] ... offsets[i + 1] - 1, in increasing
+ * order of column, and element k is in column columnIndices[k] and has
+ * value values[k]. This takes O(rows + elements) memory rather than the
+ * O(rows x columns) of the other matrices of this package, and
+ * multiplying a vector by the matrix takes O(rows + elements) time, so
+ * sparse matrices suit the large sparse systems of network statistics,
+ * which are solved by iteration rather than by factorization. A sparse
+ * matrix is not a {@link Matrix}, but {@link #toMatrix} makes one.</p>
+
+ */
+
+public class SparseMatrix
+    implements Serializable {
+    /** Simple constructor.
+     * Build a matrix from a list of elements in any order, element k
+     * being in row rowIndices[k] and column columnIndices[k] with value
+     * values[k]. Elements with the same row and column are added up, in
+     * the order they are listed. The arrays are not kept.
+     * @param rows number of rows of the matrix
+     * @param columns number of columns of the matrix
+     * @param rowIndices row of each element
+     * @param columnIndices column of each element
+     * @param values value of each element
+     * @param numElements number of elements to use from the arrays
+     * @exception IllegalArgumentException if some index is out of range
+     */
+    public SparseMatrix(int rows, int columns, int[] rowIndices, int[] columnIndices,
+        double[] values, int numElements) {
+        // sanity check
+        if (rows <= 0 || columns <= 0) {
+            throw new IllegalArgumentException("cannot build a matrix"
+                + " with negative or null dimension");
+            }
+
+        this.rows    = rows;
+        this.columns = columns;
+
+        // count the elements of each row
+        int[] start = new int[rows + 1];
+        for (int k = 0; k < numElements; ++k) {
+            if (rowIndices[k] < 0 || rowIndices[k] >= rows
+                || columnIndices[k] < 0 || columnIndices[k] >= columns) {
+                throw new IllegalArgumentException("cannot set element ("
+                    + rowIndices[k] + ", " + columnIndices[k] + ") in a "
+                    + rows + 'x' + columns
+                    + " matrix");
+                }
+            ++start[rowIndices[k] + 1];
+            }
+        for (int i = 0; i < rows; ++i) {
+            start[i + 1] += start[i];
+            }
+
+        // sort the elements by row, then by column and position in the list
+        long[] keys = new long[numElements];
+        int[] next  = new int[rows];
+        System.arraycopy(start, 0, next, 0, rows);
+        for (int k = 0; k < numElements; ++k) {
+            keys[next[rowIndices[k]]++] = (((long) columnIndices[k]) << 32) | k;
+            }
+
+        // merge the elements with the same column
+        int[] c    = new int[numElements];
+        double[] v = new double[numElements];
+        offsets    = new int[rows + 1];
+        int size   = 0;
+        for (int i = 0; i < rows; ++i) {
+            java.util.Arrays.sort(keys, start[i], start[i + 1]);
+            offsets[i] = size;
+            for (int k = start[i]; k < start[i + 1]; ++k) {
+                int column   = (int) (keys[k] >>> 32);
+                double value = values[(int) (keys[k] & 0xFFFFFFFFL)];
+                if (size > offsets[i] && c[size - 1] == column) {
+                    v[size - 1] += value;
+                    } else {
+                    c[size] = column;
+                    v[size] = value;
+                    ++size;
+                    }
+                }
+            }
+        offsets[rows] = size;
+
+        this.columnIndices = new int[size];
+        this.values        = new double[size];
+        System.arraycopy(c, 0, this.columnIndices, 0, size);
+        System.arraycopy(v, 0, this.values, 0, size);
+
+        }
+
+    /** Simple constructor.
+     * Build a matrix from its compressed sparse row form, which is used
+     * as is rather than copied.
+     * @param rows number of rows of the matrix
+     * @param columns number of columns of the matrix
+     * @param offsets index of the first element of each row, plus the
+     * number of elements at the end
+     * @param columnIndices column of each element, in increasing order
+     * within each row
+     * @param values value of each element
+     */
+    public SparseMatrix(int rows, int columns, int[] offsets, int[] columnIndices,
+        double[] values) {
+        // sanity check
+        if (rows <= 0 || columns <= 0) {
+            throw new IllegalArgumentException("cannot build a matrix"
+                + " with negative or null dimension");
+            }
+        if (offsets.length != rows + 1 || columnIndices.length < offsets[rows]
+            || values.length < offsets[rows]) {
+            throw new IllegalArgumentException("dimension mismatch");
+            }
+
+        this.rows          = rows;
+        this.columns       = columns;
+        this.offsets       = offsets;
+        this.columnIndices = columnIndices;
+        this.values        = values;
+
+        }
+
+    /** Get the number of rows of the matrix.
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+        }
+
+    /** Get the number of columns of the matrix.
+     * @return number of columns
+     */
+    public int getColumns() {
+        return columns;
+        }
+
+    /** Get the number of non null elements held by the matrix.
+     * @return number of elements
+     */
+    public int getNumElements() {
+        return offsets[rows];
+        }
+
+    /** Get a matrix element.
+     * This takes O(log(elements in the row)) time.
+     * @param i row index, from 0 to rows - 1
+     * @param j column index, from 0 to cols - 1
+     * @return value of the element
+     * @exception IllegalArgumentException if the indices are wrong
+     */
+    public double getElement(int i, int j) {
+        if (i < 0 || i >= rows || j < 0 || j >= columns) {
+            throw new IllegalArgumentException("cannot get element ("
+                + i + ", " + j + ") from a "
+                + rows + 'x' + columns
+                + " matrix");
+            }
+        int k = java.util.Arrays.binarySearch(columnIndices, offsets[i], offsets[i + 1], j);
+        return (k < 0) ? 0.0 : values[k];
+        }
+
+    /** Multiply a vector by the instance.
+     * @param x vector by which to multiply, of length columns
+     * @return a new vector, of length rows, containing the result
+     * @exception IllegalArgumentException if there is a dimension mismatch
+     */
+    public double[] mul(double[] x) {
+        return mul(x, new double[rows], 1);
+        }
+
+    /** Multiply a vector by the instance, using several threads.
+     * The rows are divided among the threads, and the result does not
+     * depend on their number.
+     * @param x vector by which to multiply, of length columns
+     * @param result vector of length rows to hold the result (not x)
+     * @param numThreads number of threads to use, or
+     * {@link sim.util.Parallel#CPUS} for one per processor
+     * @return result
+     * @exception IllegalArgumentException if there is a dimension mismatch
+     */
+    public double[] mul(final double[] x, final double[] result, int numThreads) {
+        if (x.length != columns || result.length != rows) {
+            throw new IllegalArgumentException("cannot multiply a vector of length "
+                + x.length + " by a "
+                + rows + 'x' + columns
+                + " matrix into a vector of length " + result.length);
+            }
+        Parallel.run(rows, numThreads, Parallel.MIN_PARALLEL_WORK, new Parallel.Task() {
+            public void run(int thread, int from, int to) {
+                for (int i = from; i < to; ++i) {
+                    double sum = 0.0;
+                    for (int k = offsets[i]; k < offsets[i + 1]; ++k) {
+                        sum += values[k] * x[columnIndices[k]];
+                        }
+                    result[i] = sum;
+                    }
+                }
+            });
+        return result;
+        }
+
+    /** Get the diagonal elements of the matrix.
+     * @return a new vector holding element (i, i) for each i less than
+     * both rows and columns
+     */
+    public double[] getDiagonal() {
+        double[] diagonal = new double[Math.min(rows, columns)];
+        for (int i = 0; i < diagonal.length; ++i) {
+            diagonal[i] = getElement(i, i);
+            }
+        return diagonal;
+        }
+
+    /** Build an ordinary matrix holding the same elements.
+     * @return a new matrix, of the narrowest type which fits
+     */
+    public Matrix toMatrix() {
+        double[] data     = new double[rows * columns];
+        int lowerElements = 0;
+        int upperElements = 0;
+        for (int i = 0; i < rows; ++i) {
+            for (int k = offsets[i]; k < offsets[i + 1]; ++k) {
+                data[i * columns + columnIndices[k]] = values[k];
+                if (columnIndices[k] < i) {
+                    ++lowerElements;
+                    } else if (i < columnIndices[k]) {
+                    ++upperElements;
+                    }
+                }
+            }
+        return MatrixFactory.buildMatrix(rows, columns, data,
+            lowerElements, upperElements);
+        }
+
+    /** number of rows of the matrix. */
+    protected final int rows;
+
+    /** number of columns of the matrix. */
+    protected final int columns;
+
+    /** index of the first element of each row, followed by the number of elements. */
+    protected final int[] offsets;
+
+    /** column of each element, in increasing order within each row. */
+    protected final int[] columnIndices;
+
+    /** value of each element. */
+    protected final double[] values;
+
+    }
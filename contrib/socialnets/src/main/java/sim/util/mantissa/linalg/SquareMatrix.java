@@ -64,6 +64,20 @@ public abstract class SquareMatrix
         return (SquareMatrix) solve(new DiagonalMatrix (columns), epsilon);
         }
 
+    /** Invert the instance, using several threads where the matrix
+     * type supports it.
+     * @param epsilon threshold on matrix elements below which the
+     * matrix is considered singular
+     * @param numThreads number of threads to use, or
+     * {@link sim.util.Parallel#CPUS} for one per processor
+     * @return the inverse matrix of the instance
+     * @exception SingularMatrixException if the matrix is singular
+     */
+    public SquareMatrix getInverse(double epsilon, int numThreads)
+        throws SingularMatrixException {
+        return (SquareMatrix) solve(new DiagonalMatrix (columns), epsilon, numThreads);
+        }
+
 
     /** Solve the <tt>A.X = B</tt> equation.
      * @param b second term of the equation
@@ -75,6 +89,23 @@ public abstract class SquareMatrix
     public abstract Matrix solve(Matrix b, double epsilon)
         throws SingularMatrixException;
 
+    /** Solve the <tt>A.X = B</tt> equation, using several threads where
+     * the matrix type supports it. The result is the same however many
+     * threads are used. By default this just calls {@link
+     * #solve(Matrix, double)}.
+     * @param b second term of the equation
+     * @param epsilon threshold on matrix elements below which the
+     * matrix is considered singular
+     * @param numThreads number of threads to use, or
+     * {@link sim.util.Parallel#CPUS} for one per processor
+     * @return a matrix X such that <tt>A.X = B</tt>, where A is the instance
+     * @exception SingularMatrixException if the matrix is singular
+     */
+    public Matrix solve(Matrix b, double epsilon, int numThreads)
+        throws SingularMatrixException {
+        return solve(b, epsilon);
+        }
+
     /** Solve the <tt>A.X = B</tt> equation.
      * @param b second term of the equation
      * @param epsilon threshold on matrix elements below which the
@@ -1,6 +1,7 @@
 package sim.util.mantissa.linalg;
 
 import java.io.Serializable;
+import sim.util.Parallel;
 
 /** This class implements symetrical matrices of linear algebra.
 
@@ -175,6 +176,107 @@ public class SymetricalMatrix
 
         }
 
+    /** Compute the Cholesky factorization of the instance.
+     * The instance must be positive definite. The factorization takes
+     * about half the work of the LU factorization used by {@link
+     * #solve(Matrix, double)}. It is blocked: the parts of each block of
+     * BLOCK_SIZE rows to the left of the block depend only on the rows
+     * above, so they are computed in parallel, a block of columns at a
+     * time, and then the rest of the block is finished. The result is
+     * the same however many threads are used.
+     * @param epsilon threshold on the diagonal elements of the factor
+     * below which the matrix is considered singular
+     * @param numThreads number of threads to use, or
+     * {@link sim.util.Parallel#CPUS} for one per processor
+     * @return a lower triangular matrix L such that <tt>L.Lt</tt> is the instance
+     * @exception SingularMatrixException if the matrix is not positive definite
+     */
+    public LowerTriangularMatrix getCholeskyFactor(double epsilon, int numThreads)
+        throws SingularMatrixException {
+        final double[] l = new double[rows * columns];
+
+        for (int i0 = 0; i0 < rows; i0 += BLOCK_SIZE) {
+            final int iStart = i0;
+            final int iEnd   = Math.min(i0 + BLOCK_SIZE, rows);
+
+            // the parts of the rows to the left of the block
+            double work = ((double) (iEnd - iStart)) * iStart * iStart / 2;
+            Parallel.run(iEnd - iStart, threads(numThreads, work), 1, new Parallel.Task() {
+                public void run(int thread, int from, int to) {
+                    for (int j0 = 0; j0 < iStart; j0 += BLOCK_SIZE) {
+                        int j1 = Math.min(j0 + BLOCK_SIZE, iStart);
+                        for (int i = iStart + from; i < iStart + to; ++i) {
+                            for (int j = j0; j < j1; ++j) {
+                                l[i * columns + j] = (data[i * columns + j] - dot(l, i * columns, j * columns, j))
+                                    / l[j * (columns + 1)];
+                                }
+                            }
+                        }
+                    }
+                });
+
+            // the block itself
+            for (int i = iStart; i < iEnd; ++i) {
+                for (int j = iStart; j < i; ++j) {
+                    l[i * columns + j] = (data[i * columns + j] - dot(l, i * columns, j * columns, j))
+                        / l[j * (columns + 1)];
+                    }
+                double d = data[i * (columns + 1)] - dot(l, i * columns, i * columns, i);
+                if (! (d > 0.0) || Math.sqrt(d) < epsilon) {
+                    throw new SingularMatrixException();
+                    }
+                l[i * (columns + 1)] = Math.sqrt(d);
+                }
+            }
+
+        return new LowerTriangularMatrix(rows, l);
+
+        }
+
+    /** Solve the <tt>A.X = B</tt> equation by Cholesky factorization.
+     * The instance must be positive definite.
+     * @param b second term of the equation
+     * @param epsilon threshold on the diagonal elements of the factor
+     * below which the matrix is considered singular
+     * @param numThreads number of threads to use, or
+     * {@link sim.util.Parallel#CPUS} for one per processor
+     * @return a matrix X such that <tt>A.X = B</tt>, where A is the instance
+     * @exception SingularMatrixException if the matrix is not positive definite
+     * @see #getCholeskyFactor
+     */
+    public Matrix solveCholesky(Matrix b, double epsilon, int numThreads)
+        throws SingularMatrixException {
+        // validity check
+        if (b.getRows() != rows) {
+            throw new IllegalArgumentException("dimension mismatch");
+            }
+
+        LowerTriangularMatrix l = getCholeskyFactor(epsilon, numThreads);
+        double[] transposed = new double[rows * columns];
+        for (int i = 0; i < rows; ++i) {
+            for (int j = 0; j <= i; ++j) {
+                transposed[j * columns + i] = l.data[i * columns + j];
+                }
+            }
+        UpperTriangularMatrix lt = new UpperTriangularMatrix(rows, transposed);
+        return lt.solve(l.solve(b, epsilon, numThreads), epsilon, numThreads);
+        }
+
+    /** Compute the dot product of the first n elements of two rows.
+     * @param a matrix data
+     * @param row1 index of the first element of the first row
+     * @param row2 index of the first element of the second row
+     * @param n number of elements
+     * @return the dot product
+     */
+    private static double dot(double[] a, int row1, int row2, int n) {
+        double sum = 0.0;
+        for (int k = 0; k < n; ++k) {
+            sum += a[row1 + k] * a[row2 + k];
+            }
+        return sum;
+        }
+
     /** Add the symetrical matrix resulting from the product w.A.At to the instance.
      * This method can be used to build progressively the matrices of
      * least square problems. The instance is modified.
@@ -1,6 +1,7 @@
 package sim.util.mantissa.linalg;
 
 import java.io.Serializable;
+import sim.util.Parallel;
 
 /** This class implements upper triangular matrices of linear algebra.
 
@@ -114,79 +115,86 @@ public class UpperTriangularMatrix
         }
 
     public Matrix solve(Matrix b, double epsilon)
+        throws SingularMatrixException {
+        return solve(b, epsilon, 1);
+        }
+
+    /** Solve the <tt>A.X = B</tt> equation, using several threads.
+     * The rows of X are found one after the other by back
+     * substitution, each from the rows below it, walking along the rows
+     * rather than down the columns, and the columns are divided among the
+     * threads. The result is the same however many threads are used.
+     * @param b second term of the equation
+     * @param epsilon threshold on matrix elements below which the
+     * matrix is considered singular
+     * @param numThreads number of threads to use, or
+     * {@link sim.util.Parallel#CPUS} for one per processor
+     * @return a matrix X such that <tt>A.X = B</tt>, where A is the instance
+     * @exception SingularMatrixException if the matrix is singular
+     */
+    public Matrix solve(final Matrix b, double epsilon, int numThreads)
         throws SingularMatrixException {
         // validity check
-        if (b.getRows() != rows) {
+        if (b.getRows () != rows) {
             throw new IllegalArgumentException("dimension mismatch");
             }
 
         // prepare the data storage
-        int bRows  = b.getRows();
-        int bCols  = b.getColumns();
+        final int bRows  = b.getRows();
+        final int bCols  = b.getColumns();
 
-        double[] resultData = new double[bRows * bCols];
-        int resultIndex     = bRows * bCols - 1;
+        final double[] resultData = new double[bRows * bCols];
         int lowerElements   = 0;
         int upperElements   = 0;
         int minJ            = columns;
         int maxJ            = 0;
 
-        // solve the linear system
+        // find the possibly non null elements of each row of the result
+        final double[] inv = new double[rows];
+        final int[] begin  = new int[rows];
+        final int[] end    = new int[rows];
         for (int i = rows - 1; i >= 0; --i) {
             double diag = data[i * (columns + 1)];
             if (Math.abs(diag) < epsilon) {
                 throw new SingularMatrixException();
                 }
-            double inv = 1.0 / diag;
+            inv[i] = 1.0 / diag;
 
             NonNullRange range = b.getRangeForRow(i);
             minJ = Math.min(minJ, range.begin);
             maxJ = Math.max(maxJ, range.end);
+            begin[i] = minJ;
+            end[i]   = maxJ;
 
-            int j = bCols - 1;
-            while (j >= maxJ) {
-                resultData[resultIndex] = 0.0;
-                --resultIndex;
-                --j;
-                }
+            // count the affected upper and lower elements
+            // (in order to deduce the shape of the resulting matrix)
+            lowerElements += Math.max(0, Math.min(maxJ, i) - minJ);
+            upperElements += Math.max(0, maxJ - Math.max(minJ, i + 1));
+            }
 
-            // compute the possibly non null elements
-            int bIndex = i * bCols + maxJ - 1;
-            while (j >= minJ) {
-
-                // compute the current element
-                int index1 = (i + 1) * columns - 1;
-                int index2 = (bRows - 1) * bCols + j;
-                double value = b.data[bIndex];
-                while (index1 >= i * (columns + 1)) {
-                    value -= data[index1] * resultData[index2];
-                    --index1;
-                    index2 -= bCols;
-                    }
-                value *= inv;
-                resultData[resultIndex] = value;
-
-                // count the affected upper and lower elements
-                // (in order to deduce the shape of the resulting matrix)
-                if (j < i) {
-                    ++lowerElements;
-                    } else if (i < j) {
-                    ++upperElements;
+        // solve the linear system
+        Parallel.run(bCols, threads(numThreads, ((double) rows) * rows * bCols / 2), 1, new Parallel.Task() {
+            public void run(int thread, int from, int to) {
+                for (int i = rows - 1; i >= 0; --i) {
+                    int jBegin = Math.max(from, begin[i]);
+                    int jEnd   = Math.min(to, end[i]);
+                    int row    = i * bCols;
+                    for (int j = jBegin; j < jEnd; ++j) {
+                        resultData[row + j] = b.data[row + j];
+                        }
+                    for (int k = rows - 1; k > i; --k) {
+                        double a = data[i * columns + k];
+                        int kRow = k * bCols;
+                        for (int j = jBegin; j < jEnd; ++j) {
+                            resultData[row + j] -= a * resultData[kRow + j];
+                            }
+                        }
+                    for (int j = jBegin; j < jEnd; ++j) {
+                        resultData[row + j] *= inv[i];
+                        }
                     }
-
-                --bIndex;
-                --resultIndex;
-                --j;
-
                 }
-
-            while (j >= 0) {
-                resultData[resultIndex] = 0.0;
-                --resultIndex;
-                --j;
-                }
-
-            }
+            });
 
         return MatrixFactory.buildMatrix(bRows, bCols, resultData,
             lowerElements, upperElements);
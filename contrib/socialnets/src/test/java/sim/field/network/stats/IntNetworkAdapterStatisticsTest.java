@@ -0,0 +1,122 @@
+/*
+  Copyright 2010 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.network.stats;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import sim.field.network.*;
+import sim.field.network.stats.actorcentrality.*;
+import sim.util.*;
+import ec.util.MersenneTwisterFast;
+
+/**
+ * Checks that the statistics give the same results for an IntNetworkAdapter
+ * as for a Network with the same topology.
+ */
+public class IntNetworkAdapterStatisticsTest 
+    extends TestCase
+{
+    public IntNetworkAdapterStatisticsTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( IntNetworkAdapterStatisticsTest.class );
+    }
+
+    IntNetwork intNetwork;
+    Network network;
+
+    // builds the same random simple network, with some isolated nodes, as an IntNetwork and as a Network
+    void build( boolean directed, long seed )
+    {
+        MersenneTwisterFast random = new MersenneTwisterFast(seed);
+        int n = 40;
+        intNetwork = new IntNetwork(directed, IntNetwork.NO_WEIGHTS);
+        network = new Network(directed);
+        intNetwork.addNodes(n);
+        for( int i = 0; i < n; i++ )
+            network.addNode(Integer.valueOf(i));
+        for( int k = 0; k < 80; k++ )
+        {
+            int from = random.nextInt(n - 5);
+            int to = random.nextInt(n - 5);
+            if( from == to || intNetwork.getEdgeBetween(from, to) >= 0 ||
+                (!directed && intNetwork.getEdgeBetween(to, from) >= 0) )
+                continue;
+            intNetwork.addEdge(from, to);
+            network.addEdge(Integer.valueOf(from), Integer.valueOf(to), null);
+        }
+    }
+
+    void checkStatistics( boolean directed )
+    {
+        for( int seed = 0; seed < 5; seed++ )
+        {
+            build(directed, seed);
+            Network adapter = new IntNetworkAdapter(intNetwork);
+
+            assertEquals(NetworkStatistics.getNumberNodes(network), NetworkStatistics.getNumberNodes(adapter));
+            assertEquals(NetworkStatistics.getNumberActualEdges(network), NetworkStatistics.getNumberActualEdges(adapter));
+            assertEquals(NetworkStatistics.getDensity(network), NetworkStatistics.getDensity(adapter), 0.0);
+            assertEquals(NetworkStatistics.getInclusiveness(network), NetworkStatistics.getInclusiveness(adapter), 0.0);
+            Bag isolated = NetworkStatistics.getIsolatedNodes(network);
+            Bag adapterIsolated = NetworkStatistics.getIsolatedNodes(adapter);
+            assertEquals(isolated.numObjs, adapterIsolated.numObjs);
+            for( int i = 0; i < isolated.numObjs; i++ )
+                assertEquals(isolated.objs[i], adapterIsolated.objs[i]);
+
+            assertEquals(DegreeStatistics.getSumOfDegrees(network), DegreeStatistics.getSumOfDegrees(adapter));
+            assertEquals(DegreeStatistics.getMinInDegree(network), DegreeStatistics.getMinInDegree(adapter));
+            assertEquals(DegreeStatistics.getMinOutDegree(network), DegreeStatistics.getMinOutDegree(adapter));
+            assertEquals(DegreeStatistics.getMaxInDegree(network), DegreeStatistics.getMaxInDegree(adapter));
+            assertEquals(DegreeStatistics.getMaxOutDegree(network), DegreeStatistics.getMaxOutDegree(adapter));
+            assertEquals(DegreeStatistics.getMeanInDegree(network), DegreeStatistics.getMeanInDegree(adapter), 0.0);
+            assertEquals(DegreeStatistics.getMeanOutDegree(network), DegreeStatistics.getMeanOutDegree(adapter), 0.0);
+            assertEquals(DegreeStatistics.getVarInDegree(network), DegreeStatistics.getVarInDegree(adapter), 0.0);
+            assertEquals(DegreeStatistics.getVarOutDegree(network), DegreeStatistics.getVarOutDegree(adapter), 0.0);
+            for( int out = 0; out < 2; out++ )
+            {
+                int[] histogram = DegreeStatistics.getDegreeHistogram(network, out == 1);
+                int[] adapterHistogram = DegreeStatistics.getDegreeHistogram(adapter, out == 1);
+                assertEquals(histogram.length, adapterHistogram.length);
+                for( int i = 0; i < histogram.length; i++ )
+                    assertEquals(histogram[i], adapterHistogram[i]);
+                double[] ccdf = DegreeStatistics.getDegreeCCDF(network, out == 1);
+                double[] adapterCcdf = DegreeStatistics.getDegreeCCDF(adapter, out == 1);
+                for( int i = 0; i < ccdf.length; i++ )
+                    assertEquals(ccdf[i], adapterCcdf[i], 0.0);
+            }
+
+            DegreePrestige prestige = new DegreePrestige(network);
+            DegreePrestige adapterPrestige = new DegreePrestige(adapter);
+            PowerPrestige power = new PowerPrestige(network, 0.1, UnitEdgeMetric.defaultInstance);
+            PowerPrestige adapterPower = new PowerPrestige(adapter, 0.1, UnitEdgeMetric.defaultInstance);
+            PowerPrestige adapterSparsePower = new PowerPrestige(adapter, 0.1, UnitEdgeMetric.defaultInstance, 1e-12, 1);
+            for( int i = 0; i < network.allNodes.numObjs; i++ )
+            {
+                Object node = Integer.valueOf(i);
+                assertEquals(prestige.getValue(node), adapterPrestige.getValue(node), 0.0);
+                assertEquals(power.getValue(node), adapterPower.getValue(node), 1e-9);
+                assertEquals(power.getValue(node), adapterSparsePower.getValue(node), 1e-9);
+            }
+        }
+    }
+
+    public void testDirected()
+    {
+        checkStatistics(true);
+    }
+
+    public void testUndirected()
+    {
+        checkStatistics(false);
+    }
+}
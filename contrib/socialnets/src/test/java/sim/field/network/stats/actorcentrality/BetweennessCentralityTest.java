@@ -0,0 +1,104 @@
+/*
+  Copyright 2010 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.network.stats.actorcentrality;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import sim.field.network.*;
+import ec.util.MersenneTwisterFast;
+
+/**
+ * Checks BetweennessCentrality against hand-counted values, and checks
+ * that self-loops are ignored.
+ */
+public class BetweennessCentralityTest
+    extends TestCase
+{
+    public BetweennessCentralityTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( BetweennessCentralityTest.class );
+    }
+
+    // builds the network a-b, b-c, c-d, a-c, with a self-loop at b if asked
+    Network buildSmall( boolean directed, boolean selfLoop )
+    {
+        Network network = new Network(directed);
+        String[] nodes = { "a", "b", "c", "d" };
+        for( int i = 0; i < nodes.length; i++ )
+            network.addNode(nodes[i]);
+        network.addEdge("a", "b", null);
+        network.addEdge("b", "c", null);
+        network.addEdge("c", "d", null);
+        network.addEdge("a", "c", null);
+        if( selfLoop )
+            network.addEdge("b", "b", null);
+        return network;
+    }
+
+    // only the geodesics a-c-d and b-c-d pass through another node
+    void checkSmall( boolean directed, boolean selfLoop )
+    {
+        BetweennessCentrality bc = new BetweennessCentrality(buildSmall(directed, selfLoop));
+        assertEquals(0.0, bc.getValue("a"), 0.0);
+        assertEquals(0.0, bc.getValue("b"), 0.0);
+        assertEquals(2.0, bc.getValue("c"), 0.0);
+        assertEquals(0.0, bc.getValue("d"), 0.0);
+    }
+
+    public void testSmall()
+    {
+        checkSmall(false, false);
+        checkSmall(true, false);
+    }
+
+    public void testSmallWithSelfLoop()
+    {
+        checkSmall(false, true);
+        checkSmall(true, true);
+    }
+
+    // builds a random network, with self-loops on some nodes if asked, from the given seed
+    Network buildRandom( boolean directed, boolean selfLoops, long seed )
+    {
+        MersenneTwisterFast random = new MersenneTwisterFast(seed);
+        int n = 30;
+        Network network = new Network(directed);
+        for( int i = 0; i < n; i++ )
+            network.addNode(Integer.valueOf(i));
+        for( int k = 0; k < 60; k++ )
+        {
+            int from = random.nextInt(n);
+            int to = random.nextInt(n);
+            if( from != to )
+                network.addEdge(Integer.valueOf(from), Integer.valueOf(to), null);
+        }
+        if( selfLoops )
+            for( int i = 0; i < n; i += 3 )
+                network.addEdge(Integer.valueOf(i), Integer.valueOf(i), null);
+        return network;
+    }
+
+    void checkRandomWithSelfLoops( boolean directed )
+    {
+        BetweennessCentrality without = new BetweennessCentrality(buildRandom(directed, false, 7));
+        BetweennessCentrality with = new BetweennessCentrality(buildRandom(directed, true, 7));
+        for( int i = 0; i < 30; i++ )
+            assertEquals(without.getValue(Integer.valueOf(i)), with.getValue(Integer.valueOf(i)), 1e-9);
+    }
+
+    public void testRandomWithSelfLoops()
+    {
+        checkRandomWithSelfLoops(false);
+        checkRandomWithSelfLoops(true);
+    }
+}
@@ -0,0 +1,292 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field;
+import java.util.*;
+
+/**
+   A Map, keyed by objects, which stores Slotted keys in arrays indexed by their slots, and all other keys in an
+   ordinary HashMap.  A SparseField uses a SlotMap as its locationAndIndexHash when it is slotted (see
+   SparseField.setSlotted(...)), so that looking up, moving, or removing a Slotted object involves no hashing.
+
+   <p><b>Owners and companions.</b>  A SlotMap built with the default constructor is an <i>owner</i>: when a Slotted key
+   whose slot is 0 is put into it, the owner assigns the key a free slot, and when the key is removed, the owner resets its
+   slot to 0 and reuses it later.  A Slotted key whose slot is already taken, perhaps by another field, is simply hashed.
+   An owner can also build a single <i>companion</i> SlotMap with buildCompanion(), which holds another value per key but
+   never assigns slots: it stores a key in its arrays only if the owner holds it there, and otherwise hashes it.  Continuous2D
+   and Continuous3D use a companion for their doubleLocationHash.  When the owner removes a key, the key vanishes from the
+   companion as well.
+
+   <p>Slotted keys are compared by identity.  Iteration runs over the slotted keys and then the hashed ones; the
+   iterators do not support remove().
+*/
+
+public class SlotMap extends AbstractMap implements java.io.Serializable
+    {
+    private static final long serialVersionUID = 1;
+
+    static final int INITIAL_SIZE = 16;
+
+    /** Keys indexed by slot.  Slot 0 is never used. */
+    Object[] keys;
+    /** Values indexed by slot. */
+    Object[] values;
+    /** Number of keys in the slots */
+    int numSlotted;
+    /** Keys which are not held in slots */
+    HashMap hashed = new HashMap();
+
+    // owners only
+    int nextSlot = 1;
+    int[] freeSlots;
+    int numFree;
+    SlotMap companion;
+
+    // companions only
+    final SlotMap owner;
+
+    /** Builds an empty owner. */
+    public SlotMap()
+        {
+        owner = null;
+        keys = new Object[INITIAL_SIZE];
+        values = new Object[INITIAL_SIZE];
+        freeSlots = new int[INITIAL_SIZE];
+        }
+
+    /** Builds an owner holding the contents of the given map, assigning slots where it can. */
+    public SlotMap(Map other)
+        {
+        this();
+        putAll(other);
+        }
+
+    SlotMap(SlotMap owner)
+        {
+        this.owner = owner;
+        keys = new Object[owner.keys.length];
+        values = new Object[owner.keys.length];
+        }
+
+    /** Builds an empty companion to this map, replacing any previous companion, which is then no longer kept in step. */
+    public SlotMap buildCompanion()
+        {
+        if (owner != null)
+            throw new RuntimeException("Only an owner SlotMap can build a companion");
+        return companion = new SlotMap(this);
+        }
+
+    /** Returns true if this map assigns slots, false if it is a companion. */
+    public boolean isOwner() { return owner == null; }
+
+    /** Returns the slot of the given key if this map holds it in a slot, else 0. */
+    final int slotOf(final Object key)
+        {
+        if (key instanceof Slotted)
+            {
+            final int slot = ((Slotted)key).getSlot();
+            if (slot > 0 && slot < keys.length && keys[slot] == key) return slot;
+            }
+        return 0;
+        }
+
+    public int size() { return numSlotted + hashed.size(); }
+
+    public boolean isEmpty() { return numSlotted == 0 && hashed.isEmpty(); }
+
+    public boolean containsKey(final Object key)
+        {
+        return slotOf(key) > 0 || hashed.containsKey(key);
+        }
+
+    public Object get(final Object key)
+        {
+        final int slot = slotOf(key);
+        if (slot > 0) return values[slot];
+        return hashed.get(key);
+        }
+
+    public Object put(final Object key, final Object value)
+        {
+        int slot = slotOf(key);
+        if (slot > 0)
+            {
+            Object old = values[slot];
+            values[slot] = value;
+            return old;
+            }
+
+        if (key instanceof Slotted)
+            {
+            final Slotted s = (Slotted)key;
+            if (owner == null)
+                {
+                if (s.getSlot() == 0 && (hashed.isEmpty() || !hashed.containsKey(key)))  // it may be hashed from when its slot was taken
+                    {
+                    slot = allocate();
+                    s.setSlot(slot);
+                    }
+                }
+            else
+                {
+                slot = s.getSlot();
+                if (slot <= 0 || slot >= owner.keys.length || owner.keys[slot] != key) slot = 0;
+                else if (slot >= keys.length) resize(owner.keys.length);
+                }
+            if (slot > 0)
+                {
+                keys[slot] = key;
+                values[slot] = value;
+                numSlotted++;
+                return null;
+                }
+            }
+        return hashed.put(key, value);
+        }
+
+    public Object remove(final Object key)
+        {
+        final int slot = slotOf(key);
+        if (slot > 0)
+            {
+            final Object old = values[slot];
+            keys[slot] = null;
+            values[slot] = null;
+            numSlotted--;
+            if (owner == null)
+                {
+                ((Slotted)key).setSlot(0);
+                if (companion != null) companion.drop(slot);
+                if (numFree == freeSlots.length)
+                    {
+                    int[] newFree = new int[freeSlots.length * 2];
+                    System.arraycopy(freeSlots, 0, newFree, 0, numFree);
+                    freeSlots = newFree;
+                    }
+                freeSlots[numFree++] = slot;
+                }
+            return old;
+            }
+        return hashed.remove(key);
+        }
+
+    /** Removes everything.  An owner also resets the slots of its slotted keys to 0, and clears its companion. */
+    public void clear()
+        {
+        if (owner == null)
+            {
+            for(int i = 1; i < nextSlot; i++)
+                if (keys[i] != null) ((Slotted)(keys[i])).setSlot(0);
+            nextSlot = 1;
+            numFree = 0;
+            if (companion != null) companion.clear();
+            }
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        numSlotted = 0;
+        hashed.clear();
+        }
+
+    // removes the companion's entry at a slot the owner has just given up
+    void drop(final int slot)
+        {
+        if (slot < keys.length && keys[slot] != null)
+            {
+            keys[slot] = null;
+            values[slot] = null;
+            numSlotted--;
+            }
+        }
+
+    int allocate()
+        {
+        if (numFree > 0) return freeSlots[--numFree];
+        if (nextSlot == keys.length) resize(keys.length * 2);
+        return nextSlot++;
+        }
+
+    void resize(final int size)
+        {
+        Object[] newKeys = new Object[size];
+        System.arraycopy(keys, 0, newKeys, 0, keys.length);
+        keys = newKeys;
+        Object[] newValues = new Object[size];
+        System.arraycopy(values, 0, newValues, 0, values.length);
+        values = newValues;
+        }
+
+    public Set entrySet()
+        {
+        return new AbstractSet()
+            {
+            public int size() { return SlotMap.this.size(); }
+            public Iterator iterator()
+                {
+                return new Iterator()
+                    {
+                    int slot = advance(1);
+                    Iterator rest = null;
+
+                    int advance(int i)
+                        {
+                        while(i < keys.length && keys[i] == null) i++;
+                        return i;
+                        }
+
+                    public boolean hasNext()
+                        {
+                        if (slot < keys.length) return true;
+                        if (rest == null) rest = hashed.entrySet().iterator();
+                        return rest.hasNext();
+                        }
+
+                    public Object next()
+                        {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        if (slot < keys.length)
+                            {
+                            final int s = slot;
+                            slot = advance(slot + 1);
+                            return new Entry(s);
+                            }
+                        return rest.next();
+                        }
+
+                    public void remove() { throw new UnsupportedOperationException("Remove not supported in SlotMap iterators"); }
+                    };
+                }
+            };
+        }
+
+    // A slotted entry, which writes through to the map
+    class Entry implements Map.Entry
+        {
+        final int slot;
+        final Object key;
+        Entry(int slot) { this.slot = slot; key = keys[slot]; }
+        public Object getKey() { return key; }
+        public Object getValue() { return (keys[slot] == key ? values[slot] : null); }
+        public Object setValue(Object value)
+            {
+            if (keys[slot] != key) throw new IllegalStateException("Entry has been removed from the SlotMap");
+            Object old = values[slot];
+            values[slot] = value;
+            return old;
+            }
+        public boolean equals(Object o)
+            {
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry e = (Map.Entry)o;
+            Object v = getValue();
+            return key.equals(e.getKey()) && (v == null ? e.getValue() == null : v.equals(e.getValue()));
+            }
+        public int hashCode()
+            {
+            Object v = getValue();
+            return key.hashCode() ^ (v == null ? 0 : v.hashCode());
+            }
+        }
+    }
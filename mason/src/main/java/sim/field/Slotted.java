@@ -0,0 +1,31 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field;
+
+/**
+   An object which can hold an integer <b>slot</b> on behalf of a slotted SparseField, so that the field can find
+   the object's location by an array access rather than a hash lookup.  See SparseField.setSlotted(...) and SlotMap.
+
+   <p>Implementing Slotted is trivial:
+
+   <pre><tt>
+   int slot;
+   public int getSlot() { return slot; }
+   public void setSlot(int slot) { this.slot = slot; }
+   </tt></pre>
+
+   <p>A new object's slot must be 0, meaning that it has no slot.  The field sets the slot when the object is added and
+   resets it to 0 when the object is removed: you must not change it yourself.  An object has only one slot, so if it
+   is stored in several slotted fields at once, only the first holds it in a slot; the others fall back to hashing it.
+   Slotted objects are looked up by identity (==), not by equals(...).
+*/
+
+public interface Slotted
+    {
+    public int getSlot();
+    public void setSlot(int slot);
+    }
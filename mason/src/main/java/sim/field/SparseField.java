@@ -57,6 +57,11 @@ import java.util.*;
     iterator and iterate through it.  Removing all objects at a given location is O(O), where O
     is the number of objects at that location.  Clearing the hash table is O(1) discounting GC.
 
+    <p><b>Slotted Objects.</b>  Finding an object's location and index means hashing the object.  If your objects
+    implement the Slotted interface and you call setSlotted(true), the field instead gives each of them an integer slot and
+    finds them by indexing arrays with it.  This is worthwhile when you have many objects which move or are removed often.
+    See Slotted and SlotMap.
+
     <p><b>Example Usage.</b>  
     Here is an example of a simple subclass which allows locations to be positive, non-zero integers:
     
@@ -113,7 +118,7 @@ public abstract class SparseField implements java.io.Serializable
     public Map locationAndIndexHash = buildMap(ANY_SIZE);
 
     /** Bags of objects hashed by location.  Do not rely on these bags always being the same objects. */
-    public Map objectHash = buildMap(ANY_SIZE);
+    public Map objectHash = buildObjectMap(ANY_SIZE);
 
     /** All the objects in the sparse field.  For fast scans.  Do not rely on this bag always being the same object. */
     public Bag allObjects = new Bag();
@@ -128,15 +133,51 @@ public abstract class SparseField implements java.io.Serializable
         if (size <= ANY_SIZE) return new HashMap();
         else return new HashMap(size);
         }
+    /** Creates the objectHash as a copy of another.  By default this just calls buildMap(other); subclasses whose
+        locations have a compact representation may override it to return a more specialized Map. */
+    public Map buildObjectMap(Map other) { return buildMap(other); }
+    /** Creates the objectHash at the provided size (or any size it likes if ANY_SIZE is passed in).  By default this
+        just calls buildMap(size); subclasses whose locations have a compact representation may override it to return
+        a more specialized Map. */
+    public Map buildObjectMap(int size) { return buildMap(size); }
+
+    /** Returns true if the field is slotted: see setSlotted(...). */
+    public boolean isSlotted() { return locationAndIndexHash instanceof SlotMap; }
+
+    /** Makes the field slotted or not.  In a slotted field, objects which implement Slotted are looked up
+        in arrays indexed by their slots rather than hashed, which makes exists(...), getObjectLocation(...), remove(...), and
+        setObjectLocation(...) faster for them.  Other objects are hashed as usual.  locationAndIndexHash becomes a SlotMap, and
+        subclasses which keep their own per-object Maps build them with buildCompanionMap().  Copies made with the copy constructor
+        are not slotted. */
+    public void setSlotted(boolean val)
+        {
+        if (val == isSlotted()) return;
+        Map old = locationAndIndexHash;
+        if (val) locationAndIndexHash = new SlotMap(old);
+        else
+            {
+            locationAndIndexHash = buildMap(old);
+            old.clear();  // let the objects have their slots back
+            }
+        }
+
+    /** Builds a Map keyed by the objects in the field, for subclasses which store further information per object,
+        such as the precise locations in Continuous2D.  If the field is slotted, this is a companion of locationAndIndexHash
+        (see SlotMap), and so must be rebuilt if the field's slotting changes; otherwise it's buildMap(ANY_SIZE). */
+    protected Map buildCompanionMap()
+        {
+        if (isSlotted()) return ((SlotMap)locationAndIndexHash).buildCompanion();
+        else return buildMap(ANY_SIZE);
+        }
 
     protected SparseField() { }
-        
+
     protected SparseField(SparseField other)
         {
         removeEmptyBags = other.removeEmptyBags;
         replaceLargeBags = other.replaceLargeBags;
         locationAndIndexHash = buildMap(other.locationAndIndexHash);
-        objectHash = buildMap(other.objectHash);
+        objectHash = buildObjectMap(other.objectHash);
         allObjects = new Bag(other.allObjects);
         }
         
@@ -260,8 +301,9 @@ public abstract class SparseField implements java.io.Serializable
         just make a brand new Sparse Field and let the garbage collector do its magic. */
     public Bag clear()
         {
-        locationAndIndexHash = buildMap(ANY_SIZE);
-        objectHash = buildMap(ANY_SIZE);
+        if (isSlotted()) locationAndIndexHash.clear();  // resets the objects' slots
+        else locationAndIndexHash = buildMap(ANY_SIZE);
+        objectHash = buildObjectMap(ANY_SIZE);
         Bag retval = allObjects;
         allObjects = new Bag();
         return retval;
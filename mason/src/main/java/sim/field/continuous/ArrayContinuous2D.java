@@ -0,0 +1,306 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.continuous;
+import sim.field.*;
+import sim.util.*;
+import java.util.*;
+
+/**
+   A continuous 2D field for very large numbers of objects, which stores locations in primitive arrays rather than
+   in hash tables of Double2D objects.
+
+   <p>Continuous2D keeps each object's location as a Double2D in a Map, and every move replaces it with a new Double2D
+   and rehashes the object into its discretized bucket.  With millions of objects, that's a great deal of garbage.
+   ArrayContinuous2D instead gives each object a <b>slot</b>, an int which you receive from <b>add(...)</b> and which
+   stays the same until the object is removed.  The x and y coordinates of slot <i>s</i> are simply xs[s] and ys[s] in
+   two double arrays, so moving an object with <b>setLocation(slot, x, y)</b> just overwrites two doubles.  You can also
+   get the arrays themselves with getXs() and getYs() and update them in bulk.  Slots of removed objects are reused
+   by later objects.  A slot may hold a null object if all you need is a point (a particle, say).
+
+   <p>If hashObjects is true (the default), ArrayContinuous2D also maintains a Map from each (non-null) object to its slot, so
+   that you can look objects up by the object rather than by slot: getSlot(object), remove(object),
+   getObjectLocationAsDouble2D(object).  This costs a hash table entry per object, but only when objects are added
+   or removed, never when they move.  If you have no need for these methods, turn hashObjects off.
+
+   <p><b>Neighborhood lookups.</b>  Call <b>rebuildIndex(cellSize, toroidal)</b> once all the objects have moved (say,
+   once per step), and then getSlotsWithinDistance(...) or getNeighborsWithinDistance(...) return EXACTLY those slots,
+   or objects, within a given distance of a point as of that rebuild.  The index is a CellList2D built straight from the
+   arrays.
+
+   <p><b>Compatibility.</b>  Portrayals and other code which expect a Continuous2D can be given one with
+   <b>toContinuous2D(...)</b>, which copies the current locations into a Continuous2D (reusing one you provide).  This does
+   allocate Double2Ds, so do it only as often as you need, for example whenever the display is updated.
+*/
+
+public class ArrayContinuous2D implements SparseField2D, java.io.Serializable
+    {
+    private static final long serialVersionUID = 1;
+
+    public double width;
+    public double height;
+
+    int numSlots;                   // slots 0 ... numSlots-1 have been used at some point
+    int numObjs;                    // number of slots presently in use
+    Object[] objects;
+    double[] xs;
+    double[] ys;
+    boolean[] used;
+    IntBag freeSlots = new IntBag();
+    Map slotHash;                   // object -> Integer slot, or null if we're not hashing objects
+    CellList2D index;
+
+    /** Builds an ArrayContinuous2D which hashes its objects. */
+    public ArrayContinuous2D(double width, double height)
+        {
+        this(width, height, 0, true);
+        }
+
+    /** Builds an ArrayContinuous2D with room for expectedSize objects before its arrays must grow.  If hashObjects is false,
+        methods which look up slots by object (getSlot(object), remove(object), and getObjectLocationAsDouble2D(object))
+        will throw exceptions. */
+    public ArrayContinuous2D(double width, double height, int expectedSize, boolean hashObjects)
+        {
+        this.width = width;
+        this.height = height;
+        if (expectedSize < 1) expectedSize = 1;
+        objects = new Object[expectedSize];
+        xs = new double[expectedSize];
+        ys = new double[expectedSize];
+        used = new boolean[expectedSize];
+        if (hashObjects) slotHash = new HashMap();
+        }
+
+    /** Returns the number of objects in the field. */
+    public int size() { return numObjs; }
+
+    /** Returns one more than the largest slot presently or previously in use.  To iterate over all objects, go
+        through the slots from 0 to getNumSlots()-1, skipping those which are not isUsed(slot). */
+    public int getNumSlots() { return numSlots; }
+
+    /** Returns true if the given slot holds an object (or a null-object point). */
+    public boolean isUsed(int slot) { return slot >= 0 && slot < numSlots && used[slot]; }
+
+    public boolean getHashesObjects() { return slotHash != null; }
+
+    /** Returns the array of x coordinates, indexed by slot.  You may modify it to move objects in bulk, but the array is
+        replaced whenever the field grows, so don't hold onto it past the next add(...).  Values at unused slots are meaningless. */
+    public double[] getXs() { return xs; }
+
+    /** Returns the array of y coordinates, indexed by slot.  You may modify it to move objects in bulk, but the array is
+        replaced whenever the field grows, so don't hold onto it past the next add(...).  Values at unused slots are meaningless. */
+    public double[] getYs() { return ys; }
+
+    void checkSlot(int slot)
+        {
+        if (slot < 0 || slot >= numSlots || !used[slot])
+            throw new RuntimeException("Slot " + slot + " is not in use");
+        }
+
+    void grow()
+        {
+        int newLength = objects.length * 2;
+        objects = (Object[]) resize(objects, new Object[newLength]);
+        xs = (double[]) resize(xs, new double[newLength]);
+        ys = (double[]) resize(ys, new double[newLength]);
+        used = (boolean[]) resize(used, new boolean[newLength]);
+        }
+
+    Object resize(Object from, Object to)
+        {
+        System.arraycopy(from, 0, to, 0, numSlots);
+        return to;
+        }
+
+    /** Adds an object at the given location, returning its slot.  The object may be null, but if the field hashes objects,
+        an object may not be added twice. */
+    public int add(Object obj, double x, double y)
+        {
+        if (obj != null && slotHash != null && slotHash.containsKey(obj))
+            throw new RuntimeException("Object " + obj + " is already in the field, in slot " + slotHash.get(obj));
+        int slot;
+        if (freeSlots.numObjs > 0) slot = freeSlots.pop();
+        else
+            {
+            if (numSlots == objects.length) grow();
+            slot = numSlots++;
+            }
+        objects[slot] = obj;
+        xs[slot] = x;
+        ys[slot] = y;
+        used[slot] = true;
+        numObjs++;
+        if (obj != null && slotHash != null) slotHash.put(obj, Integer.valueOf(slot));
+        return slot;
+        }
+
+    /** Removes the object at the given slot, returning it.  The slot may be reused by later objects. */
+    public Object remove(int slot)
+        {
+        checkSlot(slot);
+        Object obj = objects[slot];
+        if (obj != null && slotHash != null) slotHash.remove(obj);
+        objects[slot] = null;
+        used[slot] = false;
+        freeSlots.add(slot);
+        numObjs--;
+        return obj;
+        }
+
+    /** Removes the given object, returning its former slot, or -1 if the object wasn't in the field.  Requires hashObjects. */
+    public int remove(Object obj)
+        {
+        int slot = getSlot(obj);
+        if (slot >= 0) remove(slot);
+        return slot;
+        }
+
+    /** Removes all objects.  Slots are reset, so slot numbers start again from 0. */
+    public void clear()
+        {
+        Arrays.fill(objects, 0, numSlots, null);
+        Arrays.fill(used, 0, numSlots, false);
+        numSlots = 0;
+        numObjs = 0;
+        freeSlots.clear();
+        if (slotHash != null) slotHash = new HashMap();
+        }
+
+    /** Returns the slot of the given object, or -1 if the object isn't in the field.  Requires hashObjects. */
+    public int getSlot(Object obj)
+        {
+        if (slotHash == null)
+            throw new RuntimeException("This ArrayContinuous2D does not hash its objects, so cannot look up their slots");
+        Integer slot = (Integer) slotHash.get(obj);
+        return (slot == null ? -1 : slot.intValue());
+        }
+
+    /** Returns the object at the given slot (possibly null). */
+    public Object getObject(int slot) { checkSlot(slot); return objects[slot]; }
+
+    /** Returns the x coordinate of the object at the given slot. */
+    public double getX(int slot) { checkSlot(slot); return xs[slot]; }
+
+    /** Returns the y coordinate of the object at the given slot. */
+    public double getY(int slot) { checkSlot(slot); return ys[slot]; }
+
+    /** Returns the location of the object at the given slot as a new Double2D. */
+    public Double2D getLocation(int slot) { checkSlot(slot); return new Double2D(xs[slot], ys[slot]); }
+
+    /** Moves the object at the given slot.  No allocation or hashing is done. */
+    public void setLocation(int slot, double x, double y)
+        {
+        checkSlot(slot);
+        xs[slot] = x;
+        ys[slot] = y;
+        }
+
+    /** Toroidal x */
+    public final double tx(double x) { return CellList2D.tv(x, width); }
+
+    /** Toroidal y */
+    public final double ty(double y) { return CellList2D.tv(y, height); }
+
+    public Double2D getDimensions() { return new Double2D(width, height); }
+
+    /** Returns the location of the given object, or null if it is not in the field.  Requires hashObjects. */
+    public Double2D getObjectLocationAsDouble2D(Object obj)
+        {
+        int slot = getSlot(obj);
+        return (slot < 0 ? null : new Double2D(xs[slot], ys[slot]));
+        }
+
+
+    /** Rebuilds the neighborhood index from the present locations of all the objects, using square cells of the given size
+        (usually about the typical query distance).  If toroidal, locations are wrapped and distances measured toroidally.
+        Until this method is called again, neighborhood lookups reflect the locations at this moment. */
+    public void rebuildIndex(double cellSize, boolean toroidal)
+        {
+        if (index == null || index.cellSize != cellSize || index.toroidal != toroidal)
+            index = new CellList2D(cellSize, toroidal);
+        index.begin(width, height, numObjs);
+        final Object[] objects = this.objects;
+        final double[] xs = this.xs;
+        final double[] ys = this.ys;
+        final boolean[] used = this.used;
+        int pos = 0;
+        for(int slot = 0; slot < numSlots; slot++)
+            if (used[slot])
+                index.put(pos++, slot, objects[slot], xs[slot], ys[slot]);
+        index.finish(pos);
+        }
+
+    void checkIndex()
+        {
+        if (index == null)
+            throw new RuntimeException("rebuildIndex(...) must be called before doing neighborhood lookups");
+        }
+
+    /** Places into the result IntBag (and returns it) the slots of EXACTLY those objects within the given distance of the given
+        position, or equal to that distance, as of the last rebuildIndex(...).  If the result IntBag is null, one is created, else
+        it is cleared first. */
+    public IntBag getSlotsWithinDistance(double x, double y, double distance, IntBag result)
+        {
+        checkIndex();
+        if (result == null) result = new IntBag();
+        else result.clear();
+        index.scan(x, y, distance, null, null, result, -1);
+        return result;
+        }
+
+    /** Places into the result Bag (and returns it) EXACTLY those objects within the given distance of the given position, or equal
+        to that distance, as of the last rebuildIndex(...).  Null objects are included as nulls.  If the result Bag is null, one is
+        created, else it is cleared first. */
+    public Bag getNeighborsWithinDistance(Double2D position, double distance, Bag result)
+        {
+        checkIndex();
+        return index.getNeighborsWithinDistance(position, distance, result);
+        }
+
+    /** Hands to the visitor EXACTLY those objects within the given distance of the given position (x, y), or equal to that
+        distance, as of the last rebuildIndex(...).  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitNeighborsWithinDistance(double x, double y, double distance, ContinuousVisitor2D visitor)
+        {
+        checkIndex();
+        return index.visitNeighborsWithinDistance(x, y, distance, visitor);
+        }
+
+
+    /** Copies the present locations of all the objects into a Continuous2D with the given discretization, and returns it.
+        Slots holding null objects are represented by NullSlot objects. */
+    public Continuous2D toContinuous2D(double discretization)
+        {
+        return toContinuous2D(new Continuous2D(discretization, width, height));
+        }
+
+    /** Copies the present locations of all the objects into the given Continuous2D, clearing it first, and returns it.
+        Slots holding null objects are represented by new NullSlot objects, which are equal only to themselves, so
+        they never collide with your own objects.  The Continuous2D's width and height are set to our own. */
+    public Continuous2D toContinuous2D(Continuous2D result)
+        {
+        result.width = width;
+        result.height = height;
+        result.clear();
+        for(int slot = 0; slot < numSlots; slot++)
+            if (used[slot])
+                result.setObjectLocation(objects[slot] == null ? new NullSlot(slot) : objects[slot], new Double2D(xs[slot], ys[slot]));
+        return result;
+        }
+
+    /** Stands in for a slot holding a null object in the Continuous2D made by toContinuous2D(...).  NullSlots use
+        identity equality. */
+    public static class NullSlot implements java.io.Serializable
+        {
+        private static final long serialVersionUID = 1;
+
+        /** The slot this object stands in for. */
+        public final int slot;
+
+        NullSlot(int slot) { this.slot = slot; }
+
+        public String toString() { return "Slot " + slot; }
+        }
+    }
@@ -0,0 +1,349 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.continuous;
+import sim.util.*;
+
+/**
+   A cell-list spatial index over the objects in a Continuous2D, for models which do many radius queries per step.
+
+   <p>Continuous2D hashes each object into a discretized bucket and answers neighborhood queries by looking up
+   each bucket in the query's bounding box, copying their contents into a fresh Bag, and leaving it to you to
+   check distances.  CellList2D instead takes a snapshot of the field: it divides the field's width and height into
+   a flat array of square cells and, in <b>rebuild()</b>, counting-sorts every object into it, so that each cell's
+   objects and their x and y coordinates sit contiguously in plain arrays.  Queries then scan those arrays directly,
+   with no hashing and no allocation, and return EXACTLY the objects within the given distance (inclusive), either
+   by filling a Bag you provide or by handing them one at a time to a ContinuousVisitor2D.
+
+   <p>The index does not track changes to the field.  The usual pattern is to call rebuild() once per step, before
+   the agents do their queries (for example from a Steppable scheduled at an earlier ordering), and to do no
+   queries while objects are being moved.  Queries do not modify the index, so they may be performed in parallel.
+
+   <p>The cell size should be about the typical query distance: larger cells mean more objects to reject, smaller
+   cells mean more cells to visit.  If the index is toroidal, objects and query positions are wrapped into the
+   field's bounds and distances are measured toroidally.  Otherwise objects outside the field's bounds are stored
+   in the nearest border cells, which is correct but slow if there are many of them.
+*/
+
+public class CellList2D implements java.io.Serializable
+    {
+    private static final long serialVersionUID = 1;
+
+    /** The largest number of cells CellList2D will allocate. */
+    public static final int MAX_CELLS = 1 << 26;
+
+    Continuous2D field;
+    double cellSize;
+    boolean toroidal;
+
+    // set in rebuild()
+    double width;
+    double height;
+    int cols;
+    int rows;
+    int numObjs;
+    int[] cellStart = new int[0];    // objects in cell c are at indexes cellStart[c] ... cellStart[c+1]-1.  Cells are indexed as col * rows + row
+    Object[] objects = new Object[0];
+    double[] xs = new double[0];
+    double[] ys = new double[0];
+    int[] indexes = new int[0];      // index of each object in field.allObjects
+
+    // scratch space for rebuild()
+    transient int[] cellOf;
+    transient double[] tmpX;
+    transient double[] tmpY;
+    transient Object[] tmpObjects;
+    transient int[] tmpIndexes;
+
+    /** Builds and fills a cell list over the given field, with the given cell size. */
+    public CellList2D(Continuous2D field, double cellSize, boolean toroidal)
+        {
+        if (!(cellSize > 0))
+            throw new RuntimeException("Cell size must be positive: " + cellSize);
+        this.field = field;
+        this.cellSize = cellSize;
+        this.toroidal = toroidal;
+        rebuild();
+        }
+
+    // Builds an empty cell list for ArrayContinuous2D
+    CellList2D(double cellSize, boolean toroidal)
+        {
+        if (!(cellSize > 0))
+            throw new RuntimeException("Cell size must be positive: " + cellSize);
+        this.cellSize = cellSize;
+        this.toroidal = toroidal;
+        }
+
+    public Continuous2D getField() { return field; }
+    public double getCellSize() { return cellSize; }
+    public boolean isToroidal() { return toroidal; }
+
+    /** Returns the number of objects in the index as of the last rebuild(). */
+    public int size() { return numObjs; }
+
+    /** Returns the object at the given index (from 0 to size()-1) in the index.  Objects are ordered by cell,
+        and the order changes with each rebuild(). */
+    public Object getObject(int index) { if (index >= numObjs) throw new IndexOutOfBoundsException("" + index); return objects[index]; }
+
+    /** Returns the x coordinate the object at the given index had as of the last rebuild() (wrapped if the index is toroidal). */
+    public double getX(int index) { if (index >= numObjs) throw new IndexOutOfBoundsException("" + index); return xs[index]; }
+
+    /** Returns the y coordinate the object at the given index had as of the last rebuild() (wrapped if the index is toroidal). */
+    public double getY(int index) { if (index >= numObjs) throw new IndexOutOfBoundsException("" + index); return ys[index]; }
+
+    static double tv(double v, final double max)
+        {
+        if (v >= 0 && v < max) return v;  // do clearest case first
+        v = v % max;
+        if (v < 0) v = v + max;
+        if (v >= max) v = 0;  // (-tiny % max) + max can round up to max
+        return v;
+        }
+
+    int cellX(double x)
+        {
+        final double c = x / cellSize;
+        if (!(c >= 0)) return 0;            // also catches NaN
+        if (c >= cols) return cols - 1;
+        return (int) c;
+        }
+
+    int cellY(double y)
+        {
+        final double c = y / cellSize;
+        if (!(c >= 0)) return 0;            // also catches NaN
+        if (c >= rows) return rows - 1;
+        return (int) c;
+        }
+
+    /** Re-sorts all the objects in the field into their cells, using their current locations.  This takes O(n + number of cells)
+        time and allocates nothing unless the field has grown or been reshaped. */
+    public void rebuild()
+        {
+        if (field == null)
+            throw new RuntimeException("This CellList2D belongs to an ArrayContinuous2D: call its rebuildIndex(...) method instead");
+        final Bag all = field.allObjects;
+        final int n = all.numObjs;
+        final Object[] objs = all.objs;
+        begin(field.width, field.height, n);
+        for(int i = 0; i < n; i++)
+            {
+            final Double2D loc = field.getObjectLocation(objs[i]);
+            put(i, i, objs[i], loc.x, loc.y);
+            }
+        finish(n);
+        }
+
+    // Rebuilding is done in three stages, so that ArrayContinuous2D can fill the index from its arrays rather than
+    // from a Continuous2D: begin(...) sizes everything for at most n objects, put(...) adds each object in turn, and
+    // finish(...) sorts them into their cells.
+
+    void begin(final double width, final double height, final int n)
+        {
+        this.width = width;
+        this.height = height;
+        if (toroidal && !(width > 0 && height > 0))
+            throw new RuntimeException("A toroidal CellList2D requires a field with positive width and height");
+        cols = Math.max(1, (int) Math.ceil(width / cellSize));
+        rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        if (((long) cols) * rows > MAX_CELLS)
+            throw new RuntimeException("A CellList2D of cell size " + cellSize + " over a " + width + " by " + height + " field would have too many cells");
+        final int numCells = cols * rows;
+        if (cellStart.length != numCells + 1) cellStart = new int[numCells + 1];
+        else java.util.Arrays.fill(cellStart, 0);
+
+        if (objects.length < n)
+            {
+            objects = new Object[n];
+            xs = new double[n];
+            ys = new double[n];
+            indexes = new int[n];
+            }
+        if (cellOf == null || cellOf.length < n)
+            {
+            cellOf = new int[n];
+            tmpX = new double[n];
+            tmpY = new double[n];
+            tmpObjects = new Object[n];
+            tmpIndexes = new int[n];
+            }
+        }
+
+    // adds an object as the pos'th object of the rebuild
+    final void put(final int pos, final int index, final Object obj, double x, double y)
+        {
+        if (toroidal) { x = tv(x, width); y = tv(y, height); }
+        tmpX[pos] = x;
+        tmpY[pos] = y;
+        tmpObjects[pos] = obj;
+        tmpIndexes[pos] = index;
+        final int c = cellX(x) * rows + cellY(y);
+        cellOf[pos] = c;
+        cellStart[c + 1]++;
+        }
+
+    void finish(final int n)
+        {
+        final int numCells = cols * rows;
+        final int[] cellStart = this.cellStart;
+        final int[] cellOf = this.cellOf;
+
+        // prefix sum: cellStart[c] is now where cell c begins
+        for(int c = 0; c < numCells; c++)
+            cellStart[c + 1] += cellStart[c];
+
+        // scatter, using cellStart[c] as a cursor, then shift back
+        final Object[] objects = this.objects;
+        final double[] xs = this.xs;
+        final double[] ys = this.ys;
+        final int[] indexes = this.indexes;
+        for(int i = 0; i < n; i++)
+            {
+            final int pos = cellStart[cellOf[i]]++;
+            objects[pos] = tmpObjects[i];
+            xs[pos] = tmpX[i];
+            ys[pos] = tmpY[i];
+            indexes[pos] = tmpIndexes[i];
+            }
+        for(int c = numCells; c > 0; c--)
+            cellStart[c] = cellStart[c - 1];
+        cellStart[0] = 0;
+
+        // let GC have anything left over from a larger field
+        java.util.Arrays.fill(tmpObjects, 0, n, null);
+        for(int i = n; i < numObjs; i++)
+            objects[i] = null;
+        numObjs = n;
+        }
+
+    /** Places into the result Bag (and returns it) EXACTLY those objects within the given distance of the given position,
+        or equal to that distance, as of the last rebuild().  If the result Bag is null, one is created, else it is
+        cleared first. */
+    public Bag getNeighborsWithinDistance(final Double2D position, final double distance, Bag result)
+        {
+        if (result == null) result = new Bag();
+        else result.clear();
+        scan(position.x, position.y, distance, result, null, null, -1);
+        return result;
+        }
+
+    /** Hands to the visitor EXACTLY those objects within the given distance of the given position (x, y), or equal to that
+        distance, as of the last rebuild().  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitNeighborsWithinDistance(final double x, final double y, final double distance, final ContinuousVisitor2D visitor)
+        {
+        if (visitor == null)
+            throw new RuntimeException("Visitor must be non-null");
+        return scan(x, y, distance, null, visitor, null, -1);
+        }
+
+    /** Computes, in one pass, EXACTLY those objects within the given distance of each object in the field (inclusive), as of the
+        last rebuild(), and places them in the given NeighborLists (and returns it).  If the NeighborLists is null, one is
+        created.  The objects are divided among the given number of threads (or Parallel.CPUS), though small fields are
+        done in a single thread regardless.  This is much faster than querying for each object separately, especially if the
+        cell size is about equal to the distance.  */
+    public NeighborLists getAllNeighborsWithinDistance(final double distance, int numThreads, NeighborLists result)
+        {
+        if (distance < 0)
+            throw new RuntimeException("Distance must be positive");
+        if (result == null) result = new NeighborLists();
+        result.compute(numObjs, objects, indexes, numThreads, new NeighborLists.RowScanner()
+            {
+            public void scan(int row, IntBag neighbors)
+                {
+                CellList2D.this.scan(xs[row], ys[row], distance, null, null, neighbors, row);
+                }
+            });
+        return result;
+        }
+
+    // Finds the objects within distance of (qx, qy) and either adds them to result, or hands them to visitor, or adds their
+    // indexes to neighbors (skipping the object at position exclude).
+    boolean scan(double qx, double qy, final double distance, final Bag result, final ContinuousVisitor2D visitor, final IntBag neighbors, final int exclude)
+        {
+        if (distance < 0)
+            throw new RuntimeException("Distance must be positive");
+        final int cols = this.cols;
+        final int rows = this.rows;
+        final double width = this.width;
+        final double height = this.height;
+        final double distSq = distance * distance;
+        final int[] cellStart = this.cellStart;
+        final Object[] objects = this.objects;
+        final double[] xs = this.xs;
+        final double[] ys = this.ys;
+        final int[] indexes = this.indexes;
+
+        // Determine the first and last column and row, which may wrap around
+        int minX, maxX, minY, maxY;
+        if (toroidal)
+            {
+            qx = tv(qx, width);
+            qy = tv(qy, height);
+            if (distance * 2 >= width) { minX = 0; maxX = cols - 1; }
+            else
+                {
+                minX = cellX(tv(qx - distance, width));
+                maxX = cellX(tv(qx + distance, width));
+                // If we wrapped around but the ends fall in order, we're wrapping all the way round
+                if ((qx - distance < 0 || qx + distance >= width) && minX <= maxX) { minX = 0; maxX = cols - 1; }
+                }
+            if (distance * 2 >= height) { minY = 0; maxY = rows - 1; }
+            else
+                {
+                minY = cellY(tv(qy - distance, height));
+                maxY = cellY(tv(qy + distance, height));
+                if ((qy - distance < 0 || qy + distance >= height) && minY <= maxY) { minY = 0; maxY = rows - 1; }
+                }
+            }
+        else
+            {
+            minX = cellX(qx - distance);
+            maxX = cellX(qx + distance);
+            minY = cellY(qy - distance);
+            maxY = cellY(qy + distance);
+            }
+
+        final double halfWidth = width / 2;
+        final double halfHeight = height / 2;
+        int cx = minX;
+        while(true)
+            {
+            // the cells (cx, minY) ... (cx, maxY) are contiguous unless the rows wrap around
+            final int base = cx * rows;
+            int cy = minY;
+            while(true)
+                {
+                // when the rows don't wrap, do the whole column of cells in one go
+                final int lastY = (minY <= maxY ? maxY : (cy >= minY ? rows - 1 : maxY));
+                final int end = cellStart[base + lastY + 1];
+                for(int i = cellStart[base + cy]; i < end; i++)
+                    {
+                    double dx = xs[i] - qx;
+                    double dy = ys[i] - qy;
+                    if (toroidal)
+                        {
+                        if (dx > halfWidth) dx -= width;
+                        else if (dx < -halfWidth) dx += width;
+                        if (dy > halfHeight) dy -= height;
+                        else if (dy < -halfHeight) dy += height;
+                        }
+                    if (dx * dx + dy * dy <= distSq)
+                        {
+                        if (neighbors != null) { if (i != exclude) neighbors.add(indexes[i]); }
+                        else if (result != null) result.add(objects[i]);
+                        else if (!visitor.visit(objects[i], xs[i], ys[i])) return false;
+                        }
+                    }
+                if (lastY == maxY) break;
+                cy = 0;
+                }
+            if (cx == maxX) break;
+            cx = (cx == cols - 1 ? 0 : cx + 1);
+            }
+        return true;
+        }
+    }
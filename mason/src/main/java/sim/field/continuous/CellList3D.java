@@ -0,0 +1,321 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.continuous;
+import sim.util.*;
+
+/**
+   A cell-list spatial index over the objects in a Continuous3D.  This is the 3D equivalent of CellList2D: see that
+   class for details.  <b>rebuild()</b> counting-sorts every object into a flat array of cubic cells, and queries
+   then scan the cells' contiguous arrays of objects and coordinates, returning EXACTLY the objects within the given
+   distance (inclusive).  Call rebuild() once per step, before doing queries.  Queries do not modify the index, so
+   they may be performed in parallel.
+*/
+
+public class CellList3D implements java.io.Serializable
+    {
+    private static final long serialVersionUID = 1;
+
+    /** The largest number of cells CellList3D will allocate. */
+    public static final int MAX_CELLS = 1 << 26;
+
+    Continuous3D field;
+    double cellSize;
+    boolean toroidal;
+
+    // set in rebuild()
+    double width;
+    double height;
+    double length;
+    int cols;
+    int rows;
+    int layers;
+    int numObjs;
+    int[] cellStart = new int[0];    // objects in cell c are at indexes cellStart[c] ... cellStart[c+1]-1.  Cells are indexed as (col * rows + row) * layers + layer
+    Object[] objects = new Object[0];
+    double[] xs = new double[0];
+    double[] ys = new double[0];
+    double[] zs = new double[0];
+    int[] indexes = new int[0];      // index of each object in field.allObjects
+
+    // scratch space for rebuild()
+    transient int[] cellOf;
+    transient double[] tmpX;
+    transient double[] tmpY;
+    transient double[] tmpZ;
+
+    /** Builds and fills a cell list over the given field, with the given cell size. */
+    public CellList3D(Continuous3D field, double cellSize, boolean toroidal)
+        {
+        if (!(cellSize > 0))
+            throw new RuntimeException("Cell size must be positive: " + cellSize);
+        this.field = field;
+        this.cellSize = cellSize;
+        this.toroidal = toroidal;
+        rebuild();
+        }
+
+    public Continuous3D getField() { return field; }
+    public double getCellSize() { return cellSize; }
+    public boolean isToroidal() { return toroidal; }
+
+    /** Returns the number of objects in the index as of the last rebuild(). */
+    public int size() { return numObjs; }
+
+    /** Returns the object at the given index (from 0 to size()-1) in the index.  Objects are ordered by cell,
+        and the order changes with each rebuild(). */
+    public Object getObject(int index) { if (index >= numObjs) throw new IndexOutOfBoundsException("" + index); return objects[index]; }
+
+    /** Returns the x coordinate the object at the given index had as of the last rebuild() (wrapped if the index is toroidal). */
+    public double getX(int index) { if (index >= numObjs) throw new IndexOutOfBoundsException("" + index); return xs[index]; }
+
+    /** Returns the y coordinate the object at the given index had as of the last rebuild() (wrapped if the index is toroidal). */
+    public double getY(int index) { if (index >= numObjs) throw new IndexOutOfBoundsException("" + index); return ys[index]; }
+
+    /** Returns the z coordinate the object at the given index had as of the last rebuild() (wrapped if the index is toroidal). */
+    public double getZ(int index) { if (index >= numObjs) throw new IndexOutOfBoundsException("" + index); return zs[index]; }
+
+    static int cell(final double v, final double cellSize, final int n)
+        {
+        final double c = v / cellSize;
+        if (!(c >= 0)) return 0;            // also catches NaN
+        if (c >= n) return n - 1;
+        return (int) c;
+        }
+
+    /** Re-sorts all the objects in the field into their cells, using their current locations.  This takes O(n + number of cells)
+        time and allocates nothing unless the field has grown or been reshaped. */
+    public void rebuild()
+        {
+        width = field.width;
+        height = field.height;
+        length = field.length;
+        if (toroidal && !(width > 0 && height > 0 && length > 0))
+            throw new RuntimeException("A toroidal CellList3D requires a field with positive width, height, and length");
+        cols = Math.max(1, (int) Math.ceil(width / cellSize));
+        rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        layers = Math.max(1, (int) Math.ceil(length / cellSize));
+        if (((long) cols) * rows * layers > MAX_CELLS)
+            throw new RuntimeException("A CellList3D of cell size " + cellSize + " over a " + width + " by " + height + " by " + length + " field would have too many cells");
+        final int numCells = cols * rows * layers;
+        if (cellStart.length != numCells + 1) cellStart = new int[numCells + 1];
+        else java.util.Arrays.fill(cellStart, 0);
+
+        final Bag all = field.allObjects;
+        final int n = all.numObjs;
+        final Object[] objs = all.objs;
+        if (objects.length < n)
+            {
+            objects = new Object[n];
+            xs = new double[n];
+            ys = new double[n];
+            zs = new double[n];
+            indexes = new int[n];
+            }
+        if (cellOf == null || cellOf.length < n)
+            {
+            cellOf = new int[n];
+            tmpX = new double[n];
+            tmpY = new double[n];
+            tmpZ = new double[n];
+            }
+        final int[] cellStart = this.cellStart;
+        final int[] cellOf = this.cellOf;
+        final double[] tmpX = this.tmpX;
+        final double[] tmpY = this.tmpY;
+        final double[] tmpZ = this.tmpZ;
+
+        // count
+        for(int i = 0; i < n; i++)
+            {
+            final Double3D loc = field.getObjectLocation(objs[i]);
+            double x = loc.x;
+            double y = loc.y;
+            double z = loc.z;
+            if (toroidal) { x = CellList2D.tv(x, width); y = CellList2D.tv(y, height); z = CellList2D.tv(z, length); }
+            tmpX[i] = x;
+            tmpY[i] = y;
+            tmpZ[i] = z;
+            final int c = (cell(x, cellSize, cols) * rows + cell(y, cellSize, rows)) * layers + cell(z, cellSize, layers);
+            cellOf[i] = c;
+            cellStart[c + 1]++;
+            }
+
+        // prefix sum: cellStart[c] is now where cell c begins
+        for(int c = 0; c < numCells; c++)
+            cellStart[c + 1] += cellStart[c];
+
+        // scatter, using cellStart[c] as a cursor, then shift back
+        final Object[] objects = this.objects;
+        final double[] xs = this.xs;
+        final double[] ys = this.ys;
+        final double[] zs = this.zs;
+        final int[] indexes = this.indexes;
+        for(int i = 0; i < n; i++)
+            {
+            final int pos = cellStart[cellOf[i]]++;
+            objects[pos] = objs[i];
+            xs[pos] = tmpX[i];
+            ys[pos] = tmpY[i];
+            zs[pos] = tmpZ[i];
+            indexes[pos] = i;
+            }
+        for(int c = numCells; c > 0; c--)
+            cellStart[c] = cellStart[c - 1];
+        cellStart[0] = 0;
+
+        // let GC have anything left over from a larger field
+        for(int i = n; i < numObjs; i++)
+            objects[i] = null;
+        numObjs = n;
+        }
+
+    /** Places into the result Bag (and returns it) EXACTLY those objects within the given distance of the given position,
+        or equal to that distance, as of the last rebuild().  If the result Bag is null, one is created, else it is
+        cleared first. */
+    public Bag getNeighborsWithinDistance(final Double3D position, final double distance, Bag result)
+        {
+        if (result == null) result = new Bag();
+        else result.clear();
+        scan(position.x, position.y, position.z, distance, result, null, null, -1);
+        return result;
+        }
+
+    /** Hands to the visitor EXACTLY those objects within the given distance of the given position (x, y, z), or equal to that
+        distance, as of the last rebuild().  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitNeighborsWithinDistance(final double x, final double y, final double z, final double distance, final ContinuousVisitor3D visitor)
+        {
+        if (visitor == null)
+            throw new RuntimeException("Visitor must be non-null");
+        return scan(x, y, z, distance, null, visitor, null, -1);
+        }
+
+    /** Computes, in one pass, EXACTLY those objects within the given distance of each object in the field (inclusive), as of the
+        last rebuild(), and places them in the given NeighborLists (and returns it).  If the NeighborLists is null, one is
+        created.  The objects are divided among the given number of threads (or Parallel.CPUS), though small fields are
+        done in a single thread regardless.  */
+    public NeighborLists getAllNeighborsWithinDistance(final double distance, int numThreads, NeighborLists result)
+        {
+        if (distance < 0)
+            throw new RuntimeException("Distance must be positive");
+        if (result == null) result = new NeighborLists();
+        result.compute(numObjs, objects, indexes, numThreads, new NeighborLists.RowScanner()
+            {
+            public void scan(int row, IntBag neighbors)
+                {
+                CellList3D.this.scan(xs[row], ys[row], zs[row], distance, null, null, neighbors, row);
+                }
+            });
+        return result;
+        }
+
+    // Returns the first cell along an axis of a query from v - distance to v + distance.  The last cell is
+    // last(...), and the cells in between may wrap around.  Both assume v has been wrapped if toroidal.
+    final int first(final double v, final double distance, final double size, final int n)
+        {
+        if (!toroidal) return cell(v - distance, cellSize, n);
+        if (distance * 2 >= size) return 0;
+        final int first = cell(CellList2D.tv(v - distance, size), cellSize, n);
+        final int last = cell(CellList2D.tv(v + distance, size), cellSize, n);
+        // If we wrapped around but the ends fall in order, we're wrapping all the way round
+        if ((v - distance < 0 || v + distance >= size) && first <= last) return 0;
+        return first;
+        }
+
+    final int last(final double v, final double distance, final double size, final int n)
+        {
+        if (!toroidal) return cell(v + distance, cellSize, n);
+        if (distance * 2 >= size) return n - 1;
+        final int first = cell(CellList2D.tv(v - distance, size), cellSize, n);
+        final int last = cell(CellList2D.tv(v + distance, size), cellSize, n);
+        if ((v - distance < 0 || v + distance >= size) && first <= last) return n - 1;
+        return last;
+        }
+
+    // Finds the objects within distance of (qx, qy, qz) and either adds them to result, or hands them to visitor, or adds their
+    // indexes to neighbors (skipping the object at position exclude).
+    boolean scan(double qx, double qy, double qz, final double distance, final Bag result, final ContinuousVisitor3D visitor, final IntBag neighbors, final int exclude)
+        {
+        if (distance < 0)
+            throw new RuntimeException("Distance must be positive");
+        final int cols = this.cols;
+        final int rows = this.rows;
+        final int layers = this.layers;
+        final double width = this.width;
+        final double height = this.height;
+        final double length = this.length;
+        final double distSq = distance * distance;
+        final int[] cellStart = this.cellStart;
+        final Object[] objects = this.objects;
+        final double[] xs = this.xs;
+        final double[] ys = this.ys;
+        final double[] zs = this.zs;
+        final int[] indexes = this.indexes;
+
+        if (toroidal)
+            {
+            qx = CellList2D.tv(qx, width);
+            qy = CellList2D.tv(qy, height);
+            qz = CellList2D.tv(qz, length);
+            }
+        // Determine the first and last cell on each axis, which may wrap around
+        final int minX = first(qx, distance, width, cols);
+        final int maxX = last(qx, distance, width, cols);
+        final int minY = first(qy, distance, height, rows);
+        final int maxY = last(qy, distance, height, rows);
+        final int minZ = first(qz, distance, length, layers);
+        final int maxZ = last(qz, distance, length, layers);
+
+        final double halfWidth = width / 2;
+        final double halfHeight = height / 2;
+        final double halfLength = length / 2;
+        int cx = minX;
+        while(true)
+            {
+            int cy = minY;
+            while(true)
+                {
+                // the cells (cx, cy, minZ) ... (cx, cy, maxZ) are contiguous unless the layers wrap around
+                final int base = (cx * rows + cy) * layers;
+                int cz = minZ;
+                while(true)
+                    {
+                    // when the layers don't wrap, do the whole run of cells in one go
+                    final int lastZ = (minZ <= maxZ ? maxZ : (cz >= minZ ? layers - 1 : maxZ));
+                    final int end = cellStart[base + lastZ + 1];
+                    for(int i = cellStart[base + cz]; i < end; i++)
+                        {
+                        double dx = xs[i] - qx;
+                        double dy = ys[i] - qy;
+                        double dz = zs[i] - qz;
+                        if (toroidal)
+                            {
+                            if (dx > halfWidth) dx -= width;
+                            else if (dx < -halfWidth) dx += width;
+                            if (dy > halfHeight) dy -= height;
+                            else if (dy < -halfHeight) dy += height;
+                            if (dz > halfLength) dz -= length;
+                            else if (dz < -halfLength) dz += length;
+                            }
+                        if (dx * dx + dy * dy + dz * dz <= distSq)
+                            {
+                            if (neighbors != null) { if (i != exclude) neighbors.add(indexes[i]); }
+                            else if (result != null) result.add(objects[i]);
+                            else if (!visitor.visit(objects[i], xs[i], ys[i], zs[i])) return false;
+                            }
+                        }
+                    if (lastZ == maxZ) break;
+                    cz = 0;
+                    }
+                if (cy == maxY) break;
+                cy = (cy == rows - 1 ? 0 : cy + 1);
+                }
+            if (cx == maxX) break;
+            cx = (cx == cols - 1 ? 0 : cx + 1);
+            }
+        return true;
+        }
+    }
@@ -156,9 +156,18 @@ public /*strictfp*/ class Continuous2D extends SparseField implements SparseFiel
         
     public final Bag clear()
         {
-        doubleLocationHash = buildMap(ANY_SIZE);
+        doubleLocationHash = buildCompanionMap();
         return super.clear();
         }
+
+    public void setSlotted(boolean val)
+        {
+        if (val == isSlotted()) return;
+        Map old = new HashMap(doubleLocationHash);
+        super.setSlotted(val);
+        doubleLocationHash = buildCompanionMap();
+        doubleLocationHash.putAll(old);
+        }
         
     public final Object remove(final Object obj)
         {
@@ -298,6 +307,9 @@ public /*strictfp*/ class Continuous2D extends SparseField implements SparseFiel
        set 'nonPointObjects' to true.  If you want the distance to be radial -- that is, the region searched will be a circle centered at the position,
        set 'radial' to true (almost always you want this).  If you want the region searched to be a rectangle centered at the position, set
        'radial' to be false.  Returns a bag of items.  If 'result' is provided, clears that Bag and reuses it.
+       
+       <p>If you need exactly the k nearest objects, or a toroidal search, or if you do many such searches per step,
+       see KDTree2D.
     */
     public Bag getNearestNeighbors(Double2D position, int atLeastThisMany, final boolean toroidal, final boolean nonPointObjects, boolean radial, Bag result)
         {
@@ -856,6 +868,30 @@ public /*strictfp*/ class Continuous2D extends SparseField implements SparseFiel
         return result;
         }
         
+    /** Computes the neighbors of every object in the field all at once: that is, for each object, EXACTLY those other objects
+        within the given distance of it, or equal to that distance (assuming point objects), placing them in the given
+        NeighborLists (and returning it).  If the NeighborLists is null, one is created.  If toroidal, then wrap-around
+        possibilities are also considered.  The work is divided among the given number of threads (or Parallel.CPUS).
+        
+        <p>If every agent would otherwise call getNeighborsWithinDistance(...) each step, it is much faster to call this once
+        at the start of the step (for example from a Steppable scheduled at an earlier ordering) and have the agents read
+        their neighbors from the resulting NeighborLists, using getObjectIndex(agent) to find their own entry.  This method
+        builds a temporary CellList2D with cells the size of the distance; if you need to do this repeatedly at the same
+        distance, you might keep a CellList2D yourself, and rebuild() it and call its getAllNeighborsWithinDistance(...) method
+        instead.
+    */
+    public NeighborLists getAllNeighborsWithinDistance(final double distance, final boolean toroidal, int numThreads, NeighborLists result)
+        {
+        if (distance < 0)
+            throw new RuntimeException("Distance must be positive");
+        // don't make cells so small that there are many more cells than objects
+        double cellSize = distance;
+        final double minCellSize = Math.sqrt((width * height) / Math.max(16.0, 4.0 * allObjects.numObjs));
+        if (!(cellSize >= minCellSize)) cellSize = minCellSize;
+        if (!(cellSize > 0)) cellSize = 1;
+        return new CellList2D(this, cellSize, toroidal).getAllNeighborsWithinDistance(distance, numThreads, result);
+        }
+
     // used internally in getNeighborsWithinDistance.  Note similarity to
     // AbstractGrid2D's tx method
     final int toroidal(final int x, final int width) 
@@ -85,6 +85,9 @@ public /*strictfp*/ class Continuous3D extends SparseField implements SparseFiel
     public double length;
 
     public final double discretization;
+
+    /** An octree kept up to date with the objects in the field, or null.  See buildOctree(...). */
+    Octree3D octree;
     
     /** Provide expected bounds on the SparseContinuous3D */
     public Continuous3D(double discretization, double width, double height, double length)
@@ -129,20 +132,35 @@ public /*strictfp*/ class Continuous3D extends SparseField implements SparseFiel
     public final boolean setObjectLocation(Object obj, final Double3D location)
         {
         boolean result = super.setObjectLocation(obj, discretize(location));
-        if (result) doubleLocationHash.put(obj,location);
+        if (result) 
+            {
+            doubleLocationHash.put(obj,location);
+            if (octree != null) octree.setObjectLocation(obj, location);
+            }
         return result;
         }
         
     public final Bag clear()
         {
-        doubleLocationHash = buildMap(ANY_SIZE);
+        doubleLocationHash = buildCompanionMap();
+        if (octree != null) octree.clear();
         return super.clear();
         }
+
+    public void setSlotted(boolean val)
+        {
+        if (val == isSlotted()) return;
+        Map old = new HashMap(doubleLocationHash);
+        super.setSlotted(val);
+        doubleLocationHash = buildCompanionMap();
+        doubleLocationHash.putAll(old);
+        }
         
     public final Object remove(final Object obj)
         {
         Object result = super.remove(obj);
         doubleLocationHash.remove(obj);
+        if (octree != null) octree.remove(obj);
         return result;
         }
  
@@ -764,6 +782,53 @@ public /*strictfp*/ class Continuous3D extends SparseField implements SparseFiel
         return result;
         }
 
+    /** Computes the neighbors of every object in the field all at once: that is, for each object, EXACTLY those other objects
+        within the given distance of it, or equal to that distance (assuming point objects), placing them in the given
+        NeighborLists (and returning it).  If the NeighborLists is null, one is created.  If toroidal, then wrap-around
+        possibilities are also considered.  The work is divided among the given number of threads (or Parallel.CPUS).
+        
+        <p>If every agent would otherwise call getNeighborsWithinDistance(...) each step, it is much faster to call this once
+        at the start of the step (for example from a Steppable scheduled at an earlier ordering) and have the agents read
+        their neighbors from the resulting NeighborLists, using getObjectIndex(agent) to find their own entry.  This method
+        builds a temporary CellList3D with cells the size of the distance; if you need to do this repeatedly at the same
+        distance, you might keep a CellList3D yourself, and rebuild() it and call its getAllNeighborsWithinDistance(...) method
+        instead.
+    */
+    public NeighborLists getAllNeighborsWithinDistance(final double distance, final boolean toroidal, int numThreads, NeighborLists result)
+        {
+        if (distance < 0)
+            throw new RuntimeException("Distance must be positive");
+        // don't make cells so small that there are many more cells than objects
+        double cellSize = distance;
+        final double minCellSize = Math.cbrt((width * height * length) / Math.max(16.0, 4.0 * allObjects.numObjs));
+        if (!(cellSize >= minCellSize)) cellSize = minCellSize;
+        if (!(cellSize > 0)) cellSize = 1;
+        return new CellList3D(this, cellSize, toroidal).getAllNeighborsWithinDistance(distance, numThreads, result);
+        }
+
+    /** Builds an Octree3D holding all the objects in the field, and attaches it to the field, replacing any octree attached
+        earlier.  From then on, setObjectLocation(...), remove(...), removeObjectsAtLocation(...), and clear() keep the octree up
+        to date, so you can ask it for neighbors within a distance, nearest neighbors, or objects within a box or view frustum at
+        any time, without rebuilding it.
+        This makes moving objects somewhat more expensive.  If toroidal, the octree wraps locations and measures distances
+        toroidally, and the field must have positive width, height, and length. */
+    public Octree3D buildOctree(boolean toroidal, int leafCapacity)
+        {
+        Octree3D tree = new Octree3D(width, height, length, toroidal, leafCapacity);
+        final Object[] objs = allObjects.objs;
+        final int n = allObjects.numObjs;
+        for(int i = 0; i < n; i++)
+            tree.setObjectLocation(objs[i], (Double3D) doubleLocationHash.get(objs[i]));
+        octree = tree;
+        return tree;
+        }
+
+    /** Returns the attached octree, or null if there isn't one.  */
+    public Octree3D getOctree() { return octree; }
+
+    /** Detaches the octree, if any, so that the field no longer keeps it up to date. */
+    public void removeOctree() { octree = null; }
+
     // used internally in getNeighborsWithinDistance.  Note similarity to
     // AbstractGrid3D's tx method
     final int toroidal(final int x, final int width) 
@@ -865,6 +930,25 @@ public /*strictfp*/ class Continuous3D extends SparseField implements SparseFiel
         return bag;
         }
 
+    /** Removes objects at the given location, and returns a bag of them, or null of no objects are at that location.
+        If the location is a Double3D, this is the same as removeObjectsAtLocation(Double3D); otherwise it is taken to be
+        a discretized location, as in getObjectsAtDiscretizedLocation(...), and all the objects in that cell are removed.
+        Either way the objects are removed with remove(...), so their exact locations and the octree, if any, are kept up to date.
+        You can freely modify this bag. */
+    public Bag removeObjectsAtLocation(final Object location)
+        {
+        if (location instanceof Double3D) return removeObjectsAtLocation((Double3D)location);
+        Bag bag = getRawObjectsAtLocation(location);
+        if (bag != null)
+            {
+            bag = new Bag(bag);                                 // copy it so it won't be reduced as I remove objects
+            Object[] objs = bag.objs;
+            for(int i = 0; i < bag.numObjs; i++)
+                remove(objs[i]);
+            }
+        return bag;
+        }
+
     public final Double3D getDimensions() { return new Double3D(width, height, length); }
 
     /** Returns the object location as a Double3D, or as null if there is no such object. */
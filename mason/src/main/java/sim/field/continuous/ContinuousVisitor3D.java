@@ -0,0 +1,18 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.continuous;
+
+/**
+    Visits objects found by a neighborhood query on a continuous 3D index, such as KDTree3D.  The visitor is
+    called once per object, along with the object's stored location.
+    Return true to continue visiting, or false to stop early.
+*/
+
+public interface ContinuousVisitor3D
+    {
+    public boolean visit(Object object, double x, double y, double z);
+    }
@@ -0,0 +1,397 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.continuous;
+import sim.util.*;
+
+/**
+   A k-d tree over the objects in a Continuous2D, for exact nearest-neighbor and radius queries.
+
+   <p>Continuous2D.getNearestNeighbors(...) searches outwards through the field's discretization buckets, so its
+   cost depends on how well the discretization suits the query, it only promises to return <i>at least</i> the
+   requested number of objects, and it does not support toroidal fields.  KDTree2D takes a snapshot of the field
+   instead: <b>rebuild()</b> builds a balanced tree over all the objects in O(n log n) time, splitting each region
+   at the median of its longer side, and queries then return EXACTLY the k nearest objects, or EXACTLY the objects
+   within a given distance (inclusive), no matter how the objects are clustered.
+
+   <p>The tree does not track changes to the field.  The usual pattern is to call rebuild() once per step, before the
+   agents do their queries, and to do no queries while objects are being moved.  Queries do not modify the tree, so
+   they may be performed in parallel.  If the tree is toroidal, objects and query positions are wrapped into the
+   field's bounds and distances are measured toroidally.
+*/
+
+public class KDTree2D implements java.io.Serializable
+    {
+    private static final long serialVersionUID = 1;
+
+    /** Regions with this many objects or fewer are not split further, but scanned. */
+    public static final int LEAF_SIZE = 8;
+
+    Continuous2D field;
+    boolean toroidal;
+
+    // set in rebuild().  Objects are stored in tree order: the region [lo, hi) is split at m = (lo + hi) >>> 1 on axis axes[m],
+    // with [lo, m) on the low side and (m, hi) on the high side.
+    double width;
+    double height;
+    int numObjs;
+    Object[] objects = new Object[0];
+    double[] xs = new double[0];
+    double[] ys = new double[0];
+    byte[] axes = new byte[0];
+    double minX, maxX, minY, maxY;  // bounds of the whole tree
+
+    /** Builds a k-d tree over the given field. */
+    public KDTree2D(Continuous2D field, boolean toroidal)
+        {
+        this.field = field;
+        this.toroidal = toroidal;
+        rebuild();
+        }
+
+    public Continuous2D getField() { return field; }
+    public boolean isToroidal() { return toroidal; }
+
+    /** Returns the number of objects in the tree as of the last rebuild(). */
+    public int size() { return numObjs; }
+
+    /** Rebuilds the tree from the current locations of all the objects in the field. */
+    public void rebuild()
+        {
+        width = field.width;
+        height = field.height;
+        if (toroidal && !(width > 0 && height > 0))
+            throw new RuntimeException("A toroidal KDTree2D requires a field with positive width and height");
+
+        final Bag all = field.allObjects;
+        final int n = all.numObjs;
+        if (objects.length < n)
+            {
+            objects = new Object[n];
+            xs = new double[n];
+            ys = new double[n];
+            axes = new byte[n];
+            }
+        for(int i = n; i < numObjs; i++)  // let GC
+            objects[i] = null;
+        numObjs = n;
+
+        minX = minY = Double.POSITIVE_INFINITY;
+        maxX = maxY = Double.NEGATIVE_INFINITY;
+        for(int i = 0; i < n; i++)
+            {
+            final Object obj = all.objs[i];
+            final Double2D loc = field.getObjectLocation(obj);
+            double x = loc.x;
+            double y = loc.y;
+            if (toroidal) { x = CellList2D.tv(x, width); y = CellList2D.tv(y, height); }
+            objects[i] = obj;
+            xs[i] = x;
+            ys[i] = y;
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+            }
+        build(0, n, minX, maxX, minY, maxY);
+        }
+
+    void build(int lo, final int hi, double bminX, double bmaxX, double bminY, double bmaxY)
+        {
+        while(hi - lo > LEAF_SIZE)
+            {
+            final int m = (lo + hi) >>> 1;
+            if (bmaxX - bminX >= bmaxY - bminY)
+                {
+                select(lo, hi - 1, m, xs);
+                axes[m] = 0;
+                build(lo, m, bminX, xs[m], bminY, bmaxY);
+                bminX = xs[m];
+                }
+            else
+                {
+                select(lo, hi - 1, m, ys);
+                axes[m] = 1;
+                build(lo, m, bminX, bmaxX, bminY, ys[m]);
+                bminY = ys[m];
+                }
+            lo = m + 1;
+            }
+        }
+
+    // Rearranges [lo, hi] so that the object at k has the k-th smallest key, with none larger before it or smaller after it
+    void select(int lo, int hi, final int k, final double[] key)
+        {
+        while(hi > lo)
+            {
+            // median of three, moved to lo
+            final int mid = (lo + hi) >>> 1;
+            if (key[mid] < key[lo]) swap(mid, lo);
+            if (key[hi] < key[lo]) swap(hi, lo);
+            if (key[hi] < key[mid]) swap(hi, mid);
+            swap(lo, mid);
+            final double pivot = key[lo];
+
+            // Hoare partition
+            int i = lo;
+            int j = hi + 1;
+            while(true)
+                {
+                do i++; while(i <= hi && key[i] < pivot);
+                do j--; while(key[j] > pivot);
+                if (i >= j) break;
+                swap(i, j);
+                }
+            swap(lo, j);
+            if (j == k) return;
+            else if (j < k) lo = j + 1;
+            else hi = j - 1;
+            }
+        }
+
+    void swap(final int i, final int j)
+        {
+        final Object o = objects[i]; objects[i] = objects[j]; objects[j] = o;
+        final double x = xs[i]; xs[i] = xs[j]; xs[j] = x;
+        final double y = ys[i]; ys[i] = ys[j]; ys[j] = y;
+        }
+
+    // distance along one axis from v to the interval [min, max], on a circle of the given size if toroidal
+    final double gap(final double v, final double min, final double max, final double size)
+        {
+        if (v < min)
+            {
+            final double d = min - v;
+            if (toroidal) { final double d2 = v - max + size; if (d2 < d) return d2; }
+            return d;
+            }
+        else if (v > max)
+            {
+            final double d = v - max;
+            if (toroidal) { final double d2 = min - v + size; if (d2 < d) return d2; }
+            return d;
+            }
+        else return 0;
+        }
+
+    final double distanceSq(final int i, final double qx, final double qy)
+        {
+        double dx = xs[i] - qx;
+        double dy = ys[i] - qy;
+        if (toroidal)
+            {
+            if (dx * 2 > width) dx -= width;
+            else if (dx * 2 < -width) dx += width;
+            if (dy * 2 > height) dy -= height;
+            else if (dy * 2 < -height) dy += height;
+            }
+        return dx * dx + dy * dy;
+        }
+
+
+    /** Places into the result Bag (and returns it) EXACTLY those objects within the given distance of the given position,
+        or equal to that distance, as of the last rebuild().  If the result Bag is null, one is created, else it is
+        cleared first. */
+    public Bag getNeighborsWithinDistance(final Double2D position, final double distance, Bag result)
+        {
+        if (result == null) result = new Bag();
+        else result.clear();
+        radius(position.x, position.y, distance, result, null);
+        return result;
+        }
+
+    /** Hands to the visitor EXACTLY those objects within the given distance of the given position (x, y), or equal to that
+        distance, as of the last rebuild().  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitNeighborsWithinDistance(final double x, final double y, final double distance, final ContinuousVisitor2D visitor)
+        {
+        if (visitor == null)
+            throw new RuntimeException("Visitor must be non-null");
+        return radius(x, y, distance, null, visitor);
+        }
+
+    boolean radius(double qx, double qy, final double distance, final Bag result, final ContinuousVisitor2D visitor)
+        {
+        if (distance < 0)
+            throw new RuntimeException("Distance must be positive");
+        if (toroidal) { qx = CellList2D.tv(qx, width); qy = CellList2D.tv(qy, height); }
+        return radius(0, numObjs, minX, maxX, minY, maxY, qx, qy, distance * distance, result, visitor);
+        }
+
+    boolean radius(final int lo, final int hi, final double bminX, final double bmaxX, final double bminY, final double bmaxY,
+        final double qx, final double qy, final double distSq, final Bag result, final ContinuousVisitor2D visitor)
+        {
+        if (lo >= hi) return true;
+        final double gx = gap(qx, bminX, bmaxX, width);
+        final double gy = gap(qy, bminY, bmaxY, height);
+        if (gx * gx + gy * gy > distSq) return true;
+
+        if (hi - lo <= LEAF_SIZE)
+            {
+            for(int i = lo; i < hi; i++)
+                if (distanceSq(i, qx, qy) <= distSq)
+                    {
+                    if (result != null) result.add(objects[i]);
+                    else if (!visitor.visit(objects[i], xs[i], ys[i])) return false;
+                    }
+            return true;
+            }
+
+        final int m = (lo + hi) >>> 1;
+        if (distanceSq(m, qx, qy) <= distSq)
+            {
+            if (result != null) result.add(objects[m]);
+            else if (!visitor.visit(objects[m], xs[m], ys[m])) return false;
+            }
+        if (axes[m] == 0)
+            return radius(lo, m, bminX, xs[m], bminY, bmaxY, qx, qy, distSq, result, visitor) &&
+                radius(m + 1, hi, xs[m], bmaxX, bminY, bmaxY, qx, qy, distSq, result, visitor);
+        else
+            return radius(lo, m, bminX, bmaxX, bminY, ys[m], qx, qy, distSq, result, visitor) &&
+                radius(m + 1, hi, bminX, bmaxX, ys[m], bmaxY, qx, qy, distSq, result, visitor);
+        }
+
+
+    /** Returns the object nearest to the given position as of the last rebuild(), or null if the tree is empty. */
+    public Object getNearestNeighbor(final Double2D position)
+        {
+        Bag result = getNearestNeighbors(position, 1, null);
+        return (result.numObjs == 0 ? null : result.objs[0]);
+        }
+
+    /** Places into the result Bag (and returns it) EXACTLY the k objects nearest to the given position as of the last rebuild(),
+        nearest first, or all the objects if there are no more than k.  Ties at the k-th distance are broken arbitrarily.
+        If the result Bag is null, one is created, else it is cleared first. */
+    public Bag getNearestNeighbors(final Double2D position, int k, Bag result)
+        {
+        if (result == null) result = new Bag();
+        else result.clear();
+        if (k > numObjs) k = numObjs;
+        if (k <= 0) return result;
+
+        double qx = position.x;
+        double qy = position.y;
+        if (toroidal) { qx = CellList2D.tv(qx, width); qy = CellList2D.tv(qy, height); }
+        final Heap heap = new Heap(k);
+        nearest(0, numObjs, minX, maxX, minY, maxY, qx, qy, heap);
+
+        // the heap pops farthest first
+        result.resize(k);
+        result.numObjs = heap.size;
+        for(int i = heap.size - 1; i >= 0; i--)
+            result.objs[i] = objects[heap.pop()];
+        return result;
+        }
+
+    void nearest(final int lo, final int hi, final double bminX, final double bmaxX, final double bminY, final double bmaxY,
+        final double qx, final double qy, final Heap heap)
+        {
+        if (lo >= hi) return;
+        final double gx = gap(qx, bminX, bmaxX, width);
+        final double gy = gap(qy, bminY, bmaxY, height);
+        if (gx * gx + gy * gy > heap.bound()) return;
+
+        if (hi - lo <= LEAF_SIZE)
+            {
+            for(int i = lo; i < hi; i++)
+                heap.offer(i, distanceSq(i, qx, qy));
+            return;
+            }
+
+        final int m = (lo + hi) >>> 1;
+        heap.offer(m, distanceSq(m, qx, qy));
+        // search the side containing the query first, as it's most likely to shrink the bound
+        if (axes[m] == 0)
+            {
+            final double s = xs[m];
+            if (qx <= s)
+                {
+                nearest(lo, m, bminX, s, bminY, bmaxY, qx, qy, heap);
+                nearest(m + 1, hi, s, bmaxX, bminY, bmaxY, qx, qy, heap);
+                }
+            else
+                {
+                nearest(m + 1, hi, s, bmaxX, bminY, bmaxY, qx, qy, heap);
+                nearest(lo, m, bminX, s, bminY, bmaxY, qx, qy, heap);
+                }
+            }
+        else
+            {
+            final double s = ys[m];
+            if (qy <= s)
+                {
+                nearest(lo, m, bminX, bmaxX, bminY, s, qx, qy, heap);
+                nearest(m + 1, hi, bminX, bmaxX, s, bmaxY, qx, qy, heap);
+                }
+            else
+                {
+                nearest(m + 1, hi, bminX, bmaxX, s, bmaxY, qx, qy, heap);
+                nearest(lo, m, bminX, bmaxX, bminY, s, qx, qy, heap);
+                }
+            }
+        }
+
+    /** A fixed-capacity max-heap of (index, squared distance) pairs, holding the closest candidates found so far.
+        Shared with KDTree3D. */
+    static final class Heap
+        {
+        final int[] index;
+        final double[] dist;
+        int size;
+
+        Heap(int capacity)
+            {
+            index = new int[capacity];
+            dist = new double[capacity];
+            }
+
+        // until the heap is full, anything goes
+        double bound() { return (size < index.length ? Double.POSITIVE_INFINITY : dist[0]); }
+
+        void offer(final int i, final double d)
+            {
+            if (size < index.length)
+                {
+                // sift up
+                int c = size++;
+                while(c > 0)
+                    {
+                    final int p = (c - 1) >> 1;
+                    if (dist[p] >= d) break;
+                    index[c] = index[p]; dist[c] = dist[p];
+                    c = p;
+                    }
+                index[c] = i; dist[c] = d;
+                }
+            else if (d < dist[0])
+                siftDown(i, d);
+            }
+
+        // removes and returns the farthest index
+        int pop()
+            {
+            final int top = index[0];
+            size--;
+            if (size > 0) siftDown(index[size], dist[size]);
+            return top;
+            }
+
+        // places (i, d) at the root and sifts it down
+        void siftDown(final int i, final double d)
+            {
+            int p = 0;
+            while(true)
+                {
+                int c = 2 * p + 1;
+                if (c >= size) break;
+                if (c + 1 < size && dist[c + 1] > dist[c]) c++;
+                if (dist[c] <= d) break;
+                index[p] = index[c]; dist[p] = dist[c];
+                p = c;
+                }
+            index[p] = i; dist[p] = d;
+            }
+        }
+    }
@@ -0,0 +1,373 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.continuous;
+import sim.util.*;
+
+/**
+   A k-d tree over the objects in a Continuous3D, for exact nearest-neighbor and radius queries.  This is the
+   3D equivalent of KDTree2D: see that class for details.  <b>rebuild()</b> builds a balanced tree in O(n log n) time,
+   splitting each region at the median of its longest side, and queries return EXACTLY the k nearest objects,
+   or EXACTLY the objects within a given distance (inclusive).  Call rebuild() once per step, before doing queries.
+   Queries do not modify the tree, so they may be performed in parallel.
+*/
+
+public class KDTree3D implements java.io.Serializable
+    {
+    private static final long serialVersionUID = 1;
+
+    /** Regions with this many objects or fewer are not split further, but scanned. */
+    public static final int LEAF_SIZE = 8;
+
+    Continuous3D field;
+    boolean toroidal;
+
+    // set in rebuild().  Objects are stored in tree order: the region [lo, hi) is split at m = (lo + hi) >>> 1 on axis axes[m],
+    // with [lo, m) on the low side and (m, hi) on the high side.
+    double width;
+    double height;
+    double length;
+    int numObjs;
+    Object[] objects = new Object[0];
+    double[] xs = new double[0];
+    double[] ys = new double[0];
+    double[] zs = new double[0];
+    byte[] axes = new byte[0];
+    double minX, maxX, minY, maxY, minZ, maxZ;  // bounds of the whole tree
+
+    /** Builds a k-d tree over the given field. */
+    public KDTree3D(Continuous3D field, boolean toroidal)
+        {
+        this.field = field;
+        this.toroidal = toroidal;
+        rebuild();
+        }
+
+    public Continuous3D getField() { return field; }
+    public boolean isToroidal() { return toroidal; }
+
+    /** Returns the number of objects in the tree as of the last rebuild(). */
+    public int size() { return numObjs; }
+
+    /** Rebuilds the tree from the current locations of all the objects in the field. */
+    public void rebuild()
+        {
+        width = field.width;
+        height = field.height;
+        length = field.length;
+        if (toroidal && !(width > 0 && height > 0 && length > 0))
+            throw new RuntimeException("A toroidal KDTree3D requires a field with positive width, height, and length");
+
+        final Bag all = field.allObjects;
+        final int n = all.numObjs;
+        if (objects.length < n)
+            {
+            objects = new Object[n];
+            xs = new double[n];
+            ys = new double[n];
+            zs = new double[n];
+            axes = new byte[n];
+            }
+        for(int i = n; i < numObjs; i++)  // let GC
+            objects[i] = null;
+        numObjs = n;
+
+        minX = minY = minZ = Double.POSITIVE_INFINITY;
+        maxX = maxY = maxZ = Double.NEGATIVE_INFINITY;
+        for(int i = 0; i < n; i++)
+            {
+            final Object obj = all.objs[i];
+            final Double3D loc = field.getObjectLocation(obj);
+            double x = loc.x;
+            double y = loc.y;
+            double z = loc.z;
+            if (toroidal) { x = CellList2D.tv(x, width); y = CellList2D.tv(y, height); z = CellList2D.tv(z, length); }
+            objects[i] = obj;
+            xs[i] = x;
+            ys[i] = y;
+            zs[i] = z;
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+            if (z < minZ) minZ = z;
+            if (z > maxZ) maxZ = z;
+            }
+        build(0, n, minX, maxX, minY, maxY, minZ, maxZ);
+        }
+
+    void build(int lo, final int hi, double bminX, double bmaxX, double bminY, double bmaxY, double bminZ, double bmaxZ)
+        {
+        while(hi - lo > LEAF_SIZE)
+            {
+            final int m = (lo + hi) >>> 1;
+            final double ex = bmaxX - bminX;
+            final double ey = bmaxY - bminY;
+            final double ez = bmaxZ - bminZ;
+            if (ex >= ey && ex >= ez)
+                {
+                select(lo, hi - 1, m, xs);
+                axes[m] = 0;
+                build(lo, m, bminX, xs[m], bminY, bmaxY, bminZ, bmaxZ);
+                bminX = xs[m];
+                }
+            else if (ey >= ez)
+                {
+                select(lo, hi - 1, m, ys);
+                axes[m] = 1;
+                build(lo, m, bminX, bmaxX, bminY, ys[m], bminZ, bmaxZ);
+                bminY = ys[m];
+                }
+            else
+                {
+                select(lo, hi - 1, m, zs);
+                axes[m] = 2;
+                build(lo, m, bminX, bmaxX, bminY, bmaxY, bminZ, zs[m]);
+                bminZ = zs[m];
+                }
+            lo = m + 1;
+            }
+        }
+
+    // Rearranges [lo, hi] so that the object at k has the k-th smallest key, with none larger before it or smaller after it
+    void select(int lo, int hi, final int k, final double[] key)
+        {
+        while(hi > lo)
+            {
+            // median of three, moved to lo
+            final int mid = (lo + hi) >>> 1;
+            if (key[mid] < key[lo]) swap(mid, lo);
+            if (key[hi] < key[lo]) swap(hi, lo);
+            if (key[hi] < key[mid]) swap(hi, mid);
+            swap(lo, mid);
+            final double pivot = key[lo];
+
+            // Hoare partition
+            int i = lo;
+            int j = hi + 1;
+            while(true)
+                {
+                do i++; while(i <= hi && key[i] < pivot);
+                do j--; while(key[j] > pivot);
+                if (i >= j) break;
+                swap(i, j);
+                }
+            swap(lo, j);
+            if (j == k) return;
+            else if (j < k) lo = j + 1;
+            else hi = j - 1;
+            }
+        }
+
+    void swap(final int i, final int j)
+        {
+        final Object o = objects[i]; objects[i] = objects[j]; objects[j] = o;
+        final double x = xs[i]; xs[i] = xs[j]; xs[j] = x;
+        final double y = ys[i]; ys[i] = ys[j]; ys[j] = y;
+        final double z = zs[i]; zs[i] = zs[j]; zs[j] = z;
+        }
+
+    // distance along one axis from v to the interval [min, max], on a circle of the given size if toroidal
+    final double gap(final double v, final double min, final double max, final double size)
+        {
+        if (v < min)
+            {
+            final double d = min - v;
+            if (toroidal) { final double d2 = v - max + size; if (d2 < d) return d2; }
+            return d;
+            }
+        else if (v > max)
+            {
+            final double d = v - max;
+            if (toroidal) { final double d2 = min - v + size; if (d2 < d) return d2; }
+            return d;
+            }
+        else return 0;
+        }
+
+    final double distanceSq(final int i, final double qx, final double qy, final double qz)
+        {
+        double dx = xs[i] - qx;
+        double dy = ys[i] - qy;
+        double dz = zs[i] - qz;
+        if (toroidal)
+            {
+            if (dx * 2 > width) dx -= width;
+            else if (dx * 2 < -width) dx += width;
+            if (dy * 2 > height) dy -= height;
+            else if (dy * 2 < -height) dy += height;
+            if (dz * 2 > length) dz -= length;
+            else if (dz * 2 < -length) dz += length;
+            }
+        return dx * dx + dy * dy + dz * dz;
+        }
+
+    final double boxDistanceSq(final double bminX, final double bmaxX, final double bminY, final double bmaxY, final double bminZ, final double bmaxZ,
+        final double qx, final double qy, final double qz)
+        {
+        final double gx = gap(qx, bminX, bmaxX, width);
+        final double gy = gap(qy, bminY, bmaxY, height);
+        final double gz = gap(qz, bminZ, bmaxZ, length);
+        return gx * gx + gy * gy + gz * gz;
+        }
+
+
+    /** Places into the result Bag (and returns it) EXACTLY those objects within the given distance of the given position,
+        or equal to that distance, as of the last rebuild().  If the result Bag is null, one is created, else it is
+        cleared first. */
+    public Bag getNeighborsWithinDistance(final Double3D position, final double distance, Bag result)
+        {
+        if (result == null) result = new Bag();
+        else result.clear();
+        radius(position.x, position.y, position.z, distance, result, null);
+        return result;
+        }
+
+    /** Hands to the visitor EXACTLY those objects within the given distance of the given position (x, y, z), or equal to that
+        distance, as of the last rebuild().  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitNeighborsWithinDistance(final double x, final double y, final double z, final double distance, final ContinuousVisitor3D visitor)
+        {
+        if (visitor == null)
+            throw new RuntimeException("Visitor must be non-null");
+        return radius(x, y, z, distance, null, visitor);
+        }
+
+    boolean radius(double qx, double qy, double qz, final double distance, final Bag result, final ContinuousVisitor3D visitor)
+        {
+        if (distance < 0)
+            throw new RuntimeException("Distance must be positive");
+        if (toroidal) { qx = CellList2D.tv(qx, width); qy = CellList2D.tv(qy, height); qz = CellList2D.tv(qz, length); }
+        return radius(0, numObjs, minX, maxX, minY, maxY, minZ, maxZ, qx, qy, qz, distance * distance, result, visitor);
+        }
+
+    boolean radius(final int lo, final int hi, final double bminX, final double bmaxX, final double bminY, final double bmaxY,
+        final double bminZ, final double bmaxZ, final double qx, final double qy, final double qz, final double distSq,
+        final Bag result, final ContinuousVisitor3D visitor)
+        {
+        if (lo >= hi) return true;
+        if (boxDistanceSq(bminX, bmaxX, bminY, bmaxY, bminZ, bmaxZ, qx, qy, qz) > distSq) return true;
+
+        if (hi - lo <= LEAF_SIZE)
+            {
+            for(int i = lo; i < hi; i++)
+                if (distanceSq(i, qx, qy, qz) <= distSq)
+                    {
+                    if (result != null) result.add(objects[i]);
+                    else if (!visitor.visit(objects[i], xs[i], ys[i], zs[i])) return false;
+                    }
+            return true;
+            }
+
+        final int m = (lo + hi) >>> 1;
+        if (distanceSq(m, qx, qy, qz) <= distSq)
+            {
+            if (result != null) result.add(objects[m]);
+            else if (!visitor.visit(objects[m], xs[m], ys[m], zs[m])) return false;
+            }
+        if (axes[m] == 0)
+            return radius(lo, m, bminX, xs[m], bminY, bmaxY, bminZ, bmaxZ, qx, qy, qz, distSq, result, visitor) &&
+                radius(m + 1, hi, xs[m], bmaxX, bminY, bmaxY, bminZ, bmaxZ, qx, qy, qz, distSq, result, visitor);
+        else if (axes[m] == 1)
+            return radius(lo, m, bminX, bmaxX, bminY, ys[m], bminZ, bmaxZ, qx, qy, qz, distSq, result, visitor) &&
+                radius(m + 1, hi, bminX, bmaxX, ys[m], bmaxY, bminZ, bmaxZ, qx, qy, qz, distSq, result, visitor);
+        else
+            return radius(lo, m, bminX, bmaxX, bminY, bmaxY, bminZ, zs[m], qx, qy, qz, distSq, result, visitor) &&
+                radius(m + 1, hi, bminX, bmaxX, bminY, bmaxY, zs[m], bmaxZ, qx, qy, qz, distSq, result, visitor);
+        }
+
+
+    /** Returns the object nearest to the given position as of the last rebuild(), or null if the tree is empty. */
+    public Object getNearestNeighbor(final Double3D position)
+        {
+        Bag result = getNearestNeighbors(position, 1, null);
+        return (result.numObjs == 0 ? null : result.objs[0]);
+        }
+
+    /** Places into the result Bag (and returns it) EXACTLY the k objects nearest to the given position as of the last rebuild(),
+        nearest first, or all the objects if there are no more than k.  Ties at the k-th distance are broken arbitrarily.
+        If the result Bag is null, one is created, else it is cleared first. */
+    public Bag getNearestNeighbors(final Double3D position, int k, Bag result)
+        {
+        if (result == null) result = new Bag();
+        else result.clear();
+        if (k > numObjs) k = numObjs;
+        if (k <= 0) return result;
+
+        double qx = position.x;
+        double qy = position.y;
+        double qz = position.z;
+        if (toroidal) { qx = CellList2D.tv(qx, width); qy = CellList2D.tv(qy, height); qz = CellList2D.tv(qz, length); }
+        final KDTree2D.Heap heap = new KDTree2D.Heap(k);
+        nearest(0, numObjs, minX, maxX, minY, maxY, minZ, maxZ, qx, qy, qz, heap);
+
+        // the heap pops farthest first
+        result.resize(k);
+        result.numObjs = heap.size;
+        for(int i = heap.size - 1; i >= 0; i--)
+            result.objs[i] = objects[heap.pop()];
+        return result;
+        }
+
+    void nearest(final int lo, final int hi, final double bminX, final double bmaxX, final double bminY, final double bmaxY,
+        final double bminZ, final double bmaxZ, final double qx, final double qy, final double qz, final KDTree2D.Heap heap)
+        {
+        if (lo >= hi) return;
+        if (boxDistanceSq(bminX, bmaxX, bminY, bmaxY, bminZ, bmaxZ, qx, qy, qz) > heap.bound()) return;
+
+        if (hi - lo <= LEAF_SIZE)
+            {
+            for(int i = lo; i < hi; i++)
+                heap.offer(i, distanceSq(i, qx, qy, qz));
+            return;
+            }
+
+        final int m = (lo + hi) >>> 1;
+        heap.offer(m, distanceSq(m, qx, qy, qz));
+        // search the side containing the query first, as it's most likely to shrink the bound
+        if (axes[m] == 0)
+            {
+            final double s = xs[m];
+            if (qx <= s)
+                {
+                nearest(lo, m, bminX, s, bminY, bmaxY, bminZ, bmaxZ, qx, qy, qz, heap);
+                nearest(m + 1, hi, s, bmaxX, bminY, bmaxY, bminZ, bmaxZ, qx, qy, qz, heap);
+                }
+            else
+                {
+                nearest(m + 1, hi, s, bmaxX, bminY, bmaxY, bminZ, bmaxZ, qx, qy, qz, heap);
+                nearest(lo, m, bminX, s, bminY, bmaxY, bminZ, bmaxZ, qx, qy, qz, heap);
+                }
+            }
+        else if (axes[m] == 1)
+            {
+            final double s = ys[m];
+            if (qy <= s)
+                {
+                nearest(lo, m, bminX, bmaxX, bminY, s, bminZ, bmaxZ, qx, qy, qz, heap);
+                nearest(m + 1, hi, bminX, bmaxX, s, bmaxY, bminZ, bmaxZ, qx, qy, qz, heap);
+                }
+            else
+                {
+                nearest(m + 1, hi, bminX, bmaxX, s, bmaxY, bminZ, bmaxZ, qx, qy, qz, heap);
+                nearest(lo, m, bminX, bmaxX, bminY, s, bminZ, bmaxZ, qx, qy, qz, heap);
+                }
+            }
+        else
+            {
+            final double s = zs[m];
+            if (qz <= s)
+                {
+                nearest(lo, m, bminX, bmaxX, bminY, bmaxY, bminZ, s, qx, qy, qz, heap);
+                nearest(m + 1, hi, bminX, bmaxX, bminY, bmaxY, s, bmaxZ, qx, qy, qz, heap);
+                }
+            else
+                {
+                nearest(m + 1, hi, bminX, bmaxX, bminY, bmaxY, s, bmaxZ, qx, qy, qz, heap);
+                nearest(lo, m, bminX, bmaxX, bminY, bmaxY, bminZ, s, qx, qy, qz, heap);
+                }
+            }
+        }
+    }
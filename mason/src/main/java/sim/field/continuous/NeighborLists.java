@@ -0,0 +1,175 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.continuous;
+import sim.util.*;
+
+/**
+   The neighbors of every object in a continuous field, as computed all at once by
+   Continuous2D.getAllNeighborsWithinDistance(...) or Continuous3D.getAllNeighborsWithinDistance(...)
+   (or the equivalent methods in CellList2D and CellList3D).
+
+   <p>Objects are referred to by their index in the field's allObjects bag at the time the lists were computed,
+   which you can look up with field.getObjectIndex(object).  So a typical agent, in its step() method, would call
+   something like <tt>lists.getNeighbors(field.getObjectIndex(this), bag)</tt>.  An object is not its own neighbor,
+   but objects sitting at the same location are neighbors of one another.
+
+   <p>The lists are stored compactly (in "compressed sparse row" form): the neighbors of all the objects
+   are packed one after another into a single int array, with a second array saying where each object's neighbors
+   begin.  A NeighborLists may be passed back in to be refilled the next time around, in which case its arrays are
+   reused whenever they are large enough.  The lists are a snapshot: they do not change as objects move, and become
+   meaningless once objects are added to or removed from the field (which changes their indexes).
+*/
+
+public class NeighborLists implements java.io.Serializable
+    {
+    private static final long serialVersionUID = 1;
+
+    int numObjs;
+    Object[] objects = new Object[0];       // objects by index
+    int[] row = new int[0];                 // index -> row
+    int[] start = new int[1];               // row -> first position in neighbors; start[numObjs] is the total
+    int[] neighbors = new int[0];           // indexes of neighbors, row by row
+
+    /** Returns the number of objects, as of the time the lists were computed. */
+    public int size() { return numObjs; }
+
+    /** Returns the total number of neighbors of all objects (each pair of neighbors is counted twice). */
+    public int getTotalNeighbors() { return start[numObjs]; }
+
+    /** Returns the object with the given index. */
+    public Object getObject(int index)
+        {
+        if (index < 0 || index >= numObjs) throw new IndexOutOfBoundsException("" + index);
+        return objects[index];
+        }
+
+    /** Returns the number of neighbors of the object with the given index. */
+    public int getNumNeighbors(int index)
+        {
+        if (index < 0 || index >= numObjs) throw new IndexOutOfBoundsException("" + index);
+        final int r = row[index];
+        return start[r + 1] - start[r];
+        }
+
+    /** Returns the index of the j-th neighbor (from 0 to getNumNeighbors(index) - 1) of the object with the given index. */
+    public int getNeighborIndex(int index, int j)
+        {
+        if (index < 0 || index >= numObjs) throw new IndexOutOfBoundsException("" + index);
+        final int r = row[index];
+        if (j < 0 || j >= start[r + 1] - start[r]) throw new IndexOutOfBoundsException("" + j);
+        return neighbors[start[r] + j];
+        }
+
+    /** Returns the j-th neighbor (from 0 to getNumNeighbors(index) - 1) of the object with the given index. */
+    public Object getNeighbor(int index, int j)
+        {
+        return objects[getNeighborIndex(index, j)];
+        }
+
+    /** Places into the result Bag (and returns it) the neighbors of the object with the given index.  If the result Bag
+        is null, one is created, else it is cleared first. */
+    public Bag getNeighbors(int index, Bag result)
+        {
+        if (index < 0 || index >= numObjs) throw new IndexOutOfBoundsException("" + index);
+        if (result == null) result = new Bag();
+        else result.clear();
+        final int r = row[index];
+        final int s = start[r];
+        final int e = start[r + 1];
+        result.resize(e - s);
+        final Object[] objs = result.objs;
+        for(int i = s; i < e; i++)
+            objs[i - s] = objects[neighbors[i]];
+        result.numObjs = e - s;
+        return result;
+        }
+
+    /** Places into the result IntBag (and returns it) the indexes of the neighbors of the object with the given index.
+        If the result IntBag is null, one is created, else it is cleared first. */
+    public IntBag getNeighborIndexes(int index, IntBag result)
+        {
+        if (index < 0 || index >= numObjs) throw new IndexOutOfBoundsException("" + index);
+        if (result == null) result = new IntBag();
+        else result.clear();
+        final int r = row[index];
+        final int len = start[r + 1] - start[r];
+        result.resize(len);
+        System.arraycopy(neighbors, start[r], result.objs, 0, len);
+        result.numObjs = len;
+        return result;
+        }
+
+    // Sizes the arrays for n objects, reusing them where possible
+    void reset(final int n)
+        {
+        if (objects.length < n)
+            {
+            objects = new Object[n];
+            row = new int[n];
+            }
+        else for(int i = n; i < numObjs; i++)  // let GC
+            objects[i] = null;
+        if (start.length < n + 1)
+            start = new int[n + 1];
+        numObjs = n;
+        }
+
+    // Rows with fewer objects than this per thread aren't worth the cost of starting a thread
+    static final int MIN_ROWS_PER_THREAD = 1024;
+
+    // Appends to the IntBag the indexes of the neighbors of the object in the given row
+    interface RowScanner
+        {
+        public void scan(int row, IntBag neighbors);
+        }
+
+    // Recomputes the lists for n objects, where rowObjects[r] and rowIndexes[r] are the object in row r and its index.
+    // The rows are split into consecutive chunks, one per thread (see Parallel), each of which gathers its neighbors in its
+    // own IntBag; the chunks are then copied one after another into the neighbors array.
+    void compute(final int n, final Object[] rowObjects, final int[] rowIndexes, int numThreads, final RowScanner scanner)
+        {
+        reset(n);
+        for(int r = 0; r < n; r++)
+            {
+            objects[rowIndexes[r]] = rowObjects[r];
+            row[rowIndexes[r]] = r;
+            }
+
+        numThreads = Parallel.threads(numThreads);
+        if (numThreads > n / MIN_ROWS_PER_THREAD) numThreads = n / MIN_ROWS_PER_THREAD;
+        if (numThreads < 1) numThreads = 1;
+
+        // each chunk puts its row counts into start[r + 1], to be summed up afterwards
+        final int[] start = this.start;
+        final int[] chunkRows = new int[numThreads];
+        final IntBag[] chunks = new IntBag[numThreads];
+        Parallel.run(n, numThreads, 0, new Parallel.Task()
+            {
+            public void run(int thread, int from, int to)
+                {
+                final IntBag bag = new IntBag();
+                for(int r = from; r < to; r++)
+                    {
+                    final int before = bag.numObjs;
+                    scanner.scan(r, bag);
+                    start[r + 1] = bag.numObjs - before;
+                    }
+                chunkRows[thread] = from;
+                chunks[thread] = bag;
+                }
+            });
+
+        start[0] = 0;
+        for(int r = 0; r < n; r++)
+            start[r + 1] += start[r];
+        if (neighbors.length < start[n])
+            neighbors = new int[start[n]];
+        for(int t = 0; t < numThreads; t++)
+            if (chunks[t] != null)      // Parallel.run(...) may use fewer threads than we asked for
+                System.arraycopy(chunks[t].objs, 0, neighbors, start[chunkRows[t]], chunks[t].numObjs);
+        }
+    }
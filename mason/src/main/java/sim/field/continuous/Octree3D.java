@@ -0,0 +1,596 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.continuous;
+import sim.util.*;
+import java.util.*;
+
+/**
+   An adaptive octree over objects in 3D space, for radius, nearest-neighbor, box, and frustum queries.
+
+   <p>Continuous3D divides space into cubes of a fixed size, which works poorly when objects are very unevenly distributed:
+   most cubes are empty and a few are overfull.  An octree instead splits a cube into eight only when it holds more than
+   a certain number of objects (the leaf capacity), and merges them back when they empty out, so that it adapts to the
+   distribution of the objects.  Unlike KDTree3D it is updated incrementally: <b>setObjectLocation(...)</b> moves a single
+   object (cheaply, if it stays within its cube), and <b>remove(...)</b> removes one.
+
+   <p>You can use an Octree3D on its own, or attach one to a Continuous3D with Continuous3D.buildOctree(...), in which case
+   the Continuous3D keeps it up to date as objects are added, moved, and removed.
+
+   <p>If the octree is toroidal, locations are wrapped into the bounds given in the constructor, and radius and nearest-neighbor
+   queries measure distance toroidally.  Box and frustum queries never wrap.  Otherwise, the octree grows as necessary to
+   contain whatever locations it is given.
+
+   <p>The frustum query, getObjectsInFrustum(...), accepts any set of planes and culls whole cubes at a time, so it can also serve
+   to find just the objects in view in a 3D display.
+*/
+
+public class Octree3D implements java.io.Serializable
+    {
+    private static final long serialVersionUID = 1;
+
+    /** The default maximum number of objects in a cube before it is split. */
+    public static final int DEFAULT_LEAF_CAPACITY = 16;
+
+    /** Cubes this many levels deep are never split, no matter how many objects they hold (they might all be at the same spot). */
+    public static final int MAX_DEPTH = 24;
+
+    final int leafCapacity;
+    final boolean toroidal;
+    final double width;
+    final double height;
+    final double length;
+    Node root;
+    Map entries = new HashMap();    // object -> Entry
+
+    /** An object and where it is. */
+    static final class Entry implements java.io.Serializable
+        {
+        private static final long serialVersionUID = 1;
+        final Object object;
+        double x, y, z;
+        Node leaf;
+        int slot;           // position in leaf.entries
+        Entry(Object object) { this.object = object; }
+        }
+
+    /** A cube, from (cx - half, cy - half, cz - half) inclusive to (cx + half, cy + half, cz + half) exclusive.  Either it's a leaf
+        holding entries, or it has eight children, indexed by (x >= cx ? 1 : 0) + (y >= cy ? 2 : 0) + (z >= cz ? 4 : 0). */
+    static final class Node implements java.io.Serializable
+        {
+        private static final long serialVersionUID = 1;
+        final double cx, cy, cz, half;
+        Node parent;
+        Node[] children;
+        Entry[] entries;
+        int numEntries;
+        int count;          // number of entries in this cube, including in its children
+
+        Node(Node parent, double cx, double cy, double cz, double half, int capacity)
+            {
+            this.parent = parent;
+            this.cx = cx; this.cy = cy; this.cz = cz; this.half = half;
+            entries = new Entry[capacity];
+            }
+
+        boolean contains(final double x, final double y, final double z)
+            {
+            return x >= cx - half && x < cx + half && y >= cy - half && y < cy + half && z >= cz - half && z < cz + half;
+            }
+
+        int childIndex(final double x, final double y, final double z)
+            {
+            return (x >= cx ? 1 : 0) + (y >= cy ? 2 : 0) + (z >= cz ? 4 : 0);
+            }
+        }
+
+    /** Builds a non-toroidal octree with the default leaf capacity.  The dimensions are only a hint to the
+        initial size of the tree. */
+    public Octree3D(double width, double height, double length)
+        {
+        this(width, height, length, false, DEFAULT_LEAF_CAPACITY);
+        }
+
+    /** Builds an octree.  If toroidal, locations are wrapped to within the given width, height, and length; otherwise the
+        dimensions are only a hint to the initial size of the tree. */
+    public Octree3D(double width, double height, double length, boolean toroidal, int leafCapacity)
+        {
+        if (leafCapacity < 1)
+            throw new RuntimeException("Leaf capacity must be at least 1: " + leafCapacity);
+        if (toroidal && !(width > 0 && height > 0 && length > 0))
+            throw new RuntimeException("A toroidal Octree3D requires positive width, height, and length");
+        this.width = width;
+        this.height = height;
+        this.length = length;
+        this.toroidal = toroidal;
+        this.leafCapacity = leafCapacity;
+        clear();
+        }
+
+    public boolean isToroidal() { return toroidal; }
+    public int getLeafCapacity() { return leafCapacity; }
+
+    /** Returns the number of objects in the tree. */
+    public int size() { return entries.size(); }
+
+    /** Removes all objects. */
+    public void clear()
+        {
+        entries = new HashMap();
+        double size = Math.max(width, Math.max(height, length));
+        if (!(size > 0) || Double.isInfinite(size)) size = 1;
+        root = new Node(null, size / 2, size / 2, size / 2, size / 2, leafCapacity);
+        }
+
+    /** Returns true if the object is in the tree. */
+    public boolean exists(Object obj) { return entries.containsKey(obj); }
+
+    /** Returns the location of the object as stored in the tree (wrapped, if the tree is toroidal), or null if it isn't in the tree. */
+    public Double3D getObjectLocation(Object obj)
+        {
+        Entry e = (Entry) entries.get(obj);
+        return (e == null ? null : new Double3D(e.x, e.y, e.z));
+        }
+
+    /** Adds the object at the given location, or moves it there if it's already in the tree.  Returns false if the object
+        or location is null. */
+    public boolean setObjectLocation(Object obj, Double3D location)
+        {
+        if (obj == null || location == null) return false;
+        setObjectLocation(obj, location.x, location.y, location.z);
+        return true;
+        }
+
+    /** Adds the object at the given location, or moves it there if it's already in the tree. */
+    public void setObjectLocation(Object obj, double x, double y, double z)
+        {
+        if (Double.isNaN(x) || Double.isNaN(y) || Double.isNaN(z) || Double.isInfinite(x) || Double.isInfinite(y) || Double.isInfinite(z))
+            throw new RuntimeException("Octree3D locations must be finite: " + x + ", " + y + ", " + z);
+        if (toroidal) { x = CellList2D.tv(x, width); y = CellList2D.tv(y, height); z = CellList2D.tv(z, length); }
+        Entry e = (Entry) entries.get(obj);
+        if (e == null)
+            {
+            e = new Entry(obj);
+            entries.put(obj, e);
+            }
+        else if (e.leaf.contains(x, y, z))     // still in the same cube: nothing to restructure
+            {
+            e.x = x; e.y = y; e.z = z;
+            return;
+            }
+        else detach(e);
+
+        e.x = x; e.y = y; e.z = z;
+        while(!root.contains(x, y, z)) grow(x, y, z);
+        insert(root, e);
+        }
+
+    /** Removes the object, returning true if it was in the tree. */
+    public boolean remove(Object obj)
+        {
+        Entry e = (Entry) entries.remove(obj);
+        if (e == null) return false;
+        detach(e);
+        return true;
+        }
+
+    // doubles the root cube towards (x, y, z)
+    void grow(final double x, final double y, final double z)
+        {
+        final Node old = root;
+        final double h = old.half;
+        // the new root's center is the old root's corner nearest the point
+        final double cx = (x >= old.cx ? old.cx + h : old.cx - h);
+        final double cy = (y >= old.cy ? old.cy + h : old.cy - h);
+        final double cz = (z >= old.cz ? old.cz + h : old.cz - h);
+        final Node r = new Node(null, cx, cy, cz, h * 2, 0);
+        r.entries = null;
+        r.children = new Node[8];
+        r.count = old.count;
+        for(int i = 0; i < 8; i++)
+            {
+            final double ccx = cx + ((i & 1) != 0 ? h : -h);
+            final double ccy = cy + ((i & 2) != 0 ? h : -h);
+            final double ccz = cz + ((i & 4) != 0 ? h : -h);
+            if (ccx == old.cx && ccy == old.cy && ccz == old.cz) { r.children[i] = old; old.parent = r; }
+            else r.children[i] = new Node(r, ccx, ccy, ccz, h, leafCapacity);
+            }
+        root = r;
+        }
+
+    // the root may grow, so depths are computed rather than stored
+    int depthOf(Node n)
+        {
+        int d = 0;
+        while(n.parent != null) { n = n.parent; d++; }
+        return d;
+        }
+
+    void insert(Node n, final Entry e)
+        {
+        while(true)
+            {
+            n.count++;
+            if (n.children == null) break;
+            n = n.children[n.childIndex(e.x, e.y, e.z)];
+            }
+        // n is a leaf
+        if (n.numEntries == n.entries.length)
+            {
+            if (depthOf(n) < MAX_DEPTH) { split(n); n.count--; insert(n, e); return; }
+            Entry[] bigger = new Entry[n.entries.length * 2];
+            System.arraycopy(n.entries, 0, bigger, 0, n.numEntries);
+            n.entries = bigger;
+            }
+        e.leaf = n;
+        e.slot = n.numEntries;
+        n.entries[n.numEntries++] = e;
+        }
+
+    void split(final Node n)
+        {
+        final double h = n.half / 2;
+        n.children = new Node[8];
+        for(int i = 0; i < 8; i++)
+            n.children[i] = new Node(n, n.cx + ((i & 1) != 0 ? h : -h), n.cy + ((i & 2) != 0 ? h : -h), n.cz + ((i & 4) != 0 ? h : -h), h, leafCapacity);
+        final Entry[] old = n.entries;
+        final int num = n.numEntries;
+        n.entries = null;
+        n.numEntries = 0;
+        for(int i = 0; i < num; i++)
+            {
+            final Entry e = old[i];
+            final Node c = n.children[n.childIndex(e.x, e.y, e.z)];
+            if (c.numEntries == c.entries.length)
+                {
+                Entry[] bigger = new Entry[c.entries.length * 2];
+                System.arraycopy(c.entries, 0, bigger, 0, c.numEntries);
+                c.entries = bigger;
+                }
+            c.count++;
+            e.leaf = c;
+            e.slot = c.numEntries;
+            c.entries[c.numEntries++] = e;
+            }
+        }
+
+    // removes the entry from its leaf, and merges cubes which have become sparse
+    void detach(final Entry e)
+        {
+        final Node leaf = e.leaf;
+        final int last = --leaf.numEntries;
+        if (e.slot != last)
+            {
+            leaf.entries[e.slot] = leaf.entries[last];
+            leaf.entries[e.slot].slot = e.slot;
+            }
+        leaf.entries[last] = null;
+        e.leaf = null;
+
+        Node merge = null;
+        for(Node n = leaf; n != null; n = n.parent)
+            {
+            n.count--;
+            // merge the highest ancestor whose objects would now fit in half a leaf
+            if (n.children != null && n.count <= leafCapacity / 2) merge = n;
+            }
+        if (merge != null) collapse(merge);
+        }
+
+    void collapse(final Node n)
+        {
+        n.entries = new Entry[Math.max(leafCapacity, n.count)];
+        n.numEntries = 0;
+        gather(n, n);
+        n.children = null;
+        }
+
+    void gather(final Node from, final Node into)
+        {
+        if (from.children == null)
+            {
+            for(int i = 0; i < from.numEntries; i++)
+                {
+                final Entry e = from.entries[i];
+                e.leaf = into;
+                e.slot = into.numEntries;
+                into.entries[into.numEntries++] = e;
+                }
+            }
+        else for(int i = 0; i < 8; i++)
+            gather(from.children[i], into);
+        }
+
+
+    //// DISTANCES
+
+    // distance along one axis from v to the interval [min, max), on a circle of the given size if toroidal
+    final double gap(final double v, final double min, double max, final double size)
+        {
+        if (toroidal && max > size) max = size;
+        if (v < min)
+            {
+            final double d = min - v;
+            if (toroidal) { final double d2 = v - max + size; if (d2 < d) return d2; }
+            return d;
+            }
+        else if (v > max)
+            {
+            final double d = v - max;
+            if (toroidal) { final double d2 = min - v + size; if (d2 < d) return d2; }
+            return d;
+            }
+        else return 0;
+        }
+
+    final double gapSq(final Node n, final double x, final double y, final double z)
+        {
+        final double h = n.half;
+        final double gx = gap(x, n.cx - h, n.cx + h, width);
+        final double gy = gap(y, n.cy - h, n.cy + h, height);
+        final double gz = gap(z, n.cz - h, n.cz + h, length);
+        return gx * gx + gy * gy + gz * gz;
+        }
+
+    final double distanceSq(final Entry e, final double x, final double y, final double z)
+        {
+        double dx = e.x - x;
+        double dy = e.y - y;
+        double dz = e.z - z;
+        if (toroidal)
+            {
+            if (dx * 2 > width) dx -= width;
+            else if (dx * 2 < -width) dx += width;
+            if (dy * 2 > height) dy -= height;
+            else if (dy * 2 < -height) dy += height;
+            if (dz * 2 > length) dz -= length;
+            else if (dz * 2 < -length) dz += length;
+            }
+        return dx * dx + dy * dy + dz * dz;
+        }
+
+
+    //// RADIUS QUERIES
+
+    /** Places into the result Bag (and returns it) EXACTLY those objects within the given distance of the given position,
+        or equal to that distance.  If the result Bag is null, one is created, else it is cleared first. */
+    public Bag getNeighborsWithinDistance(final Double3D position, final double distance, Bag result)
+        {
+        if (result == null) result = new Bag();
+        else result.clear();
+        radius(position.x, position.y, position.z, distance, result, null);
+        return result;
+        }
+
+    /** Hands to the visitor EXACTLY those objects within the given distance of the given position (x, y, z), or equal to that
+        distance.  Returns false if the visitor stopped the traversal early, else true.  The visitor must not modify the tree. */
+    public boolean visitNeighborsWithinDistance(final double x, final double y, final double z, final double distance, final ContinuousVisitor3D visitor)
+        {
+        if (visitor == null)
+            throw new RuntimeException("Visitor must be non-null");
+        return radius(x, y, z, distance, null, visitor);
+        }
+
+    boolean radius(double x, double y, double z, final double distance, final Bag result, final ContinuousVisitor3D visitor)
+        {
+        if (distance < 0)
+            throw new RuntimeException("Distance must be positive");
+        if (toroidal) { x = CellList2D.tv(x, width); y = CellList2D.tv(y, height); z = CellList2D.tv(z, length); }
+        return radius(root, x, y, z, distance * distance, result, visitor);
+        }
+
+    boolean radius(final Node n, final double x, final double y, final double z, final double distSq, final Bag result, final ContinuousVisitor3D visitor)
+        {
+        if (n.count == 0 || gapSq(n, x, y, z) > distSq) return true;
+        if (n.children == null)
+            {
+            for(int i = 0; i < n.numEntries; i++)
+                {
+                final Entry e = n.entries[i];
+                if (distanceSq(e, x, y, z) <= distSq)
+                    {
+                    if (result != null) result.add(e.object);
+                    else if (!visitor.visit(e.object, e.x, e.y, e.z)) return false;
+                    }
+                }
+            return true;
+            }
+        for(int i = 0; i < 8; i++)
+            if (!radius(n.children[i], x, y, z, distSq, result, visitor)) return false;
+        return true;
+        }
+
+
+    //// NEAREST NEIGHBORS
+
+    /** Returns the object nearest to the given position, or null if the tree is empty. */
+    public Object getNearestNeighbor(final Double3D position)
+        {
+        Bag result = getNearestNeighbors(position, 1, null);
+        return (result.numObjs == 0 ? null : result.objs[0]);
+        }
+
+    /** Places into the result Bag (and returns it) EXACTLY the k objects nearest to the given position, nearest first,
+        or all the objects if there are no more than k.  Ties at the k-th distance are broken arbitrarily.
+        If the result Bag is null, one is created, else it is cleared first. */
+    public Bag getNearestNeighbors(final Double3D position, int k, Bag result)
+        {
+        if (result == null) result = new Bag();
+        else result.clear();
+        final int n = size();
+        if (k > n) k = n;
+        if (k <= 0) return result;
+
+        double x = position.x;
+        double y = position.y;
+        double z = position.z;
+        if (toroidal) { x = CellList2D.tv(x, width); y = CellList2D.tv(y, height); z = CellList2D.tv(z, length); }
+        final Entry[] best = new Entry[k];       // a max-heap on dist
+        final double[] dist = new double[k];
+        final int[] size = new int[1];
+        nearest(root, x, y, z, best, dist, size);
+
+        // pop farthest first
+        result.resize(k);
+        result.numObjs = size[0];
+        for(int i = size[0] - 1; i >= 0; i--)
+            {
+            result.objs[i] = best[0].object;
+            if (i > 0) siftDown(best, dist, i, best[i], dist[i]);
+            }
+        return result;
+        }
+
+    void nearest(final Node n, final double x, final double y, final double z, final Entry[] best, final double[] dist, final int[] size)
+        {
+        if (n.count == 0) return;
+        if (size[0] == best.length && gapSq(n, x, y, z) > dist[0]) return;
+        if (n.children == null)
+            {
+            for(int i = 0; i < n.numEntries; i++)
+                {
+                final Entry e = n.entries[i];
+                final double d = distanceSq(e, x, y, z);
+                if (size[0] < best.length)
+                    {
+                    // sift up
+                    int c = size[0]++;
+                    while(c > 0)
+                        {
+                        final int p = (c - 1) >> 1;
+                        if (dist[p] >= d) break;
+                        best[c] = best[p]; dist[c] = dist[p];
+                        c = p;
+                        }
+                    best[c] = e; dist[c] = d;
+                    }
+                else if (d < dist[0]) siftDown(best, dist, size[0], e, d);
+                }
+            return;
+            }
+
+        // visit the children nearest first
+        final double[] gaps = new double[8];
+        final int[] order = new int[8];
+        for(int i = 0; i < 8; i++)
+            {
+            final double g = gapSq(n.children[i], x, y, z);
+            int j = i;
+            while(j > 0 && gaps[j - 1] > g) { gaps[j] = gaps[j - 1]; order[j] = order[j - 1]; j--; }
+            gaps[j] = g; order[j] = i;
+            }
+        for(int i = 0; i < 8; i++)
+            {
+            if (size[0] == best.length && gaps[i] > dist[0]) break;
+            nearest(n.children[order[i]], x, y, z, best, dist, size);
+            }
+        }
+
+    // places (e, d) at the root of the heap of the given size and sifts it down
+    static void siftDown(final Entry[] best, final double[] dist, final int size, final Entry e, final double d)
+        {
+        int p = 0;
+        while(true)
+            {
+            int c = 2 * p + 1;
+            if (c >= size) break;
+            if (c + 1 < size && dist[c + 1] > dist[c]) c++;
+            if (dist[c] <= d) break;
+            best[p] = best[c]; dist[p] = dist[c];
+            p = c;
+            }
+        best[p] = e; dist[p] = d;
+        }
+
+
+    //// BOX AND FRUSTUM QUERIES
+
+    /** Places into the result Bag (and returns it) all the objects within the box from (minX, minY, minZ) to (maxX, maxY, maxZ)
+        inclusive.  The box does not wrap around, even if the tree is toroidal.  If the result Bag is null, one is created, else
+        it is cleared first. */
+    public Bag getObjectsWithinBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, Bag result)
+        {
+        if (result == null) result = new Bag();
+        else result.clear();
+        box(root, minX, minY, minZ, maxX, maxY, maxZ, result);
+        return result;
+        }
+
+    void box(final Node n, final double minX, final double minY, final double minZ, final double maxX, final double maxY, final double maxZ, final Bag result)
+        {
+        if (n.count == 0) return;
+        final double h = n.half;
+        if (n.cx + h < minX || n.cx - h > maxX || n.cy + h < minY || n.cy - h > maxY || n.cz + h < minZ || n.cz - h > maxZ) return;
+        if (n.children == null)
+            {
+            for(int i = 0; i < n.numEntries; i++)
+                {
+                final Entry e = n.entries[i];
+                if (e.x >= minX && e.x <= maxX && e.y >= minY && e.y <= maxY && e.z >= minZ && e.z <= maxZ)
+                    result.add(e.object);
+                }
+            }
+        else if (n.cx - h >= minX && n.cx + h <= maxX && n.cy - h >= minY && n.cy + h <= maxY && n.cz - h >= minZ && n.cz + h <= maxZ)
+            all(n, result);    // entirely inside the box
+        else for(int i = 0; i < 8; i++)
+            box(n.children[i], minX, minY, minZ, maxX, maxY, maxZ, result);
+        }
+
+    void all(final Node n, final Bag result)
+        {
+        if (n.children == null)
+            for(int i = 0; i < n.numEntries; i++)
+                result.add(n.entries[i].object);
+        else for(int i = 0; i < 8; i++)
+            all(n.children[i], result);
+        }
+
+    /** Places into the result Bag (and returns it) all the objects on the inner side of every one of the given planes:
+        that is, those locations (x, y, z) for which a * x + b * y + c * z + d >= 0 for each plane.  The planes are given
+        as an array of length 4 * number of planes, holding a, b, c, d for the first plane, then for the second, and so on.
+        A view frustum, for example, is six planes whose normals (a, b, c) point inwards.  Cubes wholly outside a plane are
+        skipped, and cubes wholly inside all of them are added without testing each object.  Planes do not wrap around,
+        even if the tree is toroidal.  If the result Bag is null, one is created, else it is cleared first. */
+    public Bag getObjectsInFrustum(double[] planes, Bag result)
+        {
+        if (planes == null || planes.length % 4 != 0)
+            throw new RuntimeException("Planes must be given as an array of a, b, c, d quadruples");
+        if (result == null) result = new Bag();
+        else result.clear();
+        frustum(root, planes, result);
+        return result;
+        }
+
+    void frustum(final Node n, final double[] planes, final Bag result)
+        {
+        if (n.count == 0) return;
+        final double h = n.half;
+        boolean inside = true;
+        for(int p = 0; p < planes.length; p += 4)
+            {
+            final double a = planes[p], b = planes[p + 1], c = planes[p + 2], d = planes[p + 3];
+            // distance of the center from the plane, and how far the cube extends in the direction of the plane normal
+            final double center = a * n.cx + b * n.cy + c * n.cz + d;
+            final double extent = h * (Math.abs(a) + Math.abs(b) + Math.abs(c));
+            if (center + extent < 0) return;          // wholly outside
+            if (center - extent < 0) inside = false;  // straddles
+            }
+        if (inside) { all(n, result); return; }
+        if (n.children == null)
+            {
+            for(int i = 0; i < n.numEntries; i++)
+                {
+                final Entry e = n.entries[i];
+                boolean in = true;
+                for(int p = 0; p < planes.length; p += 4)
+                    if (planes[p] * e.x + planes[p + 1] * e.y + planes[p + 2] * e.z + planes[p + 3] < 0) { in = false; break; }
+                if (in) result.add(e.object);
+                }
+            }
+        else for(int i = 0; i < 8; i++)
+            frustum(n.children[i], planes, result);
+        }
+    }
@@ -242,7 +242,7 @@ public abstract class AbstractGrid2D implements Grid2D
                 
             // next: is ymax - ymin humongous?  If so, no need to continue wrapping around
             if (ymax - ymin >= height)  // too wide, just use whole neighborhood
-                { ymin = 0; ymax = width - 1; }
+                { ymin = 0; ymax = height - 1; }
                 
             for( int x0 = xmin ; x0 <= xmax ; x0++ )
                 {
@@ -388,169 +388,7 @@ public abstract class AbstractGrid2D implements Grid2D
 
     public void getHexagonalLocations( final int x, final int y, final int dist, int mode, boolean includeOrigin, IntBag xPos, IntBag yPos )
         {
-        boolean toroidal = (mode == TOROIDAL);
-        boolean bounded = (mode == BOUNDED);
-        
-        if (mode != BOUNDED && mode != UNBOUNDED && mode != TOROIDAL)
-            {
-            throw new RuntimeException("Mode must be either Grid2D.BOUNDED, Grid2D.UNBOUNDED, or Grid2D.TOROIDAL");
-            }
-        
-        // won't work for negative distances
-        if( dist < 0 )
-            {
-            throw new RuntimeException( "Distance must be positive" );
-            }
-
-        if( xPos == null || yPos == null )
-            {
-            throw new RuntimeException( "xPos and yPos should not be null" );
-            }
-
-        if( ( x < 0 || x >= getWidth() || y < 0 || y >= getHeight() ) && !bounded)
-            throw new RuntimeException( "Invalid initial position" );
-
-        xPos.clear();
-        yPos.clear();
-
-        // local variables are faster
-        final int height = getHeight();
-        final int width = getWidth();
-
-        if( toroidal && height%2==1 )
-            throw new RuntimeException( "toroidal hexagonal environment should have even heights" );
-
-        if( toroidal )
-            {
-            // compute ymin and ymax for the neighborhood
-            int ymin = y - dist;
-            int ymax = y + dist;
-            for( int y0 = ymin ; y0 <= ymax ; y0 = downy(x,y0) )
-                {
-                xPos.add( tx(x, width, width*2, x+width, x-width) );
-                yPos.add( ty(y0, height, height*2, y0+height, y0-height) );
-                }
-            int x0 = x;
-            for( int i = 1 ; i <= dist ; i++ )
-                {
-                final int temp_ymin = ymin;
-                ymin = dly( x0, ymin );
-                ymax = uly( x0, ymax );
-                x0 = dlx( x0, temp_ymin );
-                for( int y0 = ymin ; y0 <= ymax ; y0 = downy(x0,y0) )
-                    {
-                    xPos.add( tx(x0, width, width*2, x0+width, x0-width) );
-                    yPos.add( ty(y0, height, height*2, y0+height, y0-height) );
-                    }
-                }
-            x0 = x;
-            ymin = y-dist;
-            ymax = y+dist;
-            for( int i = 1 ; i <= dist ; i++ )
-                {
-                final int temp_ymin = ymin;
-                ymin = dry( x0, ymin );
-                ymax = ury( x0, ymax );
-                x0 = drx( x0, temp_ymin );
-                for( int y0 = ymin ; y0 <= ymax ; y0 = downy(x0,y0) )
-                    {
-                    xPos.add( tx(x0, width, width*2, x0+width, x0-width) );
-                    yPos.add( ty(y0, height, height*2, y0+height, y0-height) );
-                    }
-                }
-
-            if (dist * 2 >= width || dist * 2 >= height)  // too big, will have to remove duplicates
-                {
-                int sz = xPos.size();
-                Map map = buildMap(sz);
-                for(int i = 0 ; i < sz; i++)
-                    {
-                    Double2D elem = new Double2D(xPos.get(i), yPos.get(i));
-                    if (map.containsKey(elem)) // already there
-                        {
-                        xPos.remove(i);
-                        yPos.remove(i);
-                        i--;
-                        sz--;
-                        }
-                    else
-                        {
-                        map.put(elem, elem);
-                        }
-                    }
-                }
-            if (!includeOrigin) removeOriginToroidal(x,y,xPos,yPos); 
-            }
-        else // not toroidal
-            {
-            int ymin = y - dist;
-            int ymax = y + dist;
-            
-            // compute ymin and ymax for the neighborhood
-            int ylBound = ((ymin >= 0 || !bounded) ? ymin : 0);
-            int yuBound = ((ymax < height || !bounded) ? ymax : height-1);
-
-            // add vertical center line of hexagon
-            for( int y0 = ylBound ; y0 <= yuBound ; y0 = downy(x,y0) )
-                {
-                xPos.add( x );
-                yPos.add( y0 );
-                }
-            
-            // add right half of hexagon
-            int x0 = x;
-            ymin = y - dist;
-            ymax = y + dist;
-            for( int i = 1 ; i <= dist ; i++ )
-                {
-                final int temp_ymin = ymin;
-                ymin = dly( x0, ymin );
-                ymax = uly( x0, ymax );
-                x0 = dlx( x0, temp_ymin );
-                
-                ylBound = ((ymin >= 0 || !bounded) ? ymin : 0);
-                yuBound = ((ymax < height || !bounded) ? ymax : height-1);
-    
-                // yuBound =  (( ymax<height  || !bounded) ? ymax : height-1);
-
-                if( x0 >= 0 )
-                    for( int y0 = ylBound ; y0 <= yuBound ; y0 = downy(x0,y0) )
-                        {
-                        if( y0 >= 0 || !bounded )
-                            {
-                            xPos.add( x0 );
-                            yPos.add( y0 );
-                            }
-                        }
-                }
-
-            x0 = x;
-            ymin = y - dist;
-            ymax = y + dist;
-            for( int i = 1 ; i <= dist ; i++ )
-                {
-                final int temp_ymin = ymin;
-                ymin = dry( x0, ymin );
-                ymax = ury( x0, ymax );
-                x0 = drx( x0, temp_ymin );
-
-                ylBound = ((ymin >= 0 || !bounded) ? ymin : 0);
-                yuBound = ((ymax < height || !bounded) ? ymax : height-1);
-                
-                // yuBound =  ((ymax<height) || !bounded ?ymax:height);
-                
-                if( x0 < width )
-                    for( int y0 = ymin ; y0 <= yuBound; y0 = downy(x0,y0) )
-                        {
-                        if( y0 >= 0 || !bounded )
-                            {
-                            xPos.add( x0 );
-                            yPos.add( y0 );
-                            }
-                        }
-                }
-            if (!includeOrigin) removeOrigin(x,y,xPos,yPos); 
-            }
+        Neighborhoods.hexagonalLocations(this, x, y, dist, mode, includeOrigin, xPos, yPos);
         }
         
     static double ds(double d1x, double d1y, double d2x, double d2y)
@@ -620,85 +458,91 @@ public abstract class AbstractGrid2D implements Grid2D
 
         
         
-    public void getRadialLocations( final int x, final int y, final double dist, int mode, boolean includeOrigin, IntBag xPos, IntBag yPos )
-        {
-        getRadialLocations(x, y, dist, mode, includeOrigin, Grid2D.ANY, true, xPos, yPos);
-        }
-                
-    public void getRadialLocations( final int x, final int y, final double dist, int mode, boolean includeOrigin, int measurementRule, boolean closed, IntBag xPos, IntBag yPos )
+    // returns true if location (xp, yp) falls outside the radial neighborhood of (x, y) under the given measurement rule.
+    // Shared by getRadialLocations(...) and the radial visitors.
+    static boolean removeForRadial(int x, int y, int xp, int yp, double dist, double distsq, int measurementRule, boolean closed)
         {
-        boolean toroidal = (mode == TOROIDAL);
-
-        // won't work for negative distances
-        if( dist < 0 )
+        if (measurementRule == Grid2D.ANY)
             {
-            throw new RuntimeException( "Distance must be positive" );
+            return AbstractGrid2D.removeForAny(x, y, xp, yp, dist, closed);
             }
-            
-        if (measurementRule != Grid2D.ANY && measurementRule != Grid2D.ALL && measurementRule != Grid2D.CENTER)
-            {
-            throw new RuntimeException(" Measurement rule must be one of ANY, ALL, or CENTER" );
-            }
-                
-        // grab the rectangle
-        if (toroidal)
-            getMooreLocations(x,y, (int) Math.ceil(dist + 0.5), UNBOUNDED, includeOrigin, xPos, yPos);
-        else
-            getMooreLocations(x,y, (int) Math.ceil(dist + 0.5), mode, includeOrigin, xPos, yPos);
-        int len = xPos.size();
-        double distsq = dist * dist;
-        
-        int width = getWidth();
-        int height = getHeight();
-        int widthtimestwo = width * 2;
-        int heighttimestwo = height * 2;
-        
-        for(int i = 0; i < len; i++)
+        else if (measurementRule == Grid2D.ALL)
             {
-            int xp = xPos.get(i);
-            int yp = yPos.get(i);
-            boolean remove = false;
-                
-            if (measurementRule == Grid2D.ANY)
-                {
-                remove = AbstractGrid2D.removeForAny(x, y, xp, yp, dist, closed);
-                }
-            else if (measurementRule == Grid2D.ALL)
+            // must check if ALL corners lie within the boundary.  However
+            // we can reduce it to just specific corners depending on the relative
+            // positions of the coordinates
+            if (x < xp)
                 {
-                // must check if ALL corners lie within the boundary.  However
-                // we can reduce it to just specific corners depending on the relative
-                // positions of the coordinates
-                if (x < xp)
-                    {
-                    if (y < yp)
-                        remove = !within(x,y,xp+0.5,yp+0.5,distsq,closed);
-                    else  // y >= yp.  y==yp is included because only one corner must be checked -- grid points are centered in their squares
-                        remove = !within(x,y,xp+0.5,yp-0.5,distsq,closed);
-                    }
-                else  // x >= xp.  x==xp is included because only one corner must be checked -- grid points are centered in their squares
-                    {
-                    if (y < yp)
-                        remove = !within(x,y,xp-0.5,yp+0.5,distsq,closed);
-                    else // y >= yp.  y==yp is included because only one corner must be checked -- grid points are centered in their squares
-                        remove = !within(x,y,xp-0.5,yp-0.5,distsq,closed);
-                    }
+                if (y < yp)
+                    return !within(x,y,xp+0.5,yp+0.5,distsq,closed);
+                else  // y >= yp.  y==yp is included because only one corner must be checked -- grid points are centered in their squares
+                    return !within(x,y,xp+0.5,yp-0.5,distsq,closed);
                 }
-            else // (measurementRule == Grid2D.CENTER)
+            else  // x >= xp.  x==xp is included because only one corner must be checked -- grid points are centered in their squares
                 {
-                remove = !within(x,y,xp,yp,distsq,closed);
-                }
-                
-            if (remove)
-                { xPos.remove(i); yPos.remove(i); i--;  len--; }
-            else if (toroidal) // need to convert to toroidal position
-                { 
-                int _x = xPos.get(i);
-                int _y = yPos.get(i);
-                xPos.set(i, tx(_x, width, widthtimestwo, _x + width, _x - width));
-                
-                yPos.set(i, ty(_y, height, heighttimestwo, _y + height, _y - height));
+                if (y < yp)
+                    return !within(x,y,xp-0.5,yp+0.5,distsq,closed);
+                else // y >= yp.  y==yp is included because only one corner must be checked -- grid points are centered in their squares
+                    return !within(x,y,xp-0.5,yp-0.5,distsq,closed);
                 }
             }
+        else // (measurementRule == Grid2D.CENTER)
+            {
+            return !within(x,y,xp,yp,distsq,closed);
+            }
+        }
+
+    public void getRadialLocations( final int x, final int y, final double dist, int mode, boolean includeOrigin, IntBag xPos, IntBag yPos )
+        {
+        getRadialLocations(x, y, dist, mode, includeOrigin, Grid2D.ANY, true, xPos, yPos);
+        }
+                
+    public void getRadialLocations( final int x, final int y, final double dist, int mode, boolean includeOrigin, int measurementRule, boolean closed, IntBag xPos, IntBag yPos )
+        {
+        Neighborhoods.radialLocations(this, x, y, dist, mode, includeOrigin, measurementRule, closed, xPos, yPos);
+        }
+
+
+    /** Visits, one at a time, the same locations that getMooreLocations(x, y, dist, mode, includeOrigin, xPos, yPos) would
+        gather, without filling any IntBags.  Stops as soon as the visitor returns false.  Returns false if the traversal
+        was stopped early by the visitor, else true. */
+    public boolean visitMooreLocations( final int x, final int y, final int dist, int mode, boolean includeOrigin, LocationVisitor2D visitor )
+        {
+        return Neighborhoods.visitMoore(this, x, y, dist, mode, includeOrigin, visitor);
+        }
+
+    /** Visits, one at a time, the same locations that getVonNeumannLocations(x, y, dist, mode, includeOrigin, xPos, yPos) would
+        gather, without filling any IntBags.  Stops as soon as the visitor returns false.  Returns false if the traversal
+        was stopped early by the visitor, else true.  Toroidal neighborhoods large enough to wrap onto themselves
+        (dist * 2 >= width or height) must be de-duplicated, and so are gathered into temporary IntBags first. */
+    public boolean visitVonNeumannLocations( final int x, final int y, final int dist, int mode, boolean includeOrigin, LocationVisitor2D visitor )
+        {
+        return Neighborhoods.visitVonNeumann(this, x, y, dist, mode, includeOrigin, visitor);
+        }
+
+    /** Visits, one at a time, the same locations that getHexagonalLocations(x, y, dist, mode, includeOrigin, xPos, yPos) would
+        gather, without filling any IntBags.  Stops as soon as the visitor returns false.  Returns false if the traversal
+        was stopped early by the visitor, else true.  Toroidal neighborhoods large enough to wrap onto themselves
+        (dist * 2 >= width or height) must be de-duplicated, and so are gathered into temporary IntBags first. */
+    public boolean visitHexagonalLocations( final int x, final int y, final int dist, int mode, boolean includeOrigin, LocationVisitor2D visitor )
+        {
+        return Neighborhoods.visitHexagonal(this, x, y, dist, mode, includeOrigin, visitor);
+        }
+
+    /** Visits, one at a time, the same locations that getRadialLocations(x, y, dist, mode, includeOrigin, xPos, yPos) would
+        gather, without filling any IntBags.  Stops as soon as the visitor returns false.  Returns false if the traversal
+        was stopped early by the visitor, else true. */
+    public boolean visitRadialLocations( final int x, final int y, final double dist, int mode, boolean includeOrigin, LocationVisitor2D visitor )
+        {
+        return Neighborhoods.visitRadial(this, x, y, dist, mode, includeOrigin, Grid2D.ANY, true, visitor);
+        }
+
+    /** Visits, one at a time, the same locations that getRadialLocations(x, y, dist, mode, includeOrigin, measurementRule, closed, xPos, yPos) would
+        gather, without filling any IntBags.  Stops as soon as the visitor returns false.  Returns false if the traversal
+        was stopped early by the visitor, else true. */
+    public boolean visitRadialLocations( final int x, final int y, final double dist, int mode, boolean includeOrigin, int measurementRule, boolean closed, LocationVisitor2D visitor )
+        {
+        return Neighborhoods.visitRadial(this, x, y, dist, mode, includeOrigin, measurementRule, closed, visitor);
         }
 
 
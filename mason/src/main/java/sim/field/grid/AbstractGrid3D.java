@@ -320,7 +320,7 @@ public abstract class AbstractGrid3D implements Grid3D
                     for( int z0 = zmin ; z0 <= zmax ; z0++ )
                         {
                         final int z_0 = tz(z0, length, length*2, z0+length, z0-length);
-                        if( x_0 != x || y_0 != y || z_0 != z )
+                        if( includeOrigin || x_0 != x || y_0 != y || z_0 != z )
                             {
                             xPos.add( x_0 );
                             yPos.add( y_0 );
@@ -417,7 +417,7 @@ public abstract class AbstractGrid3D implements Grid3D
                     for( int z0 = zmin; z0 <= zmax; z0++ )
                         {
                         final int z_0 = tz(z0, length, length*2, z0+length, z0-length);
-                        if( x_0 != x || y_0 != y || z_0 != z )
+                        if( includeOrigin || x_0 != x || y_0 != y || z_0 != z )
                             {
                             xPos.add( x_0 );
                             yPos.add( y_0 );
@@ -481,167 +481,160 @@ public abstract class AbstractGrid3D implements Grid3D
 
 
 
-    double ds(double d1x, double d1y, double d1z, double d2x, double d2y, double d2z)
+    static double ds(double d1x, double d1y, double d1z, double d2x, double d2y, double d2z)
         {
         return ((d1x - d2x) * (d1x - d2x) + (d1y - d2y) * (d1y - d2y) + (d1z - d2z) * (d1z - d2z));
         }
     
-    boolean within(double d1x, double d1y, double d1z, double d2x, double d2y, double d2z, double distanceSquared, boolean closed)
+    static boolean within(double d1x, double d1y, double d1z, double d2x, double d2y, double d2z, double distanceSquared, boolean closed)
         {
         double d= ds(d1x, d1y, d1z, d2x, d2y, d2z);
         return (d < distanceSquared || (d == distanceSquared && closed));
         }
         
-    public void getRadialLocations( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, IntBag xPos, IntBag yPos, IntBag zPos )
+    // returns true if location (xp, yp, zp) falls outside the radial neighborhood of (x, y, z) under the given measurement rule.
+    // Shared by getRadialLocations(...) and the radial visitors.
+    static boolean removeForRadial(int x, int y, int z, int xp, int yp, int zp, double dist, double distsq, int measurementRule, boolean closed)
         {
-        getRadialLocations(x, y, z, dist, mode, includeOrigin, Grid3D.ANY, true, xPos, yPos, zPos);
-        }
-        
-
-    public void getRadialLocations( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, int measurementRule, boolean closed, IntBag xPos, IntBag yPos, IntBag zPos )
-        {
-        boolean toroidal = (mode == TOROIDAL);
-
-        // won't work for negative distances
-        if( dist < 0 )
+        if (measurementRule == Grid3D.ANY)
             {
-            throw new RuntimeException( "Distance must be positive" );
-            }
-            
-        if (measurementRule != Grid3D.ANY && measurementRule != Grid3D.ALL && measurementRule != Grid3D.CENTER)
-            {
-            throw new RuntimeException(" Measurement rule must be one of ANY, ALL, or CENTER" );
-            }
-                
-        // grab the rectangle
-        getMooreLocations(x,y, z, (int) Math.ceil(dist + 0.5), mode, includeOrigin, xPos, yPos, zPos);
-        int len = xPos.size();
-        double distsq = dist * dist;
-        
-
-        int width = getWidth();
-        int height = getHeight();
-        int length = getLength();
-        int widthtimestwo = width * 2;
-        int heighttimestwo = height * 2;
-        int lengthtimestwo = length * 2;
-        
+            // handle simple cases where there's at least one equality
+            if (x==xp)
+                {
+                return AbstractGrid2D.removeForAny(y,z,yp,zp,dist,closed);
+                }
+            else if (y==yp)
+                {
+                return AbstractGrid2D.removeForAny(x,z,xp,zp,dist,closed);
+                }
+            else if (z==zp)
+                {
+                return AbstractGrid2D.removeForAny(x,y,xp,yp,dist,closed);
+                }
 
-        for(int i = 0; i < len; i++)
-            {
-            int xp = xPos.get(i);
-            int yp = yPos.get(i);
-            int zp = zPos.get(i);
-            boolean remove = false;
-                
-            if (measurementRule == Grid3D.ANY)
+            // off center -- check for nearest corner
+            else if (z < zp)
                 {
-                // handle simple cases where there's at least one equality
-                if (x==xp)
-                    {
-                    remove = AbstractGrid2D.removeForAny(y,z,yp,zp,dist,closed);
-                    }
-                else if (y==yp)
+                if (x < xp)
                     {
-                    remove = AbstractGrid2D.removeForAny(x,z,xp,zp,dist,closed);
+                    if (y < yp)
+                        return !within(x,y,z,xp-0.5,yp-0.5,zp-0.5,distsq,closed);
+                    else // y > yp
+                        return !within(x,y,z,xp-0.5,yp+0.5,zp-0.5,distsq,closed);
                     }
-                else if (z==zp)
+                else  // x > xp
                     {
-                    remove = AbstractGrid2D.removeForAny(x,y,xp,yp,dist,closed);
+                    if (y < yp)
+                        return !within(x,y,z,xp+0.5,yp-0.5,zp-0.5,distsq,closed);
+                    else  // y > yp
+                        return !within(x,y,z,xp+0.5,yp+0.5,zp-0.5,distsq,closed);
                     }
-
-                // off center -- check for nearest corner
-                else if (z < zp)
+                }
+            else  // z > zp
+                {
+                if (x < xp)
                     {
-                    if (x < xp)
-                        {
-                        if (y < yp)
-                            remove = !within(x,y,z,xp-0.5,yp-0.5,zp-0.5,distsq,closed);
-                        else // y > yp
-                            remove = !within(x,y,z,xp-0.5,yp+0.5,zp-0.5,distsq,closed);
-                        }
-                    else  // x > xp
-                        {
-                        if (y < yp)
-                            remove = !within(x,y,z,xp+0.5,yp-0.5,zp-0.5,distsq,closed);
-                        else  // y > yp
-                            remove = !within(x,y,z,xp+0.5,yp+0.5,zp-0.5,distsq,closed);
-                        }
+                    if (y < yp)
+                        return !within(x,y,z,xp-0.5,yp-0.5,zp+0.5,distsq,closed);
+                    else  // y > yp
+                        return !within(x,y,z,xp-0.5,yp+0.5,zp+0.5,distsq,closed);
                     }
-                else  // z > zp
+                else  // x > xp
                     {
-                    if (x < xp)
-                        {
-                        if (y < yp)
-                            remove = !within(x,y,z,xp-0.5,yp-0.5,zp+0.5,distsq,closed);
-                        else  // y > yp
-                            remove = !within(x,y,z,xp-0.5,yp+0.5,zp+0.5,distsq,closed);
-                        }
-                    else  // x > xp
-                        {
-                        if (y < yp)
-                            remove = !within(x,y,z,xp+0.5,yp-0.5,zp+0.5,distsq,closed);
-                        else // y > yp
-                            remove = !within(x,y,z,xp+0.5,yp+0.5,zp+0.5,distsq,closed);
-                        }
+                    if (y < yp)
+                        return !within(x,y,z,xp+0.5,yp-0.5,zp+0.5,distsq,closed);
+                    else // y > yp
+                        return !within(x,y,z,xp+0.5,yp+0.5,zp+0.5,distsq,closed);
                     }
                 }
-            else if (measurementRule == Grid3D.ALL)
+            }
+        else if (measurementRule == Grid3D.ALL)
+            {
+            if (z < zp)
                 {
-                if (z < zp)
+                if (x < xp)
                     {
-                    if (x < xp)
-                        {
-                        if (y < yp)
-                            remove = !within(x,y,z,xp+0.5,yp+0.5,zp+0.5,distsq,closed);
-                        else
-                            remove = !within(x,y,z,xp+0.5,yp-0.5,zp+0.5,distsq,closed);
-                        }
+                    if (y < yp)
+                        return !within(x,y,z,xp+0.5,yp+0.5,zp+0.5,distsq,closed);
                     else
-                        {
-                        if (y < yp)
-                            remove = !within(x,y,z,xp-0.5,yp+0.5,zp+0.5,distsq,closed);
-                        else
-                            remove = !within(x,y,z,xp-0.5,yp-0.5,zp+0.5,distsq,closed);
-                        }
+                        return !within(x,y,z,xp+0.5,yp-0.5,zp+0.5,distsq,closed);
                     }
                 else
                     {
-                    if (x < xp)
-                        {
-                        if (y < yp)
-                            remove = !within(x,y,z,xp+0.5,yp+0.5,zp-0.5,distsq,closed);
-                        else
-                            remove = !within(x,y,z,xp+0.5,yp-0.5,zp-0.5,distsq,closed);
-                        }
+                    if (y < yp)
+                        return !within(x,y,z,xp-0.5,yp+0.5,zp+0.5,distsq,closed);
                     else
-                        {
-                        if (y < yp)
-                            remove = !within(x,y,z,xp-0.5,yp+0.5,zp-0.5,distsq,closed);
-                        else
-                            remove = !within(x,y,z,xp-0.5,yp-0.5,zp-0.5,distsq,closed);
-                        }
+                        return !within(x,y,z,xp-0.5,yp-0.5,zp+0.5,distsq,closed);
                     }
-
                 }
-            else // (measurementRule == Grid3D.CENTER)
+            else
                 {
-                remove = !within(x,y,z,xp,yp,zp,distsq,closed);
-                }
-                
-            if (remove)
-                { xPos.remove(i); yPos.remove(i); zPos.remove(i); i--; len--; }
-            else if (toroidal) // need to convert to toroidal position
-                { 
-                int _x = xPos.get(i);
-                int _y = yPos.get(i);
-                int _z = zPos.get(i);
-                xPos.set(i, tx(_x, width, widthtimestwo, _x + width, _x - width));
-                yPos.set(i, ty(_y, height, heighttimestwo, _y + height, _y - height));
-                zPos.set(i, tz(_z, length, lengthtimestwo, _z + length, _z - length));
+                if (x < xp)
+                    {
+                    if (y < yp)
+                        return !within(x,y,z,xp+0.5,yp+0.5,zp-0.5,distsq,closed);
+                    else
+                        return !within(x,y,z,xp+0.5,yp-0.5,zp-0.5,distsq,closed);
+                    }
+                else
+                    {
+                    if (y < yp)
+                        return !within(x,y,z,xp-0.5,yp+0.5,zp-0.5,distsq,closed);
+                    else
+                        return !within(x,y,z,xp-0.5,yp-0.5,zp-0.5,distsq,closed);
+                    }
                 }
 
             }
+        else // (measurementRule == Grid3D.CENTER)
+            {
+            return !within(x,y,z,xp,yp,zp,distsq,closed);
+            }
+        }
+
+    public void getRadialLocations( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, IntBag xPos, IntBag yPos, IntBag zPos )
+        {
+        getRadialLocations(x, y, z, dist, mode, includeOrigin, Grid3D.ANY, true, xPos, yPos, zPos);
+        }
+        
+
+    public void getRadialLocations( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, int measurementRule, boolean closed, IntBag xPos, IntBag yPos, IntBag zPos )
+        {
+        Neighborhoods.radialLocations(this, x, y, z, dist, mode, includeOrigin, measurementRule, closed, xPos, yPos, zPos);
+        }
+
+
+    /** Visits, one at a time, the same locations that getMooreLocations(x, y, z, dist, mode, includeOrigin, xPos, yPos, zPos) would
+        gather, without filling any IntBags.  Stops as soon as the visitor returns false.  Returns false if the traversal
+        was stopped early by the visitor, else true. */
+    public boolean visitMooreLocations( final int x, final int y, final int z, final int dist, int mode, boolean includeOrigin, LocationVisitor3D visitor )
+        {
+        return Neighborhoods.visitMoore(this, x, y, z, dist, mode, includeOrigin, visitor);
+        }
+
+    /** Visits, one at a time, the same locations that getVonNeumannLocations(x, y, z, dist, mode, includeOrigin, xPos, yPos, zPos) would
+        gather, without filling any IntBags.  Stops as soon as the visitor returns false.  Returns false if the traversal
+        was stopped early by the visitor, else true.  Toroidal neighborhoods large enough to wrap onto themselves
+        (dist * 2 >= width, height, or length) must be de-duplicated, and so are gathered into temporary IntBags first. */
+    public boolean visitVonNeumannLocations( final int x, final int y, final int z, final int dist, int mode, boolean includeOrigin, LocationVisitor3D visitor )
+        {
+        return Neighborhoods.visitVonNeumann(this, x, y, z, dist, mode, includeOrigin, visitor);
+        }
+
+    /** Visits, one at a time, the same locations that getRadialLocations(x, y, z, dist, mode, includeOrigin, xPos, yPos, zPos) would
+        gather, without filling any IntBags.  Stops as soon as the visitor returns false.  Returns false if the traversal
+        was stopped early by the visitor, else true. */
+    public boolean visitRadialLocations( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, LocationVisitor3D visitor )
+        {
+        return Neighborhoods.visitRadial(this, x, y, z, dist, mode, includeOrigin, Grid3D.ANY, true, visitor);
+        }
+
+    /** Visits, one at a time, the same locations that getRadialLocations(x, y, z, dist, mode, includeOrigin, measurementRule, closed, xPos, yPos, zPos) would
+        gather, without filling any IntBags.  Stops as soon as the visitor returns false.  Returns false if the traversal
+        was stopped early by the visitor, else true. */
+    public boolean visitRadialLocations( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, int measurementRule, boolean closed, LocationVisitor3D visitor )
+        {
+        return Neighborhoods.visitRadial(this, x, y, z, dist, mode, includeOrigin, measurementRule, closed, visitor);
         }
 
 
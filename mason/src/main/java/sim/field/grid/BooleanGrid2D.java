@@ -0,0 +1,552 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.grid;
+import sim.util.*;
+
+/**
+   A bit-packed 2D grid of booleans.
+
+   <p>Rather than storing one boolean (a byte in most JVMs) or one int per cell, BooleanGrid2D packs 64 cells
+   into each long.  The array is column-major just like the other grids: <tt>field[x]</tt> is the column at x,
+   and the cell at (x,y) is bit <tt>(y &amp; 63)</tt> of the word <tt>field[x][y &gt;&gt;&gt; 6]</tt>.  Each column
+   has <tt>(height + 63) / 64</tt> words.  Bits in the last word of a column which lie beyond the height of the
+   grid are always zero: if you access the array directly, you must preserve this rule or count() and the
+   Life-style rule methods will give incorrect results.  set(...), get(...), and flip(...) throw an
+   ArrayIndexOutOfBoundsException for a y outside the grid, just as a boolean[][] would, rather than
+   touching these bits.
+
+   <p>Because cells are packed, whole-grid operations (count, and, or, xor, not, and the outer-totalistic
+   rules in setToOuterTotalistic(...)) work on 64 cells at a time.  The object implements all of the Grid2D
+   interface.  See Grid2D for rules on how to properly implement toroidal or hexagonal grids.
+
+   <p>The width and height of the object are provided to avoid having to compute them from the array.
+   The neighborhood lookup functions return their values in IntBags, as 1 for true and 0 for false.
+*/
+
+public /*strictfp*/ class BooleanGrid2D extends AbstractGrid2D
+    {
+    private static final long serialVersionUID = 1;
+
+    public long[/**x*/][/**y words*/] field;
+
+    // the number of longs per column
+    int words;
+
+    // the valid bits of the last word of each column
+    long lastMask;
+
+    public BooleanGrid2D (int width, int height)
+        {
+        reshape(width, height);
+        }
+
+    public BooleanGrid2D (int width, int height, boolean initialValue)
+        {
+        this(width,height);
+        setTo(initialValue);
+        }
+
+    public BooleanGrid2D (BooleanGrid2D values)
+        {
+        setTo(values);
+        }
+
+    public BooleanGrid2D(boolean[][] values)
+        {
+        setTo(values);
+        }
+
+    // sets to all false
+    public void reshape(int width, int height)
+        {
+        super.reshape(width, height);
+        words = (height + 63) >>> 6;
+        lastMask = ((height & 63) == 0 ? -1L : (1L << (height & 63)) - 1);
+        field = new long[width][words];
+        }
+
+    /** Returns the number of longs used to store each column of the grid. */
+    public final int getWordsPerColumn() { return words; }
+
+    /** Sets location (x,y) to val */
+    public final void set(final int x, final int y, final boolean val)
+        {
+        assert sim.util.LocationLog.it(this, new Int2D(x,y));
+        if (y >= height) throw new ArrayIndexOutOfBoundsException(y);
+        if (val) field[x][y >>> 6] |= (1L << y);
+        else field[x][y >>> 6] &= ~(1L << y);
+        }
+
+    /** Returns the element at location (x,y) */
+    public final boolean get(final int x, final int y)
+        {
+        assert sim.util.LocationLog.it(this, new Int2D(x,y));
+        if (y >= height) throw new ArrayIndexOutOfBoundsException(y);
+        return (field[x][y >>> 6] & (1L << y)) != 0;
+        }
+
+    /** Flips the element at location (x,y) and returns its new value */
+    public final boolean flip(final int x, final int y)
+        {
+        assert sim.util.LocationLog.it(this, new Int2D(x,y));
+        if (y >= height) throw new ArrayIndexOutOfBoundsException(y);
+        return ((field[x][y >>> 6] ^= (1L << y)) & (1L << y)) != 0;
+        }
+
+    /** Sets all the locations in the grid the provided element */
+    public final BooleanGrid2D setTo(boolean thisMuch)
+        {
+        final long val = (thisMuch ? -1L : 0L);
+        final int width = getWidth();
+        final int words = this.words;
+        if (words == 0) return this;
+        for(int x=0;x<width;x++)
+            {
+            final long[] fieldx = field[x];
+            for(int w=0;w<words;w++)
+                fieldx[w] = val;
+            fieldx[words - 1] &= lastMask;
+            }
+        return this;
+        }
+
+    /** Sets the grid to a copy of the provided array, which must be rectangular. */
+    public BooleanGrid2D setTo(boolean[][] field)
+        {
+        // check info
+
+        if (field == null)
+            throw new RuntimeException("BooleanGrid2D set to null field.");
+        int w = field.length;
+        int h = 0;
+        if (w != 0) h = field[0].length;
+        for(int i = 0; i < w; i++)
+            if (field[i].length != h) // uh oh
+                throw new RuntimeException("BooleanGrid2D initialized with a non-rectangular field.");
+
+        // load
+
+        reshape(w, h);
+        for(int x = 0; x < w; x++)
+            {
+            final boolean[] fx = field[x];
+            final long[] fieldx = this.field[x];
+            for(int y = 0; y < h; y++)
+                if (fx[y]) fieldx[y >>> 6] |= (1L << y);
+            }
+        return this;
+        }
+
+    /** Changes the dimensions of the grid to be the same as the one provided, then
+        sets all the locations in the grid to the elements at the equivalent locations in the
+        provided grid. */
+    public final BooleanGrid2D setTo(BooleanGrid2D values)
+        {
+        if (getWidth() != values.getWidth() || getHeight() != values.getHeight())
+            reshape(values.getWidth(), values.getHeight());
+        final int width = getWidth();
+        for(int x =0 ; x < width; x++)
+            System.arraycopy(values.field[x],0,field[x],0,words);
+        return this;
+        }
+
+    /** Flattens the grid to a one-dimensional array, storing the elements in row-major order.
+        Returns the grid. */
+    public final boolean[] toArray()
+        {
+        boolean[] vals = new boolean[getWidth() * getHeight()];
+        int i = 0;
+        final int width = getWidth();
+        final int height = getHeight();
+        for(int x=0;x<width;x++)
+            {
+            final long[] fieldx = field[x];
+            for(int y = 0; y<height;y++)
+                vals[i++] = (fieldx[y >>> 6] & (1L << y)) != 0;
+            }
+        return vals;
+        }
+
+    /** Returns the number of locations in the grid which are true. */
+    public final int count()
+        {
+        int count = 0;
+        final int width = getWidth();
+        final int words = this.words;
+        for(int x=0;x<width;x++)
+            {
+            final long[] fieldx = field[x];
+            for(int w=0;w<words;w++)
+                count += Long.bitCount(fieldx[w]);
+            }
+        return count;
+        }
+
+    /** Sets each value in the grid to its logical AND with the value at the equivalent location in the provided grid.
+        Returns the modified grid.
+    */
+    public final BooleanGrid2D and(BooleanGrid2D withThis)
+        {
+        checkBounds(withThis);
+        final int width = getWidth();
+        final int words = this.words;
+        for(int x=0;x<width;x++)
+            {
+            final long[] fieldx = field[x];
+            final long[] ofieldx = withThis.field[x];
+            for(int w=0;w<words;w++)
+                fieldx[w] &= ofieldx[w];
+            }
+        return this;
+        }
+
+    /** Sets each value in the grid to its logical OR with the value at the equivalent location in the provided grid.
+        Returns the modified grid.
+    */
+    public final BooleanGrid2D or(BooleanGrid2D withThis)
+        {
+        checkBounds(withThis);
+        final int width = getWidth();
+        final int words = this.words;
+        for(int x=0;x<width;x++)
+            {
+            final long[] fieldx = field[x];
+            final long[] ofieldx = withThis.field[x];
+            for(int w=0;w<words;w++)
+                fieldx[w] |= ofieldx[w];
+            }
+        return this;
+        }
+
+    /** Sets each value in the grid to its logical XOR with the value at the equivalent location in the provided grid.
+        Returns the modified grid.
+    */
+    public final BooleanGrid2D xor(BooleanGrid2D withThis)
+        {
+        checkBounds(withThis);
+        final int width = getWidth();
+        final int words = this.words;
+        for(int x=0;x<width;x++)
+            {
+            final long[] fieldx = field[x];
+            final long[] ofieldx = withThis.field[x];
+            for(int w=0;w<words;w++)
+                fieldx[w] ^= ofieldx[w];
+            }
+        return this;
+        }
+
+    /** Sets each value in the grid to its logical AND with the NOT of the value at the equivalent location in the provided grid.
+        Returns the modified grid.
+    */
+    public final BooleanGrid2D andNot(BooleanGrid2D withThis)
+        {
+        checkBounds(withThis);
+        final int width = getWidth();
+        final int words = this.words;
+        for(int x=0;x<width;x++)
+            {
+            final long[] fieldx = field[x];
+            final long[] ofieldx = withThis.field[x];
+            for(int w=0;w<words;w++)
+                fieldx[w] &= ~ofieldx[w];
+            }
+        return this;
+        }
+
+    /** Inverts each value in the grid.  Returns the modified grid. */
+    public final BooleanGrid2D not()
+        {
+        final int width = getWidth();
+        final int words = this.words;
+        if (words == 0) return this;
+        for(int x=0;x<width;x++)
+            {
+            final long[] fieldx = field[x];
+            for(int w=0;w<words;w++)
+                fieldx[w] = ~fieldx[w];
+            fieldx[words - 1] &= lastMask;
+            }
+        return this;
+        }
+
+    /** Sets the grid to one step of Conway's Game of Life applied to <i>from</i>, which must be a different
+        grid of the same dimensions.  This is equivalent to
+        <tt>setToOuterTotalistic(from, 1 &lt;&lt; 3, (1 &lt;&lt; 2) | (1 &lt;&lt; 3), toroidal)</tt>.
+        Returns the modified grid. */
+    public final BooleanGrid2D setToLife(BooleanGrid2D from, boolean toroidal)
+        {
+        return setToOuterTotalistic(from, 1 << 3, (1 << 2) | (1 << 3), toroidal);
+        }
+
+    /** Sets the grid to one step of an outer-totalistic cellular automaton rule on the Moore neighborhood
+        applied to <i>from</i>, which must be a different grid of the same dimensions.  A false cell in <i>from</i>
+        with N true neighbors becomes true if bit N of <i>birthRule</i> is set, and a true cell with N true neighbors
+        stays true if bit N of <i>survivalRule</i> is set.  Otherwise the cell becomes false.  For example, Conway's
+        Game of Life (B3/S23) is a birthRule of <tt>1 &lt;&lt; 3</tt> and a survivalRule of <tt>(1 &lt;&lt; 2) | (1 &lt;&lt; 3)</tt>.
+
+        <p>If <i>toroidal</i> is true, the neighborhood wraps around; otherwise cells outside the grid are
+        treated as false.  Neighbor counts are computed with bitwise adders over whole words, so 64 cells are
+        updated at a time.  Returns the modified grid. */
+    public final BooleanGrid2D setToOuterTotalistic(BooleanGrid2D from, int birthRule, int survivalRule, boolean toroidal)
+        {
+        if (from == this)
+            throw new RuntimeException("BooleanGrid2D cannot compute a cellular automaton rule in place: use a second grid.");
+        checkBounds(from);
+
+        final int width = getWidth();
+        final int height = getHeight();
+        final int words = this.words;
+        if (width == 0 || words == 0) return this;
+        final long lastMask = this.lastMask;
+        final long[] zero = new long[words];
+        final long[][] ffield = from.field;
+        final long[] sum = new long[4];
+
+        for(int x = 0; x < width; x++)
+            {
+            final long[] left = (x > 0 ? ffield[x - 1] : (toroidal ? ffield[width - 1] : zero));
+            final long[] center = ffield[x];
+            final long[] right = (x < width - 1 ? ffield[x + 1] : (toroidal ? ffield[0] : zero));
+            final long[] fieldx = field[x];
+
+            for(int w = 0; w < words; w++)
+                {
+                final long mask = (w == words - 1 ? lastMask : -1L);
+
+                // bit planes of the neighbor total, one per binary digit (the total is at most 8)
+                sum[0] = sum[1] = sum[2] = sum[3] = 0;
+                add(sum, left[w]);
+                add(sum, right[w]);
+                add(sum, shiftUp(left, w, height, toroidal) & mask);
+                add(sum, shiftUp(center, w, height, toroidal) & mask);
+                add(sum, shiftUp(right, w, height, toroidal) & mask);
+                add(sum, shiftDown(left, w, height, toroidal));
+                add(sum, shiftDown(center, w, height, toroidal));
+                add(sum, shiftDown(right, w, height, toroidal));
+                final long s0 = sum[0], s1 = sum[1], s2 = sum[2], s3 = sum[3];
+
+                final long alive = center[w];
+                long result = 0;
+                for(int total = 0; total <= 8; total++)
+                    {
+                    final boolean birth = ((birthRule >>> total) & 1) != 0;
+                    final boolean survival = ((survivalRule >>> total) & 1) != 0;
+                    if (!birth && !survival) continue;
+                    final long eq = ((total & 1) != 0 ? s0 : ~s0) &
+                        ((total & 2) != 0 ? s1 : ~s1) &
+                        ((total & 4) != 0 ? s2 : ~s2) &
+                        ((total & 8) != 0 ? s3 : ~s3);
+                    if (birth) result |= eq & ~alive;
+                    if (survival) result |= eq & alive;
+                    }
+                fieldx[w] = result & mask;
+                }
+            }
+        return this;
+        }
+
+    // Adds one bit plane to the 4-bit counters in sum, 64 cells at a time
+    static void add(final long[] sum, final long a)
+        {
+        final long c0 = sum[0] & a; sum[0] ^= a;
+        final long c1 = sum[1] & c0; sum[1] ^= c0;
+        final long c2 = sum[2] & c1; sum[2] ^= c1;
+        sum[3] |= c2;
+        }
+
+    // Returns word w of the column shifted so that bit i holds the cell at y-1 rather than y
+    static long shiftUp(final long[] column, final int w, final int height, final boolean toroidal)
+        {
+        long val = column[w] << 1;
+        if (w > 0) val |= (column[w - 1] >>> 63);
+        else if (toroidal) val |= ((column[(height - 1) >>> 6] >>> (height - 1)) & 1L);
+        return val;
+        }
+
+    // Returns word w of the column shifted so that bit i holds the cell at y+1 rather than y
+    static long shiftDown(final long[] column, final int w, final int height, final boolean toroidal)
+        {
+        final int words = column.length;
+        long val = column[w] >>> 1;
+        if (w < words - 1) val |= (column[w + 1] << 63);
+        else if (toroidal) val |= ((column[0] & 1L) << (height - 1));
+        return val;
+        }
+
+    /**
+     * Gets all neighbors of a location that satisfy max( abs(x-X) , abs(y-Y) ) <= dist, This region forms a
+     * square 2*dist+1 cells across, centered at (X,Y).  If dist==1, this
+     * is equivalent to the so-called "Moore Neighborhood" (the eight neighbors surrounding (X,Y)), plus (X,Y) itself.
+     * Places each x and y value of these locations in the provided IntBags xPos and yPos, clearing the bags first.
+     *
+     * <p>Then places into the result IntBag the values (1 for true, 0 for false) at each of these <x,y> locations, clearing it first.
+     * Returns the result IntBag (constructing one if null had been passed in).
+     * null may be passed in for the various bags, though it is more efficient to pass in a 'scratch bag' for
+     * each one.
+     *
+     * <p>This function may be run in one of three modes: Grid2D.BOUNDED, Grid2D.UNBOUNDED, and Grid2D.TOROIDAL.  See
+     * IntGrid2D.getMooreNeighbors(...) for a discussion of these modes.  Unbounded lookup is not meaningful for BooleanGrid2D.
+     *
+     * <p>You can also opt to include the origin -- that is, the (x,y) point at the center of the neighborhood -- in the neighborhood results.
+     */
+    public IntBag getMooreNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, IntBag result, IntBag xPos, IntBag yPos )
+        {
+        if( xPos == null )
+            xPos = new IntBag();
+        if( yPos == null )
+            yPos = new IntBag();
+
+        getMooreLocations( x, y, dist, mode, includeOrigin, xPos, yPos );
+        return getObjectsAtLocations(xPos,yPos,result);
+        }
+
+    /**
+     * Gets all neighbors of a location that satisfy abs(x-X) + abs(y-Y) <= dist.  This region forms a diamond
+     * 2*dist+1 cells from point to opposite point inclusive, centered at (X,Y).  If dist==1 this is
+     * equivalent to the so-called "Von-Neumann Neighborhood" (the four neighbors above, below, left, and right of (X,Y)),
+     * plus (X,Y) itself.
+     *
+     * <p>Places each x and y value of these locations in the provided IntBags xPos and yPos, clearing the bags first.
+     * Then places into the result IntBag the values (1 for true, 0 for false) at each of these <x,y> locations, clearing it first.
+     * Returns the result IntBag (constructing one if null had been passed in).
+     *
+     * <p>See IntGrid2D.getVonNeumannNeighbors(...) for a discussion of the modes.
+     */
+    public IntBag getVonNeumannNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, IntBag result, IntBag xPos, IntBag yPos )
+        {
+        if( xPos == null )
+            xPos = new IntBag();
+        if( yPos == null )
+            yPos = new IntBag();
+
+        getVonNeumannLocations( x, y, dist, mode, includeOrigin, xPos, yPos );
+        return getObjectsAtLocations(xPos,yPos,result);
+        }
+
+    /**
+     * Gets all neighbors located within the hexagon centered at (X,Y) and 2*dist+1 cells from point to opposite point
+     * inclusive.
+     * If dist==1, this is equivalent to the six neighbors immediately surrounding (X,Y),
+     * plus (X,Y) itself.
+     *
+     * <p>Places each x and y value of these locations in the provided IntBags xPos and yPos, clearing the bags first.
+     * Then places into the result IntBag the values (1 for true, 0 for false) at each of these <x,y> locations, clearing it first.
+     * Returns the result IntBag (constructing one if null had been passed in).
+     *
+     * <p>See IntGrid2D.getHexagonalNeighbors(...) for a discussion of the modes.
+     */
+    public IntBag getHexagonalNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, IntBag result, IntBag xPos, IntBag yPos )
+        {
+        if( xPos == null )
+            xPos = new IntBag();
+        if( yPos == null )
+            yPos = new IntBag();
+
+        getHexagonalLocations( x, y, dist, mode, includeOrigin, xPos, yPos );
+        return getObjectsAtLocations(xPos,yPos,result);
+        }
+
+    public IntBag getRadialNeighbors( final int x, final int y, final double dist, int mode, boolean includeOrigin, IntBag result, IntBag xPos, IntBag yPos )
+        {
+        return getRadialNeighbors(x, y, dist, mode, includeOrigin, Grid2D.ANY, true, result, xPos, yPos);
+        }
+
+    public IntBag getRadialNeighbors( final int x, final int y, final double dist, int mode, boolean includeOrigin,  int measurementRule, boolean closed,  IntBag result, IntBag xPos, IntBag yPos )
+        {
+        if( xPos == null )
+            xPos = new IntBag();
+        if( yPos == null )
+            yPos = new IntBag();
+
+        getRadialLocations( x, y, dist, mode, includeOrigin, measurementRule, closed, xPos, yPos );
+        return getObjectsAtLocations(xPos,yPos,result);
+        }
+
+    public IntBag getMooreNeighbors( int x, int y, int dist, int mode, boolean includeOrigin )
+        {
+        return getMooreNeighbors(x, y, dist, mode, includeOrigin, null, null, null);
+        }
+
+    public IntBag getVonNeumannNeighbors( int x, int y, int dist, int mode, boolean includeOrigin )
+        {
+        return getVonNeumannNeighbors(x, y, dist, mode, includeOrigin, null, null, null);
+        }
+
+    public IntBag getHexagonalNeighbors( int x, int y, int dist, int mode, boolean includeOrigin )
+        {
+        return getHexagonalNeighbors(x, y, dist, mode, includeOrigin, null, null, null);
+        }
+
+    public IntBag getRadialNeighbors( final int x, final int y, final double dist, int mode, boolean includeOrigin)
+        {
+        return getRadialNeighbors(x, y, dist, mode, includeOrigin, null, null, null);
+        }
+
+    /* For each <xPos,yPos> location, puts 1 or 0 into the result IntBag.  Returns the result IntBag.
+       If the provided result IntBag is null, one will be created and returned. */
+    IntBag getObjectsAtLocations(final IntBag xPos, final IntBag yPos, IntBag result)
+        {
+        if (result==null) result = new IntBag();
+        else result.clear();
+
+        for( int i = 0 ; i < xPos.numObjs ; i++ )
+            {
+            assert sim.util.LocationLog.it(this, new Int2D(xPos.objs[i],yPos.objs[i]));
+            result.add( get(xPos.objs[i], yPos.objs[i]) ? 1 : 0 );
+            }
+        return result;
+        }
+
+
+    /** Visits the value at each location in the same Moore neighborhood as getMooreNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitMooreNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final IntVisitor2D visitor )
+        {
+        return visitMooreLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits the value at each location in the same von Neumann neighborhood as getVonNeumannNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitVonNeumannNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final IntVisitor2D visitor )
+        {
+        return visitVonNeumannLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits the value at each location in the same hexagonal neighborhood as getHexagonalNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitHexagonalNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final IntVisitor2D visitor )
+        {
+        return visitHexagonalLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits the value at each location in the same radial neighborhood as getRadialNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final double dist, int mode, boolean includeOrigin, final IntVisitor2D visitor )
+        {
+        return visitRadialLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits the value at each location in the same radial neighborhood as getRadialNeighbors(x, y, dist, mode, includeOrigin, measurementRule, closed, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final double dist, int mode, boolean includeOrigin, int measurementRule, boolean closed, final IntVisitor2D visitor )
+        {
+        return visitRadialLocations(x, y, dist, mode, includeOrigin, measurementRule, closed, new NeighborVisitor(visitor));
+        }
+
+    // Hands the value at each location to a IntVisitor2D
+    final class NeighborVisitor implements LocationVisitor2D
+        {
+        final IntVisitor2D visitor;
+        NeighborVisitor(final IntVisitor2D visitor) { Neighborhoods.checkVisitor(visitor); this.visitor = visitor; }
+        public boolean visit(final int x, final int y)
+            {
+            assert sim.util.LocationLog.it(BooleanGrid2D.this, new Int2D(x, y));
+            return visitor.visit(x, y, get(x, y) ? 1 : 0);
+            }
+        }
+    }
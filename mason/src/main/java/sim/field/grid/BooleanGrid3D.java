@@ -0,0 +1,442 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.grid;
+import sim.util.*;
+
+/**
+   A bit-packed 3D grid of booleans.
+
+   <p>BooleanGrid3D packs 64 cells into each long along the z dimension: the cell at (x,y,z) is bit
+   <tt>(z &amp; 63)</tt> of the word <tt>field[x][y][z &gt;&gt;&gt; 6]</tt>, and each (x,y) column has
+   <tt>(length + 63) / 64</tt> words.  Bits in the last word of a column which lie beyond the length of the
+   grid are always zero: if you access the array directly, you must preserve this rule or count() will give
+   incorrect results.  set(...), get(...), and flip(...) throw an ArrayIndexOutOfBoundsException for a z
+   outside the grid rather than touching these bits.  See BooleanGrid2D for more discussion.
+
+   <p>Whole-grid operations (count, and, or, xor, not) work on 64 cells at a time.  The object
+   implements all of the Grid3D interface.  See Grid3D for rules on how to properly implement toroidal
+   grids.  The neighborhood lookup functions return their values in IntBags, as 1 for true and 0 for false.
+*/
+
+public /*strictfp*/ class BooleanGrid3D extends AbstractGrid3D
+    {
+    private static final long serialVersionUID = 1;
+
+    public long[/**x*/][/**y*/][/**z words*/] field;
+
+    // the number of longs per (x,y) column
+    int words;
+
+    // the valid bits of the last word of each column
+    long lastMask;
+
+    public BooleanGrid3D (int width, int height, int length)
+        {
+        reshape(width, height, length);
+        }
+
+    public BooleanGrid3D (int width, int height, int length, boolean initialValue)
+        {
+        this(width,height,length);
+        setTo(initialValue);
+        }
+
+    public BooleanGrid3D (BooleanGrid3D values)
+        {
+        super();
+        setTo(values);
+        }
+
+    public BooleanGrid3D(boolean[][][] values)
+        {
+        setTo(values);
+        }
+
+    /** Replaces the existing array with a new one of the given width and height and length,
+        with all values set to false. */
+    protected void reshape(int width, int height, int length)
+        {
+        this.width = width;
+        this.height = height;
+        this.length = length;
+        words = (length + 63) >>> 6;
+        lastMask = ((length & 63) == 0 ? -1L : (1L << (length & 63)) - 1);
+        field = new long[width][height][words];
+        }
+
+    /** Returns the number of longs used to store each (x,y) column of the grid. */
+    public final int getWordsPerColumn() { return words; }
+
+    /** Sets location (x,y,z) to val */
+    public final void set(final int x, final int y, final int z, final boolean val)
+        {
+        if (z >= length) throw new ArrayIndexOutOfBoundsException(z);
+        if (val) field[x][y][z >>> 6] |= (1L << z);
+        else field[x][y][z >>> 6] &= ~(1L << z);
+        }
+
+    /** Returns the element at location (x,y,z) */
+    public final boolean get(final int x, final int y, final int z)
+        {
+        if (z >= length) throw new ArrayIndexOutOfBoundsException(z);
+        return (field[x][y][z >>> 6] & (1L << z)) != 0;
+        }
+
+    /** Flips the element at location (x,y,z) and returns its new value */
+    public final boolean flip(final int x, final int y, final int z)
+        {
+        if (z >= length) throw new ArrayIndexOutOfBoundsException(z);
+        return ((field[x][y][z >>> 6] ^= (1L << z)) & (1L << z)) != 0;
+        }
+
+    /** Sets all the locations in the grid the provided element */
+    public final BooleanGrid3D setTo(boolean thisMuch)
+        {
+        final long val = (thisMuch ? -1L : 0L);
+        final int width = getWidth();
+        final int height = getHeight();
+        final int words = this.words;
+        if (words == 0) return this;
+        for(int x=0;x<width;x++)
+            {
+            final long[][] fieldx = field[x];
+            for(int y=0;y<height;y++)
+                {
+                final long[] fieldxy = fieldx[y];
+                for(int w=0;w<words;w++)
+                    fieldxy[w] = val;
+                fieldxy[words - 1] &= lastMask;
+                }
+            }
+        return this;
+        }
+
+    /** Changes the dimensions of the grid to be the same as the one provided, then
+        sets all the locations in the grid to the elements at the equivalent locations in the
+        provided grid. */
+    public final BooleanGrid3D setTo(BooleanGrid3D values)
+        {
+        if (getWidth() != values.getWidth() || getHeight() != values.getHeight() || getLength() != values.getLength())
+            reshape(values.getWidth(), values.getHeight(), values.getLength());
+        final int width = getWidth();
+        final int height = getHeight();
+        for(int x = 0; x < width; x++)
+            for(int y = 0; y < height; y++)
+                System.arraycopy(values.field[x][y], 0, field[x][y], 0, words);
+        return this;
+        }
+
+    /** Sets the grid to a copy of the provided array, which must be rectangular. */
+    public BooleanGrid3D setTo(boolean[][][] field)
+        {
+        // check info
+
+        if (field == null)
+            throw new RuntimeException("BooleanGrid3D set to null field.");
+        int w = field.length;
+        int h = 0;
+        int l = 0;
+        if (w != 0) h = field[0].length;
+        if (h != 0) l = field[0][0].length;
+        for(int i = 0; i < w; i++)
+            {
+            if (field[i].length != h) // uh oh
+                throw new RuntimeException("BooleanGrid3D initialized with a non-rectangular field.");
+            for(int j = 0; j < h; j++)
+                if (field[i][j].length != l) // uh oh
+                    throw new RuntimeException("BooleanGrid3D initialized with a non-rectangular field.");
+            }
+
+        // load
+
+        reshape(w, h, l);
+        for(int x = 0; x < w; x++)
+            for(int y = 0; y < h; y++)
+                {
+                final boolean[] fxy = field[x][y];
+                final long[] fieldxy = this.field[x][y];
+                for(int z = 0; z < l; z++)
+                    if (fxy[z]) fieldxy[z >>> 6] |= (1L << z);
+                }
+        return this;
+        }
+
+    /** Flattens the grid to a one-dimensional array, storing the elements in row-major order.
+        Returns the grid. */
+    public final boolean[] toArray()
+        {
+        boolean[] vals = new boolean[getWidth() * getHeight() * getLength()];
+        int i = 0;
+        final int width = getWidth();
+        final int height = getHeight();
+        final int length = getLength();
+        for(int x=0;x<width;x++)
+            for(int y=0;y<height;y++)
+                {
+                final long[] fieldxy = field[x][y];
+                for(int z=0;z<length;z++)
+                    vals[i++] = (fieldxy[z >>> 6] & (1L << z)) != 0;
+                }
+        return vals;
+        }
+
+    /** Returns the number of locations in the grid which are true. */
+    public final int count()
+        {
+        int count = 0;
+        final int width = getWidth();
+        final int height = getHeight();
+        final int words = this.words;
+        for(int x=0;x<width;x++)
+            {
+            final long[][] fieldx = field[x];
+            for(int y=0;y<height;y++)
+                {
+                final long[] fieldxy = fieldx[y];
+                for(int w=0;w<words;w++)
+                    count += Long.bitCount(fieldxy[w]);
+                }
+            }
+        return count;
+        }
+
+    /** Sets each value in the grid to its logical AND with the value at the equivalent location in the provided grid.
+        Returns the modified grid.
+    */
+    public final BooleanGrid3D and(BooleanGrid3D withThis)
+        {
+        checkBounds(withThis);
+        final int width = getWidth();
+        final int height = getHeight();
+        final int words = this.words;
+        for(int x=0;x<width;x++)
+            for(int y=0;y<height;y++)
+                {
+                final long[] fieldxy = field[x][y];
+                final long[] ofieldxy = withThis.field[x][y];
+                for(int w=0;w<words;w++)
+                    fieldxy[w] &= ofieldxy[w];
+                }
+        return this;
+        }
+
+    /** Sets each value in the grid to its logical OR with the value at the equivalent location in the provided grid.
+        Returns the modified grid.
+    */
+    public final BooleanGrid3D or(BooleanGrid3D withThis)
+        {
+        checkBounds(withThis);
+        final int width = getWidth();
+        final int height = getHeight();
+        final int words = this.words;
+        for(int x=0;x<width;x++)
+            for(int y=0;y<height;y++)
+                {
+                final long[] fieldxy = field[x][y];
+                final long[] ofieldxy = withThis.field[x][y];
+                for(int w=0;w<words;w++)
+                    fieldxy[w] |= ofieldxy[w];
+                }
+        return this;
+        }
+
+    /** Sets each value in the grid to its logical XOR with the value at the equivalent location in the provided grid.
+        Returns the modified grid.
+    */
+    public final BooleanGrid3D xor(BooleanGrid3D withThis)
+        {
+        checkBounds(withThis);
+        final int width = getWidth();
+        final int height = getHeight();
+        final int words = this.words;
+        for(int x=0;x<width;x++)
+            for(int y=0;y<height;y++)
+                {
+                final long[] fieldxy = field[x][y];
+                final long[] ofieldxy = withThis.field[x][y];
+                for(int w=0;w<words;w++)
+                    fieldxy[w] ^= ofieldxy[w];
+                }
+        return this;
+        }
+
+    /** Sets each value in the grid to its logical AND with the NOT of the value at the equivalent location in the provided grid.
+        Returns the modified grid.
+    */
+    public final BooleanGrid3D andNot(BooleanGrid3D withThis)
+        {
+        checkBounds(withThis);
+        final int width = getWidth();
+        final int height = getHeight();
+        final int words = this.words;
+        for(int x=0;x<width;x++)
+            for(int y=0;y<height;y++)
+                {
+                final long[] fieldxy = field[x][y];
+                final long[] ofieldxy = withThis.field[x][y];
+                for(int w=0;w<words;w++)
+                    fieldxy[w] &= ~ofieldxy[w];
+                }
+        return this;
+        }
+
+    /** Inverts each value in the grid.  Returns the modified grid. */
+    public final BooleanGrid3D not()
+        {
+        final int width = getWidth();
+        final int height = getHeight();
+        final int words = this.words;
+        if (words == 0) return this;
+        for(int x=0;x<width;x++)
+            for(int y=0;y<height;y++)
+                {
+                final long[] fieldxy = field[x][y];
+                for(int w=0;w<words;w++)
+                    fieldxy[w] = ~fieldxy[w];
+                fieldxy[words - 1] &= lastMask;
+                }
+        return this;
+        }
+
+    /**
+     * Gets all neighbors of a location that satisfy max( abs(x-X) , abs(y-Y), abs(z-Z) ) <= dist.  This region forms a
+     * cube 2*dist+1 cells across, centered at (X,Y,Z).  If dist==1, this
+     * is equivalent to the twenty-six neighbors surrounding (X,Y,Z), plus (X,Y,Z) itself.
+     * Places each x, y, and z value of these locations in the provided IntBags xPos, yPos, and zPos, clearing the bags first.
+     *
+     * <p>Then places into the result IntBag the values (1 for true, 0 for false) at each of these <x,y,z> locations, clearing it first.
+     * Returns the result IntBag (constructing one if null had been passed in).
+     * null may be passed in for the various bags, though it is more efficient to pass in a 'scratch bag' for
+     * each one.
+     *
+     * <p>See IntGrid3D.getMooreNeighbors(...) for a discussion of the modes.
+     */
+    public IntBag getMooreNeighbors( final int x, final int y, final int z, final int dist, int mode, boolean includeOrigin, IntBag result, IntBag xPos, IntBag yPos, IntBag zPos )
+        {
+        if( xPos == null )
+            xPos = new IntBag();
+        if( yPos == null )
+            yPos = new IntBag();
+        if( zPos == null )
+            zPos = new IntBag();
+
+        getMooreLocations( x, y, z, dist, mode, includeOrigin, xPos, yPos, zPos );
+        return getObjectsAtLocations(xPos,yPos,zPos, result);
+        }
+
+    /**
+     * Gets all neighbors of a location that satisfy abs(x-X) + abs(y-Y) + abs(z-Z) <= dist.  This region
+     * forms an octohedron 2*dist+1 cells from point to opposite point inclusive, centered at (X,Y,Z).
+     * Places each x, y, and z value of these locations in the provided IntBags xPos, yPos, and zPos, clearing the bags first.
+     *
+     * <p>Then places into the result IntBag the values (1 for true, 0 for false) at each of these <x,y,z> locations, clearing it first.
+     * Returns the result IntBag (constructing one if null had been passed in).
+     *
+     * <p>See IntGrid3D.getVonNeumannNeighbors(...) for a discussion of the modes.
+     */
+    public IntBag getVonNeumannNeighbors( final int x, final int y, int z, final int dist, int mode, boolean includeOrigin, IntBag result, IntBag xPos, IntBag yPos, IntBag zPos )
+        {
+        if( xPos == null )
+            xPos = new IntBag();
+        if( yPos == null )
+            yPos = new IntBag();
+        if( zPos == null )
+            zPos = new IntBag();
+
+        getVonNeumannLocations( x, y, z, dist, mode, includeOrigin, xPos, yPos, zPos);
+        return getObjectsAtLocations(xPos,yPos,zPos, result);
+        }
+
+    public IntBag getRadialNeighbors( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, IntBag result, IntBag xPos, IntBag yPos, IntBag zPos )
+        {
+        return getRadialNeighbors(x, y, z, dist, mode, includeOrigin, Grid3D.ANY, true, result, xPos, yPos, zPos);
+        }
+
+    public IntBag getRadialNeighbors( final int x, final int y, int z, final double dist, int mode, boolean includeOrigin,  int measurementRule, boolean closed,  IntBag result, IntBag xPos, IntBag yPos, IntBag zPos)
+        {
+        if( xPos == null )
+            xPos = new IntBag();
+        if( yPos == null )
+            yPos = new IntBag();
+        if( zPos == null )
+            zPos = new IntBag();
+
+        getRadialLocations( x, y, z, dist, mode, includeOrigin, measurementRule, closed, xPos, yPos, zPos );
+        return getObjectsAtLocations(xPos,yPos,zPos,result);
+        }
+
+    public IntBag getMooreNeighbors( int x, int y, int z, int dist, int mode, boolean includeOrigin )
+        {
+        return getMooreNeighbors(x, y, z, dist, mode, includeOrigin, null, null, null, null);
+        }
+
+    public IntBag getVonNeumannNeighbors( int x, int y, int z, int dist, int mode, boolean includeOrigin )
+        {
+        return getVonNeumannNeighbors(x, y, z, dist, mode, includeOrigin, null, null, null, null);
+        }
+
+    public IntBag getRadialNeighbors( final int x, final int y, int z, final double dist, int mode, boolean includeOrigin)
+        {
+        return getRadialNeighbors(x, y, z, dist, mode, includeOrigin, null, null, null, null);
+        }
+
+    /* For each <xPos,yPos,zPos> location, puts 1 or 0 into the result IntBag.  Returns the result IntBag.
+       If the provided result IntBag is null, one will be created and returned. */
+    IntBag getObjectsAtLocations(final IntBag xPos, final IntBag yPos, final IntBag zPos, IntBag result)
+        {
+        if (result==null) result = new IntBag();
+        else result.clear();
+
+        for( int i = 0 ; i < xPos.numObjs ; i++ )
+            {
+            assert sim.util.LocationLog.it(this, new Int3D(xPos.objs[i],yPos.objs[i],zPos.objs[i]));
+            result.add( get(xPos.objs[i], yPos.objs[i], zPos.objs[i]) ? 1 : 0 );
+            }
+        return result;
+        }
+
+
+    /** Visits the value at each location in the same Moore neighborhood as getMooreNeighbors(x, y, z, dist, mode, includeOrigin, result, xPos, yPos, zPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitMooreNeighbors( final int x, final int y, final int z, final int dist, int mode, boolean includeOrigin, final IntVisitor3D visitor )
+        {
+        return visitMooreLocations(x, y, z, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits the value at each location in the same von Neumann neighborhood as getVonNeumannNeighbors(x, y, z, dist, mode, includeOrigin, result, xPos, yPos, zPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitVonNeumannNeighbors( final int x, final int y, final int z, final int dist, int mode, boolean includeOrigin, final IntVisitor3D visitor )
+        {
+        return visitVonNeumannLocations(x, y, z, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits the value at each location in the same radial neighborhood as getRadialNeighbors(x, y, z, dist, mode, includeOrigin, result, xPos, yPos, zPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, final IntVisitor3D visitor )
+        {
+        return visitRadialLocations(x, y, z, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits the value at each location in the same radial neighborhood as getRadialNeighbors(x, y, z, dist, mode, includeOrigin, measurementRule, closed, result, xPos, yPos, zPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, int measurementRule, boolean closed, final IntVisitor3D visitor )
+        {
+        return visitRadialLocations(x, y, z, dist, mode, includeOrigin, measurementRule, closed, new NeighborVisitor(visitor));
+        }
+
+    // Hands the value at each location to a IntVisitor3D
+    final class NeighborVisitor implements LocationVisitor3D
+        {
+        final IntVisitor3D visitor;
+        NeighborVisitor(final IntVisitor3D visitor) { Neighborhoods.checkVisitor(visitor); this.visitor = visitor; }
+        public boolean visit(final int x, final int y, final int z)
+            {
+            assert sim.util.LocationLog.it(BooleanGrid3D.this, new Int3D(x, y, z));
+            return visitor.visit(x, y, z, get(x, y, z) ? 1 : 0);
+            }
+        }
+    }
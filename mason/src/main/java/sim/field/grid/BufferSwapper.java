@@ -0,0 +1,55 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.grid;
+import sim.engine.*;
+
+/**
+   A Steppable which swaps the buffers of one or more double-buffered grids (see BufferedGrid) each time it is stepped,
+   and optionally copies the new front buffers into the back buffers.  Schedule it repeating at an ordering later than that
+   of the agents which write into the grids, for example with schedule(state.schedule, ordering) in your start() method.
+*/
+
+public class BufferSwapper implements Steppable
+    {
+    private static final long serialVersionUID = 1;
+
+    BufferedGrid[] grids;
+    boolean copy;
+
+    /** Swaps the given grid. */
+    public BufferSwapper(BufferedGrid grid)
+        {
+        this(new BufferedGrid[] { grid }, false);
+        }
+
+    /** Swaps the given grids, in order.  If copy is true, then after each swap the grid's front buffer is also copied
+        into its back buffer: use this if your agents don't write every cell every step. */
+    public BufferSwapper(BufferedGrid[] grids, boolean copy)
+        {
+        for(int i = 0; i < grids.length; i++)
+            if (!grids[i].isBuffered())
+                throw new RuntimeException("Grid " + grids[i] + " is not double-buffered");
+        this.grids = (BufferedGrid[])(grids.clone());
+        this.copy = copy;
+        }
+
+    public void step(SimState state)
+        {
+        for(int i = 0; i < grids.length; i++)
+            {
+            grids[i].swapBuffers();
+            if (copy) grids[i].copyToBack();
+            }
+        }
+
+    /** Schedules the BufferSwapper to repeat every 1.0 units of time, at the given ordering, starting 1.0 units from
+        the schedule's present time (that is, at time 0.0 if called from start()). */
+    public Stoppable schedule(Schedule schedule, int ordering)
+        {
+        return schedule.scheduleRepeating(this, ordering, 1.0);
+        }
+    }
@@ -0,0 +1,44 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.grid;
+
+/**
+   A grid which can be double-buffered, for synchronous updating.
+
+   <p>Cellular automata and other synchronous models need each cell's new value to be computed from the
+   <i>old</i> values of its neighbors.  The usual approach is to keep two grids, write into one while reading
+   from the other, and copy one into the other every step.  A double-buffered grid does this for you without
+   the copy.  When buffered, the grid has a second array, the <b>back buffer</b>: get(...) and the public
+   <tt>field</tt> continue to read the front buffer (the old values), while set(...) writes into the back buffer.
+   Once all the new values have been written, <b>swapBuffers()</b> exchanges the two arrays in constant time,
+   so the new values become the front buffer.  Because agents only write into the back buffer during a step,
+   and only read the front, they may safely run in parallel as long as no two of them write the same cell.
+   Only set(...) is redirected: bulk operations such as setTo(...), add(...), and so on, like direct access to
+   <tt>field</tt>, act on the front buffer.  To write into the back buffer directly, use getBackField().
+
+   <p>After a swap, the back buffer holds the values from before the swap.  If your model does not write
+   every cell every step, call <b>copyToBack()</b> after swapping, so that cells which weren't written keep
+   their present values.
+
+   <p>The simplest way to swap is with a BufferSwapper scheduled at an ordering later than that of your agents.
+*/
+
+public interface BufferedGrid
+    {
+    /** Returns true if the grid is double-buffered. */
+    public boolean isBuffered();
+    
+    /** Turns double-buffering on or off.  When turned on, the back buffer starts as a copy of the grid.  When turned
+        off, the back buffer is discarded, along with anything written into it since the last swap. */
+    public void setBuffered(boolean val);
+    
+    /** Exchanges the front and back buffers.  Throws a RuntimeException if the grid is not double-buffered. */
+    public void swapBuffers();
+    
+    /** Copies the front buffer into the back buffer.  Throws a RuntimeException if the grid is not double-buffered. */
+    public void copyToBack();
+    }
@@ -0,0 +1,551 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.grid;
+import sim.util.*;
+import java.util.*;
+
+/**
+   A compact alternative to DenseGrid2D, for very large grids holding many objects per location.
+
+   <p>DenseGrid2D holds a separate Bag at every occupied location, which for millions of locations is millions of
+   small objects for the garbage collector to deal with.  CompactDenseGrid2D instead stores all its objects in a
+   single array, location after location (in "compressed sparse row" form): each location (x, y) has a region of this
+   array, beginning at an offset, and holds a count of the objects presently in its region.  Objects added to a location
+   whose region is full go into a shared <b>overflow</b> area, a linked list per location kept in a few more arrays.
+   When the overflow area grows large, the grid is <b>compacted</b>: the regions are rebuilt to fit their locations'
+   present contents, with a little room to spare, and the overflow area is emptied.  You can also compact() the grid
+   yourself, for example after loading it up.  Removing an object from a location pulls one of its overflow
+   objects, if any, back into its region.
+
+   <p>The objects at a location are not stored in a Bag, so there's no Bag to hand out.  Instead you can ask for the
+   number of objects at a location and for each one by index, copy them into a Bag of your own, or visit them.
+   The neighborhood methods work as they do in DenseGrid2D.  The order of objects at a location is arbitrary, and
+   changes as objects are added and removed.
+
+   <p>Portrayals and other code which require a DenseGrid2D can be given one with toDenseGrid2D().
+*/
+
+public class CompactDenseGrid2D extends AbstractGrid2D
+    {
+    private static final long serialVersionUID = 1;
+
+    /** Once the overflow area holds more than (width * height + size()) / OVERFLOW_RATIO + MIN_OVERFLOW objects, the grid
+        is compacted. */
+    public static final int OVERFLOW_RATIO = 8;
+
+    /** See OVERFLOW_RATIO. */
+    public static final int MIN_OVERFLOW = 64;
+
+    int numObjs;
+    Object[] objects = new Object[0];
+    int[] offset;                           // location -> start of its region; offset[cells] is the end of the last region
+    int[] count;                            // location -> number of objects in its region
+    int[] overflowHead;                     // location -> first overflow entry, or -1
+
+    // the overflow area: linked lists of objects
+    Object[] overflowObjects = new Object[16];
+    int[] overflowNext = new int[16];       // next entry in the list, or -1; for free entries, the next free entry
+    int overflowUsed;                       // entries 0 ... overflowUsed - 1 have been used at some point
+    int overflowFree = -1;                  // first free entry below overflowUsed, or -1
+    int numOverflow;
+
+    public CompactDenseGrid2D(int width, int height)
+        {
+        reshape(width, height);
+        }
+
+    /** Builds a CompactDenseGrid2D holding the same objects, at the same locations, as the given DenseGrid2D. */
+    public CompactDenseGrid2D(DenseGrid2D values)
+        {
+        setTo(values);
+        }
+
+    /** Changes the dimensions of the grid, removing all of its objects. */
+    public void reshape(int width, int height)
+        {
+        if (((long) width) * height > Integer.MAX_VALUE - 8)
+            throw new RuntimeException("A CompactDenseGrid2D of " + width + " by " + height + " is too large");
+        super.reshape(width, height);
+        final int cells = width * height;
+        offset = new int[cells + 1];
+        count = new int[cells];
+        overflowHead = new int[cells];
+        Arrays.fill(overflowHead, -1);
+        objects = new Object[0];
+        numObjs = 0;
+        clearOverflow();
+        }
+
+    void clearOverflow()
+        {
+        overflowObjects = new Object[16];
+        overflowNext = new int[16];
+        overflowUsed = 0;
+        overflowFree = -1;
+        numOverflow = 0;
+        }
+
+    /** Sets the grid to the dimensions and contents of the given DenseGrid2D. */
+    public CompactDenseGrid2D setTo(DenseGrid2D values)
+        {
+        reshape(values.width, values.height);
+        final int h = height;
+        // size the regions exactly, then fill them
+        int total = 0;
+        for(int x = 0; x < width; x++)
+            {
+            final Bag[] fieldx = values.field[x];
+            for(int y = 0; y < h; y++)
+                {
+                offset[x * h + y] = total;
+                if (fieldx[y] != null) total = addSize(total, fieldx[y].numObjs);
+                }
+            }
+        offset[width * h] = total;
+        objects = new Object[total];
+        for(int x = 0; x < width; x++)
+            {
+            final Bag[] fieldx = values.field[x];
+            for(int y = 0; y < h; y++)
+                if (fieldx[y] != null)
+                    {
+                    final int c = x * h + y;
+                    System.arraycopy(fieldx[y].objs, 0, objects, offset[c], fieldx[y].numObjs);
+                    count[c] = fieldx[y].numObjs;
+                    }
+            }
+        numObjs = total;
+        return this;
+        }
+
+    static int addSize(int a, int b)
+        {
+        if (((long) a) + b > Integer.MAX_VALUE - 8)
+            throw new RuntimeException("Too many objects for a CompactDenseGrid2D");
+        return a + b;
+        }
+
+    /** Returns a new DenseGrid2D holding the same objects, at the same locations, as this grid. */
+    public DenseGrid2D toDenseGrid2D()
+        {
+        DenseGrid2D result = new DenseGrid2D(width, height);
+        for(int x = 0; x < width; x++)
+            for(int y = 0; y < height; y++)
+                {
+                final int n = numObjectsAtLocation(x, y);
+                if (n > 0) result.field[x][y] = getObjectsAtLocation(x, y, new Bag(n));
+                }
+        return result;
+        }
+
+    /** Returns the total number of objects in the grid. */
+    public int size() { return numObjs; }
+
+    /** Returns the number of objects presently in the overflow area. */
+    public int getNumOverflow() { return numOverflow; }
+
+    /** Returns the number of objects at the given location. */
+    public int numObjectsAtLocation(final int x, final int y)
+        {
+        final int c = x * height + y;
+        int n = count[c];
+        for(int e = overflowHead[c]; e != -1; e = overflowNext[e]) n++;
+        return n;
+        }
+
+    /** Returns the number of objects at the given location. */
+    public int numObjectsAtLocation(Int2D location) { return numObjectsAtLocation(location.x, location.y); }
+
+    /** Returns the object at the given location with the given index, from 0 to numObjectsAtLocation(x, y) - 1. */
+    public Object getObjectAtLocation(final int x, final int y, int index)
+        {
+        final int c = x * height + y;
+        if (index < 0) throw new IndexOutOfBoundsException("" + index);
+        if (index < count[c]) return objects[offset[c] + index];
+        index -= count[c];
+        for(int e = overflowHead[c]; e != -1; e = overflowNext[e])
+            if (index-- == 0) return overflowObjects[e];
+        throw new IndexOutOfBoundsException("" + index);
+        }
+
+    /** Places into the result Bag (and returns it) the objects at the given location.  If the result Bag is null, one is
+        created, else it is cleared first. */
+    public Bag getObjectsAtLocation(final int x, final int y, Bag result)
+        {
+        if (result == null) result = new Bag();
+        else result.clear();
+        addObjectsAtLocation(x * height + y, result);
+        return result;
+        }
+
+    /** Places into the result Bag (and returns it) the objects at the given location.  If the result Bag is null, one is
+        created, else it is cleared first. */
+    public Bag getObjectsAtLocation(Int2D location, Bag result) { return getObjectsAtLocation(location.x, location.y, result); }
+
+    void addObjectsAtLocation(final int c, final Bag result)
+        {
+        final int n = count[c];
+        if (n > 0)
+            {
+            result.resize(result.numObjs + n);
+            System.arraycopy(objects, offset[c], result.objs, result.numObjs, n);
+            result.numObjs += n;
+            }
+        for(int e = overflowHead[c]; e != -1; e = overflowNext[e])
+            result.add(overflowObjects[e]);
+        }
+
+    /** Hands each object at the given location to the visitor.  Returns false if the visitor stopped the traversal early,
+        else true.  The visitor must not modify the grid. */
+    public boolean visitObjectsAtLocation(final int x, final int y, final ObjectVisitor2D visitor)
+        {
+        final int c = x * height + y;
+        final int start = offset[c];
+        final int end = start + count[c];
+        for(int i = start; i < end; i++)
+            if (!visitor.visit(x, y, objects[i])) return false;
+        for(int e = overflowHead[c]; e != -1; e = overflowNext[e])
+            if (!visitor.visit(x, y, overflowObjects[e])) return false;
+        return true;
+        }
+
+
+    //// ADDING AND REMOVING
+
+    /** Adds an object to the given location. */
+    public void addObjectToLocation(final Object obj, final int x, final int y)
+        {
+        final int c = x * height + y;
+        if (offset[c] + count[c] < offset[c + 1])
+            objects[offset[c] + count[c]++] = obj;
+        else addOverflow(c, obj);
+        numObjs++;
+        }
+
+    /** Adds an object to the given location. */
+    public void addObjectToLocation(final Object obj, Int2D location) { addObjectToLocation(obj, location.x, location.y); }
+
+    /** Adds the objects in the Bag to the given location. */
+    public void addObjectsToLocation(final Bag objs, final int x, final int y)
+        {
+        if (objs == null) return;
+        for(int i = 0; i < objs.numObjs; i++)
+            addObjectToLocation(objs.objs[i], x, y);
+        }
+
+    /** Adds the objects in the Bag to the given location. */
+    public void addObjectsToLocation(final Bag objs, Int2D location) { addObjectsToLocation(objs, location.x, location.y); }
+
+    void addOverflow(final int c, final Object obj)
+        {
+        if (numOverflow >= (((long) width) * height + numObjs) / OVERFLOW_RATIO + MIN_OVERFLOW)
+            {
+            compact();
+            if (offset[c] + count[c] < offset[c + 1])     // compaction left room
+                {
+                objects[offset[c] + count[c]++] = obj;
+                return;
+                }
+            }
+        int e;
+        if (overflowFree != -1)
+            {
+            e = overflowFree;
+            overflowFree = overflowNext[e];
+            }
+        else
+            {
+            if (overflowUsed == overflowObjects.length)
+                {
+                final int len = overflowObjects.length * 2;
+                Object[] o = new Object[len];
+                System.arraycopy(overflowObjects, 0, o, 0, overflowUsed);
+                overflowObjects = o;
+                int[] n = new int[len];
+                System.arraycopy(overflowNext, 0, n, 0, overflowUsed);
+                overflowNext = n;
+                }
+            e = overflowUsed++;
+            }
+        overflowObjects[e] = obj;
+        overflowNext[e] = overflowHead[c];
+        overflowHead[c] = e;
+        numOverflow++;
+        }
+
+    // frees the overflow entry e, whose predecessor in its list is prev (or -1 if e is the head of location c's list)
+    void removeOverflow(final int c, final int e, final int prev)
+        {
+        if (prev == -1) overflowHead[c] = overflowNext[e];
+        else overflowNext[prev] = overflowNext[e];
+        overflowObjects[e] = null;
+        overflowNext[e] = overflowFree;
+        overflowFree = e;
+        numOverflow--;
+        }
+
+    static boolean same(final Object a, final Object b)
+        {
+        return (a == null ? b == null : a == b || a.equals(b));
+        }
+
+    // removes the object at position i of location c's region, refilling the region from the overflow area if possible
+    void removeFromRegion(final int c, final int i)
+        {
+        final int last = offset[c] + --count[c];
+        objects[i] = objects[last];
+        objects[last] = null;
+        final int e = overflowHead[c];
+        if (e != -1)
+            {
+            objects[last] = overflowObjects[e];
+            count[c]++;
+            removeOverflow(c, e, -1);
+            }
+        numObjs--;
+        }
+
+    /** Removes one instance of the object (or an object equal to it) from the given location, returning true if there
+        was one there. */
+    public boolean removeObjectAtLocation(final Object obj, final int x, final int y)
+        {
+        final int c = x * height + y;
+        final int start = offset[c];
+        final int end = start + count[c];
+        for(int i = start; i < end; i++)
+            if (same(obj, objects[i]))
+                {
+                removeFromRegion(c, i);
+                return true;
+                }
+        int prev = -1;
+        for(int e = overflowHead[c]; e != -1; prev = e, e = overflowNext[e])
+            if (same(obj, overflowObjects[e]))
+                {
+                removeOverflow(c, e, prev);
+                numObjs--;
+                return true;
+                }
+        return false;
+        }
+
+    /** Removes one instance of the object (or an object equal to it) from the given location, returning true if there
+        was one there. */
+    public boolean removeObjectAtLocation(final Object obj, Int2D location) { return removeObjectAtLocation(obj, location.x, location.y); }
+
+    /** Removes every instance of the object (or objects equal to it) from the given location, returning true if there
+        were any there. */
+    public boolean removeObjectMultiplyAtLocation(final Object obj, final int x, final int y)
+        {
+        boolean result = false;
+        while(removeObjectAtLocation(obj, x, y)) result = true;
+        return result;
+        }
+
+    /** Removes every instance of the object (or objects equal to it) from the given location, returning true if there
+        were any there. */
+    public boolean removeObjectMultiplyAtLocation(final Object obj, Int2D location) { return removeObjectMultiplyAtLocation(obj, location.x, location.y); }
+
+    /** Removes all the objects stored at the given location and returns them as a Bag (which you are free to modify),
+        or returns null if there were no objects there. */
+    public Bag removeObjectsAtLocation(final int x, final int y)
+        {
+        final int c = x * height + y;
+        if (count[c] == 0 && overflowHead[c] == -1) return null;
+        Bag result = getObjectsAtLocation(x, y, null);
+        Arrays.fill(objects, offset[c], offset[c] + count[c], null);
+        count[c] = 0;
+        while(overflowHead[c] != -1)
+            removeOverflow(c, overflowHead[c], -1);
+        numObjs -= result.numObjs;
+        return result;
+        }
+
+    /** Removes all the objects stored at the given location and returns them as a Bag (which you are free to modify),
+        or returns null if there were no objects there. */
+    public Bag removeObjectsAtLocation(Int2D location) { return removeObjectsAtLocation(location.x, location.y); }
+
+    /** If the object is not at [fromX, fromY], then it's simply inserted into [toX, toY], and FALSE is returned.
+        Else it is removed ONCE from [fromX, fromY] and inserted into [toX, toY] and TRUE is returned.
+        If the object exists multiply at [fromX, fromY], only one instance of the object is moved.*/
+    public boolean moveObject(final Object obj, final int fromX, final int fromY, final int toX, final int toY)
+        {
+        boolean result = removeObjectAtLocation(obj, fromX, fromY);
+        addObjectToLocation(obj, toX, toY);
+        return result;
+        }
+
+    /** If the object is not at [fromX, fromY], then it's simply inserted into [toX, toY], and FALSE is returned.
+        Else it is removed ONCE from [fromX, fromY] and inserted into [toX, toY] and TRUE is returned.
+        If the object exists multiply at [fromX, fromY], only one instance of the object is moved.*/
+    public boolean moveObject(final Object obj, Int2D from, Int2D to) { return moveObject(obj, from.x, from.y, to.x, to.y); }
+
+    /** Moves all the objects at [fromX, fromY] to [toX, toY]. */
+    public void moveObjects(final int fromX, final int fromY, final int toX, final int toY)
+        {
+        addObjectsToLocation(removeObjectsAtLocation(fromX, fromY), toX, toY);
+        }
+
+    /** Moves all the objects at [fromX, fromY] to [toX, toY]. */
+    public void moveObjects(Int2D from, Int2D to) { moveObjects(from.x, from.y, to.x, to.y); }
+
+    /** Removes all the objects in the grid and returns them as a Bag (which you are free to modify). */
+    public Bag clear()
+        {
+        Bag result = new Bag(numObjs);
+        for(int c = 0; c < count.length; c++)
+            addObjectsAtLocation(c, result);
+        reshape(width, height);
+        return result;
+        }
+
+    /** Rebuilds the regions so that each location's region holds its present objects with a little room to spare
+        (a quarter as much again), and empties the overflow area. */
+    public void compact()
+        {
+        final int cells = count.length;
+        final int[] newOffset = new int[cells + 1];
+        int total = 0;
+        for(int c = 0; c < cells; c++)
+            {
+            newOffset[c] = total;
+            int n = count[c];
+            for(int e = overflowHead[c]; e != -1; e = overflowNext[e]) n++;
+            total = addSize(total, n + (n + 3) / 4);
+            }
+        newOffset[cells] = total;
+
+        final Object[] newObjects = new Object[total];
+        for(int c = 0; c < cells; c++)
+            {
+            int n = count[c];
+            final int start = newOffset[c];
+            System.arraycopy(objects, offset[c], newObjects, start, n);
+            for(int e = overflowHead[c]; e != -1; e = overflowNext[e])
+                newObjects[start + n++] = overflowObjects[e];
+            count[c] = n;
+            overflowHead[c] = -1;
+            }
+        objects = newObjects;
+        offset = newOffset;
+        clearOverflow();
+        }
+
+
+    //// NEIGHBORHOODS
+
+    /** For each <xPos,yPos> location, puts all such objects into the result bag.  Returns the result bag.
+        If the provided result bag is null, one will be created and returned. */
+    public Bag getObjectsAtLocations(final IntBag xPos, final IntBag yPos, Bag result)
+        {
+        if (result==null) result = new Bag();
+        else result.clear();
+
+        final int len = xPos.numObjs;
+        final int[] xs = xPos.objs;
+        final int[] ys = yPos.objs;
+        final int height = this.height;
+        for(int i=0; i < len; i++)
+            addObjectsAtLocation(xs[i] * height + ys[i], result);
+        return result;
+        }
+
+    /** Places into the result Bag (and returns it) all the objects in the Moore neighborhood of (x, y), as in
+        DenseGrid2D.getMooreNeighbors(...).  The locations of the neighborhood are placed in xPos and yPos.  Null may be
+        passed in for any of the bags. */
+    public Bag getMooreNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, Bag result, IntBag xPos, IntBag yPos )
+        {
+        if( xPos == null )
+            xPos = new IntBag();
+        if( yPos == null )
+            yPos = new IntBag();
+
+        getMooreLocations( x, y, dist, mode, includeOrigin, xPos, yPos );
+        return getObjectsAtLocations(xPos,yPos,result);
+        }
+
+    /** Places into the result Bag (and returns it) all the objects in the von Neumann neighborhood of (x, y), as in
+        DenseGrid2D.getVonNeumannNeighbors(...).  The locations of the neighborhood are placed in xPos and yPos.  Null may be
+        passed in for any of the bags. */
+    public Bag getVonNeumannNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, Bag result, IntBag xPos, IntBag yPos )
+        {
+        if( xPos == null )
+            xPos = new IntBag();
+        if( yPos == null )
+            yPos = new IntBag();
+
+        getVonNeumannLocations( x, y, dist, mode, includeOrigin, xPos, yPos );
+        return getObjectsAtLocations(xPos,yPos,result);
+        }
+
+    /** Places into the result Bag (and returns it) all the objects in the hexagonal neighborhood of (x, y), as in
+        DenseGrid2D.getHexagonalNeighbors(...).  The locations of the neighborhood are placed in xPos and yPos.  Null may be
+        passed in for any of the bags. */
+    public Bag getHexagonalNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, Bag result, IntBag xPos, IntBag yPos )
+        {
+        if( xPos == null )
+            xPos = new IntBag();
+        if( yPos == null )
+            yPos = new IntBag();
+
+        getHexagonalLocations( x, y, dist, mode, includeOrigin, xPos, yPos );
+        return getObjectsAtLocations(xPos,yPos,result);
+        }
+
+    /** Places into the result Bag (and returns it) all the objects in the radial neighborhood of (x, y), as in
+        DenseGrid2D.getRadialNeighbors(...).  The locations of the neighborhood are placed in xPos and yPos.  Null may be
+        passed in for any of the bags. */
+    public Bag getRadialNeighbors( final int x, final int y, final double dist, int mode, boolean includeOrigin, Bag result, IntBag xPos, IntBag yPos )
+        {
+        if( xPos == null )
+            xPos = new IntBag();
+        if( yPos == null )
+            yPos = new IntBag();
+
+        getRadialLocations( x, y, dist, mode, includeOrigin, xPos, yPos );
+        return getObjectsAtLocations(xPos,yPos,result);
+        }
+
+    /** Visits each object at each location in the same Moore neighborhood as getMooreNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitMooreNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final ObjectVisitor2D visitor )
+        {
+        return visitMooreLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits each object at each location in the same von Neumann neighborhood as getVonNeumannNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitVonNeumannNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final ObjectVisitor2D visitor )
+        {
+        return visitVonNeumannLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits each object at each location in the same hexagonal neighborhood as getHexagonalNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitHexagonalNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final ObjectVisitor2D visitor )
+        {
+        return visitHexagonalLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits each object at each location in the same radial neighborhood as getRadialNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final double dist, int mode, boolean includeOrigin, final ObjectVisitor2D visitor )
+        {
+        return visitRadialLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    // Hands each object at each location to an ObjectVisitor2D
+    final class NeighborVisitor implements LocationVisitor2D
+        {
+        final ObjectVisitor2D visitor;
+        NeighborVisitor(final ObjectVisitor2D visitor) { Neighborhoods.checkVisitor(visitor); this.visitor = visitor; }
+        public boolean visit(final int x, final int y)
+            {
+            return visitObjectsAtLocation(x, y, visitor);
+            }
+        }
+    }
@@ -924,6 +924,55 @@ public class DenseGrid2D extends AbstractGrid2D
         }
 
 
+    /** Visits each object at each location in the same Moore neighborhood as getMooreNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitMooreNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final ObjectVisitor2D visitor )
+        {
+        return visitMooreLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
 
+    /** Visits each object at each location in the same von Neumann neighborhood as getVonNeumannNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitVonNeumannNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final ObjectVisitor2D visitor )
+        {
+        return visitVonNeumannLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
 
+    /** Visits each object at each location in the same hexagonal neighborhood as getHexagonalNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitHexagonalNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final ObjectVisitor2D visitor )
+        {
+        return visitHexagonalLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits each object at each location in the same radial neighborhood as getRadialNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final double dist, int mode, boolean includeOrigin, final ObjectVisitor2D visitor )
+        {
+        return visitRadialLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits each object at each location in the same radial neighborhood as getRadialNeighbors(x, y, dist, mode, includeOrigin, measurementRule, closed, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final double dist, int mode, boolean includeOrigin, int measurementRule, boolean closed, final ObjectVisitor2D visitor )
+        {
+        return visitRadialLocations(x, y, dist, mode, includeOrigin, measurementRule, closed, new NeighborVisitor(visitor));
+        }
+
+    // Hands each object at each location to an ObjectVisitor2D
+    final class NeighborVisitor implements LocationVisitor2D
+        {
+        final ObjectVisitor2D visitor;
+        NeighborVisitor(final ObjectVisitor2D visitor) { Neighborhoods.checkVisitor(visitor); this.visitor = visitor; }
+        public boolean visit(final int x, final int y)
+            {
+            Bag bag = field[x][y];
+            if (bag == null) return true;
+            final Object[] objs = bag.objs;
+            final int len = bag.numObjs;
+            for(int i = 0; i < len; i++)
+                if (!visitor.visit(x, y, objs[i])) return false;
+            return true;
+            }
+        }
     }
@@ -859,6 +859,48 @@ public class DenseGrid3D extends AbstractGrid3D
         }
 
 
+    /** Visits each object at each location in the same Moore neighborhood as getMooreNeighbors(x, y, z, dist, mode, includeOrigin, result, xPos, yPos, zPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitMooreNeighbors( final int x, final int y, final int z, final int dist, int mode, boolean includeOrigin, final ObjectVisitor3D visitor )
+        {
+        return visitMooreLocations(x, y, z, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits each object at each location in the same von Neumann neighborhood as getVonNeumannNeighbors(x, y, z, dist, mode, includeOrigin, result, xPos, yPos, zPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitVonNeumannNeighbors( final int x, final int y, final int z, final int dist, int mode, boolean includeOrigin, final ObjectVisitor3D visitor )
+        {
+        return visitVonNeumannLocations(x, y, z, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits each object at each location in the same radial neighborhood as getRadialNeighbors(x, y, z, dist, mode, includeOrigin, result, xPos, yPos, zPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, final ObjectVisitor3D visitor )
+        {
+        return visitRadialLocations(x, y, z, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
 
+    /** Visits each object at each location in the same radial neighborhood as getRadialNeighbors(x, y, z, dist, mode, includeOrigin, measurementRule, closed, result, xPos, yPos, zPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, int measurementRule, boolean closed, final ObjectVisitor3D visitor )
+        {
+        return visitRadialLocations(x, y, z, dist, mode, includeOrigin, measurementRule, closed, new NeighborVisitor(visitor));
+        }
 
+    // Hands each object at each location to an ObjectVisitor3D
+    final class NeighborVisitor implements LocationVisitor3D
+        {
+        final ObjectVisitor3D visitor;
+        NeighborVisitor(final ObjectVisitor3D visitor) { Neighborhoods.checkVisitor(visitor); this.visitor = visitor; }
+        public boolean visit(final int x, final int y, final int z)
+            {
+            Bag bag = field[x][y][z];
+            if (bag == null) return true;
+            final Object[] objs = bag.objs;
+            final int len = bag.numObjs;
+            for(int i = 0; i < len; i++)
+                if (!visitor.visit(x, y, z, objs[i])) return false;
+            return true;
+            }
+        }
     }
@@ -0,0 +1,176 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.grid;
+import sim.util.*;
+import java.util.*;
+
+/**
+   A LocationMap for 2D locations which stores every location inside a given width and height in a flat
+   array of cells, indexed as x * height + y, rather than hashing it.  Locations outside those bounds
+   (SparseGrid2D permits any location at all) fall back to the ordinary LocationMap hash table.
+
+   <p>DenseLocationMap is what SparseGrid2D uses for its objectHash in dense storage mode.  When a large
+   fraction of the grid is occupied it is both faster and smaller than hashing, but it always costs one
+   reference per cell of the grid, no matter how few cells are occupied.  It accepts the same keys as LocationMap.
+*/
+
+public class DenseLocationMap extends LocationMap
+    {
+    private static final long serialVersionUID = 1;
+
+    final int width;
+    final int height;
+    final Object[] cells;
+    int cellCount;
+
+    /** Builds an empty map whose locations from (0,0) to (width-1, height-1) are stored densely. */
+    public DenseLocationMap(int width, int height)
+        {
+        super(false);
+        if (width < 0 || height < 0)
+            throw new RuntimeException("DenseLocationMap width and height must be non-negative: " + width + ", " + height);
+        if (((long) width) * height > Integer.MAX_VALUE - 8)
+            throw new RuntimeException("DenseLocationMap of " + width + " by " + height + " is too large to store densely");
+        this.width = width;
+        this.height = height;
+        cells = new Object[width * height];
+        }
+
+    /** Builds a map whose locations from (0,0) to (width-1, height-1) are stored densely, holding the contents of another map. */
+    public DenseLocationMap(int width, int height, Map other)
+        {
+        this(width, height);
+        putAll(other);
+        }
+
+    /** Builds a copy of another DenseLocationMap.  The values themselves are not copied. */
+    public DenseLocationMap(DenseLocationMap other)
+        {
+        super(other);
+        width = other.width;
+        height = other.height;
+        cells = (Object[]) other.cells.clone();
+        cellCount = other.cellCount;
+        }
+
+    /** Returns the width of the densely stored region. */
+    public int getWidth() { return width; }
+
+    /** Returns the height of the densely stored region. */
+    public int getHeight() { return height; }
+
+    public Object get(final int x, final int y)
+        {
+        if (x >= 0 && x < width && y >= 0 && y < height)
+            return cells[x * height + y];
+        return super.get(x, y);
+        }
+
+    public Object put(final int x, final int y, final Object value)
+        {
+        if (x >= 0 && x < width && y >= 0 && y < height)
+            {
+            if (value == null) throw new IllegalArgumentException("LocationMap does not permit null values");
+            final int i = x * height + y;
+            final Object old = cells[i];
+            cells[i] = value;
+            if (old == null) cellCount++;
+            return old;
+            }
+        return super.put(x, y, value);
+        }
+
+    public Object remove(final int x, final int y)
+        {
+        if (x >= 0 && x < width && y >= 0 && y < height)
+            {
+            final int i = x * height + y;
+            final Object old = cells[i];
+            if (old != null) { cells[i] = null; cellCount--; }
+            return old;
+            }
+        return super.remove(x, y);
+        }
+
+    public int size() { return cellCount + super.size(); }
+
+    public boolean isEmpty() { return size() == 0; }
+
+    public boolean containsKey(Object key) { return get(key) != null; }
+
+    public Object get(Object key)
+        {
+        key = intKey(key);
+        if (key instanceof Int2D) { Int2D k = (Int2D) key; return get(k.x, k.y); }
+        else if (key instanceof MutableInt2D) { MutableInt2D k = (MutableInt2D) key; return get(k.x, k.y); }
+        return null;
+        }
+
+    public Object put(Object key, Object value)
+        {
+        Object k = intKey(key);
+        if (k instanceof Int2D) { Int2D l = (Int2D) k; return put(l.x, l.y, value); }
+        else if (k instanceof MutableInt2D) { MutableInt2D l = (MutableInt2D) k; return put(l.x, l.y, value); }
+        throw new IllegalArgumentException("LocationMap keys must be Int2D or MutableInt2D, or Double2D or MutableDouble2D with integer coordinates: " + key);
+        }
+
+    public Object remove(Object key)
+        {
+        key = intKey(key);
+        if (key instanceof Int2D) { Int2D k = (Int2D) key; return remove(k.x, k.y); }
+        else if (key instanceof MutableInt2D) { MutableInt2D k = (MutableInt2D) key; return remove(k.x, k.y); }
+        return null;
+        }
+
+    public void clear()
+        {
+        Arrays.fill(cells, null);
+        cellCount = 0;
+        super.clear();
+        }
+
+    public Set entrySet()
+        {
+        final Set overflow = super.entrySet();
+        return new AbstractSet()
+            {
+            public int size() { return DenseLocationMap.this.size(); }
+            public Iterator iterator()
+                {
+                return new Iterator()
+                    {
+                    int next = advance(0);
+                    Iterator rest = null;
+                    int advance(int i) { while (i < cells.length && cells[i] == null) i++; return i; }
+                    public boolean hasNext()
+                        {
+                        if (next < cells.length) return true;
+                        if (rest == null) rest = overflow.iterator();
+                        return rest.hasNext();
+                        }
+                    public Object next()
+                        {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        if (rest != null) return rest.next();
+                        final int i = next;
+                        next = advance(i + 1);
+                        return new AbstractMap.SimpleEntry(new Int2D(i / height, i % height), cells[i])
+                            {
+                            public Object setValue(Object value)
+                                {
+                                if (value == null) throw new IllegalArgumentException("LocationMap does not permit null values");
+                                cells[i] = value;
+                                return super.setValue(value);
+                                }
+                            };
+                        }
+                    public void remove() { throw new UnsupportedOperationException("Remove not supported in LocationMap iterators"); }
+                    };
+                }
+            };
+        }
+    }
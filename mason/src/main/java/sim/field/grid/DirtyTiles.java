@@ -0,0 +1,127 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.grid;
+import sim.util.*;
+
+/**
+   Records which square tiles of a 2D grid have changed, so that consumers such as portrayals, checkpointers,
+   or communication code can deal with just those tiles rather than rescanning the whole grid.
+
+   <p>You don't usually make a DirtyTiles yourself: instead, call buildDirtyTiles(tileSize) on a DoubleGrid2D, IntGrid2D,
+   ObjectGrid2D, or SparseGrid2D, and the grid will mark tiles as it is changed.  The grid is divided into tiles
+   tileSize by tileSize in size, where tileSize is a power of two: tile (i, j) holds the cells from (i * tileSize, j * tileSize)
+   up to, but not including, ((i + 1) * tileSize, (j + 1) * tileSize).
+
+   <p><b>Epochs.</b>  Rather than a single dirty bit per tile, which only one consumer could clear, each tile holds the
+   <b>epoch</b> at which it was last changed.  A consumer calls <b>checkpoint()</b>, which starts a new epoch and returns its
+   number, and holds onto that number.  Later on, the tiles which have changed since then are those which are
+   isDirty(tileX, tileY, number).  Any number of consumers may do this independently.  To a new consumer, which passes in 0,
+   every tile is dirty.
+
+   <p>Only changes made through the grid's own methods are recorded: if you write into a grid's <tt>field</tt> array
+   directly, call mark(x, y) yourself.  Bulk operations on a grid, such as setTo(...) or multiply(...), mark every tile,
+   as does swapping the buffers of a double-buffered grid.
+*/
+
+public class DirtyTiles implements java.io.Serializable
+    {
+    private static final long serialVersionUID = 1;
+
+    int width;
+    int height;
+    final int tileSize;
+    final int shift;
+    int tilesWide;
+    int tilesHigh;
+    int[] stamps;           // tile (i, j) is at i * tilesHigh + j
+    int outside;            // epoch of the last change outside the bounds of the grid
+    int epoch = 1;
+
+    /** Builds a DirtyTiles for a grid of the given width and height.  The tileSize must be a power of two.  Initially all
+        tiles are dirty. */
+    public DirtyTiles(int width, int height, int tileSize)
+        {
+        if (tileSize <= 0 || (tileSize & (tileSize - 1)) != 0)
+            throw new RuntimeException("Tile size must be a positive power of two: " + tileSize);
+        this.tileSize = tileSize;
+        shift = Integer.numberOfTrailingZeros(tileSize);
+        reshape(width, height);
+        }
+
+    /** Changes the size of the grid, marking every tile. */
+    public void reshape(int width, int height)
+        {
+        if (width < 0 || height < 0)
+            throw new RuntimeException("Width and height must be non-negative: " + width + ", " + height);
+        this.width = width;
+        this.height = height;
+        tilesWide = (int)((width + (long) tileSize - 1) >> shift);
+        tilesHigh = (int)((height + (long) tileSize - 1) >> shift);
+        stamps = new int[tilesWide * tilesHigh];
+        markAll();
+        }
+
+    public int getTileSize() { return tileSize; }
+
+    /** Returns the number of tiles across the grid. */
+    public int getTilesWide() { return tilesWide; }
+
+    /** Returns the number of tiles down the grid. */
+    public int getTilesHigh() { return tilesHigh; }
+
+    /** Returns the present epoch, at which changes are presently being marked. */
+    public int getEpoch() { return epoch; }
+
+    /** Starts a new epoch and returns it.  Tiles changed from now on will be isDirty(..., ..., returned value). */
+    public int checkpoint() { return ++epoch; }
+
+    /** Marks the tile holding cell (x, y).  Cells outside the grid are recorded together: see isOutsideDirty(...). */
+    public final void mark(final int x, final int y)
+        {
+        if (x >= 0 && x < width && y >= 0 && y < height)
+            stamps[(x >> shift) * tilesHigh + (y >> shift)] = epoch;
+        else outside = epoch;
+        }
+
+    /** Marks every tile, and the region outside the grid. */
+    public void markAll()
+        {
+        java.util.Arrays.fill(stamps, epoch);
+        outside = epoch;
+        }
+
+    /** Returns true if the given tile has changed since the given epoch (inclusive). */
+    public boolean isDirty(int tileX, int tileY, int since)
+        {
+        return stamps[tileX * tilesHigh + tileY] >= since;
+        }
+
+    /** Returns true if any cell outside the bounds of the grid has changed since the given epoch (inclusive).
+        This only happens with unbounded grids, such as SparseGrid2D. */
+    public boolean isOutsideDirty(int since)
+        {
+        return outside >= since;
+        }
+
+    /** Places into the given IntBags (and clears them first) the tile x and y coordinates of every tile which has changed
+        since the given epoch (inclusive), and returns their number. */
+    public int getDirtyTiles(int since, IntBag tileXs, IntBag tileYs)
+        {
+        tileXs.clear();
+        tileYs.clear();
+        final int[] stamps = this.stamps;
+        int i = 0;
+        for(int x = 0; x < tilesWide; x++)
+            for(int y = 0; y < tilesHigh; y++)
+                if (stamps[i++] >= since)
+                    {
+                    tileXs.add(x);
+                    tileYs.add(y);
+                    }
+        return tileXs.numObjs;
+        }
+    }
@@ -17,11 +17,17 @@ import sim.util.*;
     <p>The width and height of the object are provided to avoid having to say field[x].length, etc.  
 */
 
-public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D
+public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D implements BufferedGrid
     {
     private static final long serialVersionUID = 1;
 
     public double[/**x*/][/**y*/] field;
+
+    /** The back buffer, or null if the grid is not double-buffered (see BufferedGrid). */
+    double[][] back;
+
+    /** Records which tiles of the grid have changed, or null.  See buildDirtyTiles(...). */
+    DirtyTiles dirty;
     
     public double[][] getField() { return field; }
     
@@ -42,6 +48,8 @@ public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D
         {
         super.reshape(width, height);
         field = new double[width][height];
+        if (back != null) back = new double[width][height];
+        if (dirty != null) dirty.reshape(width, height);
         }
         
     public DoubleGrid2D (DoubleGrid2D values)
@@ -54,12 +62,78 @@ public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D
         setTo(values);
         }
         
-    /** Sets location (x,y) to val */
+    /** Sets location (x,y) to val.  If the grid is double-buffered, val is written into the back buffer. */
     public final void set(final int x, final int y, final double val)
         {
-        field[x][y] = val;
+        if (back != null) back[x][y] = val;
+        else field[x][y] = val;
+        if (dirty != null) dirty.mark(x, y);
         }
     
+    public boolean isBuffered() { return back != null; }
+
+    /** Returns the back buffer, into which set(...) writes when the grid is double-buffered, or null if it is not.  You may
+        write into it directly, but it changes every time the buffers are swapped. */
+    public double[][] getBackField() { return back; }
+
+    public void setBuffered(boolean val)
+        {
+        if (!val) back = null;
+        else if (back == null)
+            {
+            back = new double[width][height];
+            copyToBack();
+            }
+        }
+
+    void checkBuffered()
+        {
+        if (back == null)
+            throw new RuntimeException("DoubleGrid2D is not double-buffered");
+        if (back.length != field.length || (back.length > 0 && back[0].length != field[0].length))
+            throw new RuntimeException("DoubleGrid2D was replaced with a field of a different size while double-buffered.  Call setBuffered(false) and then setBuffered(true) to rebuild the back buffer.");
+        }
+
+    public void swapBuffers()
+        {
+        checkBuffered();
+        final double[][] f = field;
+        field = back;
+        back = f;
+        markAllDirty();
+        }
+
+    public void copyToBack()
+        {
+        checkBuffered();
+        final double[][] field = this.field;
+        final double[][] back = this.back;
+        for(int x = 0; x < field.length; x++)
+            System.arraycopy(field[x], 0, back[x], 0, field[x].length);
+        }
+
+    /** Starts recording which tiles of the grid change (see DirtyTiles), replacing any earlier DirtyTiles.  From then on
+        set(...) marks the tile holding the cell, and bulk operations mark every tile.  The tileSize must be a power of two. */
+    public DirtyTiles buildDirtyTiles(int tileSize)
+        {
+        dirty = new DirtyTiles(width, height, tileSize);
+        return dirty;
+        }
+
+    /** Returns the DirtyTiles recording changes to the grid, or null if there isn't one. */
+    public DirtyTiles getDirtyTiles() { return dirty; }
+
+    /** Stops recording which tiles of the grid change. */
+    public void removeDirtyTiles() { dirty = null; }
+
+    // marks every tile after a bulk change, first resizing the tiles if the grid has changed size
+    void markAllDirty()
+        {
+        if (dirty == null) return;
+        if (dirty.width != width || dirty.height != height) dirty.reshape(width, height);
+        else dirty.markAll();
+        }
+
     /** Returns the element at location (x,y) */
     public final double get(final int x, final int y)
         {
@@ -69,6 +143,7 @@ public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D
     /** Sets all the locations in the grid the provided element */
     public final DoubleGrid2D setTo(final double thisMuch)
         {
+        markAllDirty();
         if (isDistributed())
             {
             int w = getWidth();
@@ -126,6 +201,7 @@ public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D
             for (int i = 0; i < w; i++)
                 this.field[i] = (double[]) field[i].clone();
             }
+        markAllDirty();
         return this;
         }
 
@@ -159,6 +235,7 @@ public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D
             for(int x =0 ; x < width; x++)
                 System.arraycopy(values.field[x],0,field[x],0,height);
             }
+        markAllDirty();
         return this;
         }
 
@@ -291,6 +368,7 @@ public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D
     */
     public final DoubleGrid2D upperBound(final double toNoMoreThanThisMuch)
         {
+        markAllDirty();
         if (isDistributed())
             {
             int w = getWidth();
@@ -322,6 +400,7 @@ public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D
     */
     public final DoubleGrid2D lowerBound(final double toNoLowerThanThisMuch)
         {
+        markAllDirty();
         if (isDistributed())
             {
             int w = getWidth();
@@ -353,6 +432,7 @@ public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D
     */
     public final DoubleGrid2D add(final double withThisMuch)
         {
+        markAllDirty();
 
         if (isDistributed())
             {
@@ -383,6 +463,7 @@ public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D
     */
     public final DoubleGrid2D add(final IntGrid2D withThis)
         {
+        markAllDirty();
         checkBounds(withThis);
         if (isDistributed())
             {
@@ -416,6 +497,7 @@ public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D
     */
     public final DoubleGrid2D add(final DoubleGrid2D withThis)
         {
+        markAllDirty();
         checkBounds(withThis);
         if (isDistributed())
             {
@@ -450,6 +532,7 @@ public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D
     public final DoubleGrid2D multiply(final double byThisMuch)
         {
         if (byThisMuch==1.0) return this;
+        markAllDirty();
         if (isDistributed())
             {
             int w = getWidth();
@@ -480,6 +563,7 @@ public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D
     */
     public final DoubleGrid2D multiply(final IntGrid2D withThis)
         {
+        markAllDirty();
         checkBounds(withThis);
         if (isDistributed())
             {
@@ -514,6 +598,7 @@ public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D
     */
     public final DoubleGrid2D multiply(final DoubleGrid2D withThis)
         {
+        markAllDirty();
         checkBounds(withThis);
         if (isDistributed())
             {
@@ -548,6 +633,7 @@ public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D
 
     public final DoubleGrid2D floor()
         {
+        markAllDirty();
         if (isDistributed())
             {
             int w = getWidth();
@@ -575,6 +661,7 @@ public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D
     */
     public final DoubleGrid2D ceiling()
         {
+        markAllDirty();
         if (isDistributed())
             {
             int w = getWidth();
@@ -603,6 +690,7 @@ public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D
     */
     public final DoubleGrid2D  truncate()
         {
+        markAllDirty();
         if (isDistributed())
             {
             int w = getWidth();
@@ -636,6 +724,7 @@ public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D
     */
     public final DoubleGrid2D  rint()
         {
+        markAllDirty();
         if (isDistributed())
             {
             int w = getWidth();
@@ -666,6 +755,7 @@ public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D
 
     public final void replaceAll(double from, double to)
         {
+        markAllDirty();
         if (isDistributed())
             {
             int w = getWidth();
@@ -1239,5 +1329,50 @@ public /*strictfp*/ class DoubleGrid2D extends AbstractGrid2D
         }
 
 
+    /** Visits the value at each location in the same Moore neighborhood as getMooreNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitMooreNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final DoubleVisitor2D visitor )
+        {
+        return visitMooreLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits the value at each location in the same von Neumann neighborhood as getVonNeumannNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitVonNeumannNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final DoubleVisitor2D visitor )
+        {
+        return visitVonNeumannLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits the value at each location in the same hexagonal neighborhood as getHexagonalNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitHexagonalNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final DoubleVisitor2D visitor )
+        {
+        return visitHexagonalLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits the value at each location in the same radial neighborhood as getRadialNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final double dist, int mode, boolean includeOrigin, final DoubleVisitor2D visitor )
+        {
+        return visitRadialLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
 
+    /** Visits the value at each location in the same radial neighborhood as getRadialNeighbors(x, y, dist, mode, includeOrigin, measurementRule, closed, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final double dist, int mode, boolean includeOrigin, int measurementRule, boolean closed, final DoubleVisitor2D visitor )
+        {
+        return visitRadialLocations(x, y, dist, mode, includeOrigin, measurementRule, closed, new NeighborVisitor(visitor));
+        }
+
+    // Hands the value at each location to a DoubleVisitor2D
+    final class NeighborVisitor implements LocationVisitor2D
+        {
+        final DoubleVisitor2D visitor;
+        NeighborVisitor(final DoubleVisitor2D visitor) { Neighborhoods.checkVisitor(visitor); this.visitor = visitor; }
+        public boolean visit(final int x, final int y)
+            {
+            assert sim.util.LocationLog.it(DoubleGrid2D.this, new Int2D(x, y));
+            return visitor.visit(x, y, get(x, y));
+            }
+        }
     }
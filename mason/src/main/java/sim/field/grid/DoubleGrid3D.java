@@ -1167,6 +1167,43 @@ public /*strictfp*/ class DoubleGrid3D extends AbstractGrid3D
         }
 
 
+    /** Visits the value at each location in the same Moore neighborhood as getMooreNeighbors(x, y, z, dist, mode, includeOrigin, result, xPos, yPos, zPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitMooreNeighbors( final int x, final int y, final int z, final int dist, int mode, boolean includeOrigin, final DoubleVisitor3D visitor )
+        {
+        return visitMooreLocations(x, y, z, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits the value at each location in the same von Neumann neighborhood as getVonNeumannNeighbors(x, y, z, dist, mode, includeOrigin, result, xPos, yPos, zPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitVonNeumannNeighbors( final int x, final int y, final int z, final int dist, int mode, boolean includeOrigin, final DoubleVisitor3D visitor )
+        {
+        return visitVonNeumannLocations(x, y, z, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits the value at each location in the same radial neighborhood as getRadialNeighbors(x, y, z, dist, mode, includeOrigin, result, xPos, yPos, zPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, final DoubleVisitor3D visitor )
+        {
+        return visitRadialLocations(x, y, z, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
 
+    /** Visits the value at each location in the same radial neighborhood as getRadialNeighbors(x, y, z, dist, mode, includeOrigin, measurementRule, closed, result, xPos, yPos, zPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, int measurementRule, boolean closed, final DoubleVisitor3D visitor )
+        {
+        return visitRadialLocations(x, y, z, dist, mode, includeOrigin, measurementRule, closed, new NeighborVisitor(visitor));
+        }
 
+    // Hands the value at each location to a DoubleVisitor3D
+    final class NeighborVisitor implements LocationVisitor3D
+        {
+        final DoubleVisitor3D visitor;
+        NeighborVisitor(final DoubleVisitor3D visitor) { Neighborhoods.checkVisitor(visitor); this.visitor = visitor; }
+        public boolean visit(final int x, final int y, final int z)
+            {
+            assert sim.util.LocationLog.it(DoubleGrid3D.this, new Int3D(x, y, z));
+            return visitor.visit(x, y, z, get(x, y, z));
+            }
+        }
     }
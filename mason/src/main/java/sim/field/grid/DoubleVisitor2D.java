@@ -0,0 +1,17 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.grid;
+
+/** 
+    Visits the values in a DoubleGrid2D neighborhood, one location at a time.  See LocationVisitor2D.
+    Return true to continue visiting, or false to stop early.
+*/
+
+public interface DoubleVisitor2D
+    {
+    public boolean visit(int x, int y, double value);
+    }
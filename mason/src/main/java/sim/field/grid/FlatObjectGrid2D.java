@@ -0,0 +1,334 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.grid;
+import sim.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+   A 2D grid of Objects stored in a single flat array, rather than an array of arrays as in ObjectGrid2D.
+
+   <p>ObjectGrid2D stores one array per column, so walking the whole grid means hopping from array to array, and
+   each column costs an array header.  FlatObjectGrid2D stores the object at (x, y) in <tt>field[x * height + y]</tt>,
+   that is, in the same order as ObjectGrid2D.toArray().  Whole-grid operations like toArray(), setTo(...), and clear()
+   are single array copies or fills.  You are encouraged to access the array directly; index(x, y) computes the index for you.
+
+   <p><b>Visiting cells.</b>  visitCells(visitor) hands every cell, with its coordinates, to an ObjectVisitor2D, and
+   visitCells(visitor, numThreads) does the same with the grid divided among several threads, each taking a range of
+   columns.  The visitor may change the object at the cell it is visiting, but in the parallel version it must not touch
+   other cells.
+
+   <p>FlatObjectGrid2D holds the same neighborhood methods as ObjectGrid2D.  Portrayals and other code which
+   require an ObjectGrid2D can be given one with toObjectGrid2D().
+*/
+
+public class FlatObjectGrid2D extends AbstractGrid2D
+    {
+    private static final long serialVersionUID = 1;
+
+    public Object[] field;
+
+    public FlatObjectGrid2D(int width, int height)
+        {
+        reshape(width, height);
+        }
+
+    public FlatObjectGrid2D(int width, int height, Object initialValue)
+        {
+        this(width, height);
+        setTo(initialValue);
+        }
+
+    public FlatObjectGrid2D(FlatObjectGrid2D values)
+        {
+        setTo(values);
+        }
+
+    public FlatObjectGrid2D(ObjectGrid2D values)
+        {
+        setTo(values);
+        }
+
+    public Object[] getField() { return field; }
+
+    /** Changes the dimensions of the grid, setting every cell to null. */
+    public void reshape(int width, int height)
+        {
+        if (((long) width) * height > Integer.MAX_VALUE - 8)
+            throw new RuntimeException("A FlatObjectGrid2D of " + width + " by " + height + " is too large");
+        super.reshape(width, height);
+        field = new Object[width * height];
+        }
+
+    /** Returns the index in the field of location (x,y) */
+    public final int index(final int x, final int y)
+        {
+        return x * height + y;
+        }
+
+    /** Sets location (x,y) to val */
+    public final void set(final int x, final int y, final Object val)
+        {
+        field[x * height + y] = val;
+        }
+
+    /** Returns the element at location (x,y) */
+    public final Object get(final int x, final int y)
+        {
+        return field[x * height + y];
+        }
+
+    /** Sets all the locations in the grid the provided element. */
+    public final FlatObjectGrid2D setTo(Object thisObj)
+        {
+        java.util.Arrays.fill(field, thisObj);
+        return this;
+        }
+
+    /** Changes the dimensions of the grid to be the same as the one provided, then
+        sets all the locations in the grid to the elements at the equivalent locations in the
+        provided grid. */
+    public final FlatObjectGrid2D setTo(FlatObjectGrid2D values)
+        {
+        if (width != values.width || height != values.height || field == null)
+            reshape(values.width, values.height);
+        System.arraycopy(values.field, 0, field, 0, field.length);
+        return this;
+        }
+
+    /** Changes the dimensions of the grid to be the same as the one provided, then
+        sets all the locations in the grid to the elements at the equivalent locations in the
+        provided grid. */
+    public final FlatObjectGrid2D setTo(ObjectGrid2D values)
+        {
+        if (width != values.width || height != values.height || field == null)
+            reshape(values.width, values.height);
+        final int height = this.height;
+        for(int x = 0; x < width; x++)
+            System.arraycopy(values.field[x], 0, field, x * height, height);
+        return this;
+        }
+
+    /** Returns a new ObjectGrid2D holding the same elements as this grid. */
+    public ObjectGrid2D toObjectGrid2D()
+        {
+        ObjectGrid2D result = new ObjectGrid2D(width, height);
+        final int height = this.height;
+        for(int x = 0; x < width; x++)
+            System.arraycopy(field, x * height, result.field[x], 0, height);
+        return result;
+        }
+
+    /** Flattens the grid to a one-dimensional array, storing the elements in row-major order, including duplicates and null values.
+        This is a copy of the field. */
+    public final Object[] toArray()
+        {
+        return (Object[])(field.clone());
+        }
+
+    /** Returns in a Bag all stored objects (including duplicates but not null values).
+        You are free to modify the Bag. */
+    public final Bag elements()
+        {
+        final Object[] field = this.field;
+        Bag bag = new Bag();
+        for(int i = 0; i < field.length; i++)
+            if (field[i] != null) bag.add(field[i]);
+        return bag;
+        }
+
+    /** Sets all the locations in the grid to null, and returns in a Bag all stored objects
+        (including duplicates but not null values).  You are free to modify the Bag. */
+    public final Bag clear()
+        {
+        Bag bag = elements();
+        java.util.Arrays.fill(field, null);
+        return bag;
+        }
+
+    /** Replace instances of one value to another.  Equality is measured as follows: (1) if both objects are null, they
+        are equal (2) else if onlyIfSameObject is true, they are equal if they are the same object (3) else they are equal
+        if from.equals(to). */
+    public final void replaceAll(Object from, Object to, boolean onlyIfSameObject)
+        {
+        final Object[] field = this.field;
+        for(int i = 0; i < field.length; i++)
+            {
+            Object obj = field[i];
+            if ((obj == null && from == null) ||
+                (onlyIfSameObject && obj == from) ||
+                (!onlyIfSameObject && obj != null && obj.equals(from)))
+                field[i] = to;
+            }
+        }
+
+    /** Replace instances of one value to another, as measured by equals(). */
+    public final void replaceAll(Object from, Object to)
+        {
+        replaceAll(from, to, false);
+        }
+
+
+    //// VISITING CELLS
+
+    /** Hands each cell, its coordinates and object (which may be null), to the visitor, column by column.  Returns false
+        if the visitor stopped the traversal early, else true. */
+    public boolean visitCells(final ObjectVisitor2D visitor)
+        {
+        Neighborhoods.checkVisitor(visitor);
+        return visitColumns(0, width, visitor, null);
+        }
+
+    /** Hands each cell, its coordinates and object (which may be null), to the visitor, dividing the columns among the given
+        number of threads (or Parallel.CPUS).  The visitor must be threadsafe, and may change the object at the cell it is visiting but not
+        at any other.  If the visitor returns false, the threads stop as soon as they notice.  Returns false if the traversal
+        was stopped early, else true. */
+    public boolean visitCells(final ObjectVisitor2D visitor, int numThreads)
+        {
+        Neighborhoods.checkVisitor(visitor);
+        final AtomicBoolean stopped = new AtomicBoolean(false);
+        Parallel.run(width, numThreads, 2, new Parallel.Task()
+            {
+            public void run(int thread, int from, int to) { visitColumns(from, to, visitor, stopped); }
+            });
+        return !stopped.get();
+        }
+
+    boolean visitColumns(final int fromX, final int toX, final ObjectVisitor2D visitor, final AtomicBoolean stopped)
+        {
+        final Object[] field = this.field;
+        final int height = this.height;
+        for(int x = fromX; x < toX; x++)
+            {
+            if (stopped != null && stopped.get()) return false;
+            int i = x * height;
+            for(int y = 0; y < height; y++)
+                if (!visitor.visit(x, y, field[i++]))
+                    {
+                    if (stopped != null) stopped.set(true);
+                    return false;
+                    }
+            }
+        return true;
+        }
+
+
+    //// NEIGHBORHOODS
+
+    /* For each <xPos,yPos> location, puts all non-null objects into the result bag.  Returns the result bag.
+       If the provided result bag is null, one will be created and returned. */
+    Bag getObjectsAtLocations(final IntBag xPos, final IntBag yPos, Bag result)
+        {
+        if (result==null) result = new Bag();
+        else result.clear();
+
+        final Object[] field = this.field;
+        final int height = this.height;
+        final int[] xs = xPos.objs;
+        final int[] ys = yPos.objs;
+        for( int i = 0 ; i < xPos.numObjs ; i++ )
+            {
+            Object val = field[xs[i] * height + ys[i]];
+            if (val != null) result.add( val );
+            }
+        return result;
+        }
+
+    /** Places into the result Bag (and returns it) the non-null objects in the Moore neighborhood of (x, y), as in
+        ObjectGrid2D.getMooreNeighbors(...).  The locations of the neighborhood are placed in xPos and yPos.  Null may be
+        passed in for any of the bags. */
+    public Bag getMooreNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, Bag result, IntBag xPos, IntBag yPos )
+        {
+        if( xPos == null )
+            xPos = new IntBag();
+        if( yPos == null )
+            yPos = new IntBag();
+
+        getMooreLocations( x, y, dist, mode, includeOrigin, xPos, yPos );
+        return getObjectsAtLocations(xPos,yPos,result);
+        }
+
+    /** Places into the result Bag (and returns it) the non-null objects in the von Neumann neighborhood of (x, y), as in
+        ObjectGrid2D.getVonNeumannNeighbors(...).  The locations of the neighborhood are placed in xPos and yPos.  Null may be
+        passed in for any of the bags. */
+    public Bag getVonNeumannNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, Bag result, IntBag xPos, IntBag yPos )
+        {
+        if( xPos == null )
+            xPos = new IntBag();
+        if( yPos == null )
+            yPos = new IntBag();
+
+        getVonNeumannLocations( x, y, dist, mode, includeOrigin, xPos, yPos );
+        return getObjectsAtLocations(xPos,yPos,result);
+        }
+
+    /** Places into the result Bag (and returns it) the non-null objects in the hexagonal neighborhood of (x, y), as in
+        ObjectGrid2D.getHexagonalNeighbors(...).  The locations of the neighborhood are placed in xPos and yPos.  Null may be
+        passed in for any of the bags. */
+    public Bag getHexagonalNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, Bag result, IntBag xPos, IntBag yPos )
+        {
+        if( xPos == null )
+            xPos = new IntBag();
+        if( yPos == null )
+            yPos = new IntBag();
+
+        getHexagonalLocations( x, y, dist, mode, includeOrigin, xPos, yPos );
+        return getObjectsAtLocations(xPos,yPos,result);
+        }
+
+    /** Places into the result Bag (and returns it) the non-null objects in the radial neighborhood of (x, y), as in
+        ObjectGrid2D.getRadialNeighbors(...).  The locations of the neighborhood are placed in xPos and yPos.  Null may be
+        passed in for any of the bags. */
+    public Bag getRadialNeighbors( final int x, final int y, final double dist, int mode, boolean includeOrigin, Bag result, IntBag xPos, IntBag yPos )
+        {
+        if( xPos == null )
+            xPos = new IntBag();
+        if( yPos == null )
+            yPos = new IntBag();
+
+        getRadialLocations( x, y, dist, mode, includeOrigin, xPos, yPos );
+        return getObjectsAtLocations(xPos,yPos,result);
+        }
+
+    /** Visits each location in the same Moore neighborhood as getMooreNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        passing the object stored there (which may be null).  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitMooreNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final ObjectVisitor2D visitor )
+        {
+        return visitMooreLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits each location in the same von Neumann neighborhood as getVonNeumannNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        passing the object stored there (which may be null).  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitVonNeumannNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final ObjectVisitor2D visitor )
+        {
+        return visitVonNeumannLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits each location in the same hexagonal neighborhood as getHexagonalNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        passing the object stored there (which may be null).  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitHexagonalNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final ObjectVisitor2D visitor )
+        {
+        return visitHexagonalLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits each location in the same radial neighborhood as getRadialNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        passing the object stored there (which may be null).  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final double dist, int mode, boolean includeOrigin, final ObjectVisitor2D visitor )
+        {
+        return visitRadialLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    // Hands each location's object to an ObjectVisitor2D
+    final class NeighborVisitor implements LocationVisitor2D
+        {
+        final ObjectVisitor2D visitor;
+        NeighborVisitor(final ObjectVisitor2D visitor) { Neighborhoods.checkVisitor(visitor); this.visitor = visitor; }
+        public boolean visit(final int x, final int y)
+            {
+            return visitor.visit(x, y, field[x * height + y]);
+            }
+        }
+    }
@@ -0,0 +1,334 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.grid;
+import sim.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+   A 3D grid of Objects stored in a single flat array, rather than arrays of arrays of arrays as in ObjectGrid3D.
+
+   <p>FlatObjectGrid3D stores the object at (x, y, z) in <tt>field[(x * height + y) * length + z]</tt>, that is, in the
+   same order as ObjectGrid3D.toArray().  Whole-grid operations like toArray(), setTo(...), and clear() are single array
+   copies or fills.  You are encouraged to access the array directly; index(x, y, z) computes the index for you.
+
+   <p>visitCells(visitor) hands every cell, with its coordinates, to an ObjectVisitor3D, and visitCells(visitor, numThreads)
+   does the same with the grid divided among several threads, each taking a range of x values.  The visitor may change
+   the object at the cell it is visiting, but in the parallel version it must not touch other cells.  See also FlatObjectGrid2D.
+
+   <p>Portrayals and other code which require an ObjectGrid3D can be given one with toObjectGrid3D().
+*/
+
+public class FlatObjectGrid3D extends AbstractGrid3D
+    {
+    private static final long serialVersionUID = 1;
+
+    public Object[] field;
+
+    public FlatObjectGrid3D(int width, int height, int length)
+        {
+        reshape(width, height, length);
+        }
+
+    public FlatObjectGrid3D(int width, int height, int length, Object initialValue)
+        {
+        this(width, height, length);
+        setTo(initialValue);
+        }
+
+    public FlatObjectGrid3D(FlatObjectGrid3D values)
+        {
+        setTo(values);
+        }
+
+    public FlatObjectGrid3D(ObjectGrid3D values)
+        {
+        setTo(values);
+        }
+
+    public Object[] getField() { return field; }
+
+    /** Replaces the existing array with a new one of the given width, height, and length, with every cell set to null. */
+    protected void reshape(int width, int height, int length)
+        {
+        if (((long) width) * height * length > Integer.MAX_VALUE - 8)
+            throw new RuntimeException("A FlatObjectGrid3D of " + width + " by " + height + " by " + length + " is too large");
+        this.width = width;
+        this.height = height;
+        this.length = length;
+        field = new Object[width * height * length];
+        }
+
+    /** Returns the index in the field of location (x,y,z) */
+    public final int index(final int x, final int y, final int z)
+        {
+        return (x * height + y) * length + z;
+        }
+
+    /** Sets location (x,y,z) to val */
+    public final void set(final int x, final int y, final int z, final Object val)
+        {
+        field[(x * height + y) * length + z] = val;
+        }
+
+    /** Returns the element at location (x,y,z) */
+    public final Object get(final int x, final int y, final int z)
+        {
+        return field[(x * height + y) * length + z];
+        }
+
+    /** Sets all the locations in the grid the provided element. */
+    public final FlatObjectGrid3D setTo(Object thisObj)
+        {
+        java.util.Arrays.fill(field, thisObj);
+        return this;
+        }
+
+    /** Changes the dimensions of the grid to be the same as the one provided, then
+        sets all the locations in the grid to the elements at the equivalent locations in the
+        provided grid. */
+    public final FlatObjectGrid3D setTo(FlatObjectGrid3D values)
+        {
+        if (width != values.width || height != values.height || length != values.length || field == null)
+            reshape(values.width, values.height, values.length);
+        System.arraycopy(values.field, 0, field, 0, field.length);
+        return this;
+        }
+
+    /** Changes the dimensions of the grid to be the same as the one provided, then
+        sets all the locations in the grid to the elements at the equivalent locations in the
+        provided grid. */
+    public final FlatObjectGrid3D setTo(ObjectGrid3D values)
+        {
+        if (width != values.width || height != values.height || length != values.length || field == null)
+            reshape(values.width, values.height, values.length);
+        final int height = this.height;
+        final int length = this.length;
+        int i = 0;
+        for(int x = 0; x < width; x++)
+            for(int y = 0; y < height; y++)
+                {
+                System.arraycopy(values.field[x][y], 0, field, i, length);
+                i += length;
+                }
+        return this;
+        }
+
+    /** Returns a new ObjectGrid3D holding the same elements as this grid. */
+    public ObjectGrid3D toObjectGrid3D()
+        {
+        ObjectGrid3D result = new ObjectGrid3D(width, height, length);
+        final int height = this.height;
+        final int length = this.length;
+        int i = 0;
+        for(int x = 0; x < width; x++)
+            for(int y = 0; y < height; y++)
+                {
+                System.arraycopy(field, i, result.field[x][y], 0, length);
+                i += length;
+                }
+        return result;
+        }
+
+    /** Flattens the grid to a one-dimensional array, storing the elements in row-major order, including duplicates and null values.
+        This is a copy of the field. */
+    public final Object[] toArray()
+        {
+        return (Object[])(field.clone());
+        }
+
+    /** Returns in a Bag all stored objects (including duplicates but not null values).
+        You are free to modify the Bag. */
+    public final Bag elements()
+        {
+        final Object[] field = this.field;
+        Bag bag = new Bag();
+        for(int i = 0; i < field.length; i++)
+            if (field[i] != null) bag.add(field[i]);
+        return bag;
+        }
+
+    /** Sets all the locations in the grid to null, and returns in a Bag all stored objects
+        (including duplicates but not null values).  You are free to modify the Bag. */
+    public final Bag clear()
+        {
+        Bag bag = elements();
+        java.util.Arrays.fill(field, null);
+        return bag;
+        }
+
+    /** Replace instances of one value to another.  Equality is measured as follows: (1) if both objects are null, they
+        are equal (2) else if onlyIfSameObject is true, they are equal if they are the same object (3) else they are equal
+        if from.equals(to). */
+    public final void replaceAll(Object from, Object to, boolean onlyIfSameObject)
+        {
+        final Object[] field = this.field;
+        for(int i = 0; i < field.length; i++)
+            {
+            Object obj = field[i];
+            if ((obj == null && from == null) ||
+                (onlyIfSameObject && obj == from) ||
+                (!onlyIfSameObject && obj != null && obj.equals(from)))
+                field[i] = to;
+            }
+        }
+
+    /** Replace instances of one value to another, as measured by equals(). */
+    public final void replaceAll(Object from, Object to)
+        {
+        replaceAll(from, to, false);
+        }
+
+
+    //// VISITING CELLS
+
+    /** Hands each cell, its coordinates and object (which may be null), to the visitor.  Returns false
+        if the visitor stopped the traversal early, else true. */
+    public boolean visitCells(final ObjectVisitor3D visitor)
+        {
+        Neighborhoods.checkVisitor(visitor);
+        return visitSlices(0, width, visitor, null);
+        }
+
+    /** Hands each cell, its coordinates and object (which may be null), to the visitor, dividing the x values among the given
+        number of threads (or Parallel.CPUS).  The visitor must be threadsafe, and may change the object at the cell it is
+        visiting but not at any other.  If the visitor returns false, the threads stop as soon as they notice.  Returns false if
+        the traversal was stopped early, else true. */
+    public boolean visitCells(final ObjectVisitor3D visitor, int numThreads)
+        {
+        Neighborhoods.checkVisitor(visitor);
+        final AtomicBoolean stopped = new AtomicBoolean(false);
+        Parallel.run(width, numThreads, 2, new Parallel.Task()
+            {
+            public void run(int thread, int from, int to) { visitSlices(from, to, visitor, stopped); }
+            });
+        return !stopped.get();
+        }
+
+    boolean visitSlices(final int fromX, final int toX, final ObjectVisitor3D visitor, final AtomicBoolean stopped)
+        {
+        final Object[] field = this.field;
+        final int height = this.height;
+        final int length = this.length;
+        for(int x = fromX; x < toX; x++)
+            {
+            if (stopped != null && stopped.get()) return false;
+            int i = x * height * length;
+            for(int y = 0; y < height; y++)
+                for(int z = 0; z < length; z++)
+                    if (!visitor.visit(x, y, z, field[i++]))
+                        {
+                        if (stopped != null) stopped.set(true);
+                        return false;
+                        }
+            }
+        return true;
+        }
+
+
+    //// NEIGHBORHOODS
+
+    /* For each <xPos,yPos,zPos> location, puts all non-null objects into the result bag.  Returns the result bag.
+       If the provided result bag is null, one will be created and returned. */
+    Bag getObjectsAtLocations(final IntBag xPos, final IntBag yPos, final IntBag zPos, Bag result)
+        {
+        if (result==null) result = new Bag();
+        else result.clear();
+
+        final Object[] field = this.field;
+        final int height = this.height;
+        final int length = this.length;
+        final int[] xs = xPos.objs;
+        final int[] ys = yPos.objs;
+        final int[] zs = zPos.objs;
+        for( int i = 0 ; i < xPos.numObjs ; i++ )
+            {
+            Object val = field[(xs[i] * height + ys[i]) * length + zs[i]];
+            if (val != null) result.add( val );
+            }
+        return result;
+        }
+
+    /** Places into the result Bag (and returns it) the non-null objects in the Moore neighborhood of (x, y, z), as in
+        ObjectGrid3D.getMooreNeighbors(...).  The locations of the neighborhood are placed in xPos, yPos, and zPos.  Null may be
+        passed in for any of the bags. */
+    public Bag getMooreNeighbors( final int x, final int y, final int z, final int dist, int mode, boolean includeOrigin, Bag result, IntBag xPos, IntBag yPos, IntBag zPos )
+        {
+        if( xPos == null )
+            xPos = new IntBag();
+        if( yPos == null )
+            yPos = new IntBag();
+        if( zPos == null )
+            zPos = new IntBag();
+
+        getMooreLocations( x, y, z, dist, mode, includeOrigin, xPos, yPos, zPos );
+        return getObjectsAtLocations(xPos,yPos,zPos,result);
+        }
+
+    /** Places into the result Bag (and returns it) the non-null objects in the von Neumann neighborhood of (x, y, z), as in
+        ObjectGrid3D.getVonNeumannNeighbors(...).  The locations of the neighborhood are placed in xPos, yPos, and zPos.  Null may be
+        passed in for any of the bags. */
+    public Bag getVonNeumannNeighbors( final int x, final int y, final int z, final int dist, int mode, boolean includeOrigin, Bag result, IntBag xPos, IntBag yPos, IntBag zPos )
+        {
+        if( xPos == null )
+            xPos = new IntBag();
+        if( yPos == null )
+            yPos = new IntBag();
+        if( zPos == null )
+            zPos = new IntBag();
+
+        getVonNeumannLocations( x, y, z, dist, mode, includeOrigin, xPos, yPos, zPos );
+        return getObjectsAtLocations(xPos,yPos,zPos,result);
+        }
+
+    /** Places into the result Bag (and returns it) the non-null objects in the radial neighborhood of (x, y, z), as in
+        ObjectGrid3D.getRadialNeighbors(...).  The locations of the neighborhood are placed in xPos, yPos, and zPos.  Null may be
+        passed in for any of the bags. */
+    public Bag getRadialNeighbors( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, Bag result, IntBag xPos, IntBag yPos, IntBag zPos )
+        {
+        if( xPos == null )
+            xPos = new IntBag();
+        if( yPos == null )
+            yPos = new IntBag();
+        if( zPos == null )
+            zPos = new IntBag();
+
+        getRadialLocations( x, y, z, dist, mode, includeOrigin, xPos, yPos, zPos );
+        return getObjectsAtLocations(xPos,yPos,zPos,result);
+        }
+
+    /** Visits each location in the same Moore neighborhood as getMooreNeighbors(x, y, z, dist, mode, includeOrigin, result, xPos, yPos, zPos),
+        passing the object stored there (which may be null).  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitMooreNeighbors( final int x, final int y, final int z, final int dist, int mode, boolean includeOrigin, final ObjectVisitor3D visitor )
+        {
+        return visitMooreLocations(x, y, z, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits each location in the same von Neumann neighborhood as getVonNeumannNeighbors(x, y, z, dist, mode, includeOrigin, result, xPos, yPos, zPos),
+        passing the object stored there (which may be null).  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitVonNeumannNeighbors( final int x, final int y, final int z, final int dist, int mode, boolean includeOrigin, final ObjectVisitor3D visitor )
+        {
+        return visitVonNeumannLocations(x, y, z, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits each location in the same radial neighborhood as getRadialNeighbors(x, y, z, dist, mode, includeOrigin, result, xPos, yPos, zPos),
+        passing the object stored there (which may be null).  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, final ObjectVisitor3D visitor )
+        {
+        return visitRadialLocations(x, y, z, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    // Hands each location's object to an ObjectVisitor3D
+    final class NeighborVisitor implements LocationVisitor3D
+        {
+        final ObjectVisitor3D visitor;
+        NeighborVisitor(final ObjectVisitor3D visitor) { Neighborhoods.checkVisitor(visitor); this.visitor = visitor; }
+        public boolean visit(final int x, final int y, final int z)
+            {
+            return visitor.visit(x, y, z, field[(x * height + y) * length + z]);
+            }
+        }
+    }
@@ -280,6 +280,8 @@ public interface Grid3D extends java.io.Serializable
      * locations will not appear multiple times: specifically, if the neighborhood distance is so large that it wraps completely around
      * the width or height of the box, neighbors will not be counted multiple times.  Note that to ensure this, subclasses may need to
      * resort to expensive duplicate removal, so it's not suggested you use so unreasonably large distances.
+     * A toroidal neighborhood wider than the grid in some dimension is measured about the true center rather than
+     * within a box clipped to the grid, so its locations come in a different order than in earlier versions of MASON.
      *
      * <p>You can also opt to include the origin -- that is, the (x,y,z) point at the center of the neighborhood -- in the neighborhood results.
      */
@@ -18,11 +18,17 @@ import sim.util.*;
    <p>The width and height of the object are provided to avoid having to say field[x].length, etc.  
 */
 
-public /*strictfp*/ class IntGrid2D extends AbstractGrid2D
+public /*strictfp*/ class IntGrid2D extends AbstractGrid2D implements BufferedGrid
     {
     private static final long serialVersionUID = 1;
 
     public int[/**x*/][/**y*/] field;
+
+    /** The back buffer, or null if the grid is not double-buffered (see BufferedGrid). */
+    int[][] back;
+
+    /** Records which tiles of the grid have changed, or null.  See buildDirtyTiles(...). */
+    DirtyTiles dirty;
     
     public IntGrid2D (int width, int height)
         {
@@ -50,15 +56,83 @@ public /*strictfp*/ class IntGrid2D extends AbstractGrid2D
         {
         super.reshape(width, height);
         field = new int[width][height];
+        if (back != null) back = new int[width][height];
+        if (dirty != null) dirty.reshape(width, height);
         }
     
-    /** Sets location (x,y) to val */
+    /** Sets location (x,y) to val.  If the grid is double-buffered, val is written into the back buffer. */
     public final void set(final int x, final int y, final int val)
         {
         assert sim.util.LocationLog.it(this, new Int2D(x,y));
-        field[x][y] = val;
+        if (back != null) back[x][y] = val;
+        else field[x][y] = val;
+        if (dirty != null) dirty.mark(x, y);
         }
     
+    public boolean isBuffered() { return back != null; }
+
+    /** Returns the back buffer, into which set(...) writes when the grid is double-buffered, or null if it is not.  You may
+        write into it directly, but it changes every time the buffers are swapped. */
+    public int[][] getBackField() { return back; }
+
+    public void setBuffered(boolean val)
+        {
+        if (!val) back = null;
+        else if (back == null)
+            {
+            back = new int[width][height];
+            copyToBack();
+            }
+        }
+
+    void checkBuffered()
+        {
+        if (back == null)
+            throw new RuntimeException("IntGrid2D is not double-buffered");
+        if (back.length != field.length || (back.length > 0 && back[0].length != field[0].length))
+            throw new RuntimeException("IntGrid2D was replaced with a field of a different size while double-buffered.  Call setBuffered(false) and then setBuffered(true) to rebuild the back buffer.");
+        }
+
+    public void swapBuffers()
+        {
+        checkBuffered();
+        final int[][] f = field;
+        field = back;
+        back = f;
+        markAllDirty();
+        }
+
+    public void copyToBack()
+        {
+        checkBuffered();
+        final int[][] field = this.field;
+        final int[][] back = this.back;
+        for(int x = 0; x < field.length; x++)
+            System.arraycopy(field[x], 0, back[x], 0, field[x].length);
+        }
+
+    /** Starts recording which tiles of the grid change (see DirtyTiles), replacing any earlier DirtyTiles.  From then on
+        set(...) marks the tile holding the cell, and bulk operations mark every tile.  The tileSize must be a power of two. */
+    public DirtyTiles buildDirtyTiles(int tileSize)
+        {
+        dirty = new DirtyTiles(width, height, tileSize);
+        return dirty;
+        }
+
+    /** Returns the DirtyTiles recording changes to the grid, or null if there isn't one. */
+    public DirtyTiles getDirtyTiles() { return dirty; }
+
+    /** Stops recording which tiles of the grid change. */
+    public void removeDirtyTiles() { dirty = null; }
+
+    // marks every tile after a bulk change, first resizing the tiles if the grid has changed size
+    void markAllDirty()
+        {
+        if (dirty == null) return;
+        if (dirty.width != width || dirty.height != height) dirty.reshape(width, height);
+        else dirty.markAll();
+        }
+
     /** Returns the element at location (x,y) */
     public final int get(final int x, final int y)
         {
@@ -69,6 +143,7 @@ public /*strictfp*/ class IntGrid2D extends AbstractGrid2D
     /** Sets all the locations in the grid the provided element */
     public final IntGrid2D setTo(int thisMuch)
         {
+        markAllDirty();
         if (isDistributed())
             {
             int w = getWidth();
@@ -128,6 +203,7 @@ public /*strictfp*/ class IntGrid2D extends AbstractGrid2D
             for(int i = 0; i < w; i++)
                 this.field[i] = (int[]) field[i].clone();
             }
+        markAllDirty();
         return this;
         }
 
@@ -172,6 +248,7 @@ public /*strictfp*/ class IntGrid2D extends AbstractGrid2D
                 }
             }
 
+        markAllDirty();
         return this;
         }
 
@@ -325,6 +402,7 @@ public /*strictfp*/ class IntGrid2D extends AbstractGrid2D
     */
     public final IntGrid2D upperBound(int toNoMoreThanThisMuch)
         {
+        markAllDirty();
         if (isDistributed())
             {
             int w = getWidth();
@@ -362,6 +440,7 @@ public /*strictfp*/ class IntGrid2D extends AbstractGrid2D
 
     public final IntGrid2D lowerBound(int toNoLowerThanThisMuch)
         {
+        markAllDirty();
         if (isDistributed())
             {
             int w = getWidth();
@@ -400,6 +479,7 @@ public /*strictfp*/ class IntGrid2D extends AbstractGrid2D
     public final IntGrid2D add(int withThisMuch)
         {
         if (withThisMuch==0.0) return this;
+        markAllDirty();
 
         if (isDistributed())
             {
@@ -436,6 +516,7 @@ public /*strictfp*/ class IntGrid2D extends AbstractGrid2D
 
     public final IntGrid2D add(IntGrid2D withThis)
         {
+        markAllDirty();
         checkBounds(withThis);
 
         if (isDistributed())
@@ -477,6 +558,7 @@ public /*strictfp*/ class IntGrid2D extends AbstractGrid2D
     public final IntGrid2D multiply(int byThisMuch)
         {
         if (byThisMuch==1.0) return this;
+        markAllDirty();
 
         if (isDistributed())
             {
@@ -513,6 +595,7 @@ public /*strictfp*/ class IntGrid2D extends AbstractGrid2D
 
     public final IntGrid2D multiply(IntGrid2D withThis)
         {
+        markAllDirty();
         checkBounds(withThis);
 
         if (isDistributed())
@@ -555,6 +638,7 @@ public /*strictfp*/ class IntGrid2D extends AbstractGrid2D
 
     public final void replaceAll(int from, int to)
         {
+        markAllDirty();
         if (isDistributed())
             {
             int w = getWidth();
@@ -932,5 +1016,50 @@ public /*strictfp*/ class IntGrid2D extends AbstractGrid2D
         }
 
 
+    /** Visits the value at each location in the same Moore neighborhood as getMooreNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitMooreNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final IntVisitor2D visitor )
+        {
+        return visitMooreLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits the value at each location in the same von Neumann neighborhood as getVonNeumannNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitVonNeumannNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final IntVisitor2D visitor )
+        {
+        return visitVonNeumannLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits the value at each location in the same hexagonal neighborhood as getHexagonalNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitHexagonalNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final IntVisitor2D visitor )
+        {
+        return visitHexagonalLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits the value at each location in the same radial neighborhood as getRadialNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final double dist, int mode, boolean includeOrigin, final IntVisitor2D visitor )
+        {
+        return visitRadialLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
 
+    /** Visits the value at each location in the same radial neighborhood as getRadialNeighbors(x, y, dist, mode, includeOrigin, measurementRule, closed, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final double dist, int mode, boolean includeOrigin, int measurementRule, boolean closed, final IntVisitor2D visitor )
+        {
+        return visitRadialLocations(x, y, dist, mode, includeOrigin, measurementRule, closed, new NeighborVisitor(visitor));
+        }
+
+    // Hands the value at each location to a IntVisitor2D
+    final class NeighborVisitor implements LocationVisitor2D
+        {
+        final IntVisitor2D visitor;
+        NeighborVisitor(final IntVisitor2D visitor) { Neighborhoods.checkVisitor(visitor); this.visitor = visitor; }
+        public boolean visit(final int x, final int y)
+            {
+            assert sim.util.LocationLog.it(IntGrid2D.this, new Int2D(x, y));
+            return visitor.visit(x, y, get(x, y));
+            }
+        }
     }
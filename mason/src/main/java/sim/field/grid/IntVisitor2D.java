@@ -0,0 +1,18 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.grid;
+
+/** 
+    Visits the values in an IntGrid2D neighborhood, one location at a time.  See LocationVisitor2D.
+    ShortGrid2D, ByteGrid2D, and BooleanGrid2D also use IntVisitor2D, widening their values to ints
+    (BooleanGrid2D passes 1 for true and 0 for false).  Return true to continue visiting, or false to stop early.
+*/
+
+public interface IntVisitor2D
+    {
+    public boolean visit(int x, int y, int value);
+    }
@@ -0,0 +1,18 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.grid;
+
+/** 
+    Visits the values in an IntGrid3D neighborhood, one location at a time.  See LocationVisitor3D.
+    ShortGrid3D, ByteGrid3D, and BooleanGrid3D also use IntVisitor3D, widening their values to ints
+    (BooleanGrid3D passes 1 for true and 0 for false).  Return true to continue visiting, or false to stop early.
+*/
+
+public interface IntVisitor3D
+    {
+    public boolean visit(int x, int y, int z, int value);
+    }
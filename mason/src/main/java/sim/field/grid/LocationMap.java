@@ -0,0 +1,341 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.grid;
+import sim.util.*;
+import java.util.*;
+
+/**
+   A Map from integer grid locations to Objects, used by SparseGrid2D and SparseGrid3D as their objectHash.
+   Rather than hashing Int2D or Int3D keys, LocationMap packs (x, y) into a single long and keeps it
+   (plus z, for 3D maps) in primitive arrays, using open addressing with linear probing.  The
+   primitive methods get(x, y), put(x, y, value), remove(x, y) and their 3D equivalents do no
+   allocation and no hashCode()/equals() calls at all.
+
+   <p>LocationMap also implements the full Map interface.  As keys it accepts Int2D and MutableInt2D
+   (for 2D maps) or Int3D and MutableInt3D (for 3D maps).  Because a Double2D or MutableDouble2D with
+   integer coordinates is equal to the Int2D with the same coordinates, and hashes like it, it is accepted
+   too and stands for that Int2D; likewise Double3D and MutableDouble3D in 3D maps.  Any other key is
+   not present in the map, and put(...) refuses it.  Keys handed out by entrySet() or keySet() are freshly
+   built Int2D or Int3D objects.  Null values are not permitted, and the iterators do not support remove().
+*/
+
+public class LocationMap extends AbstractMap implements java.io.Serializable
+    {
+    private static final long serialVersionUID = 1;
+
+    static final int DEFAULT_CAPACITY = 16;
+
+    /** Is this map keyed by 3D locations? */
+    final boolean threeD;
+
+    // (x, y) packed as a long, and z for 3D maps.  A slot is empty if its value is null.
+    long[] keys;
+    int[] zs;
+    Object[] values;
+    int size;
+    int mask;
+    int threshold;
+
+    /** Builds an empty map, keyed by 3D locations if threeD is true, else by 2D locations. */
+    public LocationMap(boolean threeD)
+        {
+        this(threeD, DEFAULT_CAPACITY);
+        }
+
+    /** Builds an empty map, keyed by 3D locations if threeD is true, else by 2D locations, which will
+        hold at least <i>size</i> locations before growing. */
+    public LocationMap(boolean threeD, int size)
+        {
+        this.threeD = threeD;
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * 3 / 4 < size) capacity *= 2;
+        allocate(capacity);
+        }
+
+    /** Builds a map keyed by 3D locations if threeD is true, else by 2D locations, holding the contents of another map. */
+    public LocationMap(boolean threeD, Map other)
+        {
+        this(threeD, other.size());
+        putAll(other);
+        }
+
+    /** Builds a copy of another LocationMap.  The values themselves are not copied. */
+    public LocationMap(LocationMap other)
+        {
+        threeD = other.threeD;
+        keys = (long[]) other.keys.clone();
+        zs = (other.zs == null ? null : (int[]) other.zs.clone());
+        values = (Object[]) other.values.clone();
+        size = other.size;
+        mask = other.mask;
+        threshold = other.threshold;
+        }
+
+    void allocate(int capacity)
+        {
+        keys = new long[capacity];
+        if (threeD) zs = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        threshold = capacity * 3 / 4;
+        }
+
+    static long pack(int x, int y) { return (((long) x) << 32) | (y & 0xFFFFFFFFL); }
+
+    int slot(long key, int z)
+        {
+        long h = (key ^ (((long) z) * 0xC2B2AE3D27D4EB4FL)) * 0x9E3779B97F4A7C15L;
+        return ((int)(h ^ (h >>> 32))) & mask;
+        }
+
+    // returns the slot holding the given key, or -1 if there is none
+    int find(long key, int z)
+        {
+        final long[] keys = this.keys;
+        final int[] zs = this.zs;
+        final Object[] values = this.values;
+        final int mask = this.mask;
+        for(int i = slot(key, z); ; i = (i + 1) & mask)
+            {
+            if (values[i] == null) return -1;
+            if (keys[i] == key && (zs == null || zs[i] == z)) return i;
+            }
+        }
+
+    Object doPut(long key, int z, Object value)
+        {
+        if (value == null) throw new IllegalArgumentException("LocationMap does not permit null values");
+        final int mask = this.mask;
+        int i = slot(key, z);
+        for( ; values[i] != null; i = (i + 1) & mask)
+            {
+            if (keys[i] == key && (zs == null || zs[i] == z))
+                {
+                Object old = values[i];
+                values[i] = value;
+                return old;
+                }
+            }
+        keys[i] = key;
+        if (zs != null) zs[i] = z;
+        values[i] = value;
+        if (++size > threshold) grow();
+        return null;
+        }
+
+    Object removeSlot(int i)
+        {
+        final long[] keys = this.keys;
+        final int[] zs = this.zs;
+        final Object[] values = this.values;
+        final int mask = this.mask;
+        Object old = values[i];
+
+        // backward-shift deletion: pull later members of the probe run down into the hole
+        int hole = i;
+        for(int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask)
+            {
+            int home = slot(keys[j], zs == null ? 0 : zs[j]);
+            // can j's entry move into the hole?  Only if its home slot is not cyclically in (hole, j]
+            if (hole <= j ? (home <= hole || home > j) : (home <= hole && home > j))
+                {
+                keys[hole] = keys[j];
+                if (zs != null) zs[hole] = zs[j];
+                values[hole] = values[j];
+                hole = j;
+                }
+            }
+        values[hole] = null;
+        size--;
+        return old;
+        }
+
+    void grow()
+        {
+        final long[] oldKeys = keys;
+        final int[] oldZs = zs;
+        final Object[] oldValues = values;
+        allocate(oldValues.length * 2);
+        for(int i = 0; i < oldValues.length; i++)
+            {
+            if (oldValues[i] == null) continue;
+            final long key = oldKeys[i];
+            final int z = (oldZs == null ? 0 : oldZs[i]);
+            int j = slot(key, z);
+            while (values[j] != null) j = (j + 1) & mask;
+            keys[j] = key;
+            if (zs != null) zs[j] = z;
+            values[j] = oldValues[i];
+            }
+        }
+
+    static boolean isInt(double d) { return d == (int) d; }
+
+    // returns the key as an Int2D or MutableInt2D (Int3D or MutableInt3D for 3D maps), converting a Double2D or MutableDouble2D
+    // (Double3D or MutableDouble3D) with integer coordinates to the Int2D (Int3D) it is equal to, or returns null if the key
+    // names no location in this map
+    Object intKey(Object key)
+        {
+        if (threeD)
+            {
+            if (key instanceof Int3D || key instanceof MutableInt3D) return key;
+            else if (key instanceof Double3D)
+                {
+                Double3D k = (Double3D) key;
+                if (isInt(k.x) && isInt(k.y) && isInt(k.z)) return new Int3D((int) k.x, (int) k.y, (int) k.z);
+                }
+            else if (key instanceof MutableDouble3D)
+                {
+                MutableDouble3D k = (MutableDouble3D) key;
+                if (isInt(k.x) && isInt(k.y) && isInt(k.z)) return new Int3D((int) k.x, (int) k.y, (int) k.z);
+                }
+            }
+        else
+            {
+            if (key instanceof Int2D || key instanceof MutableInt2D) return key;
+            else if (key instanceof Double2D)
+                {
+                Double2D k = (Double2D) key;
+                if (isInt(k.x) && isInt(k.y)) return new Int2D((int) k.x, (int) k.y);
+                }
+            else if (key instanceof MutableDouble2D)
+                {
+                MutableDouble2D k = (MutableDouble2D) key;
+                if (isInt(k.x) && isInt(k.y)) return new Int2D((int) k.x, (int) k.y);
+                }
+            }
+        return null;
+        }
+
+    // returns the slot holding the given key object, or -1 if there is none or the key names no location in this map
+    int findKey(Object key)
+        {
+        key = intKey(key);
+        if (key instanceof Int3D) { Int3D k = (Int3D) key; return find(pack(k.x, k.y), k.z); }
+        else if (key instanceof MutableInt3D) { MutableInt3D k = (MutableInt3D) key; return find(pack(k.x, k.y), k.z); }
+        else if (key instanceof Int2D) { Int2D k = (Int2D) key; return find(pack(k.x, k.y), 0); }
+        else if (key instanceof MutableInt2D) { MutableInt2D k = (MutableInt2D) key; return find(pack(k.x, k.y), 0); }
+        return -1;
+        }
+
+    Object keyAt(int i)
+        {
+        final long key = keys[i];
+        if (threeD) return new Int3D((int)(key >> 32), (int) key, zs[i]);
+        else return new Int2D((int)(key >> 32), (int) key);
+        }
+
+
+    /** Returns the value stored at the 2D location (x, y), or null if there is none. */
+    public Object get(final int x, final int y)
+        {
+        final int i = find(pack(x, y), 0);
+        return (i < 0 ? null : values[i]);
+        }
+
+    /** Returns the value stored at the 3D location (x, y, z), or null if there is none. */
+    public Object get(final int x, final int y, final int z)
+        {
+        final int i = find(pack(x, y), z);
+        return (i < 0 ? null : values[i]);
+        }
+
+    /** Stores a value at the 2D location (x, y), returning the value previously stored there, if any. */
+    public Object put(final int x, final int y, final Object value)
+        {
+        return doPut(pack(x, y), 0, value);
+        }
+
+    /** Stores a value at the 3D location (x, y, z), returning the value previously stored there, if any. */
+    public Object put(final int x, final int y, final int z, final Object value)
+        {
+        return doPut(pack(x, y), z, value);
+        }
+
+    /** Removes the value at the 2D location (x, y), returning it, or null if there was none. */
+    public Object remove(final int x, final int y)
+        {
+        final int i = find(pack(x, y), 0);
+        return (i < 0 ? null : removeSlot(i));
+        }
+
+    /** Removes the value at the 3D location (x, y, z), returning it, or null if there was none. */
+    public Object remove(final int x, final int y, final int z)
+        {
+        final int i = find(pack(x, y), z);
+        return (i < 0 ? null : removeSlot(i));
+        }
+
+
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    public boolean containsKey(Object key) { return findKey(key) >= 0; }
+
+    public Object get(Object key)
+        {
+        final int i = findKey(key);
+        return (i < 0 ? null : values[i]);
+        }
+
+    public Object put(Object key, Object value)
+        {
+        Object k = intKey(key);
+        if (k instanceof Int3D) { Int3D l = (Int3D) k; return doPut(pack(l.x, l.y), l.z, value); }
+        else if (k instanceof MutableInt3D) { MutableInt3D l = (MutableInt3D) k; return doPut(pack(l.x, l.y), l.z, value); }
+        else if (k instanceof Int2D) { Int2D l = (Int2D) k; return doPut(pack(l.x, l.y), 0, value); }
+        else if (k instanceof MutableInt2D) { MutableInt2D l = (MutableInt2D) k; return doPut(pack(l.x, l.y), 0, value); }
+        else if (threeD) throw new IllegalArgumentException("LocationMap keys must be Int3D or MutableInt3D, or Double3D or MutableDouble3D with integer coordinates: " + key);
+        else throw new IllegalArgumentException("LocationMap keys must be Int2D or MutableInt2D, or Double2D or MutableDouble2D with integer coordinates: " + key);
+        }
+
+    public Object remove(Object key)
+        {
+        final int i = findKey(key);
+        return (i < 0 ? null : removeSlot(i));
+        }
+
+    public void clear()
+        {
+        Arrays.fill(values, null);
+        size = 0;
+        }
+
+    public Set entrySet()
+        {
+        return new AbstractSet()
+            {
+            public int size() { return size; }
+            public Iterator iterator()
+                {
+                return new Iterator()
+                    {
+                    int next = advance(0);
+                    int advance(int i) { while (i < values.length && values[i] == null) i++; return i; }
+                    public boolean hasNext() { return next < values.length; }
+                    public Object next()
+                        {
+                        if (next >= values.length) throw new NoSuchElementException();
+                        final int i = next;
+                        next = advance(i + 1);
+                        return new AbstractMap.SimpleEntry(keyAt(i), values[i])
+                            {
+                            public Object setValue(Object value)
+                                {
+                                if (value == null) throw new IllegalArgumentException("LocationMap does not permit null values");
+                                values[i] = value;
+                                return super.setValue(value);
+                                }
+                            };
+                        }
+                    public void remove() { throw new UnsupportedOperationException("Remove not supported in LocationMap iterators"); }
+                    };
+                }
+            };
+        }
+    }
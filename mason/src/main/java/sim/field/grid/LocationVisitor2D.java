@@ -0,0 +1,19 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.grid;
+
+/** 
+    Visits locations in a 2D grid neighborhood, one at a time, without filling IntBags.  Pass a LocationVisitor2D
+    to one of the visit...Locations(...) methods in AbstractGrid2D or SparseGrid2D.  The visitor is called
+    once for each location, in the same order and under the same rules (bounded, unbounded, or toroidal) as the
+    equivalent get...Locations(...) method.  Return true to continue visiting, or false to stop early.
+*/
+
+public interface LocationVisitor2D
+    {
+    public boolean visit(int x, int y);
+    }
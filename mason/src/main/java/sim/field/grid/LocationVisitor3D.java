@@ -0,0 +1,19 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.grid;
+
+/** 
+    Visits locations in a 3D grid neighborhood, one at a time, without filling IntBags.  Pass a LocationVisitor3D
+    to one of the visit...Locations(...) methods in AbstractGrid3D or SparseGrid3D.  The visitor is called
+    once for each location, under the same rules (bounded, unbounded, or toroidal) as the
+    equivalent get...Locations(...) method.  Return true to continue visiting, or false to stop early.
+*/
+
+public interface LocationVisitor3D
+    {
+    public boolean visit(int x, int y, int z);
+    }
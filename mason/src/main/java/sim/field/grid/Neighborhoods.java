@@ -0,0 +1,978 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.grid;
+import sim.util.*;
+import java.util.*;
+
+/**
+   Package-level neighborhood traversal shared by AbstractGrid2D, AbstractGrid3D, SparseGrid2D, and SparseGrid3D
+   (the sparse grids do not share a superclass with the others).  Each visit method walks the same locations
+   as the equivalent get...Locations(...) method, but hands them one at a time to a visitor rather than
+   filling IntBags.  The only exception is a toroidal von Neumann or hexagonal neighborhood so large that it wraps
+   around onto itself: there duplicates must be removed, so we fall back to IntBags.  Radial and hexagonal
+   neighborhoods, for both IntBags and visitors, are computed here from cached offset tables (see Offsets below).
+   
+   <p>Most get...Locations(...) methods list the whole neighborhood and then remove the origin with IntBag.remove(...),
+   which moves the last location into the hole.  Others (SparseGrid3D, and toroidal 3D neighborhoods around an origin
+   inside the grid) simply skip the origin as they go.  Models may depend on the order, so the visit methods
+   follow suit: in the first case they visit the last location in place of the origin, and not again at the end.
+*/
+
+final class Neighborhoods
+    {
+    private Neighborhoods() { }
+
+    static int wrap(int v, final int n)
+        {
+        if (v >= 0 && v < n) return v;  // do clearest case first
+        v = v % n;
+        if (v < 0) v = v + n;
+        return v;
+        }
+
+    static void checkMode(final int mode)
+        {
+        if (mode != Grid2D.BOUNDED && mode != Grid2D.UNBOUNDED && mode != Grid2D.TOROIDAL)
+            {
+            throw new RuntimeException("Mode must be either Grid2D.BOUNDED, Grid2D.UNBOUNDED, or Grid2D.TOROIDAL");
+            }
+        }
+
+    static void checkMode3D(final int mode)
+        {
+        if (mode != Grid3D.BOUNDED && mode != Grid3D.UNBOUNDED && mode != Grid3D.TOROIDAL)
+            {
+            throw new RuntimeException("Mode must be either Grid3D.BOUNDED, Grid3D.UNBOUNDED, or Grid3D.TOROIDAL");
+            }
+        }
+
+    static void checkDistance(final double dist)
+        {
+        // won't work for negative distances
+        if( dist < 0 )
+            {
+            throw new RuntimeException( "Distance must be positive" );
+            }
+        }
+
+    static void checkMeasurementRule(final int measurementRule)
+        {
+        if (measurementRule != Grid2D.ANY && measurementRule != Grid2D.ALL && measurementRule != Grid2D.CENTER)
+            {
+            throw new RuntimeException(" Measurement rule must be one of ANY, ALL, or CENTER" );
+            }
+        }
+
+    static void checkVisitor(final Object visitor)
+        {
+        if (visitor == null)
+            {
+            throw new RuntimeException( "visitor should not be null" );
+            }
+        }
+
+    static void checkPosition(final int x, final int y, final int width, final int height, final int mode)
+        {
+        if( ( x < 0 || x >= width || y < 0 || y >= height ) && mode != Grid2D.BOUNDED)
+            throw new RuntimeException( "Invalid initial position" );
+        }
+
+    // visits the locations in two IntBags, used when the neighborhood must be computed the slow way
+    static boolean visitAll(final IntBag xPos, final IntBag yPos, final LocationVisitor2D visitor)
+        {
+        final int[] xs = xPos.objs;
+        final int[] ys = yPos.objs;
+        final int len = xPos.numObjs;
+        for(int i = 0; i < len; i++)
+            if (!visitor.visit(xs[i], ys[i])) return false;
+        return true;
+        }
+
+    static boolean visitAll(final IntBag xPos, final IntBag yPos, final IntBag zPos, final LocationVisitor3D visitor)
+        {
+        final int[] xs = xPos.objs;
+        final int[] ys = yPos.objs;
+        final int[] zs = zPos.objs;
+        final int len = xPos.numObjs;
+        for(int i = 0; i < len; i++)
+            if (!visitor.visit(xs[i], ys[i], zs[i])) return false;
+        return true;
+        }
+
+
+
+    ////// 2D
+
+
+    static boolean visitMoore(final Grid2D grid, final int x, final int y, final int dist, final int mode, final boolean includeOrigin, final LocationVisitor2D visitor)
+        {
+        checkMode(mode);
+        checkDistance(dist);
+        checkVisitor(visitor);
+
+        // local variables are faster
+        final int width = grid.getWidth();
+        final int height = grid.getHeight();
+        checkPosition(x, y, width, height, mode);
+
+        if (mode == Grid2D.TOROIDAL)
+            {
+            int xmin = x - dist;
+            int xmax = x + dist;
+            if (xmax - xmin >= width)  // too wide, just use whole neighborhood
+                { xmin = 0; xmax = width - 1; }
+            int ymin = y - dist;
+            int ymax = y + dist;
+            if (ymax - ymin >= height)  // too wide, just use whole neighborhood
+                { ymin = 0; ymax = height - 1; }
+
+            final int lastX = wrap(xmax, width);
+            final int lastY = wrap(ymax, height);
+            boolean moved = false;
+            for( int x0 = xmin ; x0 <= xmax ; x0++ )
+                {
+                final int x_0 = wrap(x0, width);
+                for( int y0 = ymin ; y0 <= ymax ; y0++ )
+                    {
+                    final int y_0 = wrap(y0, height);
+                    if (!includeOrigin)
+                        {
+                        if (x_0 == x && y_0 == y)
+                            {
+                            moved = true;
+                            if (x_0 == lastX && y_0 == lastY) continue;
+                            if (!visitor.visit(lastX, lastY)) return false;
+                            continue;
+                            }
+                        if (moved && x_0 == lastX && y_0 == lastY) continue;
+                        }
+                    if (!visitor.visit(x_0, y_0)) return false;
+                    }
+                }
+            }
+        else
+            {
+            final boolean bounded = (mode == Grid2D.BOUNDED);
+            final int xmin = ((x-dist>=0) || !bounded ?x-dist:0);
+            final int xmax =((x+dist<=width-1) || !bounded ?x+dist:width-1);
+            final int ymin = ((y-dist>=0) || !bounded ?y-dist:0);
+            final int ymax = ((y+dist<=height-1) || !bounded ?y+dist:height-1);
+            boolean moved = false;
+            for( int x0 = xmin; x0 <= xmax ; x0++ )
+                for( int y0 = ymin ; y0 <= ymax ; y0++ )
+                    {
+                    if (!includeOrigin)
+                        {
+                        if (x0 == x && y0 == y)
+                            {
+                            moved = true;
+                            if (x0 == xmax && y0 == ymax) continue;
+                            if (!visitor.visit(xmax, ymax)) return false;
+                            continue;
+                            }
+                        if (moved && x0 == xmax && y0 == ymax) continue;
+                        }
+                    if (!visitor.visit(x0, y0)) return false;
+                    }
+            }
+        return true;
+        }
+
+
+    static boolean visitVonNeumann(final Grid2D grid, final int x, final int y, final int dist, final int mode, final boolean includeOrigin, final LocationVisitor2D visitor)
+        {
+        checkMode(mode);
+        checkDistance(dist);
+        checkVisitor(visitor);
+
+        final int width = grid.getWidth();
+        final int height = grid.getHeight();
+        checkPosition(x, y, width, height, mode);
+
+        if (mode == Grid2D.TOROIDAL)
+            {
+            if (dist * 2 >= width || dist * 2 >= height)  // too big, will have to remove duplicates
+                {
+                IntBag xPos = new IntBag();
+                IntBag yPos = new IntBag();
+                grid.getVonNeumannLocations(x, y, dist, mode, includeOrigin, xPos, yPos);
+                return visitAll(xPos, yPos, visitor);
+                }
+
+            // the last location is the tip of the last column
+            final int lastX = wrap(x+dist, width);
+            final int lastY = y;
+            boolean moved = false;
+            for( int x0 = x-dist; x0 <= x+dist ; x0++ )
+                {
+                final int x_0 = wrap(x0, width);
+                final int dy = dist-((x0-x>=0)?x0-x:x-x0);
+                for( int y0 = y-dy; y0 <= y+dy; y0++ )
+                    {
+                    final int y_0 = wrap(y0, height);
+                    if (!includeOrigin)
+                        {
+                        if (x_0 == x && y_0 == y)
+                            {
+                            moved = true;
+                            if (x_0 == lastX && y_0 == lastY) continue;
+                            if (!visitor.visit(lastX, lastY)) return false;
+                            continue;
+                            }
+                        if (moved && x_0 == lastX && y_0 == lastY) continue;
+                        }
+                    if (!visitor.visit(x_0, y_0)) return false;
+                    }
+                }
+            }
+        else
+            {
+            final boolean bounded = (mode == Grid2D.BOUNDED);
+            final int xmax = ((x+dist<=width-1) || !bounded ?x+dist:width-1);
+            final int xmin = ((x-dist>=0) || !bounded ?x-dist:0);
+            // the last location is the top of the last column (this matters only if the origin is in it, and so in the grid)
+            final int lastX = xmax;
+            final int lastDy = dist-((xmax-x>=0)?xmax-x:x-xmax);
+            final int lastY = ((y+lastDy<=height-1) || !bounded ?y+lastDy:height-1);
+            boolean moved = false;
+            for( int x0 = xmin ; x0 <= xmax ; x0++ )
+                {
+                final int dy = dist-((x0-x>=0)?x0-x:x-x0);
+                final int ymax = ((y+dy<=height-1) || !bounded ?y+dy:height-1);
+                final int ymin = ((y-dy>=0) || !bounded ?y-dy:0);
+                for( int y0 =  ymin; y0 <= ymax; y0++ )
+                    {
+                    if (!includeOrigin)
+                        {
+                        if (x0 == x && y0 == y)
+                            {
+                            moved = true;
+                            if (x0 == lastX && y0 == lastY) continue;
+                            if (!visitor.visit(lastX, lastY)) return false;
+                            continue;
+                            }
+                        if (moved && x0 == lastX && y0 == lastY) continue;
+                        }
+                    if (!visitor.visit(x0, y0)) return false;
+                    }
+                }
+            }
+        return true;
+        }
+
+
+    static boolean visitHexagonal(final Grid2D grid, final int x, final int y, final int dist, final int mode, final boolean includeOrigin, final LocationVisitor2D visitor)
+        {
+        checkVisitor(visitor);
+        return hexagonal(grid, x, y, dist, mode, includeOrigin, null, null, visitor);
+        }
+
+    static void hexagonalLocations(final Grid2D grid, final int x, final int y, final int dist, final int mode, final boolean includeOrigin, final IntBag xPos, final IntBag yPos)
+        {
+        if( xPos == null || yPos == null )
+            {
+            throw new RuntimeException( "xPos and yPos should not be null" );
+            }
+        hexagonal(grid, x, y, dist, mode, includeOrigin, xPos, yPos, null);
+        }
+
+    // Hands each location either to the visitor or, if it is null, to xPos and yPos.
+    static boolean hexagonal(final Grid2D grid, final int x, final int y, final int dist, final int mode, final boolean includeOrigin,
+        final IntBag xPos, final IntBag yPos, final LocationVisitor2D visitor)
+        {
+        checkMode(mode);
+        checkDistance(dist);
+
+        final int width = grid.getWidth();
+        final int height = grid.getHeight();
+        checkPosition(x, y, width, height, mode);
+        
+        if (visitor == null) { xPos.clear(); yPos.clear(); }
+
+        final boolean toroidal = (mode == Grid2D.TOROIDAL);
+        final boolean bounded = (mode == Grid2D.BOUNDED);
+
+        if( toroidal && height%2==1 )
+            throw new RuntimeException( "toroidal hexagonal environment should have even heights" );
+
+        final Offsets offsets = hexagonalOffsets(dist, (x & 1) == 1);
+        final int[] dx = offsets.dx;
+        final int[] dy = offsets.dy;
+        final int size = offsets.size;
+        final int origin = dist;    // the index of the origin in the table
+
+        if (toroidal && (dist * 2 >= width || dist * 2 >= height))  // too big, will have to remove duplicates
+            {
+            // The original removed the duplicates, then the origin, each time moving the last location into the hole
+            // (see IntBag.remove(...)).  Models may depend on the order, so we do the same.
+            final IntBag xs = (visitor == null ? xPos : new IntBag(size));
+            final IntBag ys = (visitor == null ? yPos : new IntBag(size));
+            for(int i = 0; i < size; i++)
+                { xs.add(wrap(x + dx[i], width)); ys.add(wrap(y + dy[i], height)); }
+            final boolean[] seen = new boolean[width * height];
+            int sz = xs.numObjs;
+            for(int i = 0; i < sz; i++)
+                {
+                final int cell = xs.objs[i] * height + ys.objs[i];
+                if (seen[cell]) { xs.remove(i); ys.remove(i); i--; sz--; }
+                else seen[cell] = true;
+                }
+            if (!includeOrigin)
+                for(int i = 0; i < sz; i++)
+                    if (xs.objs[i] == x && ys.objs[i] == y)
+                        { xs.remove(i); ys.remove(i); break; }
+            return (visitor == null || visitAll(xs, ys, visitor));
+            }
+
+        // The original listed the whole neighborhood, then removed the origin, moving the last location into its
+        // place (see IntBag.remove(...)).  Models may depend on the order, so we do the same: if the origin is
+        // to be left out, we hand out the last location in its place, and not again at the end.
+        int last = -1;
+        if (!includeOrigin && (!bounded || (x >= 0 && x < width && y >= 0 && y < height)))
+            {
+            last = size - 1;
+            if (bounded)
+                while(x + dx[last] < 0 || x + dx[last] >= width || y + dy[last] < 0 || y + dy[last] >= height)
+                    last--;             // stops at the origin, if not before
+            }
+
+        for(int i = 0; i < size; i++)
+            {
+            int j = i;
+            if (last >= 0)
+                {
+                if (i == last) break;
+                else if (i == origin) j = last;
+                }
+            int x0 = x + dx[j];
+            int y0 = y + dy[j];
+            if (toroidal) { x0 = wrap(x0, width); y0 = wrap(y0, height); }
+            else if (bounded && (x0 < 0 || x0 >= width || y0 < 0 || y0 >= height)) continue;
+            if (visitor == null) { xPos.add(x0); yPos.add(y0); }
+            else if (!visitor.visit(x0, y0)) return false;
+            }
+        return true;
+        }
+
+
+    static boolean visitRadial(final Grid2D grid, final int x, final int y, final double dist, final int mode, final boolean includeOrigin, final int measurementRule, final boolean closed, final LocationVisitor2D visitor)
+        {
+        checkVisitor(visitor);
+        return radial(grid, x, y, dist, mode, includeOrigin, measurementRule, closed, null, null, visitor);
+        }
+
+    static void radialLocations(final Grid2D grid, final int x, final int y, final double dist, final int mode, final boolean includeOrigin, final int measurementRule, final boolean closed, final IntBag xPos, final IntBag yPos)
+        {
+        if( xPos == null || yPos == null )
+            {
+            throw new RuntimeException( "xPos and yPos should not be null" );
+            }
+        radial(grid, x, y, dist, mode, includeOrigin, measurementRule, closed, xPos, yPos, null);
+        }
+
+    // Hands each location either to the visitor or, if it is null, to xPos and yPos.
+    // Toroidal neighborhoods are computed unbounded, then wrapped, so (as always) they are not de-duplicated.
+    static boolean radial(final Grid2D grid, final int x, final int y, final double dist, final int mode, final boolean includeOrigin, final int measurementRule, final boolean closed,
+        final IntBag xPos, final IntBag yPos, final LocationVisitor2D visitor)
+        {
+        checkDistance(dist);
+        checkMeasurementRule(measurementRule);
+        checkMode(mode);
+
+        final int width = grid.getWidth();
+        final int height = grid.getHeight();
+        checkPosition(x, y, width, height, mode);
+
+        if (visitor == null) { xPos.clear(); yPos.clear(); }
+
+        final boolean toroidal = (mode == Grid2D.TOROIDAL);
+        final boolean bounded = (mode == Grid2D.BOUNDED);
+
+        // A bounded neighborhood clipped by the edges of the grid has its own order (see radialBox), so we compute it afresh
+        final int r = (int) Math.ceil(dist + 0.5);
+        if (bounded && (x - r < 0 || x + r > width - 1 || y - r < 0 || y + r > height - 1))
+            return radialBox(x, y, Math.max(x - r, 0), Math.min(x + r, width - 1), Math.max(y - r, 0), Math.min(y + r, height - 1),
+                dist, measurementRule, closed, includeOrigin, xPos, yPos, visitor);
+
+        final Offsets offsets = radialOffsets(dist, measurementRule, closed, includeOrigin);
+        final int[] dx = offsets.dx;
+        final int[] dy = offsets.dy;
+        final int size = offsets.size;
+
+        for(int i = 0; i < size; i++)
+            {
+            int x0 = x + dx[i];
+            int y0 = y + dy[i];
+            if (toroidal) { x0 = wrap(x0, width); y0 = wrap(y0, height); }
+            if (visitor == null) { xPos.add(x0); yPos.add(y0); }
+            else if (!visitor.visit(x0, y0)) return false;
+            }
+        return true;
+        }
+
+    // Hands to the visitor or, if it is null, adds to xs and ys the cells of the radial neighborhood of (x, y) which lie in
+    // the box [xmin, xmax] x [ymin, ymax], in the same order as the original getRadialLocations(...).  That method listed
+    // the box x-major, then removed the origin and the cells outside the neighborhood, each time moving the last cell into
+    // the hole, as IntBag.remove(...) does.  We do the same, since models may depend on the order, for example by taking
+    // the first few neighbors.  Cells only ever move in from the end of the list, so we needn't build it: we walk it from
+    // both ends at once, working out each cell from its index.
+    static boolean radialBox(final int x, final int y, final int xmin, final int xmax, final int ymin, final int ymax, final double dist,
+        final int measurementRule, final boolean closed, final boolean includeOrigin, final IntBag xs, final IntBag ys, final LocationVisitor2D visitor)
+        {
+        if (xmin > xmax || ymin > ymax) return true;
+        final int ny = ymax - ymin + 1;
+        final int n = (xmax - xmin + 1) * ny;
+        final int hole = (!includeOrigin && x >= xmin && x <= xmax && y >= ymin && y <= ymax ? (x - xmin) * ny + (y - ymin) : -1);
+        final double distsq = dist * dist;
+        int len = (hole >= 0 ? n - 1 : n);
+        for(int i = 0; i < len; i++)
+            {
+            int p = boxIndex(i, hole, n, false);
+            int x0 = xmin + p / ny;
+            int y0 = ymin + p % ny;
+            while (AbstractGrid2D.removeForRadial(x, y, x0, y0, dist, distsq, measurementRule, closed))
+                {
+                len--;
+                if (i == len) return true;
+                p = boxIndex(len, hole, n, false);
+                x0 = xmin + p / ny;
+                y0 = ymin + p % ny;
+                }
+            if (visitor == null) { xs.add(x0); ys.add(y0); }
+            else if (!visitor.visit(x0, y0)) return false;
+            }
+        return true;
+        }
+
+    // Returns the index in the box of the i'th cell of the list radialBox(...) walks.  If the origin, at index hole, was
+    // removed, the last cell has moved into its place; or if skipOrigin, the origin was never listed at all.
+    static int boxIndex(final int i, final int hole, final int n, final boolean skipOrigin)
+        {
+        if (hole < 0 || i < hole) return i;
+        else if (skipOrigin) return i + 1;
+        else if (i == hole) return n - 1;
+        else return i;
+        }
+
+
+
+    ////// 3D
+
+
+    static boolean visitMoore(final Grid3D grid, final int x, final int y, final int z, final int dist, final int mode, final boolean includeOrigin, final LocationVisitor3D visitor)
+        {
+        checkMode3D(mode);
+        checkDistance(dist);
+        checkVisitor(visitor);
+
+        final int width = grid.getWidth();
+        final int height = grid.getHeight();
+        final int length = grid.getLength();
+
+        if (mode == Grid3D.TOROIDAL)
+            {
+            int xmin = x - dist;
+            int xmax = x + dist;
+            if (xmax - xmin >= width)  // too wide
+                xmax = xmin + width - 1;
+            int ymin = y - dist;
+            int ymax = y + dist;
+            if (ymax - ymin >= height)  // too wide
+                ymax = ymin + height - 1;
+            int zmin = z - dist;
+            int zmax = z + dist;
+            if (zmax - zmin >= length)  // too wide
+                zmax = zmin + length - 1;
+
+            // the origin need not be in bounds, so compare against its wrapped position
+            final int ox = wrap(x, width);
+            final int oy = wrap(y, height);
+            final int oz = wrap(z, length);
+            final boolean skip = (ox == x && oy == y && oz == z);
+            final int lastX = wrap(xmax, width);
+            final int lastY = wrap(ymax, height);
+            final int lastZ = wrap(zmax, length);
+            boolean moved = false;
+
+            for( int x0 = xmin; x0 <= xmax ; x0++ )
+                {
+                final int x_0 = wrap(x0, width);
+                for( int y0 = ymin ; y0 <= ymax ; y0++ )
+                    {
+                    final int y_0 = wrap(y0, height);
+                    for( int z0 = zmin ; z0 <= zmax ; z0++ )
+                        {
+                        final int z_0 = wrap(z0, length);
+                        if (!includeOrigin)
+                            {
+                            if (x_0 == ox && y_0 == oy && z_0 == oz)
+                                {
+                                if (skip) continue;
+                                moved = true;
+                                if (x_0 == lastX && y_0 == lastY && z_0 == lastZ) continue;
+                                if (!visitor.visit(lastX, lastY, lastZ)) return false;
+                                continue;
+                                }
+                            if (moved && x_0 == lastX && y_0 == lastY && z_0 == lastZ) continue;
+                            }
+                        if (!visitor.visit(x_0, y_0, z_0)) return false;
+                        }
+                    }
+                }
+            }
+        else
+            {
+            final boolean bounded = (mode == Grid3D.BOUNDED);
+            final int xmin = ((x-dist>=0 || !bounded)?x-dist:0);
+            final int xmax =((x+dist<=width-1 || !bounded)?x+dist:width-1);
+            final int ymin = ((y-dist>=0 || !bounded)?y-dist:0);
+            final int ymax = ((y+dist<=height-1 || !bounded)?y+dist:height-1);
+            final int zmin = ((z-dist>=0 || !bounded)?z-dist:0);
+            final int zmax = ((z+dist<=length-1 || !bounded)?z+dist:length-1);
+            final boolean skip = (grid instanceof SparseGrid3D);
+            boolean moved = false;
+            for( int x0 = xmin ; x0 <= xmax ; x0++ )
+                for( int y0 = ymin ; y0 <= ymax ; y0++ )
+                    for( int z0 = zmin ; z0 <= zmax ; z0++ )
+                        {
+                        if (!includeOrigin)
+                            {
+                            if (x0 == x && y0 == y && z0 == z)
+                                {
+                                if (skip) continue;
+                                moved = true;
+                                if (x0 == xmax && y0 == ymax && z0 == zmax) continue;
+                                if (!visitor.visit(xmax, ymax, zmax)) return false;
+                                continue;
+                                }
+                            if (moved && x0 == xmax && y0 == ymax && z0 == zmax) continue;
+                            }
+                        if (!visitor.visit(x0, y0, z0)) return false;
+                        }
+            }
+        return true;
+        }
+
+
+    static boolean visitVonNeumann(final Grid3D grid, final int x, final int y, final int z, final int dist, final int mode, final boolean includeOrigin, final LocationVisitor3D visitor)
+        {
+        checkMode3D(mode);
+        checkDistance(dist);
+        checkVisitor(visitor);
+
+        final int width = grid.getWidth();
+        final int height = grid.getHeight();
+        final int length = grid.getLength();
+
+        if (mode == Grid3D.TOROIDAL)
+            {
+            if (dist * 2 >= width || dist * 2 >= height || dist * 2 >= length)  // too big, will have to remove duplicates
+                {
+                IntBag xPos = new IntBag();
+                IntBag yPos = new IntBag();
+                IntBag zPos = new IntBag();
+                grid.getVonNeumannLocations(x, y, z, dist, mode, includeOrigin, xPos, yPos, zPos);
+                return visitAll(xPos, yPos, zPos, visitor);
+                }
+
+            final int ox = wrap(x, width);
+            final int oy = wrap(y, height);
+            final int oz = wrap(z, length);
+            final boolean skip = (ox == x && oy == y && oz == z);
+            // the last location is the tip of the last slab
+            final int lastX = wrap(x+dist, width);
+            final int lastY = oy;
+            final int lastZ = oz;
+            boolean moved = false;
+
+            for( int x0 = x-dist; x0 <= x+dist ; x0++ )
+                {
+                final int x_0 = wrap(x0, width);
+                final int dy = dist-((x0-x>=0)?x0-x:x-x0);
+                for( int y0 = y-dy; y0 <= y+dy; y0++ )
+                    {
+                    final int y_0 = wrap(y0, height);
+                    final int dz = dy-((y0-y>=0)?y0-y:y-y0);
+                    for( int z0 = z-dz; z0 <= z+dz; z0++ )
+                        {
+                        final int z_0 = wrap(z0, length);
+                        if (!includeOrigin)
+                            {
+                            if (x_0 == ox && y_0 == oy && z_0 == oz)
+                                {
+                                if (skip) continue;
+                                moved = true;
+                                if (x_0 == lastX && y_0 == lastY && z_0 == lastZ) continue;
+                                if (!visitor.visit(lastX, lastY, lastZ)) return false;
+                                continue;
+                                }
+                            if (moved && x_0 == lastX && y_0 == lastY && z_0 == lastZ) continue;
+                            }
+                        if (!visitor.visit(x_0, y_0, z_0)) return false;
+                        }
+                    }
+                }
+            }
+        else
+            {
+            final boolean bounded = (mode == Grid3D.BOUNDED);
+            final int xmax = ((x+dist<=width-1 || !bounded)?x+dist:width-1);
+            final int xmin = ((x-dist>=0 || !bounded)?x-dist:0);
+            final boolean skip = (grid instanceof SparseGrid3D);
+            // the last location is the top of the last column of the last slab (this matters only if the origin is in it, and so in the grid)
+            final int lastX = xmax;
+            final int lastDy = dist-((xmax-x>=0)?xmax-x:x-xmax);
+            final int lastY = ((y+lastDy<=height-1 || !bounded)?y+lastDy:height-1);
+            final int lastDz = lastDy-((lastY-y>=0)?lastY-y:y-lastY);
+            final int lastZ = ((z+lastDz<=length-1 || !bounded)?z+lastDz:length-1);
+            boolean moved = false;
+            for( int x0 = xmin ; x0 <= xmax ; x0++ )
+                {
+                final int dy = dist-((x0-x>=0)?x0-x:x-x0);
+                final int ymax = ((y+dy<=height-1 || !bounded)?y+dy:height-1);
+                final int ymin = ((y-dy>=0 || !bounded)?y-dy:0);
+                for( int y0 =  ymin; y0 <= ymax; y0++ )
+                    {
+                    final int dz = dy-((y0-y>=0)?y0-y:y-y0);
+                    final int zmin = ((z-dz>=0 || !bounded)?z-dz:0);
+                    final int zmax = ((z+dz<=length-1 || !bounded)?z+dz:length-1);
+                    for( int z0 = zmin; z0 <= zmax; z0++ )
+                        {
+                        if (!includeOrigin)
+                            {
+                            if (x0 == x && y0 == y && z0 == z)
+                                {
+                                if (skip) continue;
+                                moved = true;
+                                if (x0 == lastX && y0 == lastY && z0 == lastZ) continue;
+                                if (!visitor.visit(lastX, lastY, lastZ)) return false;
+                                continue;
+                                }
+                            if (moved && x0 == lastX && y0 == lastY && z0 == lastZ) continue;
+                            }
+                        if (!visitor.visit(x0, y0, z0)) return false;
+                        }
+                    }
+                }
+            }
+        return true;
+        }
+
+
+    static boolean visitRadial(final Grid3D grid, final int x, final int y, final int z, final double dist, final int mode, final boolean includeOrigin, final int measurementRule, final boolean closed, final LocationVisitor3D visitor)
+        {
+        checkVisitor(visitor);
+        return radial(grid, x, y, z, dist, mode, includeOrigin, measurementRule, closed, null, null, null, visitor);
+        }
+
+    static void radialLocations(final Grid3D grid, final int x, final int y, final int z, final double dist, final int mode, final boolean includeOrigin, final int measurementRule, final boolean closed, final IntBag xPos, final IntBag yPos, final IntBag zPos)
+        {
+        if( xPos == null || yPos == null || zPos == null)
+            {
+            throw new RuntimeException( "xPos and yPos and zPos should not be null" );
+            }
+        radial(grid, x, y, z, dist, mode, includeOrigin, measurementRule, closed, xPos, yPos, zPos, null);
+        }
+
+    // Hands each location either to the visitor or, if it is null, to xPos, yPos, and zPos.
+    // Toroidal neighborhoods are computed unbounded, then wrapped, so (as always) they are not de-duplicated.
+    // The original clipped a toroidal box wider than the grid to the grid's size, and measured the wrapped cells;
+    // we measure the whole box instead, which gives the right cells but, for such boxes, a different order.
+    static boolean radial(final Grid3D grid, final int x, final int y, final int z, final double dist, final int mode, final boolean includeOrigin, final int measurementRule, final boolean closed,
+        final IntBag xPos, final IntBag yPos, final IntBag zPos, final LocationVisitor3D visitor)
+        {
+        checkDistance(dist);
+        checkMeasurementRule(measurementRule);
+        checkMode3D(mode);
+
+        final int width = grid.getWidth();
+        final int height = grid.getHeight();
+        final int length = grid.getLength();
+
+        if (visitor == null) { xPos.clear(); yPos.clear(); zPos.clear(); }
+
+        final boolean toroidal = (mode == Grid3D.TOROIDAL);
+        final boolean bounded = (mode == Grid3D.BOUNDED);
+
+        // The original SparseGrid3D, and every original toroidal 3D neighborhood, left the origin out as it listed the box
+        // rather than removing it afterwards, which gives a different order (see radialBox).
+        final boolean skipOrigin = !includeOrigin && (toroidal || grid instanceof SparseGrid3D);
+
+        // A bounded neighborhood clipped by the edges of the grid has its own order (see radialBox), so we compute it afresh
+        final int r = (int) Math.ceil(dist + 0.5);
+        if (bounded && (x - r < 0 || x + r > width - 1 || y - r < 0 || y + r > height - 1 || z - r < 0 || z + r > length - 1))
+            return radialBox(x, y, z, Math.max(x - r, 0), Math.min(x + r, width - 1), Math.max(y - r, 0), Math.min(y + r, height - 1),
+                Math.max(z - r, 0), Math.min(z + r, length - 1), dist, measurementRule, closed, includeOrigin, skipOrigin, xPos, yPos, zPos, visitor);
+
+        final Offsets offsets = radialOffsets3D(dist, measurementRule, closed, includeOrigin, skipOrigin);
+        final int[] dx = offsets.dx;
+        final int[] dy = offsets.dy;
+        final int[] dz = offsets.dz;
+        final int size = offsets.size;
+
+        for(int i = 0; i < size; i++)
+            {
+            int x0 = x + dx[i];
+            int y0 = y + dy[i];
+            int z0 = z + dz[i];
+            if (toroidal) { x0 = wrap(x0, width); y0 = wrap(y0, height); z0 = wrap(z0, length); }
+            if (visitor == null) { xPos.add(x0); yPos.add(y0); zPos.add(z0); }
+            else if (!visitor.visit(x0, y0, z0)) return false;
+            }
+        return true;
+        }
+
+    // The 3D version of radialBox(...) above.  If skipOrigin is true, the origin is left out as the box is listed,
+    // rather than removed afterwards.
+    static boolean radialBox(final int x, final int y, final int z, final int xmin, final int xmax, final int ymin, final int ymax,
+        final int zmin, final int zmax, final double dist, final int measurementRule, final boolean closed, final boolean includeOrigin,
+        final boolean skipOrigin, final IntBag xs, final IntBag ys, final IntBag zs, final LocationVisitor3D visitor)
+        {
+        if (xmin > xmax || ymin > ymax || zmin > zmax) return true;
+        final int nz = zmax - zmin + 1;
+        final int nyz = (ymax - ymin + 1) * nz;
+        final int n = (xmax - xmin + 1) * nyz;
+        final int hole = (!includeOrigin && x >= xmin && x <= xmax && y >= ymin && y <= ymax && z >= zmin && z <= zmax ?
+            (x - xmin) * nyz + (y - ymin) * nz + (z - zmin) : -1);
+        final double distsq = dist * dist;
+        int len = (hole >= 0 ? n - 1 : n);
+        for(int i = 0; i < len; i++)
+            {
+            int p = boxIndex(i, hole, n, skipOrigin);
+            int x0 = xmin + p / nyz;
+            int y0 = ymin + (p % nyz) / nz;
+            int z0 = zmin + p % nz;
+            while (AbstractGrid3D.removeForRadial(x, y, z, x0, y0, z0, dist, distsq, measurementRule, closed))
+                {
+                len--;
+                if (i == len) return true;
+                p = boxIndex(len, hole, n, skipOrigin);
+                x0 = xmin + p / nyz;
+                y0 = ymin + (p % nyz) / nz;
+                z0 = zmin + p % nz;
+                }
+            if (visitor == null) { xs.add(x0); ys.add(y0); zs.add(z0); }
+            else if (!visitor.visit(x0, y0, z0)) return false;
+            }
+        return true;
+        }
+
+
+
+    ////// Cached offset tables
+
+
+    /** Radial and hexagonal neighborhoods have the same shape wherever they are centered, so we compute
+        each shape once as a table of offsets from the origin and cache it.  A lookup then need only translate,
+        clip or wrap, the offsets.  Hexagonal shapes differ between even and odd columns and so get a table
+        apiece.  Tables are immutable once published, so they may be shared among threads. */
+    static final class Offsets
+        {
+        static final int RADIAL_2D = 0;
+        static final int RADIAL_3D = 1;
+        static final int HEXAGONAL_EVEN = 2;
+        static final int HEXAGONAL_ODD = 3;
+        static final int RADIAL_3D_SKIPPING_ORIGIN = 4;     // see radialBox(...)
+
+        // the key
+        final int kind;
+        final long dist;        // bits of the double distance
+        final int measurementRule;
+        final boolean closed;
+        final boolean includeOrigin;
+
+        // the table
+        int[] dx = new int[16];
+        int[] dy = new int[16];
+        int[] dz;
+        int size;
+
+        Offsets(int kind, long dist, int measurementRule, boolean closed, boolean includeOrigin)
+            {
+            this.kind = kind;
+            this.dist = dist;
+            this.measurementRule = measurementRule;
+            this.closed = closed;
+            this.includeOrigin = includeOrigin;
+            if (kind == RADIAL_3D || kind == RADIAL_3D_SKIPPING_ORIGIN) dz = new int[16];
+            }
+
+        boolean matches(int kind, long dist, int measurementRule, boolean closed, boolean includeOrigin)
+            {
+            return this.kind == kind && this.dist == dist && this.measurementRule == measurementRule &&
+                this.closed == closed && this.includeOrigin == includeOrigin;
+            }
+
+        public boolean equals(Object obj)
+            {
+            if (!(obj instanceof Offsets)) return false;
+            Offsets o = (Offsets) obj;
+            return matches(o.kind, o.dist, o.measurementRule, o.closed, o.includeOrigin);
+            }
+
+        public int hashCode()
+            {
+            int hash = (int)(dist ^ (dist >>> 32));
+            hash = hash * 31 + kind;
+            hash = hash * 31 + measurementRule;
+            return hash * 4 + (closed ? 2 : 0) + (includeOrigin ? 1 : 0);
+            }
+
+        void add(int x, int y)
+            {
+            if (size == dx.length)
+                {
+                int[] newdx = new int[size * 2]; System.arraycopy(dx, 0, newdx, 0, size); dx = newdx;
+                int[] newdy = new int[size * 2]; System.arraycopy(dy, 0, newdy, 0, size); dy = newdy;
+                }
+            dx[size] = x;
+            dy[size] = y;
+            size++;
+            }
+
+        void add(int x, int y, int z)
+            {
+            if (size == dz.length)
+                {
+                int[] newdz = new int[size * 2]; System.arraycopy(dz, 0, newdz, 0, size); dz = newdz;
+                }
+            dz[size] = z;
+            add(x, y);
+            }
+
+        // Fills the table with offsets from the origin
+        void build()
+            {
+            final double d = Double.longBitsToDouble(dist);
+            if (kind == RADIAL_2D)  // in the original order: see radialBox(...)
+                {
+                final int r = (int) Math.ceil(d + 0.5);
+                final IntBag xs = new IntBag();
+                final IntBag ys = new IntBag();
+                radialBox(0, 0, -r, r, -r, r, d, measurementRule, closed, includeOrigin, xs, ys, null);
+                for(int i = 0; i < xs.numObjs; i++)
+                    add(xs.objs[i], ys.objs[i]);
+                }
+            else if (kind == RADIAL_3D || kind == RADIAL_3D_SKIPPING_ORIGIN)
+                {
+                final int r = (int) Math.ceil(d + 0.5);
+                final IntBag xs = new IntBag();
+                final IntBag ys = new IntBag();
+                final IntBag zs = new IntBag();
+                radialBox(0, 0, 0, -r, r, -r, r, -r, r, d, measurementRule, closed, includeOrigin, kind == RADIAL_3D_SKIPPING_ORIGIN, xs, ys, zs, null);
+                for(int i = 0; i < xs.numObjs; i++)
+                    add(xs.objs[i], ys.objs[i], zs.objs[i]);
+                }
+            else  // hexagonal, the same traversal as the original getHexagonalLocations(...), unbounded
+                {
+                final int hdist = (int) d;
+                final int x = (kind == HEXAGONAL_ODD ? 1 : 0);
+
+                // vertical center line of hexagon, with the origin at index hdist (see hexagonal(...))
+                for(int y0 = -hdist; y0 <= hdist; y0++)
+                    add(0, y0);
+
+                // left half of hexagon
+                int x0 = x;
+                int ymin = -hdist;
+                int ymax = hdist;
+                for( int i = 1 ; i <= hdist ; i++ )
+                    {
+                    ymin = ((x0 & 1) == 0 ? ymin : ymin + 1);   // dly
+                    ymax = ((x0 & 1) == 0 ? ymax - 1 : ymax);   // uly
+                    x0 = x0 - 1;                                // dlx
+                    for( int y0 = ymin ; y0 <= ymax ; y0++ )
+                        add(x0 - x, y0);
+                    }
+
+                // right half of hexagon
+                x0 = x;
+                ymin = -hdist;
+                ymax = hdist;
+                for( int i = 1 ; i <= hdist ; i++ )
+                    {
+                    ymin = ((x0 & 1) == 0 ? ymin : ymin + 1);   // dry
+                    ymax = ((x0 & 1) == 0 ? ymax - 1 : ymax);   // ury
+                    x0 = x0 + 1;                                // drx
+                    for( int y0 = ymin ; y0 <= ymax ; y0++ )
+                        add(x0 - x, y0);
+                    }
+                }
+            }
+        }
+
+    /** Tables reaching further than this from the origin are built afresh each time rather than cached. */
+    static final int MAX_CACHED_REACH = 64;
+    /** The cache is emptied when it holds this many tables, so oddball distances can't make it grow without bound. */
+    static final int MAX_CACHED_TABLES = 256;
+
+    static final HashMap offsetCache = new HashMap();
+
+    // The most recent table of each kind.  Nearly all models ask for the same one or two neighborhoods
+    // over and over, so this lets us skip the key allocation and synchronized lookup almost every time.
+    static volatile Offsets lastRadial2D;
+    static volatile Offsets lastRadial3D;
+    static volatile Offsets lastHexagonalEven;
+    static volatile Offsets lastHexagonalOdd;
+
+    static Offsets offsets(final Offsets key, final int reach)
+        {
+        if (reach > MAX_CACHED_REACH)
+            {
+            key.build();
+            return key;
+            }
+        synchronized(offsetCache)
+            {
+            Offsets offsets = (Offsets)(offsetCache.get(key));
+            if (offsets == null)
+                {
+                key.build();
+                if (offsetCache.size() >= MAX_CACHED_TABLES) offsetCache.clear();
+                offsetCache.put(key, key);
+                offsets = key;
+                }
+            return offsets;
+            }
+        }
+
+    static Offsets radialOffsets(final double dist, final int measurementRule, final boolean closed, final boolean includeOrigin)
+        {
+        final long bits = Double.doubleToLongBits(dist);
+        Offsets offsets = lastRadial2D;
+        if (offsets != null && offsets.matches(Offsets.RADIAL_2D, bits, measurementRule, closed, includeOrigin))
+            return offsets;
+        offsets = offsets(new Offsets(Offsets.RADIAL_2D, bits, measurementRule, closed, includeOrigin), (int) Math.ceil(dist + 0.5));
+        lastRadial2D = offsets;
+        return offsets;
+        }
+
+    static Offsets radialOffsets3D(final double dist, final int measurementRule, final boolean closed, final boolean includeOrigin, final boolean skipOrigin)
+        {
+        final int kind = (skipOrigin ? Offsets.RADIAL_3D_SKIPPING_ORIGIN : Offsets.RADIAL_3D);
+        final long bits = Double.doubleToLongBits(dist);
+        Offsets offsets = lastRadial3D;
+        if (offsets != null && offsets.matches(kind, bits, measurementRule, closed, includeOrigin))
+            return offsets;
+        offsets = offsets(new Offsets(kind, bits, measurementRule, closed, includeOrigin), (int) Math.ceil(dist + 0.5));
+        lastRadial3D = offsets;
+        return offsets;
+        }
+
+    static Offsets hexagonalOffsets(final int dist, final boolean oddColumn)
+        {
+        final int kind = (oddColumn ? Offsets.HEXAGONAL_ODD : Offsets.HEXAGONAL_EVEN);
+        final long bits = Double.doubleToLongBits(dist);
+        Offsets offsets = (oddColumn ? lastHexagonalOdd : lastHexagonalEven);
+        if (offsets != null && offsets.matches(kind, bits, 0, false, true))
+            return offsets;
+        offsets = offsets(new Offsets(kind, bits, 0, false, true), dist);
+        if (oddColumn) lastHexagonalOdd = offsets;
+        else lastHexagonalEven = offsets;
+        return offsets;
+        }
+    }
@@ -20,11 +20,17 @@ import sim.util.*;
    <p>We very strongly encourage you to examine <b>SparseGrid2D</b> first to see if it's more appropriate to your task.  If you need arbitrary numbers of Objects to be able to occupy the same location in the grid, or if you have very few Objects and a very large grid, or if your space is unbounded, you should probably use SparseGrid2D instead.
 */
 
-public class ObjectGrid2D extends AbstractGrid2D
+public class ObjectGrid2D extends AbstractGrid2D implements BufferedGrid
     {
     private static final long serialVersionUID = 1;
 
     public Object[/**x*/][/**y*/] field;
+
+    /** The back buffer, or null if the grid is not double-buffered (see BufferedGrid). */
+    Object[][] back;
+
+    /** Records which tiles of the grid have changed, or null.  See buildDirtyTiles(...). */
+    DirtyTiles dirty;
     
     public ObjectGrid2D (int width, int height)
         {
@@ -49,11 +55,77 @@ public class ObjectGrid2D extends AbstractGrid2D
         setTo(values);
         }
         
-    /** Sets location (x,y) to val */
+    /** Sets location (x,y) to val.  If the grid is double-buffered, val is written into the back buffer. */
     public final void set(final int x, final int y, final Object val)
         {
         assert sim.util.LocationLog.it(this, new Int2D(x,y));
-        field[x][y] = val;
+        if (back != null) back[x][y] = val;
+        else field[x][y] = val;
+        if (dirty != null) dirty.mark(x, y);
+        }
+
+    public boolean isBuffered() { return back != null; }
+
+    /** Returns the back buffer, into which set(...) writes when the grid is double-buffered, or null if it is not.  You may
+        write into it directly, but it changes every time the buffers are swapped. */
+    public Object[][] getBackField() { return back; }
+
+    public void setBuffered(boolean val)
+        {
+        if (!val) back = null;
+        else if (back == null)
+            {
+            back = new Object[width][height];
+            copyToBack();
+            }
+        }
+
+    void checkBuffered()
+        {
+        if (back == null)
+            throw new RuntimeException("ObjectGrid2D is not double-buffered");
+        if (back.length != field.length || (back.length > 0 && back[0].length != field[0].length))
+            throw new RuntimeException("ObjectGrid2D was replaced with a field of a different size while double-buffered.  Call setBuffered(false) and then setBuffered(true) to rebuild the back buffer.");
+        }
+
+    public void swapBuffers()
+        {
+        checkBuffered();
+        final Object[][] f = field;
+        field = back;
+        back = f;
+        markAllDirty();
+        }
+
+    public void copyToBack()
+        {
+        checkBuffered();
+        final Object[][] field = this.field;
+        final Object[][] back = this.back;
+        for(int x = 0; x < field.length; x++)
+            System.arraycopy(field[x], 0, back[x], 0, field[x].length);
+        }
+
+    /** Starts recording which tiles of the grid change (see DirtyTiles), replacing any earlier DirtyTiles.  From then on
+        set(...) marks the tile holding the cell, and bulk operations mark every tile.  The tileSize must be a power of two. */
+    public DirtyTiles buildDirtyTiles(int tileSize)
+        {
+        dirty = new DirtyTiles(width, height, tileSize);
+        return dirty;
+        }
+
+    /** Returns the DirtyTiles recording changes to the grid, or null if there isn't one. */
+    public DirtyTiles getDirtyTiles() { return dirty; }
+
+    /** Stops recording which tiles of the grid change. */
+    public void removeDirtyTiles() { dirty = null; }
+
+    // marks every tile after a bulk change, first resizing the tiles if the grid has changed size
+    void markAllDirty()
+        {
+        if (dirty == null) return;
+        if (dirty.width != width || dirty.height != height) dirty.reshape(width, height);
+        else dirty.markAll();
         }
 
     /** Returns the element at location (x,y) */
@@ -67,12 +139,15 @@ public class ObjectGrid2D extends AbstractGrid2D
         {
         super.reshape(width, height);
         field = new Object[width][height];
+        if (back != null) back = new Object[width][height];
+        if (dirty != null) dirty.reshape(width, height);
         }
         
     /** Sets all the locations in the grid the provided element. <b>WARNING:
         this may conflict with setTo(Object[][]) -- make sure you have casted properly.   */
     public final ObjectGrid2D setTo(Object thisObj)
         {
+        markAllDirty();
         if (isDistributed())
             {
             int w = getWidth();
@@ -132,6 +207,7 @@ public class ObjectGrid2D extends AbstractGrid2D
             for (int i = 0; i < w; i++)
                 this.field[i] = (Object[]) field[i].clone();
             }
+        markAllDirty();
         return this;
         }
 
@@ -202,6 +278,7 @@ public class ObjectGrid2D extends AbstractGrid2D
         (including duplicates but not null values).  You are free to modify the Bag. */
     public final Bag clear()
         {
+        markAllDirty();
         Bag bag = new Bag();
         if (isDistributed())
             {
@@ -275,6 +352,7 @@ public class ObjectGrid2D extends AbstractGrid2D
             for(int x =0 ; x < width; x++)
                 System.arraycopy(ofield[x],0,field[x],0,height);
             }
+        markAllDirty();
         return this;
         }
 
@@ -287,6 +365,7 @@ public class ObjectGrid2D extends AbstractGrid2D
 
     public final void replaceAll(Object from, Object to)
         {
+        markAllDirty();
         replaceAll(from, to, false);
         }
 
@@ -302,6 +381,7 @@ public class ObjectGrid2D extends AbstractGrid2D
 
     public final void replaceAll(Object from, Object to, boolean onlyIfSameObject)
         {
+        markAllDirty();
         if (isDistributed())
             {
             int w = getWidth();
@@ -1022,7 +1102,50 @@ public class ObjectGrid2D extends AbstractGrid2D
         }
 
 
+    /** Visits the object (possibly null) at each location in the same Moore neighborhood as getMooreNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitMooreNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final ObjectVisitor2D visitor )
+        {
+        return visitMooreLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
 
+    /** Visits the object (possibly null) at each location in the same von Neumann neighborhood as getVonNeumannNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitVonNeumannNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final ObjectVisitor2D visitor )
+        {
+        return visitVonNeumannLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
 
+    /** Visits the object (possibly null) at each location in the same hexagonal neighborhood as getHexagonalNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitHexagonalNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final ObjectVisitor2D visitor )
+        {
+        return visitHexagonalLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
 
+    /** Visits the object (possibly null) at each location in the same radial neighborhood as getRadialNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final double dist, int mode, boolean includeOrigin, final ObjectVisitor2D visitor )
+        {
+        return visitRadialLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits the object (possibly null) at each location in the same radial neighborhood as getRadialNeighbors(x, y, dist, mode, includeOrigin, measurementRule, closed, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final double dist, int mode, boolean includeOrigin, int measurementRule, boolean closed, final ObjectVisitor2D visitor )
+        {
+        return visitRadialLocations(x, y, dist, mode, includeOrigin, measurementRule, closed, new NeighborVisitor(visitor));
+        }
+
+    // Hands the value at each location to a ObjectVisitor2D
+    final class NeighborVisitor implements LocationVisitor2D
+        {
+        final ObjectVisitor2D visitor;
+        NeighborVisitor(final ObjectVisitor2D visitor) { Neighborhoods.checkVisitor(visitor); this.visitor = visitor; }
+        public boolean visit(final int x, final int y)
+            {
+            assert sim.util.LocationLog.it(ObjectGrid2D.this, new Int2D(x, y));
+            return visitor.visit(x, y, get(x, y));
+            }
+        }
     }
@@ -0,0 +1,19 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.grid;
+
+/** 
+    Visits the objects in a 2D grid neighborhood.  See LocationVisitor2D.  ObjectGrid2D calls the visitor
+    once per location, passing the object stored there (which may be null).  SparseGrid2D and DenseGrid2D call
+    the visitor once for each object stored at each location, and skip empty locations.
+    Return true to continue visiting, or false to stop early.
+*/
+
+public interface ObjectVisitor2D
+    {
+    public boolean visit(int x, int y, Object object);
+    }
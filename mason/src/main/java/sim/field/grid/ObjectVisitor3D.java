@@ -0,0 +1,19 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.grid;
+
+/** 
+    Visits the objects in a 3D grid neighborhood.  See LocationVisitor3D.  ObjectGrid3D calls the visitor
+    once per location, passing the object stored there (which may be null).  SparseGrid3D and DenseGrid3D call
+    the visitor once for each object stored at each location, and skip empty locations.
+    Return true to continue visiting, or false to stop early.
+*/
+
+public interface ObjectVisitor3D
+    {
+    public boolean visit(int x, int y, int z, Object object);
+    }
@@ -39,6 +39,11 @@ import java.util.*;
    must NOT modiify.  The <b>removeObjectsAtLocation(Object location)</b> method removes and returns all objects at a given location
    (defined as an Int2D or MutableDouble2D).  The <b>exists</b> method tells you if the object exists in the field.
         
+   <p><b>Storage.</b>  By default the bags of objects at each location are hashed by location.  If much of the grid is occupied,
+   you can instead call <b>setStorage(DENSE_STORAGE)</b> to store them in an array with one cell per location, or
+   <b>setStorage(AUTOMATIC_STORAGE)</b> to let the grid switch between the two as its occupancy changes.  The grid behaves
+   identically in all three modes.
+        
    <p><b>Neighborhood Lookups.</b>  The method <b>getObjectsAtLocationOfObject</b> returns all Objects at the same location as the provided
    object (in a Bag, which must NOT modify).  The various <b>getNeighbors...Distance(...)</b> methods return all locations defined by certain
    distance bounds, or all the objects stored at those locations.  They are expensive to compute and it may be wiser to compute them by hand
@@ -64,9 +69,132 @@ public class SparseGrid2D extends SparseField implements Grid2D, SparseField2D
         super(values);
         width = values.width;
         height = values.height;
+        storage = values.storage;
+        }
+
+    /** Records which tiles of the grid have changed, or null.  See buildDirtyTiles(...). */
+    DirtyTiles dirty;
+
+    /** Starts recording which tiles of the grid change (see DirtyTiles), replacing any earlier DirtyTiles.  From then on
+        adding, moving, or removing an object marks the tiles holding its old and new locations, and clear() marks every
+        tile.  Changes outside the bounds of the grid are recorded in DirtyTiles.isOutsideDirty(...).  The tileSize must be
+        a power of two. */
+    public DirtyTiles buildDirtyTiles(int tileSize)
+        {
+        dirty = new DirtyTiles(width, height, tileSize);
+        return dirty;
+        }
+
+    /** Returns the DirtyTiles recording changes to the grid, or null if there isn't one. */
+    public DirtyTiles getDirtyTiles() { return dirty; }
+
+    /** Stops recording which tiles of the grid change. */
+    public void removeDirtyTiles() { dirty = null; }
+
+    void markDirty(Object location)
+        {
+        if (location instanceof Int2D) dirty.mark(((Int2D) location).x, ((Int2D) location).y);
+        else if (location instanceof MutableInt2D) dirty.mark(((MutableInt2D) location).x, ((MutableInt2D) location).y);
+        // an integer-valued Double2D or MutableDouble2D may name a location too (see LocationMap)
+        else if (location instanceof Double2D) dirty.mark((int)((Double2D) location).x, (int)((Double2D) location).y);
+        else if (location instanceof MutableDouble2D) dirty.mark((int)((MutableDouble2D) location).x, (int)((MutableDouble2D) location).y);
         }
     
-    public void reshape(int width, int height) { this.width = width; this.height = height; clear(); }
+    public void reshape(int width, int height) 
+        { 
+        this.width = width; 
+        this.height = height; 
+        if (storage == DENSE_STORAGE) checkDenseSize();
+        if (dirty != null) dirty.reshape(width, height);
+        clear(); 
+        }
+
+    public Bag clear()
+        {
+        Bag result = super.clear();
+        if (dirty != null) dirty.markAll();
+        return result;
+        }
+
+    /** Builds the objectHash as a copy of another.  If the other map is a DenseLocationMap, so is the copy;
+        otherwise a LocationMap is used, which hashes 2D integer locations without allocating or calling hashCode(). */
+    public Map buildObjectMap(Map other) 
+        { 
+        if (other instanceof DenseLocationMap) return new DenseLocationMap((DenseLocationMap)other);
+        else if (other instanceof LocationMap) return new LocationMap((LocationMap)other);
+        else return new LocationMap(false, other); 
+        }
+
+    /** Builds an empty objectHash: a DenseLocationMap if the grid is using DENSE_STORAGE, else a LocationMap, which 
+        hashes 2D integer locations without allocating or calling hashCode(). */
+    public Map buildObjectMap(int size) 
+        { 
+        if (storage == DENSE_STORAGE) return new DenseLocationMap(width, height);
+        else return new LocationMap(false, size); 
+        }
+
+
+    /** Storage mode in which the objectHash hashes its locations.  This is the default. */
+    public static final int SPARSE_STORAGE = 0;
+    /** Storage mode in which every location in the grid's width and height has its own cell in an array.  */
+    public static final int DENSE_STORAGE = 1;
+    /** Storage mode in which the grid switches between sparse and dense storage depending on how many locations are occupied. */
+    public static final int AUTOMATIC_STORAGE = 2;
+
+    /** In AUTOMATIC_STORAGE, the grid switches to dense storage once at least 1/DENSE_OCCUPANCY of its locations hold bags. */
+    public static final int DENSE_OCCUPANCY = 4;
+    /** In AUTOMATIC_STORAGE, the grid switches back to sparse storage once fewer than 1/SPARSE_OCCUPANCY of its locations hold bags. */
+    public static final int SPARSE_OCCUPANCY = 16;
+
+    int storage;        // SPARSE_STORAGE by default.  Must not be initialized, as buildObjectMap(...) is called before our initializers run
+
+    /** Returns the storage mode, one of SPARSE_STORAGE, DENSE_STORAGE, or AUTOMATIC_STORAGE. */
+    public int getStorage() { return storage; }
+
+    /** Sets the storage mode, one of SPARSE_STORAGE, DENSE_STORAGE, or AUTOMATIC_STORAGE, converting the objectHash 
+        as necessary.  Which mode you use has no effect on the grid's behavior, including removeEmptyBags and replaceLargeBags;
+        only on its speed and memory.  Dense storage allocates one cell per location in the grid (locations outside
+        the grid's width and height are still hashed), so it is faster and smaller when a large fraction of the grid is
+        occupied, and wasteful when few locations are. */
+    public void setStorage(int storage)
+        {
+        if (storage != SPARSE_STORAGE && storage != DENSE_STORAGE && storage != AUTOMATIC_STORAGE)
+            throw new RuntimeException("Storage must be one of SPARSE_STORAGE, DENSE_STORAGE, or AUTOMATIC_STORAGE: " + storage);
+        if (storage == DENSE_STORAGE) checkDenseSize();
+        this.storage = storage;
+        if (storage == DENSE_STORAGE) setDense(true);
+        else if (storage == SPARSE_STORAGE) setDense(false);
+        else checkStorage();
+        }
+
+    /** Returns true if the objectHash is currently a DenseLocationMap. */
+    public boolean isDense() { return objectHash instanceof DenseLocationMap; }
+
+    void checkDenseSize()
+        {
+        if (((long) width) * height > Integer.MAX_VALUE - 8)
+            throw new RuntimeException("A SparseGrid2D of " + width + " by " + height + " is too large for dense storage");
+        }
+
+    void setDense(boolean dense)
+        {
+        if (dense == isDense()) return;
+        if (dense) objectHash = new DenseLocationMap(width, height, objectHash);
+        else objectHash = new LocationMap(false, objectHash);
+        }
+
+    // In AUTOMATIC_STORAGE, switches to or from dense storage.  There's a gap between the two thresholds so that
+    // a grid hovering around one of them doesn't keep rebuilding its objectHash.
+    void checkStorage()
+        {
+        final long cells = ((long) width) * height;
+        final long occupied = objectHash.size();
+        if (isDense())
+            {
+            if (occupied * SPARSE_OCCUPANCY < cells) setDense(false);
+            }
+        else if (occupied * DENSE_OCCUPANCY >= cells && cells > 0 && cells <= Integer.MAX_VALUE - 8) setDense(true);
+        }
     
     /** Returns the width of the grid */
     public int getWidth() { return width; }
@@ -219,6 +347,13 @@ public class SparseGrid2D extends SparseField implements Grid2D, SparseField2D
     /** Returns the number of objects stored in the grid at the given location. */
     public int numObjectsAtLocation(final int x, final int y)
         {
+        if (objectHash instanceof LocationMap)
+            {
+            final Bag b = (Bag)(((LocationMap)objectHash).get(x,y));
+            if (b==null) return 0;
+            assert sim.util.LocationLog.it(this, new Int2D(x,y));
+            return b.numObjs;
+            }
         return numObjectsAtLocation(new Int2D(x,y));
         }
 
@@ -231,6 +366,13 @@ public class SparseGrid2D extends SparseField implements Grid2D, SparseField2D
     */
     public Bag getObjectsAtLocation(final int x, final int y)
         {
+        if (objectHash instanceof LocationMap)
+            {
+            final Bag b = (Bag)(((LocationMap)objectHash).get(x,y));
+            if (b==null || b.numObjs == 0) return null;
+            assert sim.util.LocationLog.it(this, new Int2D(x,y));
+            return b;
+            }
         return getObjectsAtLocation(new Int2D(x,y));
         }
 
@@ -258,14 +400,40 @@ public class SparseGrid2D extends SparseField implements Grid2D, SparseField2D
         if the object is null (null objects cannot be put into the grid). */
     public boolean setObjectLocation(final Object obj, final int x, final int y)
         {
-        return super.setObjectLocation(obj,new Int2D(x,y));
+        if (dirty != null) markDirty(getRawObjectLocation(obj));
+        boolean result = super.setObjectLocation(obj,new Int2D(x,y));
+        if (result && dirty != null) dirty.mark(x, y);
+        if (storage == AUTOMATIC_STORAGE) checkStorage();
+        return result;
         }
     
     /** Changes the location of an object, or adds if it doesn't exist yet.  Returns false
         if the object is null (null objects cannot be put into the grid) or if the location is null. */
     public boolean setObjectLocation(Object obj, final Int2D location)
         {
-        return super.setObjectLocation(obj, location);
+        if (dirty != null) markDirty(getRawObjectLocation(obj));
+        boolean result = super.setObjectLocation(obj, location);
+        if (result && dirty != null) markDirty(location);
+        if (storage == AUTOMATIC_STORAGE) checkStorage();
+        return result;
+        }
+
+    /** Removes an object if it exists.  Returns its location, or null if the object didn't exist. */
+    public Object remove(final Object obj)
+        {
+        Object result = super.remove(obj);
+        if (dirty != null) markDirty(result);
+        if (storage == AUTOMATIC_STORAGE) checkStorage();
+        return result;
+        }
+
+    /** Removes all the objects stored at the given location and returns them as a Bag (which you are free to modify). */
+    public Bag removeObjectsAtLocation(final Object location)
+        {
+        Bag result = super.removeObjectsAtLocation(location);
+        if (dirty != null && result != null) markDirty(location);
+        if (storage == AUTOMATIC_STORAGE) checkStorage();
+        return result;
         }
         
 
@@ -325,7 +493,7 @@ public class SparseGrid2D extends SparseField implements Grid2D, SparseField2D
                 
             // next: is ymax - ymin humongous?  If so, no need to continue wrapping around
             if (ymax - ymin >= height)  // too wide, just use whole neighborhood
-                { ymin = 0; ymax = width - 1; }
+                { ymin = 0; ymax = height - 1; }
                 
             for( int x0 = xmin ; x0 <= xmax ; x0++ )
                 {
@@ -471,169 +639,7 @@ public class SparseGrid2D extends SparseField implements Grid2D, SparseField2D
 
     public void getHexagonalLocations( final int x, final int y, final int dist, int mode, boolean includeOrigin, IntBag xPos, IntBag yPos )
         {
-        boolean toroidal = (mode == TOROIDAL);
-        boolean bounded = (mode == BOUNDED);
-        
-        if (mode != BOUNDED && mode != UNBOUNDED && mode != TOROIDAL)
-            {
-            throw new RuntimeException("Mode must be either Grid2D.BOUNDED, Grid2D.UNBOUNDED, or Grid2D.TOROIDAL");
-            }
-        
-        // won't work for negative distances
-        if( dist < 0 )
-            {
-            throw new RuntimeException( "Distance must be positive" );
-            }
-
-        if( xPos == null || yPos == null )
-            {
-            throw new RuntimeException( "xPos and yPos should not be null" );
-            }
-
-        if( ( x < 0 || x >= width || y < 0 || y >= height ) && !bounded)
-            throw new RuntimeException( "Invalid initial position" );
-
-        xPos.clear();
-        yPos.clear();
-
-        // local variables are faster
-        final int height = this.height;
-        final int width = this.width;
-
-        if( toroidal && height%2==1 )
-            throw new RuntimeException( "toroidal hexagonal environment should have even heights" );
-
-        if( toroidal )
-            {
-            // compute ymin and ymax for the neighborhood
-            int ymin = y - dist;
-            int ymax = y + dist;
-            for( int y0 = ymin ; y0 <= ymax ; y0 = downy(x,y0) )
-                {
-                xPos.add( tx(x, width, width*2, x+width, x-width) );
-                yPos.add( ty(y0, height, height*2, y0+height, y0-height) );
-                }
-            int x0 = x;
-            for( int i = 1 ; i <= dist ; i++ )
-                {
-                final int temp_ymin = ymin;
-                ymin = dly( x0, ymin );
-                ymax = uly( x0, ymax );
-                x0 = dlx( x0, temp_ymin );
-                for( int y0 = ymin ; y0 <= ymax ; y0 = downy(x0,y0) )
-                    {
-                    xPos.add( tx(x0, width, width*2, x0+width, x0-width) );
-                    yPos.add( ty(y0, height, height*2, y0+height, y0-height) );
-                    }
-                }
-            x0 = x;
-            ymin = y-dist;
-            ymax = y+dist;
-            for( int i = 1 ; i <= dist ; i++ )
-                {
-                final int temp_ymin = ymin;
-                ymin = dry( x0, ymin );
-                ymax = ury( x0, ymax );
-                x0 = drx( x0, temp_ymin );
-                for( int y0 = ymin ; y0 <= ymax ; y0 = downy(x0,y0) )
-                    {
-                    xPos.add( tx(x0, width, width*2, x0+width, x0-width) );
-                    yPos.add( ty(y0, height, height*2, y0+height, y0-height) );
-                    }
-                }
-
-            if (dist * 2 >= width || dist * 2 >= height)  // too big, will have to remove duplicates
-                {
-                int sz = xPos.size();
-                Map map = buildMap(sz);
-                for(int i = 0 ; i < sz; i++)
-                    {
-                    Double2D elem = new Double2D(xPos.get(i), yPos.get(i));
-                    if (map.containsKey(elem)) // already there
-                        {
-                        xPos.remove(i);
-                        yPos.remove(i);
-                        i--;
-                        sz--;
-                        }
-                    else
-                        {
-                        map.put(elem, elem);
-                        }
-                    }
-                }
-            if (!includeOrigin) removeOriginToroidal(x,y,xPos,yPos); 
-            }
-        else // not toroidal
-            {
-            int ymin = y - dist;
-            int ymax = y + dist;
-            
-            // compute ymin and ymax for the neighborhood
-            int ylBound = ((ymin >= 0 || !bounded) ? ymin : 0);
-            int yuBound = ((ymax < height || !bounded) ? ymax : height-1);
-
-            // add vertical center line of hexagon
-            for( int y0 = ylBound ; y0 <= yuBound ; y0 = downy(x,y0) )
-                {
-                xPos.add( x );
-                yPos.add( y0 );
-                }
-            
-            // add right half of hexagon
-            int x0 = x;
-            ymin = y - dist;
-            ymax = y + dist;
-            for( int i = 1 ; i <= dist ; i++ )
-                {
-                final int temp_ymin = ymin;
-                ymin = dly( x0, ymin );
-                ymax = uly( x0, ymax );
-                x0 = dlx( x0, temp_ymin );
-                
-                ylBound = ((ymin >= 0 || !bounded) ? ymin : 0);
-                yuBound = ((ymax < height || !bounded) ? ymax : height-1);
-    
-                // yuBound =  (( ymax<height  || !bounded) ? ymax : height-1);
-
-                if( x0 >= 0 )
-                    for( int y0 = ylBound ; y0 <= yuBound ; y0 = downy(x0,y0) )
-                        {
-                        if( y0 >= 0 || !bounded )
-                            {
-                            xPos.add( x0 );
-                            yPos.add( y0 );
-                            }
-                        }
-                }
-
-            x0 = x;
-            ymin = y - dist;
-            ymax = y + dist;
-            for( int i = 1 ; i <= dist ; i++ )
-                {
-                final int temp_ymin = ymin;
-                ymin = dry( x0, ymin );
-                ymax = ury( x0, ymax );
-                x0 = drx( x0, temp_ymin );
-
-                ylBound = ((ymin >= 0 || !bounded) ? ymin : 0);
-                yuBound = ((ymax < height || !bounded) ? ymax : height-1);
-                
-                // yuBound =  ((ymax<height) || !bounded ?ymax:height);
-                
-                if( x0 < width )
-                    for( int y0 = ymin ; y0 <= yuBound; y0 = downy(x0,y0) )
-                        {
-                        if( y0 >= 0 || !bounded )
-                            {
-                            xPos.add( x0 );
-                            yPos.add( y0 );
-                            }
-                        }
-                }
-            if (!includeOrigin) removeOrigin(x,y,xPos,yPos); 
-            }
+        Neighborhoods.hexagonalLocations(this, x, y, dist, mode, includeOrigin, xPos, yPos);
         }
 
 
@@ -1181,18 +1187,6 @@ public class SparseGrid2D extends SparseField implements Grid2D, SparseField2D
 
 
 
-
-    double ds(double d1x, double d1y, double d2x, double d2y)
-        {
-        return ((d1x - d2x) * (d1x - d2x) + (d1y - d2y) * (d1y - d2y));
-        }
-    
-    boolean within(double d1x, double d1y, double d2x, double d2y, double distanceSquared, boolean closed)
-        {
-        double d= ds(d1x, d1y, d2x, d2y);
-        return (d < distanceSquared || (d == distanceSquared && closed));
-        }
-        
     public void getRadialLocations( final int x, final int y, final double dist, int mode, boolean includeOrigin, IntBag xPos, IntBag yPos )
         {
         getRadialLocations(x, y, dist, mode, includeOrigin, Grid2D.ANY, true, xPos, yPos);
@@ -1200,77 +1194,7 @@ public class SparseGrid2D extends SparseField implements Grid2D, SparseField2D
         
     public void getRadialLocations( final int x, final int y, final double dist, int mode, boolean includeOrigin, int measurementRule, boolean closed, IntBag xPos, IntBag yPos )
         {
-        boolean toroidal = (mode == TOROIDAL);
-
-        // won't work for negative distances
-        if( dist < 0 )
-            {
-            throw new RuntimeException( "Distance must be positive" );
-            }
-            
-        if (measurementRule != Grid2D.ANY && measurementRule != Grid2D.ALL && measurementRule != Grid2D.CENTER)
-            {
-            throw new RuntimeException(" Measurement rule must be one of ANY, ALL, or CENTER" );
-            }
-                
-        // grab the rectangle
-        if (toroidal)
-            getMooreLocations(x,y, (int) Math.ceil(dist + 0.5), UNBOUNDED, includeOrigin, xPos, yPos);
-        else
-            getMooreLocations(x,y, (int) Math.ceil(dist + 0.5), mode, includeOrigin, xPos, yPos);
-        int len = xPos.size();
-        double distsq = dist * dist;
-        
-        int width = this.width;
-        int height = this.height;
-        int widthtimestwo = width * 2;
-        int heighttimestwo = height * 2;
-        
-        for(int i = 0; i < len; i++)
-            {
-            int xp = xPos.get(i);
-            int yp = yPos.get(i);
-            boolean remove = false;
-                
-            if (measurementRule == Grid2D.ANY)
-                {
-                remove = AbstractGrid2D.removeForAny(x, y, xp, yp, dist, closed);
-                }
-            else if (measurementRule == Grid2D.ALL)
-                {
-                // must check if ALL corners lie within the boundary.  However
-                // we can reduce it to just specific corners depending on the relative
-                // positions of the coordinates
-                if (x < xp)
-                    {
-                    if (y < yp)
-                        remove = !within(x,y,xp+0.5,yp+0.5,distsq,closed);
-                    else  // y >= yp.  y==yp is included because only one corner must be checked -- grid points are centered in their squares
-                        remove = !within(x,y,xp+0.5,yp-0.5,distsq,closed);
-                    }
-                else  // x >= xp.  x==xp is included because only one corner must be checked -- grid points are centered in their squares
-                    {
-                    if (y < yp)
-                        remove = !within(x,y,xp-0.5,yp+0.5,distsq,closed);
-                    else // y >= yp.  y==yp is included because only one corner must be checked -- grid points are centered in their squares
-                        remove = !within(x,y,xp-0.5,yp-0.5,distsq,closed);
-                    }
-                }
-            else // (measurementRule == Grid2D.CENTER)
-                {
-                remove = !within(x,y,xp,yp,distsq,closed);
-                }
-                
-            if (remove)
-                { xPos.remove(i); yPos.remove(i); i--;  len--; }
-            else if (toroidal) // need to convert to toroidal position
-                { 
-                int _x = xPos.get(i);
-                int _y = yPos.get(i);
-                xPos.set(i, tx(_x, width, widthtimestwo, _x + width, _x - width));
-                yPos.set(i, tx(_y, height, heighttimestwo, _y + height, _y - height));
-                }
-            }
+        Neighborhoods.radialLocations(this, x, y, dist, mode, includeOrigin, measurementRule, closed, xPos, yPos);
         }
 
 
@@ -1395,6 +1319,100 @@ public class SparseGrid2D extends SparseField implements Grid2D, SparseField2D
 
 
     public final Double2D getDimensions() { return new Double2D(width, height); }
-    }
 
 
+    /** Visits, one at a time, the same locations that getMooreLocations(x, y, dist, mode, includeOrigin, xPos, yPos) would
+        gather, without filling any IntBags.  Stops as soon as the visitor returns false.  Returns false if the traversal
+        was stopped early by the visitor, else true. */
+    public boolean visitMooreLocations( final int x, final int y, final int dist, int mode, boolean includeOrigin, LocationVisitor2D visitor )
+        {
+        return Neighborhoods.visitMoore(this, x, y, dist, mode, includeOrigin, visitor);
+        }
+
+    /** Visits, one at a time, the same locations that getVonNeumannLocations(x, y, dist, mode, includeOrigin, xPos, yPos) would
+        gather, without filling any IntBags.  Stops as soon as the visitor returns false.  Returns false if the traversal
+        was stopped early by the visitor, else true.  Toroidal neighborhoods large enough to wrap onto themselves
+        (dist * 2 >= width or height) must be de-duplicated, and so are gathered into temporary IntBags first. */
+    public boolean visitVonNeumannLocations( final int x, final int y, final int dist, int mode, boolean includeOrigin, LocationVisitor2D visitor )
+        {
+        return Neighborhoods.visitVonNeumann(this, x, y, dist, mode, includeOrigin, visitor);
+        }
+
+    /** Visits, one at a time, the same locations that getHexagonalLocations(x, y, dist, mode, includeOrigin, xPos, yPos) would
+        gather, without filling any IntBags.  Stops as soon as the visitor returns false.  Returns false if the traversal
+        was stopped early by the visitor, else true.  Toroidal neighborhoods large enough to wrap onto themselves
+        (dist * 2 >= width or height) must be de-duplicated, and so are gathered into temporary IntBags first. */
+    public boolean visitHexagonalLocations( final int x, final int y, final int dist, int mode, boolean includeOrigin, LocationVisitor2D visitor )
+        {
+        return Neighborhoods.visitHexagonal(this, x, y, dist, mode, includeOrigin, visitor);
+        }
+
+    /** Visits, one at a time, the same locations that getRadialLocations(x, y, dist, mode, includeOrigin, xPos, yPos) would
+        gather, without filling any IntBags.  Stops as soon as the visitor returns false.  Returns false if the traversal
+        was stopped early by the visitor, else true. */
+    public boolean visitRadialLocations( final int x, final int y, final double dist, int mode, boolean includeOrigin, LocationVisitor2D visitor )
+        {
+        return Neighborhoods.visitRadial(this, x, y, dist, mode, includeOrigin, Grid2D.ANY, true, visitor);
+        }
+
+    /** Visits, one at a time, the same locations that getRadialLocations(x, y, dist, mode, includeOrigin, measurementRule, closed, xPos, yPos) would
+        gather, without filling any IntBags.  Stops as soon as the visitor returns false.  Returns false if the traversal
+        was stopped early by the visitor, else true. */
+    public boolean visitRadialLocations( final int x, final int y, final double dist, int mode, boolean includeOrigin, int measurementRule, boolean closed, LocationVisitor2D visitor )
+        {
+        return Neighborhoods.visitRadial(this, x, y, dist, mode, includeOrigin, measurementRule, closed, visitor);
+        }
+
+
+    /** Visits each object at each location in the same Moore neighborhood as getMooreNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitMooreNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final ObjectVisitor2D visitor )
+        {
+        return visitMooreLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits each object at each location in the same von Neumann neighborhood as getVonNeumannNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitVonNeumannNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final ObjectVisitor2D visitor )
+        {
+        return visitVonNeumannLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits each object at each location in the same hexagonal neighborhood as getHexagonalNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitHexagonalNeighbors( final int x, final int y, final int dist, int mode, boolean includeOrigin, final ObjectVisitor2D visitor )
+        {
+        return visitHexagonalLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits each object at each location in the same radial neighborhood as getRadialNeighbors(x, y, dist, mode, includeOrigin, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final double dist, int mode, boolean includeOrigin, final ObjectVisitor2D visitor )
+        {
+        return visitRadialLocations(x, y, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits each object at each location in the same radial neighborhood as getRadialNeighbors(x, y, dist, mode, includeOrigin, measurementRule, closed, result, xPos, yPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final double dist, int mode, boolean includeOrigin, int measurementRule, boolean closed, final ObjectVisitor2D visitor )
+        {
+        return visitRadialLocations(x, y, dist, mode, includeOrigin, measurementRule, closed, new NeighborVisitor(visitor));
+        }
+
+    // Hands each object at each location to an ObjectVisitor2D
+    final class NeighborVisitor implements LocationVisitor2D
+        {
+        final ObjectVisitor2D visitor;
+        NeighborVisitor(final ObjectVisitor2D visitor) { Neighborhoods.checkVisitor(visitor); this.visitor = visitor; }
+        public boolean visit(final int x, final int y)
+            {
+            Bag bag = getObjectsAtLocation(x, y);
+            if (bag == null) return true;
+            final Object[] objs = bag.objs;
+            final int len = bag.numObjs;
+            for(int i = 0; i < len; i++)
+                if (!visitor.visit(x, y, objs[i])) return false;
+            return true;
+            }
+        }
+    }
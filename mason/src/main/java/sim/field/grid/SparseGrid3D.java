@@ -69,6 +69,12 @@ public class SparseGrid3D extends SparseField implements Grid3D, SparseField3D
         length = values.length;
         }
 
+    /** Builds the objectHash as a LocationMap, which hashes 3D integer locations without allocating or calling hashCode(). */
+    public Map buildObjectMap(Map other) { return (other instanceof LocationMap ? new LocationMap((LocationMap)other) : new LocationMap(true, other)); }
+
+    /** Builds the objectHash as a LocationMap, which hashes 3D integer locations without allocating or calling hashCode(). */
+    public Map buildObjectMap(int size) { return new LocationMap(true, size); }
+
     /** Returns the width of the grid */
     public int getWidth() { return width; }
     
@@ -166,6 +172,13 @@ public class SparseGrid3D extends SparseField implements Grid3D, SparseField3D
     /** Returns the number of objects stored in the grid at the given location. */
     public int numObjectsAtLocation(final int x, final int y, final int z)
         {
+        if (objectHash instanceof LocationMap)
+            {
+            final Bag b = (Bag)(((LocationMap)objectHash).get(x,y,z));
+            if (b==null) return 0;
+            assert sim.util.LocationLog.it(this, new Int3D(x,y,z));
+            return b.numObjs;
+            }
         return numObjectsAtLocation(new Int3D(x,y,z));
         }
 
@@ -179,6 +192,13 @@ public class SparseGrid3D extends SparseField implements Grid3D, SparseField3D
     */
     public Bag getObjectsAtLocation(final int x, final int y, final int z)
         {
+        if (objectHash instanceof LocationMap)
+            {
+            final Bag b = (Bag)(((LocationMap)objectHash).get(x,y,z));
+            if (b==null || b.numObjs == 0) return null;
+            assert sim.util.LocationLog.it(this, new Int3D(x,y,z));
+            return b;
+            }
         return getObjectsAtLocation(new Int3D(x,y,z));
         }
 
@@ -390,7 +410,7 @@ public class SparseGrid3D extends SparseField implements Grid3D, SparseField3D
                     for( int z0 = zmin ; z0 <= zmax ; z0++ )
                         {
                         final int z_0 = tz(z0, length, length*2, z0+length, z0-length);
-                        if( x_0 != x || y_0 != y || z_0 != z )
+                        if( includeOrigin || x_0 != x || y_0 != y || z_0 != z )
                             {
                             xPos.add( x_0 );
                             yPos.add( y_0 );
@@ -419,7 +439,7 @@ public class SparseGrid3D extends SparseField implements Grid3D, SparseField3D
                     {
                     for( int z0 = zmin ; z0 <= zmax ; z0++ )
                         {
-                        if( x0 != x || y0 != y || z0 != z )
+                        if( includeOrigin || x0 != x || y0 != y || z0 != z )
                             {
                             xPos.add( x0 );
                             yPos.add( y0 );
@@ -489,7 +509,7 @@ public class SparseGrid3D extends SparseField implements Grid3D, SparseField3D
                     for( int z0 = zmin; z0 <= zmax; z0++ )
                         {
                         final int z_0 = tz(z0, length, length*2, z0+length, z0-length);
-                        if( x_0 != x || y_0 != y || z_0 != z )
+                        if( includeOrigin || x_0 != x || y_0 != y || z_0 != z )
                             {
                             xPos.add( x_0 );
                             yPos.add( y_0 );
@@ -541,7 +561,7 @@ public class SparseGrid3D extends SparseField implements Grid3D, SparseField3D
                     for( int z0 = zmin; z0 <= zmax; z0++ )
                         {
                         final int z_0 = z0;
-                        if( x_0 != x || y_0 != y || z_0 != z )
+                        if( includeOrigin || x_0 != x || y_0 != y || z_0 != z )
                             {
                             xPos.add( x_0 );
                             yPos.add( y_0 );
@@ -863,17 +883,6 @@ public class SparseGrid3D extends SparseField implements Grid3D, SparseField3D
 
 
 
-    double ds(double d1x, double d1y, double d1z, double d2x, double d2y, double d2z)
-        {
-        return ((d1x - d2x) * (d1x - d2x) + (d1y - d2y) * (d1y - d2y) + (d1z - d2z) * (d1z - d2z));
-        }
-    
-    boolean within(double d1x, double d1y, double d1z, double d2x, double d2y, double d2z, double distanceSquared, boolean closed)
-        {
-        double d= ds(d1x, d1y, d1z, d2x, d2y, d2z);
-        return (d < distanceSquared || (d == distanceSquared && closed));
-        }
-
     public void getRadialLocations( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, IntBag xPos, IntBag yPos, IntBag zPos )
         {
         getRadialLocations(x, y, z, dist, mode, includeOrigin, Grid3D.ANY, true, xPos, yPos, zPos);
@@ -881,148 +890,7 @@ public class SparseGrid3D extends SparseField implements Grid3D, SparseField3D
         
     public void getRadialLocations( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, int measurementRule, boolean closed, IntBag xPos, IntBag yPos, IntBag zPos )
         {
-        boolean toroidal = (mode == TOROIDAL);
-
-        // won't work for negative distances
-        if( dist < 0 )
-            {
-            throw new RuntimeException( "Distance must be positive" );
-            }
-            
-        if (measurementRule != Grid3D.ANY && measurementRule != Grid3D.ALL && measurementRule != Grid3D.CENTER)
-            {
-            throw new RuntimeException(" Measurement rule must be one of ANY, ALL, or CENTER" );
-            }
-                
-        // grab the rectangle
-        getMooreLocations(x,y, z, (int) Math.ceil(dist + 0.5), mode, includeOrigin, xPos, yPos, zPos);
-        int len = xPos.size();
-        double distsq = dist * dist;
-        
-
-        int width = this.width;
-        int height = this.height;
-        int length = this.length;
-        int widthtimestwo = width * 2;
-        int heighttimestwo = height * 2;
-        int lengthtimestwo = length * 2;
-        
-
-        for(int i = 0; i < len; i++)
-            {
-            int xp = xPos.get(i);
-            int yp = yPos.get(i);
-            int zp = zPos.get(i);
-            boolean remove = false;
-                
-            if (measurementRule == Grid3D.ANY)
-                {
-                // handle simple cases where there's at least one equality
-                if (x==xp)
-                    {
-                    remove = AbstractGrid2D.removeForAny(y,z,yp,zp,dist,closed);
-                    }
-                else if (y==yp)
-                    {
-                    remove = AbstractGrid2D.removeForAny(x,z,xp,zp,dist,closed);
-                    }
-                else if (z==zp)
-                    {
-                    remove = AbstractGrid2D.removeForAny(x,y,xp,yp,dist,closed);
-                    }
-
-                // off center -- check for nearest corner
-                else if (z < zp)
-                    {
-                    if (x < xp)
-                        {
-                        if (y < yp)
-                            remove = !within(x,y,z,xp-0.5,yp-0.5,zp-0.5,distsq,closed);
-                        else // y > yp
-                            remove = !within(x,y,z,xp-0.5,yp+0.5,zp-0.5,distsq,closed);
-                        }
-                    else  // x > xp
-                        {
-                        if (y < yp)
-                            remove = !within(x,y,z,xp+0.5,yp-0.5,zp-0.5,distsq,closed);
-                        else  // y > yp
-                            remove = !within(x,y,z,xp+0.5,yp+0.5,zp-0.5,distsq,closed);
-                        }
-                    }
-                else  // z > zp
-                    {
-                    if (x < xp)
-                        {
-                        if (y < yp)
-                            remove = !within(x,y,z,xp-0.5,yp-0.5,zp+0.5,distsq,closed);
-                        else  // y > yp
-                            remove = !within(x,y,z,xp-0.5,yp+0.5,zp+0.5,distsq,closed);
-                        }
-                    else  // x > xp
-                        {
-                        if (y < yp)
-                            remove = !within(x,y,z,xp+0.5,yp-0.5,zp+0.5,distsq,closed);
-                        else // y > yp
-                            remove = !within(x,y,z,xp+0.5,yp+0.5,zp+0.5,distsq,closed);
-                        }
-                    }
-                }
-            else if (measurementRule == Grid3D.ALL)
-                {
-                if (z < zp)
-                    {
-                    if (x < xp)
-                        {
-                        if (y < yp)
-                            remove = !within(x,y,z,xp+0.5,yp+0.5,zp+0.5,distsq,closed);
-                        else
-                            remove = !within(x,y,z,xp+0.5,yp-0.5,zp+0.5,distsq,closed);
-                        }
-                    else
-                        {
-                        if (y < yp)
-                            remove = !within(x,y,z,xp-0.5,yp+0.5,zp+0.5,distsq,closed);
-                        else
-                            remove = !within(x,y,z,xp-0.5,yp-0.5,zp+0.5,distsq,closed);
-                        }
-                    }
-                else
-                    {
-                    if (x < xp)
-                        {
-                        if (y < yp)
-                            remove = !within(x,y,z,xp+0.5,yp+0.5,zp-0.5,distsq,closed);
-                        else
-                            remove = !within(x,y,z,xp+0.5,yp-0.5,zp-0.5,distsq,closed);
-                        }
-                    else
-                        {
-                        if (y < yp)
-                            remove = !within(x,y,z,xp-0.5,yp+0.5,zp-0.5,distsq,closed);
-                        else
-                            remove = !within(x,y,z,xp-0.5,yp-0.5,zp-0.5,distsq,closed);
-                        }
-                    }
-
-                }
-            else // (measurementRule == Grid3D.CENTER)
-                {
-                remove = !within(x,y,z,xp,yp,zp,distsq,closed);
-                }
-                
-            if (remove)
-                { xPos.remove(i); yPos.remove(i); zPos.remove(i); i--; len--; }
-            else if (toroidal) // need to convert to toroidal position
-                { 
-                int _x = xPos.get(i);
-                int _y = yPos.get(i);
-                int _z = zPos.get(i);
-                xPos.set(i, tx(_x, width, widthtimestwo, _x + width, _x - width));
-                yPos.set(i, ty(_y, height, heighttimestwo, _y + height, _y - height));
-                zPos.set(i, tz(_z, length, lengthtimestwo, _z + length, _z - length));
-                }
-
-            }
+        Neighborhoods.radialLocations(this, x, y, z, dist, mode, includeOrigin, measurementRule, closed, xPos, yPos, zPos);
         }
 
     public Bag getRadialNeighbors( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin,  Bag result, IntBag xPos, IntBag yPos, IntBag zPos )
@@ -1096,6 +964,84 @@ public class SparseGrid3D extends SparseField implements Grid3D, SparseField3D
 
 
     public final Double3D getDimensions() { return new Double3D(width, height, length); }
-    }
 
 
+    /** Visits, one at a time, the same locations that getMooreLocations(x, y, z, dist, mode, includeOrigin, xPos, yPos, zPos) would
+        gather, without filling any IntBags.  Stops as soon as the visitor returns false.  Returns false if the traversal
+        was stopped early by the visitor, else true. */
+    public boolean visitMooreLocations( final int x, final int y, final int z, final int dist, int mode, boolean includeOrigin, LocationVisitor3D visitor )
+        {
+        return Neighborhoods.visitMoore(this, x, y, z, dist, mode, includeOrigin, visitor);
+        }
+
+    /** Visits, one at a time, the same locations that getVonNeumannLocations(x, y, z, dist, mode, includeOrigin, xPos, yPos, zPos) would
+        gather, without filling any IntBags.  Stops as soon as the visitor returns false.  Returns false if the traversal
+        was stopped early by the visitor, else true.  Toroidal neighborhoods large enough to wrap onto themselves
+        (dist * 2 >= width, height, or length) must be de-duplicated, and so are gathered into temporary IntBags first. */
+    public boolean visitVonNeumannLocations( final int x, final int y, final int z, final int dist, int mode, boolean includeOrigin, LocationVisitor3D visitor )
+        {
+        return Neighborhoods.visitVonNeumann(this, x, y, z, dist, mode, includeOrigin, visitor);
+        }
+
+    /** Visits, one at a time, the same locations that getRadialLocations(x, y, z, dist, mode, includeOrigin, xPos, yPos, zPos) would
+        gather, without filling any IntBags.  Stops as soon as the visitor returns false.  Returns false if the traversal
+        was stopped early by the visitor, else true. */
+    public boolean visitRadialLocations( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, LocationVisitor3D visitor )
+        {
+        return Neighborhoods.visitRadial(this, x, y, z, dist, mode, includeOrigin, Grid3D.ANY, true, visitor);
+        }
+
+    /** Visits, one at a time, the same locations that getRadialLocations(x, y, z, dist, mode, includeOrigin, measurementRule, closed, xPos, yPos, zPos) would
+        gather, without filling any IntBags.  Stops as soon as the visitor returns false.  Returns false if the traversal
+        was stopped early by the visitor, else true. */
+    public boolean visitRadialLocations( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, int measurementRule, boolean closed, LocationVisitor3D visitor )
+        {
+        return Neighborhoods.visitRadial(this, x, y, z, dist, mode, includeOrigin, measurementRule, closed, visitor);
+        }
+
+
+    /** Visits each object at each location in the same Moore neighborhood as getMooreNeighbors(x, y, z, dist, mode, includeOrigin, result, xPos, yPos, zPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitMooreNeighbors( final int x, final int y, final int z, final int dist, int mode, boolean includeOrigin, final ObjectVisitor3D visitor )
+        {
+        return visitMooreLocations(x, y, z, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits each object at each location in the same von Neumann neighborhood as getVonNeumannNeighbors(x, y, z, dist, mode, includeOrigin, result, xPos, yPos, zPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitVonNeumannNeighbors( final int x, final int y, final int z, final int dist, int mode, boolean includeOrigin, final ObjectVisitor3D visitor )
+        {
+        return visitVonNeumannLocations(x, y, z, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits each object at each location in the same radial neighborhood as getRadialNeighbors(x, y, z, dist, mode, includeOrigin, result, xPos, yPos, zPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, final ObjectVisitor3D visitor )
+        {
+        return visitRadialLocations(x, y, z, dist, mode, includeOrigin, new NeighborVisitor(visitor));
+        }
+
+    /** Visits each object at each location in the same radial neighborhood as getRadialNeighbors(x, y, z, dist, mode, includeOrigin, measurementRule, closed, result, xPos, yPos, zPos),
+        without filling any bags.  Returns false if the visitor stopped the traversal early, else true. */
+    public boolean visitRadialNeighbors( final int x, final int y, final int z, final double dist, int mode, boolean includeOrigin, int measurementRule, boolean closed, final ObjectVisitor3D visitor )
+        {
+        return visitRadialLocations(x, y, z, dist, mode, includeOrigin, measurementRule, closed, new NeighborVisitor(visitor));
+        }
+
+    // Hands each object at each location to an ObjectVisitor3D
+    final class NeighborVisitor implements LocationVisitor3D
+        {
+        final ObjectVisitor3D visitor;
+        NeighborVisitor(final ObjectVisitor3D visitor) { Neighborhoods.checkVisitor(visitor); this.visitor = visitor; }
+        public boolean visit(final int x, final int y, final int z)
+            {
+            Bag bag = getObjectsAtLocation(x, y, z);
+            if (bag == null) return true;
+            final Object[] objs = bag.objs;
+            final int len = bag.numObjs;
+            for(int i = 0; i < len; i++)
+                if (!visitor.visit(x, y, z, objs[i])) return false;
+            return true;
+            }
+        }
+    }
@@ -0,0 +1,452 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.network;
+import sim.util.*;
+
+/**
+   A graph field for very large graphs, which stores its nodes and edges as ints rather than as objects.
+
+   <p>Where a Network holds an Edge object per edge and finds nodes by hashing, an IntNetwork's nodes are simply the
+   numbers 0 ... getNumNodes() - 1, and its edges are the numbers 0 ... getNumEdges() - 1.  Edge e goes from node getFrom(e)
+   to node getTo(e), and may have a weight.  Each node keeps growable int arrays of the edges leaving and entering it.
+   An edge costs about 16 bytes, plus 4 or 8 bytes for its weight, if the IntNetwork has FLOAT_WEIGHTS or DOUBLE_WEIGHTS.
+   If you need to attach objects to your nodes or edges, keep them in arrays indexed by node or edge number.
+
+   <p><b>Renumbering.</b>  Removal is done by swapping the last one into the hole.  When you remove edge e, the last edge is
+   renumbered e; when you remove node n (and its edges), the last node is renumbered n.  So if you keep node or edge numbers
+   around, take care when removing.  Adding a node or edge, and removing an edge, are O(1) amortized.  Removing a node is O(m), where
+   m is the number of edges in and out of it and the last node.
+
+   <p><b>Directed vs. Undirected.</b>  Edges are always stored with a from node and a to node, and getOutDegree(node)
+   and getOutEdge(node, i) give the edges stored with the node as their from, and getInDegree(node) and getInEdge(node, i) give
+   those stored with the node as their to.  In an undirected IntNetwork you will often want all the edges of a node regardless, in
+   which case use getDegree(node) and getEdge(node, i), and getOtherNode(edge, node) to find where each edge goes.
+
+   <p><b>Traversal.</b>  For bulk traversal, getSnapshot() returns a compressed sparse row NetworkSnapshot, just as
+   Network.getSnapshot() does.  To hand an IntNetwork to a portrayal or to code written for Network, wrap it in an
+   IntNetworkAdapter.
+*/
+
+public class IntNetwork implements java.io.Serializable
+    {
+    private static final long serialVersionUID = 1;
+
+    /** The IntNetwork has no weights: every edge's weight is 1.0 */
+    public static final int NO_WEIGHTS = 0;
+    /** Weights are stored as floats */
+    public static final int FLOAT_WEIGHTS = 1;
+    /** Weights are stored as doubles */
+    public static final int DOUBLE_WEIGHTS = 2;
+
+    static final int INITIAL_SIZE = 16;
+    static final int INITIAL_DEGREE = 4;
+    static final int[] EMPTY = new int[0];
+
+    final boolean directed;
+    final int weights;
+
+    int numNodes;
+    int[][] out = new int[INITIAL_SIZE][];          // edges leaving each node, or null
+    int[][] in = new int[INITIAL_SIZE][];           // edges entering each node, or null
+    int[] outDegree = new int[INITIAL_SIZE];
+    int[] inDegree = new int[INITIAL_SIZE];
+
+    int numEdges;
+    int[] from = new int[INITIAL_SIZE];
+    int[] to = new int[INITIAL_SIZE];
+    int[] outPos = new int[INITIAL_SIZE];           // position of each edge in out[from]
+    int[] inPos = new int[INITIAL_SIZE];            // position of each edge in in[to]
+    float[] floatWeights;
+    double[] doubleWeights;
+
+    long version;
+    transient NetworkSnapshot snapshot;
+
+    /** Constructs an IntNetwork, directed or not, with NO_WEIGHTS, FLOAT_WEIGHTS, or DOUBLE_WEIGHTS. */
+    public IntNetwork(boolean directed, int weights)
+        {
+        if (weights < NO_WEIGHTS || weights > DOUBLE_WEIGHTS)
+            throw new RuntimeException("Invalid weights type: " + weights);
+        this.directed = directed;
+        this.weights = weights;
+        if (weights == FLOAT_WEIGHTS) floatWeights = new float[INITIAL_SIZE];
+        else if (weights == DOUBLE_WEIGHTS) doubleWeights = new double[INITIAL_SIZE];
+        }
+
+    /** Constructs a directed IntNetwork with no weights. */
+    public IntNetwork() { this(true, NO_WEIGHTS); }
+
+    public boolean isDirected() { return directed; }
+
+    /** Returns NO_WEIGHTS, FLOAT_WEIGHTS, or DOUBLE_WEIGHTS. */
+    public int getWeights() { return weights; }
+
+    public int getNumNodes() { return numNodes; }
+
+    public int getNumEdges() { return numEdges; }
+
+    /** Returns the version of the topology, which changes every time a node or edge is added or removed or the IntNetwork is cleared. */
+    public long getVersion() { return version; }
+
+    /** Makes room for at least the given numbers of nodes and edges, so that adding them won't have to grow the arrays. */
+    public void ensureCapacity(int nodes, int edges)
+        {
+        if (nodes > out.length) resizeNodes(nodes);
+        if (edges > from.length) resizeEdges(edges);
+        }
+
+    void resizeNodes(int size)
+        {
+        int[][] newOut = new int[size][];
+        System.arraycopy(out, 0, newOut, 0, numNodes);
+        out = newOut;
+        int[][] newIn = new int[size][];
+        System.arraycopy(in, 0, newIn, 0, numNodes);
+        in = newIn;
+        outDegree = copy(outDegree, numNodes, size);
+        inDegree = copy(inDegree, numNodes, size);
+        }
+
+    void resizeEdges(int size)
+        {
+        from = copy(from, numEdges, size);
+        to = copy(to, numEdges, size);
+        outPos = copy(outPos, numEdges, size);
+        inPos = copy(inPos, numEdges, size);
+        if (floatWeights != null)
+            {
+            float[] f = new float[size];
+            System.arraycopy(floatWeights, 0, f, 0, numEdges);
+            floatWeights = f;
+            }
+        if (doubleWeights != null)
+            {
+            double[] d = new double[size];
+            System.arraycopy(doubleWeights, 0, d, 0, numEdges);
+            doubleWeights = d;
+            }
+        }
+
+    static int[] copy(int[] array, int len, int size)
+        {
+        int[] newArray = new int[size];
+        System.arraycopy(array, 0, newArray, 0, len);
+        return newArray;
+        }
+
+    // appends the value to the node's list, growing it if need be, and returns its position
+    static int append(int[][] lists, int[] degrees, int node, int value)
+        {
+        int[] list = lists[node];
+        int d = degrees[node];
+        if (list == null) list = lists[node] = new int[INITIAL_DEGREE];
+        else if (d == list.length)
+            {
+            int[] newList = new int[d * 2];
+            System.arraycopy(list, 0, newList, 0, d);
+            list = lists[node] = newList;
+            }
+        list[d] = value;
+        degrees[node] = d + 1;
+        return d;
+        }
+
+    /** Adds a node and returns its number. */
+    public int addNode()
+        {
+        if (numNodes == out.length) resizeNodes(numNodes * 2 + 1);
+        version++;
+        return numNodes++;
+        }
+
+    /** Adds the given number of nodes, returning the number of the first. */
+    public int addNodes(int n)
+        {
+        if (n < 0) throw new RuntimeException("Cannot add a negative number of nodes: " + n);
+        int first = numNodes;
+        if (numNodes + n > out.length) resizeNodes(Math.max(numNodes + n, numNodes * 2));
+        numNodes += n;
+        version++;
+        return first;
+        }
+
+    void checkNode(int node)
+        {
+        if (node < 0 || node >= numNodes)
+            throw new RuntimeException("No such node: " + node);
+        }
+
+    void checkEdge(int edge)
+        {
+        if (edge < 0 || edge >= numEdges)
+            throw new RuntimeException("No such edge: " + edge);
+        }
+
+    /** Adds an edge from one node to another, with weight 1.0, and returns its number. */
+    public int addEdge(int from, int to)
+        {
+        checkNode(from);
+        checkNode(to);
+        if (numEdges == this.from.length) resizeEdges(numEdges * 2);
+        int e = numEdges++;
+        this.from[e] = from;
+        this.to[e] = to;
+        outPos[e] = append(out, outDegree, from, e);
+        inPos[e] = append(in, inDegree, to, e);
+        if (floatWeights != null) floatWeights[e] = 1.0f;
+        else if (doubleWeights != null) doubleWeights[e] = 1.0;
+        version++;
+        return e;
+        }
+
+    /** Adds an edge from one node to another with the given weight, and returns its number.  Throws an exception if
+        the IntNetwork has NO_WEIGHTS. */
+    public int addEdge(int from, int to, double weight)
+        {
+        int e = addEdge(from, to);
+        setWeight(e, weight);
+        return e;
+        }
+
+    /** Adds numEdges edges at once, edge i going from from[i] to to[i] with weight weights[i], and returns the number
+        of the first.  Edges are numbered in order.  This is much faster than adding the edges one by one, as each node's
+        edge lists are grown just once, to exactly the right size.  If weights is null, the weights are 1.0; otherwise
+        the IntNetwork must not have NO_WEIGHTS. */
+    public int addEdges(int[] from, int[] to, double[] weights, int numEdges)
+        {
+        if (weights != null && this.weights == NO_WEIGHTS)
+            throw new RuntimeException("This IntNetwork has no weights");
+        for(int i = 0; i < numEdges; i++)
+            {
+            checkNode(from[i]);
+            checkNode(to[i]);
+            }
+        int first = this.numEdges;
+        if (first + numEdges > this.from.length) resizeEdges(Math.max(first + numEdges, first * 2));
+
+        // size each node's lists for its new edges
+        int[] addOut = new int[numNodes];
+        int[] addIn = new int[numNodes];
+        for(int i = 0; i < numEdges; i++)
+            {
+            addOut[from[i]]++;
+            addIn[to[i]]++;
+            }
+        for(int n = 0; n < numNodes; n++)
+            {
+            out[n] = fit(out[n], outDegree[n], addOut[n]);
+            in[n] = fit(in[n], inDegree[n], addIn[n]);
+            }
+
+        for(int i = 0; i < numEdges; i++)
+            {
+            int e = first + i;
+            int f = from[i];
+            int t = to[i];
+            this.from[e] = f;
+            this.to[e] = t;
+            out[f][outPos[e] = outDegree[f]++] = e;
+            in[t][inPos[e] = inDegree[t]++] = e;
+            if (floatWeights != null) floatWeights[e] = (weights == null ? 1.0f : (float)weights[i]);
+            else if (doubleWeights != null) doubleWeights[e] = (weights == null ? 1.0 : weights[i]);
+            }
+        this.numEdges += numEdges;
+        version++;
+        return first;
+        }
+
+    // returns a list with room for more entries beyond the first degree ones
+    static int[] fit(int[] list, int degree, int more)
+        {
+        if (more == 0) return list;
+        if (list != null && degree + more <= list.length) return list;
+        int[] newList = new int[degree + more];
+        if (list != null) System.arraycopy(list, 0, newList, 0, degree);
+        return newList;
+        }
+
+    // removes the entry at pos from the node's list by moving the last entry into it, and returns the moved edge, or -1
+    static int delete(int[][] lists, int[] degrees, int node, int pos)
+        {
+        int[] list = lists[node];
+        int last = --degrees[node];
+        if (pos == last) return -1;
+        return list[pos] = list[last];
+        }
+
+    /** Removes an edge.  The last edge is then renumbered to be this one. */
+    public void removeEdge(int edge)
+        {
+        checkEdge(edge);
+        int moved = delete(out, outDegree, from[edge], outPos[edge]);
+        if (moved >= 0) outPos[moved] = outPos[edge];
+        moved = delete(in, inDegree, to[edge], inPos[edge]);
+        if (moved >= 0) inPos[moved] = inPos[edge];
+
+        int last = --numEdges;
+        if (edge != last)
+            {
+            from[edge] = from[last];
+            to[edge] = to[last];
+            outPos[edge] = outPos[last];
+            inPos[edge] = inPos[last];
+            if (floatWeights != null) floatWeights[edge] = floatWeights[last];
+            else if (doubleWeights != null) doubleWeights[edge] = doubleWeights[last];
+            out[from[edge]][outPos[edge]] = edge;
+            in[to[edge]][inPos[edge]] = edge;
+            }
+        version++;
+        }
+
+    /** Removes all the edges of a node, then the node itself.  The last node is then renumbered to be this one:
+        its old number is returned, or -1 if the removed node was the last one. */
+    public int removeNode(int node)
+        {
+        checkNode(node);
+        while(outDegree[node] > 0) removeEdge(out[node][outDegree[node] - 1]);
+        while(inDegree[node] > 0) removeEdge(in[node][inDegree[node] - 1]);
+
+        int last = --numNodes;
+        version++;
+        if (node == last)
+            {
+            out[last] = in[last] = null;
+            return -1;
+            }
+        out[node] = out[last];
+        in[node] = in[last];
+        outDegree[node] = outDegree[last];
+        inDegree[node] = inDegree[last];
+        out[last] = in[last] = null;
+        outDegree[last] = inDegree[last] = 0;
+        for(int i = 0; i < outDegree[node]; i++) from[out[node][i]] = node;
+        for(int i = 0; i < inDegree[node]; i++) to[in[node][i]] = node;
+        return last;
+        }
+
+    /** Removes all the edges, leaving the nodes. */
+    public void removeAllEdges()
+        {
+        for(int i = 0; i < numNodes; i++)
+            {
+            out[i] = in[i] = null;
+            outDegree[i] = inDegree[i] = 0;
+            }
+        numEdges = 0;
+        version++;
+        }
+
+    /** Removes all the nodes and edges. */
+    public void clear()
+        {
+        removeAllEdges();
+        numNodes = 0;
+        }
+
+    /** Returns the node edge goes from. */
+    public int getFrom(int edge) { return from[edge]; }
+
+    /** Returns the node edge goes to. */
+    public int getTo(int edge) { return to[edge]; }
+
+    /** Returns the node at the other end of the edge from the given one: getTo(edge) if node is getFrom(edge), else getFrom(edge). */
+    public int getOtherNode(int edge, int node) { return (from[edge] == node ? to[edge] : from[edge]); }
+
+    /** Returns the weight of the edge, which is 1.0 if the IntNetwork has NO_WEIGHTS. */
+    public double getWeight(int edge)
+        {
+        if (floatWeights != null) return floatWeights[edge];
+        if (doubleWeights != null) return doubleWeights[edge];
+        return 1.0;
+        }
+
+    /** Sets the weight of the edge.  Throws an exception if the IntNetwork has NO_WEIGHTS. */
+    public void setWeight(int edge, double weight)
+        {
+        checkEdge(edge);
+        if (floatWeights != null) floatWeights[edge] = (float)weight;
+        else if (doubleWeights != null) doubleWeights[edge] = weight;
+        else throw new RuntimeException("This IntNetwork has no weights");
+        }
+
+    /** Returns the number of edges whose from is the node. */
+    public int getOutDegree(int node) { return outDegree[node]; }
+
+    /** Returns the number of edges whose to is the node. */
+    public int getInDegree(int node) { return inDegree[node]; }
+
+    /** Returns the number of edges of the node, counting self-loops twice. */
+    public int getDegree(int node) { return outDegree[node] + inDegree[node]; }
+
+    /** Returns the ith edge whose from is the node, for 0 &lt;= i &lt; getOutDegree(node). */
+    public int getOutEdge(int node, int i) { return out[node][i]; }
+
+    /** Returns the ith edge whose to is the node, for 0 &lt;= i &lt; getInDegree(node). */
+    public int getInEdge(int node, int i) { return in[node][i]; }
+
+    /** Returns the ith edge of the node, for 0 &lt;= i &lt; getDegree(node): first the out-edges, then the in-edges. */
+    public int getEdge(int node, int i)
+        {
+        int d = outDegree[node];
+        return (i < d ? out[node][i] : in[node][i - d]);
+        }
+
+    /** Returns the array holding the edges whose from is the node, in its first getOutDegree(node) slots.  Do not modify it,
+        and don't hold onto it: it is replaced when it grows. */
+    public int[] getOutEdges(int node) { int[] e = out[node]; return (e == null ? EMPTY : e); }
+
+    /** Returns the array holding the edges whose to is the node, in its first getInDegree(node) slots.  Do not modify it,
+        and don't hold onto it: it is replaced when it grows. */
+    public int[] getInEdges(int node) { int[] e = in[node]; return (e == null ? EMPTY : e); }
+
+    /** Returns an arbitrary edge from one node to another, or -1 if there is none.  If the IntNetwork is undirected,
+        an edge from the second node to the first will do as well. */
+    public int getEdgeBetween(int from, int to)
+        {
+        checkNode(from);
+        checkNode(to);
+        int[] o = out[from];
+        for(int i = 0; i < outDegree[from]; i++)
+            if (this.to[o[i]] == to) return o[i];
+        if (!directed)
+            {
+            int[] n = in[from];
+            for(int i = 0; i < inDegree[from]; i++)
+                if (this.from[n[i]] == to) return n[i];
+            }
+        return -1;
+        }
+
+    /** Places in the given IntBag (clearing it first, or creating it if null) the nodes at the other ends of the edges of the
+        given node: the targets of its out-edges, and if the IntNetwork is undirected, the sources of its in-edges as well.
+        Returns the IntBag. */
+    public IntBag getNeighbors(int node, IntBag result)
+        {
+        if (result == null) result = new IntBag();
+        else result.clear();
+        int[] o = out[node];
+        for(int i = 0; i < outDegree[node]; i++)
+            result.add(to[o[i]]);
+        if (!directed)
+            {
+            int[] n = in[node];
+            for(int i = 0; i < inDegree[node]; i++)
+                result.add(from[n[i]]);
+            }
+        return result;
+        }
+
+    /** Returns a compressed sparse row snapshot of the topology, building a new one only if the topology has changed since
+        the last one was built.  The snapshot's nodes are numbered as in the IntNetwork, and in an undirected IntNetwork each
+        node's edges appear in the order of getEdge(node, i). */
+    public NetworkSnapshot getSnapshot()
+        {
+        if (snapshot == null || snapshot.version != version)
+            snapshot = new NetworkSnapshot(this);
+        return snapshot;
+        }
+    }
@@ -0,0 +1,307 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.network;
+import sim.util.*;
+import java.util.*;
+
+/**
+   A read-only Network which presents an IntNetwork, so that portrayals, inspectors, and statistics code written for Network
+   can be used with one.
+
+   <p>The nodes of the adapter are Integers, one per node of the IntNetwork: node <i>i</i> is an Integer with value <i>i</i>,
+   and is at index <i>i</i> in allNodes.  allNodes is brought up to date with the IntNetwork whenever you call one of the
+   adapter's methods, so if you read it directly, call getAllNodes() first.  Edges are made on demand whenever you ask for
+   them, as IntEdges: these hold the edge number of their IntNetwork edge, and their getWeight() and setWeight(...) methods read
+   and write its weight.  Their info is the edge's weight as a Double when you get them, or null if the IntNetwork has no
+   weights.  Because they are made afresh, don't compare IntEdges with ==: compare their edge numbers.
+
+   <p>Methods which would change the topology throw exceptions: change the IntNetwork instead.  Making an Edge for every
+   edge is what IntNetwork exists to avoid, so for bulk traversal use getSnapshot(), which is the IntNetwork's snapshot, rather than
+   getAdjacencyList(...) and its friends.
+*/
+
+public class IntNetworkAdapter extends Network
+    {
+    private static final long serialVersionUID = 1;
+
+    /** The IntNetwork being presented */
+    public final IntNetwork intNetwork;
+
+    public IntNetworkAdapter(IntNetwork intNetwork)
+        {
+        super(intNetwork.isDirected());
+        this.intNetwork = intNetwork;
+        update();
+        }
+
+    /** An Edge standing in for an edge of the IntNetwork. */
+    public static class IntEdge extends Edge
+        {
+        /** The edge number in the IntNetwork */
+        public final int edge;
+        final IntNetwork intNetwork;
+
+        IntEdge(IntNetworkAdapter adapter, int edge, Object from, Object to)
+            {
+            super(from, to, (adapter.intNetwork.getWeights() == IntNetwork.NO_WEIGHTS ? null : Double.valueOf(adapter.intNetwork.getWeight(edge))));
+            this.edge = edge;
+            intNetwork = adapter.intNetwork;
+            owner = adapter;
+            indexFrom = intNetwork.outPos[edge];
+            indexTo = intNetwork.inPos[edge];
+            }
+
+        public double getWeight() { return intNetwork.getWeight(edge); }
+
+        /** Sets the weight of the IntNetwork edge, and our info to match. */
+        public void setWeight(double weight)
+            {
+            intNetwork.setWeight(edge, weight);
+            info = Double.valueOf(intNetwork.getWeight(edge));
+            }
+        }
+
+    /** Brings allNodes up to date with the number of nodes in the IntNetwork.  The adapter does this itself at the
+        start of each of its methods. */
+    public void update()
+        {
+        final int n = intNetwork.numNodes;
+        final Bag allNodes = this.allNodes;
+        if (allNodes.numObjs > n)
+            {
+            Arrays.fill(allNodes.objs, n, allNodes.numObjs, null);
+            allNodes.numObjs = n;
+            }
+        else if (allNodes.numObjs < n)
+            {
+            allNodes.resize(n);
+            for(int i = allNodes.numObjs; i < n; i++)
+                allNodes.objs[i] = Integer.valueOf(i);
+            allNodes.numObjs = n;
+            }
+        }
+
+    int node(Object node)
+        {
+        if (!(node instanceof Integer)) return -1;
+        int i = ((Integer)node).intValue();
+        return (i >= 0 && i < intNetwork.numNodes ? i : -1);
+        }
+
+    Edge edge(int e)
+        {
+        return new IntEdge(this, e, allNodes.objs[intNetwork.from[e]], allNodes.objs[intNetwork.to[e]]);
+        }
+
+    // adds the edges of the given list to the bag
+    void addEdges(int[] list, int degree, Bag bag)
+        {
+        for(int i = 0; i < degree; i++)
+            bag.add(edge(list[i]));
+        }
+
+    RuntimeException readOnly()
+        {
+        return new RuntimeException("IntNetworkAdapter is read-only: change its IntNetwork instead");
+        }
+
+    public long getVersion() { return intNetwork.version; }
+
+    public NetworkSnapshot getSnapshot() { return intNetwork.getSnapshot(); }
+
+    public Bag getAllNodes()
+        {
+        update();
+        return allNodes;
+        }
+
+    public Iterator iterator()
+        {
+        update();
+        return allNodes.iterator();
+        }
+
+    public boolean nodeExists(final Object node)
+        {
+        return node(node) >= 0;
+        }
+
+    public int getNodeIndex(final Object node)
+        {
+        int i = node(node);
+        if (i < 0)
+            throw new RuntimeException( "Object parameter is not a node in the network." );
+        return i;
+        }
+
+    /** Returns a new Bag of the edges leaving the node (or all its edges, if undirected).  You may modify it. */
+    public Bag getEdgesOut(final Object node)
+        {
+        update();
+        int i = node(node);
+        if (i < 0) return emptyBag;
+        Bag bag = new Bag(directed ? intNetwork.outDegree[i] : intNetwork.getDegree(i));
+        addEdges(intNetwork.out[i], intNetwork.outDegree[i], bag);
+        if (!directed) addEdges(intNetwork.in[i], intNetwork.inDegree[i], bag);
+        return bag;
+        }
+
+    /** Returns a new Bag of the edges entering the node (or all its edges, if undirected).  You may modify it. */
+    public Bag getEdgesIn(final Object node)
+        {
+        update();
+        int i = node(node);
+        if (i < 0) return emptyBag;
+        if (!directed) return getEdgesOut(node);
+        Bag bag = new Bag(intNetwork.inDegree[i]);
+        addEdges(intNetwork.in[i], intNetwork.inDegree[i], bag);
+        return bag;
+        }
+
+    public Bag getEdges(final Object node, Bag bag)
+        {
+        update();
+        if (bag == null) bag = new Bag();
+        else bag.clear();
+        int i = node(node);
+        if (i < 0) return bag;
+        if (directed) addEdges(intNetwork.in[i], intNetwork.inDegree[i], bag);
+        addEdges(intNetwork.out[i], intNetwork.outDegree[i], bag);
+        if (!directed) addEdges(intNetwork.in[i], intNetwork.inDegree[i], bag);
+        return bag;
+        }
+
+    public Edge getEdge(Object from, Object to)
+        {
+        update();
+        int f = node(from);
+        int t = node(to);
+        if (f < 0 || t < 0) return null;
+        int e = intNetwork.getEdgeBetween(f, t);
+        return (e < 0 ? null : edge(e));
+        }
+
+    public Bag getEdges(Object from, Object to, Bag bag)
+        {
+        update();
+        if (bag == null) bag = new Bag();
+        else bag.clear();
+        int f = node(from);
+        int t = node(to);
+        if (f < 0 || t < 0) return bag;
+        for(int i = 0; i < intNetwork.outDegree[f]; i++)
+            {
+            int e = intNetwork.out[f][i];
+            if (intNetwork.to[e] == t) bag.add(edge(e));
+            }
+        if (!directed)
+            for(int i = 0; i < intNetwork.inDegree[f]; i++)
+                {
+                int e = intNetwork.in[f][i];
+                if (intNetwork.from[e] == t) bag.add(edge(e));
+                }
+        return bag;
+        }
+
+    public Edge[][] getAdjacencyList(boolean outEdges)
+        {
+        update();
+        final int n = intNetwork.numNodes;
+        Edge[][] list = new Edge[n][];
+        for(int i = 0; i < n; i++)
+            {
+            Bag b = (outEdges ? getEdgesOut(allNodes.objs[i]) : getEdgesIn(allNodes.objs[i]));
+            list[i] = new Edge[b.numObjs];
+            System.arraycopy(b.objs, 0, list[i], 0, b.numObjs);
+            }
+        return list;
+        }
+
+    public Edge[][] getAdjacencyMatrix()
+        {
+        update();
+        final int n = intNetwork.numNodes;
+        Edge[][] matrix = new Edge[n][n];
+        for(int e = 0; e < intNetwork.numEdges; e++)
+            {
+            int f = intNetwork.from[e];
+            int t = intNetwork.to[e];
+            Edge edge = edge(e);
+            matrix[f][t] = edge;
+            if (!directed) matrix[t][f] = edge;
+            }
+        return matrix;
+        }
+
+    public Edge[][][] getMultigraphAdjacencyMatrix()
+        {
+        update();
+        final int n = intNetwork.numNodes;
+        Edge[][][] matrix = new Edge[n][n][];
+        Bag[] tmp = new Bag[n];
+        for(int i = 0; i < n; i++)
+            tmp[i] = new Bag();
+        for(int i = 0; i < n; i++)
+            {
+            Bag b = getEdgesOut(allNodes.objs[i]);
+            for(int j = 0; j < b.numObjs; j++)
+                tmp[intNetwork.getOtherNode(((IntEdge)(b.objs[j])).edge, i)].add(b.objs[j]);
+            for(int j = 0; j < n; j++)
+                {
+                Bag t = tmp[j];
+                if (t.numObjs == 0) matrix[i][j] = emptyEdgeArray;
+                else
+                    {
+                    matrix[i][j] = new Edge[t.numObjs];
+                    System.arraycopy(t.objs, 0, matrix[i][j], 0, t.numObjs);
+                    t.clear();
+                    }
+                }
+            }
+        return matrix;
+        }
+
+    Network copyTo(Network clone)
+        {
+        update();
+        clone.allNodes.addAll(allNodes);
+        for(int i = 0; i < allNodes.numObjs; i++)
+            {
+            // as in Network.copyTo, undirected nodes share one Bag for in and out
+            Bag out = new Bag();
+            clone.indexOutInHash.put(allNodes.objs[i], new IndexOutIn(i, out, directed ? new Bag() : out));
+            }
+        boolean weighted = (intNetwork.getWeights() != IntNetwork.NO_WEIGHTS);
+        for(int e = 0; e < intNetwork.numEdges; e++)
+            clone.addEdge(allNodes.objs[intNetwork.from[e]], allNodes.objs[intNetwork.to[e]],
+                weighted ? Double.valueOf(intNetwork.getWeight(e)) : null);
+        return clone;
+        }
+
+    public Network getGraphComplement(boolean allowSelfLoops)
+        {
+        return new Network(this).getGraphComplement(allowSelfLoops);
+        }
+
+    public void reset(boolean directed) { throw readOnly(); }
+    public void addNode(final Object node) { throw readOnly(); }
+    public void addEdge(final Object from, final Object to, final Object info) { throw readOnly(); }
+    public void addEdge(final Edge edge) { throw readOnly(); }
+    public void addEdges(Object[] nodes, int[] from, int[] to, Object[] info, int numEdges) { throw readOnly(); }
+    public Edge updateEdge(Edge edge, final Object from, final Object to, final Object info) { throw readOnly(); }
+    public Edge removeEdge(final Edge edge) { throw readOnly(); }
+    public void removeAllEdges() { throw readOnly(); }
+    public Object removeNode(final Object node) { throw readOnly(); }
+    public Bag clear() { throw readOnly(); }
+    public void reverseAllEdges() { throw readOnly(); }
+
+    /** Throws an exception: changes to the IntNetwork are not reported to listeners. */
+    public void addListener(NetworkListener listener)
+        {
+        throw new RuntimeException("IntNetworkAdapter does not report changes to its IntNetwork to NetworkListeners");
+        }
+    }
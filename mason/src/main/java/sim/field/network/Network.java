@@ -41,7 +41,13 @@ import java.util.*;
     and changes just the <b>contents</b> of the edge info objects and the node object contents, you might consider first 
     getting an adjacency list for the Network with getAdjacencyList(...), or an adjacency matrix with getAdjacencyMatrix(...)
     or getMultigraphAdjacencyMatrix(...).  But remember that as soon as the topology changes (adding/deleting a node or edge),
-    the adjacency list is invalid, and you need to request another one.
+    the adjacency list is invalid, and you need to request another one.  Faster still is a compressed sparse row snapshot from
+    getSnapshot(), which numbers the nodes and holds the edges in int and double arrays, and which the Network caches for you
+    until its topology next changes.
+
+    <p>If you need to keep something up to date as the topology changes (statistics of the network, say), you can instead
+    register a NetworkListener with addListener(...), and the Network will tell it about each node and edge as it is added
+    or removed.
     
     <p><b>Computational Complexity.</b>  Adding a node or an edge is O(1).  Removing an edge is O(1).  Removing a node is O(m), where
     m is the total number of edges in and out of the node.  Removing all nodes is O(1) and fast.  Getting the in-edges or out-edges for a node
@@ -109,8 +115,8 @@ public class Network implements java.io.Serializable
     /** Resets the network, clearing it of nodes and edges. */
     public void reset(boolean directed)
         {
-        clear();
         this.directed = directed;
+        clear();
         }
                         
     /** Hashes Network.IndexOutIn structures by Node.  These structures
@@ -125,6 +131,88 @@ public class Network implements java.io.Serializable
     // returned instead of null for those methods which require a guarantee that the returned Bag should never be touched.
     final Bag emptyBag = new Bag();
 
+    /** Incremented whenever the topology changes. */
+    long version;
+
+    transient NetworkSnapshot snapshot;
+
+    /** The NetworkListeners told about changes to the topology, or null if there are none.  Listeners are not serialized. */
+    transient Bag listeners;
+
+    /** Adds a NetworkListener, to be told about every change to the Network's topology from now on.  Adding the same
+        listener twice does nothing. */
+    public void addListener(NetworkListener listener)
+        {
+        if (listener == null)
+            throw new RuntimeException("Attempted to add a null NetworkListener.");
+        if (listeners == null) listeners = new Bag();
+        if (!listeners.contains(listener)) listeners.add(listener);
+        }
+
+    /** Removes a NetworkListener.  Returns false if it had not been added. */
+    public boolean removeListener(NetworkListener listener)
+        {
+        if (listeners == null || !listeners.contains(listener)) return false;
+        listeners.removeNondestructively(listener);
+        if (listeners.numObjs == 0) listeners = null;
+        return true;
+        }
+
+    /** Returns the first NetworkListener which is an instance of the given class, or null if there is none.  This lets
+        statistics code find a listener which has been keeping track of what it needs. */
+    public NetworkListener getListener(Class type)
+        {
+        if (listeners != null)
+            for(int i = 0; i < listeners.numObjs; i++)
+                if (type.isInstance(listeners.objs[i]))
+                    return (NetworkListener)(listeners.objs[i]);
+        return null;
+        }
+
+    void fireNodeAdded(Object node)
+        {
+        for(int i = 0; i < listeners.numObjs; i++)
+            ((NetworkListener)(listeners.objs[i])).nodeAdded(this, node);
+        }
+
+    void fireNodeRemoved(Object node, int index)
+        {
+        for(int i = 0; i < listeners.numObjs; i++)
+            ((NetworkListener)(listeners.objs[i])).nodeRemoved(this, node, index);
+        }
+
+    void fireEdgeAdded(Edge edge)
+        {
+        for(int i = 0; i < listeners.numObjs; i++)
+            ((NetworkListener)(listeners.objs[i])).edgeAdded(this, edge);
+        }
+
+    void fireEdgeRemoved(Edge edge)
+        {
+        for(int i = 0; i < listeners.numObjs; i++)
+            ((NetworkListener)(listeners.objs[i])).edgeRemoved(this, edge);
+        }
+
+    void fireNetworkChanged()
+        {
+        for(int i = 0; i < listeners.numObjs; i++)
+            ((NetworkListener)(listeners.objs[i])).networkChanged(this);
+        }
+
+    /** Returns the version of the Network's topology, which changes every time a node or edge is added or removed,
+        the Network is cleared, or its edges are reversed.  Changes made directly to allNodes or indexOutInHash are not counted. */
+    public long getVersion() { return version; }
+
+    /** Returns a compressed sparse row snapshot of the Network's topology, building a new one only if the topology has changed
+        since the last one was built.  Traversing a snapshot involves no hashing or Bags: see NetworkSnapshot.  Like an adjacency
+        list, the snapshot is invalid once the topology changes, but you can check with isValid(), or just call getSnapshot() again. */
+    public NetworkSnapshot getSnapshot()
+        {
+        if (snapshot == null || snapshot.version != version)
+            snapshot = new NetworkSnapshot(this);
+        return snapshot;
+        }
+
     /** Creates and returns an adjacency list.  If you're doing lots of operations (especially network traversals)
         which won't effect the topology of the network, an adjacency list structure might be more efficient for you to access rather than lots of
         calls to getEdgesIn() and getEdgesOut() etc.  Building the list is an O(#edges) operation.
@@ -369,8 +457,10 @@ public class Network implements java.io.Serializable
         if( indexOutInHash.get( node ) != null ) // if the object already exists
             return;
         allNodes.add( node );
+        version++;
         IndexOutIn ioih = new IndexOutIn( allNodes.numObjs-1, null, null );
         indexOutInHash.put( node, ioih );
+        if (listeners != null) fireNodeAdded(node);
         }
 
     /** Add an edge, storing info as the edge's associated information object. 
@@ -394,6 +484,7 @@ public class Network implements java.io.Serializable
         if (edge.owner!=null)
             throw new RuntimeException("Attempted to add an Edge already added elsewhere");
         edge.owner = this;
+        version++;
     
         edge.indexFrom = 0;
         edge.indexTo = 0;
@@ -438,6 +529,68 @@ public class Network implements java.io.Serializable
             }
         inNode.in.add( edge );
         edge.indexTo = inNode.in.numObjs-1;
+        if (listeners != null) fireEdgeAdded(edge);
+        }
+
+    /** Adds numEdges new edges at once, edge i going from nodes[from[i]] to nodes[to[i]] with info[i] as its
+        associated information object (or null if info is null).  Nodes not yet in the network are added first, in
+        the order they appear in the nodes array.  This is much faster than adding the edges one by one, as each node
+        is looked up just once and its edge Bags are grown just once. */
+    public void addEdges(Object[] nodes, int[] from, int[] to, Object[] info, int numEdges)
+        {
+        IndexOutIn[] ioi = new IndexOutIn[nodes.length];
+        for(int i = 0; i < nodes.length; i++)
+            {
+            addNode(nodes[i]);
+            ioi[i] = (IndexOutIn)(indexOutInHash.get(nodes[i]));
+            }
+
+        // grow each node's Bags just once
+        int[] addOut = new int[nodes.length];
+        int[] addIn = (directed ? new int[nodes.length] : addOut);
+        for(int i = 0; i < numEdges; i++)
+            {
+            addOut[from[i]]++;
+            addIn[to[i]]++;
+            }
+        for(int i = 0; i < nodes.length; i++)
+            {
+            IndexOutIn node = ioi[i];
+            if (directed)
+                {
+                if (addOut[i] > 0)
+                    {
+                    if (node.out == null) node.out = new Bag(addOut[i]);
+                    else node.out.resize(node.out.numObjs + addOut[i]);
+                    }
+                if (addIn[i] > 0)
+                    {
+                    if (node.in == null) node.in = new Bag(addIn[i]);
+                    else node.in.resize(node.in.numObjs + addIn[i]);
+                    }
+                }
+            else if (addOut[i] > 0)
+                {
+                if (node.out == null) node.out = node.in;
+                if (node.out == null) node.out = node.in = new Bag(addOut[i]);
+                else node.out.resize(node.out.numObjs + addOut[i]);
+                node.in = node.out;
+                }
+            }
+
+        for(int i = 0; i < numEdges; i++)
+            {
+            Edge edge = new Edge(nodes[from[i]], nodes[to[i]], (info == null ? null : info[i]));
+            edge.owner = this;
+            Bag out = ioi[from[i]].out;
+            out.add(edge);
+            edge.indexFrom = out.numObjs - 1;
+            Bag in = ioi[to[i]].in;
+            in.add(edge);
+            edge.indexTo = in.numObjs - 1;
+            if (listeners != null) fireEdgeAdded(edge);
+            }
+        if (numEdges > 0) version++;
         }
 
     /** Removes the given edge, then changes its from, to, and info values to the provided ones,
@@ -469,6 +622,7 @@ public class Network implements java.io.Serializable
         if (edge.owner != this)
             return null;
         edge.owner = null;
+        version++;
         // we'll do an extraneous hash if this is being called from removeNode...
         
         // remove the edge from the "out" node's "out" bag
@@ -522,6 +676,7 @@ public class Network implements java.io.Serializable
                 else throw new InternalError("This shouldn't ever happen: #2");
                 }
             }
+        if (listeners != null) fireEdgeRemoved(edge);
         // return the edge
         return edge;
         }
@@ -530,6 +685,7 @@ public class Network implements java.io.Serializable
      * Remove all the edges in the network.
      */
     public void removeAllEdges() {
+        version++;
         int n = allNodes.numObjs;
         Iterator i = indexOutInHash.values().iterator();
         for(int k=0;k<n;k++)
@@ -540,6 +696,7 @@ public class Network implements java.io.Serializable
             if (ioi.out != null)
                 ioi.out.clear();
             }
+        if (listeners != null) fireNetworkChanged();
         }
 
     /** Removes a node, deleting all incoming and outgoing edges from the Field as well.  Returns the node,
@@ -572,6 +729,8 @@ public class Network implements java.io.Serializable
                 
         // finally, delete the ioi
         indexOutInHash.remove(node);
+        version++;
+        if (listeners != null) fireNodeRemoved(node, ioi.index);
 
         // return the node
         return node;
@@ -582,8 +741,10 @@ public class Network implements java.io.Serializable
     public Bag clear()
         {
         indexOutInHash = buildMap(ANY_SIZE);
+        version++;
         Bag retval = allNodes;
         allNodes = new Bag();
+        if (listeners != null) fireNetworkChanged();
         return retval;
         }
     
@@ -673,6 +834,7 @@ public class Network implements java.io.Serializable
     public void reverseAllEdges()
         {
         if(!directed) return;//that was quick
+        version++;
         int n = allNodes.numObjs;
         Iterator i = indexOutInHash.values().iterator();
         for(int k=0;k<n;k++)
@@ -695,6 +857,7 @@ public class Network implements java.io.Serializable
                     e.indexTo = tmpI;
                     }
             }
+        if (listeners != null) fireNetworkChanged();
         }
     
     
@@ -0,0 +1,37 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.network;
+
+/**
+   An object told about every change to the topology of a Network it has been added to with Network.addListener(...).
+   Listeners let you keep statistics or other structures up to date as the network changes, rather than recomputing them
+   from scratch.  Each method is called after the change has been made.
+
+   <p>Removing a node first removes each of its edges, with a call to edgeRemoved(...) for each.  Changes too sweeping to
+   report piece by piece -- clear(), reset(...), removeAllEdges(), and reverseAllEdges() -- are reported with
+   networkChanged(...), after which the listener should rebuild whatever it keeps from the network.  Changes made
+   directly to allNodes or indexOutInHash are not reported.
+*/
+
+public interface NetworkListener
+    {
+    /** Called after a node has been added.  It is the last node in the network's allNodes bag. */
+    public void nodeAdded(Network network, Object node);
+
+    /** Called after a node, whose edges have already been removed, has been removed.  The node had the given index in
+        allNodes; the node which was last in allNodes, if any, has been moved to that index. */
+    public void nodeRemoved(Network network, Object node, int index);
+
+    /** Called after an edge has been added, along with any of its nodes which were not yet in the network. */
+    public void edgeAdded(Network network, Edge edge);
+
+    /** Called after an edge has been removed. */
+    public void edgeRemoved(Network network, Edge edge);
+
+    /** Called after the network has changed too much to report piece by piece. */
+    public void networkChanged(Network network);
+    }
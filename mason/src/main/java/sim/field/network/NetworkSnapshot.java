@@ -0,0 +1,292 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.network;
+import sim.util.*;
+
+/**
+   A read-only picture of the topology of a Network, in compressed sparse row (CSR) form, for models which traverse
+   a network far more often than they change it.  You get one by calling getSnapshot() on the Network, or on an IntNetwork.
+
+   <p>Nodes are numbered 0 ... numNodes - 1, in the same order as the Network's allNodes bag at the time the
+   snapshot was made.  The outgoing edges of node i are numbered outOffsets[i] ... outOffsets[i + 1] - 1, in the same
+   order as in getEdgesOut(node), and edge number j leads to node outTargets[j], has weight outWeights[j], and is the
+   Edge outEdges[j].  The incoming edges are laid out the same way in inOffsets, inSources, inWeights, and inEdges.  In an
+   undirected network the in-arrays are the very same arrays as the out-arrays, and each edge appears once from
+   each of its ends, just as it does in getEdgesOut(node); its target is then the node at the other end.  So to
+   spread something along the outgoing edges of every node, you might say:
+
+   <pre><tt>
+   NetworkSnapshot s = network.getSnapshot();
+   for(int i = 0; i &lt; s.numNodes; i++)
+       for(int j = s.outOffsets[i]; j &lt; s.outOffsets[i + 1]; j++)
+           next[s.outTargets[j]] += current[i] * s.outWeights[j];
+   </tt></pre>
+
+   <p><b>Validity.</b>  The Network counts changes to its topology (adding or removing nodes or edges, clearing,
+   reversing edges) with its version number, and getSnapshot() builds a new snapshot only if the version has changed since
+   the last one.  Building one is O(#nodes + #edges), with one hash lookup per edge.  isValid() tells you whether a snapshot is
+   still up to date.  Changing an edge's info object doesn't change the version, so if your weights change, call updateWeights().
+   Changes made by writing directly into the Network's allNodes or indexOutInHash are not noticed.
+
+   <p><b>IntNetworks.</b>  A snapshot of an IntNetwork has no Edges or node objects: outEdges, inEdges, and nodes are null,
+   and instead outEdgeIds and inEdgeIds hold the IntNetwork's edge numbers.  Its nodes are numbered as in the IntNetwork.
+
+   <p>Do not modify the arrays.
+*/
+
+public class NetworkSnapshot implements java.io.Serializable
+    {
+    private static final long serialVersionUID = 1;
+
+    /** The Network this is a snapshot of, or null */
+    public final Network network;
+    /** The IntNetwork this is a snapshot of, or null */
+    public final IntNetwork intNetwork;
+    /** The version of the Network or IntNetwork when the snapshot was made */
+    public final long version;
+    public final boolean directed;
+
+    public final int numNodes;
+    /** The number of entries in the out-arrays.  In an undirected network this counts each edge twice. */
+    public final int numEdges;
+    /** The nodes by index, or null for an IntNetwork */
+    public final Object[] nodes;
+
+    public final int[] outOffsets;
+    public final int[] outTargets;
+    public final double[] outWeights;
+    public final Edge[] outEdges;
+    public final int[] outEdgeIds;
+
+    public final int[] inOffsets;
+    public final int[] inSources;
+    public final double[] inWeights;
+    public final Edge[] inEdges;
+    public final int[] inEdgeIds;
+
+    /** Builds a snapshot of the given Network.  You'd ordinarily call network.getSnapshot() instead, which reuses
+        a snapshot which is still valid. */
+    public NetworkSnapshot(Network network)
+        {
+        this.network = network;
+        intNetwork = null;
+        outEdgeIds = inEdgeIds = null;
+        version = network.version;
+        directed = network.directed;
+        numNodes = network.allNodes.numObjs;
+        nodes = new Object[numNodes];
+        System.arraycopy(network.allNodes.objs, 0, nodes, 0, numNodes);
+
+        // gather the edge bags, one hash lookup per node
+        Bag[] out = new Bag[numNodes];
+        Bag[] in = new Bag[numNodes];
+        for(int i = 0; i < numNodes; i++)
+            {
+            Network.IndexOutIn ioi = (Network.IndexOutIn)(network.indexOutInHash.get(nodes[i]));
+            out[i] = ioi.out;
+            in[i] = ioi.in;
+            }
+
+        outOffsets = new int[numNodes + 1];
+        for(int i = 0; i < numNodes; i++)
+            outOffsets[i + 1] = outOffsets[i] + (out[i] == null ? 0 : out[i].numObjs);
+        numEdges = outOffsets[numNodes];
+        outTargets = new int[numEdges];
+        outWeights = new double[numEdges];
+        outEdges = new Edge[numEdges];
+        load(network, out, outOffsets, outTargets, outWeights, outEdges);
+
+        if (directed)
+            {
+            inOffsets = new int[numNodes + 1];
+            for(int i = 0; i < numNodes; i++)
+                inOffsets[i + 1] = inOffsets[i] + (in[i] == null ? 0 : in[i].numObjs);
+            int numIn = inOffsets[numNodes];
+            inSources = new int[numIn];
+            inWeights = new double[numIn];
+            inEdges = new Edge[numIn];
+            load(network, in, inOffsets, inSources, inWeights, inEdges);
+            }
+        else
+            {
+            inOffsets = outOffsets;
+            inSources = outTargets;
+            inWeights = outWeights;
+            inEdges = outEdges;
+            }
+        }
+
+    /** Builds a snapshot of the given IntNetwork.  You'd ordinarily call intNetwork.getSnapshot() instead, which reuses
+        a snapshot which is still valid. */
+    public NetworkSnapshot(IntNetwork intNetwork)
+        {
+        network = null;
+        this.intNetwork = intNetwork;
+        version = intNetwork.version;
+        directed = intNetwork.directed;
+        numNodes = intNetwork.numNodes;
+        nodes = null;
+        outEdges = inEdges = null;
+
+        final int[] outDegree = intNetwork.outDegree;
+        final int[] inDegree = intNetwork.inDegree;
+        outOffsets = new int[numNodes + 1];
+        for(int i = 0; i < numNodes; i++)
+            outOffsets[i + 1] = outOffsets[i] + outDegree[i] + (directed ? 0 : inDegree[i]);
+        numEdges = outOffsets[numNodes];
+        outTargets = new int[numEdges];
+        outWeights = new double[numEdges];
+        outEdgeIds = new int[numEdges];
+        for(int i = 0; i < numNodes; i++)
+            {
+            int k = load(intNetwork, intNetwork.out[i], outDegree[i], intNetwork.to, outOffsets[i], outTargets, outWeights, outEdgeIds);
+            if (!directed)
+                load(intNetwork, intNetwork.in[i], inDegree[i], intNetwork.from, k, outTargets, outWeights, outEdgeIds);
+            }
+
+        if (directed)
+            {
+            inOffsets = new int[numNodes + 1];
+            for(int i = 0; i < numNodes; i++)
+                inOffsets[i + 1] = inOffsets[i] + inDegree[i];
+            int numIn = inOffsets[numNodes];
+            inSources = new int[numIn];
+            inWeights = new double[numIn];
+            inEdgeIds = new int[numIn];
+            for(int i = 0; i < numNodes; i++)
+                load(intNetwork, intNetwork.in[i], inDegree[i], intNetwork.from, inOffsets[i], inSources, inWeights, inEdgeIds);
+            }
+        else
+            {
+            inOffsets = outOffsets;
+            inSources = outTargets;
+            inWeights = outWeights;
+            inEdgeIds = outEdgeIds;
+            }
+        }
+
+    // loads a node's list of IntNetwork edges starting at k, and returns the position after them
+    static int load(IntNetwork intNetwork, int[] list, int degree, int[] ends, int k, int[] nodes, double[] weights, int[] ids)
+        {
+        for(int j = 0; j < degree; j++, k++)
+            {
+            int e = list[j];
+            ids[k] = e;
+            nodes[k] = ends[e];
+            weights[k] = intNetwork.getWeight(e);
+            }
+        return k;
+        }
+
+    static void load(Network network, Bag[] bags, int[] offsets, int[] ends, double[] weights, Edge[] edges)
+        {
+        final java.util.Map hash = network.indexOutInHash;
+        final Object[] nodes = network.allNodes.objs;
+        for(int i = 0; i < bags.length; i++)
+            {
+            Bag b = bags[i];
+            if (b == null) continue;
+            Object node = nodes[i];
+            int k = offsets[i];
+            for(int j = 0; j < b.numObjs; j++, k++)
+                {
+                Edge e = (Edge)(b.objs[j]);
+                edges[k] = e;
+                weights[k] = e.getWeight();
+                Object other = e.getOtherNode(node);
+                ends[k] = (other == node ? i : ((Network.IndexOutIn)(hash.get(other))).index);
+                }
+            }
+        }
+
+    /** Returns true if the snapshot's Network has not changed its topology since the snapshot was made. */
+    public boolean isValid()
+        {
+        return (network != null ? network.version : intNetwork.version) == version;
+        }
+
+    /** Reloads the weights from the edges' current info objects, or from the IntNetwork.  Don't do this if the snapshot is
+        no longer valid. */
+    public void updateWeights()
+        {
+        if (network != null)
+            {
+            for(int j = 0; j < numEdges; j++)
+                outWeights[j] = outEdges[j].getWeight();
+            if (directed)
+                for(int j = 0; j < inWeights.length; j++)
+                    inWeights[j] = inEdges[j].getWeight();
+            }
+        else
+            {
+            for(int j = 0; j < numEdges; j++)
+                outWeights[j] = intNetwork.getWeight(outEdgeIds[j]);
+            if (directed)
+                for(int j = 0; j < inWeights.length; j++)
+                    inWeights[j] = intNetwork.getWeight(inEdgeIds[j]);
+            }
+        }
+
+    /** Returns the node with the given index. */
+    public Object getNode(int index) { return (nodes == null ? Integer.valueOf(index) : nodes[index]); }
+
+    /** Returns the number of outgoing edges of the node with the given index. */
+    public int getOutDegree(int index) { return outOffsets[index + 1] - outOffsets[index]; }
+
+    /** Returns the number of incoming edges of the node with the given index. */
+    public int getInDegree(int index) { return inOffsets[index + 1] - inOffsets[index]; }
+
+    /** Returns the index of the given node, or -1 if it is not in the snapshot.  For a Network this requires a hash lookup
+        (or a linear scan if the snapshot is no longer valid), so look up nodes once and then use their indexes.  For an
+        IntNetwork the nodes are Integers, and the index is the Integer's value. */
+    public int getNodeIndex(Object node)
+        {
+        if (nodes == null)
+            {
+            if (!(node instanceof Integer)) return -1;
+            int i = ((Integer)node).intValue();
+            return (i >= 0 && i < numNodes ? i : -1);
+            }
+        if (isValid())
+            {
+            Network.IndexOutIn ioi = (Network.IndexOutIn)(network.indexOutInHash.get(node));
+            return (ioi == null ? -1 : ioi.index);
+            }
+        for(int i = 0; i < numNodes; i++)
+            if (nodes[i] == node || (node != null && node.equals(nodes[i])))
+                return i;
+        return -1;
+        }
+
+    /** Places the indexes of the targets of the outgoing edges of the node with the given index into the given IntBag
+        (clearing it first, or creating it if null), and returns it. */
+    public IntBag getOutNeighbors(int index, IntBag result)
+        {
+        if (result == null) result = new IntBag();
+        else result.clear();
+        int from = outOffsets[index];
+        int n = outOffsets[index + 1] - from;
+        result.resize(n);
+        System.arraycopy(outTargets, from, result.objs, 0, n);
+        result.numObjs = n;
+        return result;
+        }
+
+    /** Places the indexes of the sources of the incoming edges of the node with the given index into the given IntBag
+        (clearing it first, or creating it if null), and returns it. */
+    public IntBag getInNeighbors(int index, IntBag result)
+        {
+        if (result == null) result = new IntBag();
+        else result.clear();
+        int from = inOffsets[index];
+        int n = inOffsets[index + 1] - from;
+        result.resize(n);
+        System.arraycopy(inSources, from, result.objs, 0, n);
+        result.numObjs = n;
+        return result;
+        }
+    }
@@ -0,0 +1,142 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.network.algo;
+import sim.field.network.*;
+import sim.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+   Breadth-first search over a NetworkSnapshot, giving the number of hops from a source node to every other node.
+
+   <p>The search proceeds a layer at a time.  With more than one thread, each large layer is divided among the threads,
+   which claim the unvisited neighbors of their share of the layer; the layers themselves, and so the distances, are the
+   same however many threads are used.  Nodes are numbered as in the snapshot (for a Network, as in its allNodes bag).
+   If <tt>outEdges</tt> is true, the search follows edges from their from nodes to their to nodes, else backwards.
+   In an undirected network it makes no difference.
+*/
+
+public class BreadthFirstSearch
+    {
+    private BreadthFirstSearch() { }
+
+    /** Returns the number of hops from the source to each node, or -1 for nodes which cannot be reached. */
+    public static int[] getDistances(NetworkSnapshot snapshot, int source, boolean outEdges, int numThreads)
+        {
+        return getDistances(snapshot, new int[] { source }, outEdges, numThreads);
+        }
+
+    /** Returns the number of hops from the nearest of the sources to each node, or -1 for nodes which cannot be reached. */
+    public static int[] getDistances(NetworkSnapshot snapshot, int[] sources, boolean outEdges, int numThreads)
+        {
+        final int n = snapshot.numNodes;
+        final int[] offsets = (outEdges ? snapshot.outOffsets : snapshot.inOffsets);
+        final int[] ends = (outEdges ? snapshot.outTargets : snapshot.inSources);
+        final int threads = Parallel.threads(numThreads);
+
+        final int[] dist = new int[n];
+        java.util.Arrays.fill(dist, -1);
+        final AtomicIntegerArray claimed = (threads > 1 ? new AtomicIntegerArray(n) : null);
+
+        int[] frontier = new int[Math.max(sources.length, 16)];
+        int size = 0;
+        for(int i = 0; i < sources.length; i++)
+            {
+            int s = sources[i];
+            if (s < 0 || s >= n) throw new RuntimeException("No such node: " + s);
+            if (dist[s] >= 0) continue;
+            dist[s] = 0;
+            if (claimed != null) claimed.set(s, 1);
+            frontier[size++] = s;
+            }
+
+        int level = 0;
+        while(size > 0)
+            {
+            final int next = level + 1;
+            if (claimed == null || size < Parallel.MIN_PARALLEL_WORK)
+                {
+                IntBag out = new IntBag();
+                for(int i = 0; i < size; i++)
+                    {
+                    int u = frontier[i];
+                    for(int j = offsets[u]; j < offsets[u + 1]; j++)
+                        {
+                        int v = ends[j];
+                        if (dist[v] < 0 && (claimed == null || claimed.compareAndSet(v, 0, 1)))
+                            {
+                            dist[v] = next;
+                            out.add(v);
+                            }
+                        }
+                    }
+                frontier = out.objs;
+                size = out.numObjs;
+                }
+            else
+                {
+                final int[] f = frontier;
+                final IntBag[] outs = new IntBag[threads];
+                Parallel.run(size, threads, 0, new Parallel.Task()
+                    {
+                    public void run(int thread, int from, int to)
+                        {
+                        IntBag out = outs[thread] = new IntBag();
+                        for(int i = from; i < to; i++)
+                            {
+                            int u = f[i];
+                            for(int j = offsets[u]; j < offsets[u + 1]; j++)
+                                {
+                                int v = ends[j];
+                                if (claimed.get(v) == 0 && claimed.compareAndSet(v, 0, 1))
+                                    {
+                                    dist[v] = next;
+                                    out.add(v);
+                                    }
+                                }
+                            }
+                        }
+                    });
+                size = 0;
+                for(int t = 0; t < threads; t++)
+                    if (outs[t] != null) size += outs[t].numObjs;
+                frontier = new int[size];
+                int k = 0;
+                for(int t = 0; t < threads; t++)
+                    if (outs[t] != null)
+                        {
+                        System.arraycopy(outs[t].objs, 0, frontier, k, outs[t].numObjs);
+                        k += outs[t].numObjs;
+                        }
+                }
+            level = next;
+            }
+        return dist;
+        }
+
+    /** Returns the nodes at each distance from the source, in increasing order of distance: element <i>i</i> holds the nodes
+        <i>i</i> hops away, in increasing order.  Unreachable nodes are left out. */
+    public static IntBag[] getLayers(NetworkSnapshot snapshot, int source, boolean outEdges, int numThreads)
+        {
+        int[] dist = getDistances(snapshot, source, outEdges, numThreads);
+        int max = -1;
+        for(int i = 0; i < dist.length; i++)
+            if (dist[i] > max) max = dist[i];
+        IntBag[] layers = new IntBag[max + 1];
+        for(int i = 0; i <= max; i++)
+            layers[i] = new IntBag();
+        for(int i = 0; i < dist.length; i++)
+            if (dist[i] >= 0) layers[dist[i]].add(i);
+        return layers;
+        }
+
+    /** Returns the number of hops from the source to each node of the network, indexed as in its allNodes bag,
+        or -1 for nodes which cannot be reached. */
+    public static int[] getDistances(Network network, Object source, boolean outEdges, int numThreads)
+        {
+        return getDistances(network.getSnapshot(), network.getNodeIndex(source), outEdges, numThreads);
+        }
+    }
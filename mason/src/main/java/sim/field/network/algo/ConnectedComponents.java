@@ -0,0 +1,109 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.network.algo;
+import sim.field.network.*;
+import sim.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+   Connected components of a NetworkSnapshot, ignoring the direction of edges (in a directed network, these are the
+   weakly connected components).
+
+   <p>The components are found by a concurrent union-find over the edges, which are divided among the threads.  Each
+   union links the root with the larger index under the one with the smaller, so every component ends up labelled by its
+   smallest node index, however many threads are used.
+*/
+
+public class ConnectedComponents
+    {
+    private ConnectedComponents() { }
+
+    /** Returns for each node the label of its component, which is the smallest node index in the component. */
+    public static int[] getLabels(NetworkSnapshot snapshot, int numThreads)
+        {
+        final int n = snapshot.numNodes;
+        final int[] offsets = snapshot.outOffsets;
+        final int[] targets = snapshot.outTargets;
+        final AtomicIntegerArray parent = new AtomicIntegerArray(n);
+        for(int i = 0; i < n; i++) parent.set(i, i);
+
+        Parallel.run(n, numThreads, Parallel.MIN_PARALLEL_WORK, new Parallel.Task()
+            {
+            public void run(int thread, int from, int to)
+                {
+                for(int u = from; u < to; u++)
+                    for(int j = offsets[u]; j < offsets[u + 1]; j++)
+                        union(parent, u, targets[j]);
+                }
+            });
+
+        final int[] labels = new int[n];
+        Parallel.run(n, numThreads, Parallel.MIN_PARALLEL_WORK, new Parallel.Task()
+            {
+            public void run(int thread, int from, int to)
+                {
+                for(int u = from; u < to; u++)
+                    labels[u] = find(parent, u);
+                }
+            });
+        return labels;
+        }
+
+    /** Returns for each node of the network, indexed as in its allNodes bag, the label of its component, which is the
+        smallest index in the component. */
+    public static int[] getLabels(Network network, int numThreads)
+        {
+        return getLabels(network.getSnapshot(), numThreads);
+        }
+
+    /** Returns the number of components, given the labels from getLabels(...). */
+    public static int getNumComponents(int[] labels)
+        {
+        int count = 0;
+        for(int i = 0; i < labels.length; i++)
+            if (labels[i] == i) count++;
+        return count;
+        }
+
+    /** Returns the number of nodes in each node's component, given the labels from getLabels(...). */
+    public static int[] getComponentSizes(int[] labels)
+        {
+        int[] count = new int[labels.length];
+        for(int i = 0; i < labels.length; i++)
+            count[labels[i]]++;
+        int[] sizes = new int[labels.length];
+        for(int i = 0; i < labels.length; i++)
+            sizes[i] = count[labels[i]];
+        return sizes;
+        }
+
+    // finds the root of u, halving the path as it goes
+    static int find(AtomicIntegerArray parent, int u)
+        {
+        while(true)
+            {
+            int p = parent.get(u);
+            if (p == u) return u;
+            int gp = parent.get(p);
+            if (gp != p) parent.compareAndSet(u, p, gp);
+            u = gp;
+            }
+        }
+
+    static void union(AtomicIntegerArray parent, int u, int v)
+        {
+        while(true)
+            {
+            u = find(parent, u);
+            v = find(parent, v);
+            if (u == v) return;
+            if (u < v) { int t = u; u = v; v = t; }
+            // link the larger root u under the smaller v, if u is still a root
+            if (parent.compareAndSet(u, u, v)) return;
+            }
+        }
+    }
@@ -0,0 +1,117 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.network.algo;
+import sim.field.network.*;
+
+/**
+   A growable list of edges between nodes numbered 0 ... numNodes - 1, as produced by RandomNetworks.  Edge i goes from
+   from[i] to to[i].  An EdgeList can be loaded in bulk into an IntNetwork or a Network, which is much faster than
+   adding its edges one at a time.
+*/
+
+public class EdgeList implements java.io.Serializable
+    {
+    private static final long serialVersionUID = 1;
+
+    /** The number of nodes */
+    public int numNodes;
+    /** Whether the edges are directed */
+    public boolean directed;
+    /** The from node of each edge.  Only the first numEdges are valid. */
+    public int[] from;
+    /** The to node of each edge.  Only the first numEdges are valid. */
+    public int[] to;
+    /** The number of edges */
+    public int numEdges;
+
+    public EdgeList(int numNodes, boolean directed, int capacity)
+        {
+        this.numNodes = numNodes;
+        this.directed = directed;
+        from = new int[Math.max(capacity, 16)];
+        to = new int[from.length];
+        }
+
+    public EdgeList(int numNodes, boolean directed) { this(numNodes, directed, 16); }
+
+    /** Adds an edge. */
+    public void add(int from, int to)
+        {
+        if (numEdges == this.from.length) resize(numEdges * 2);
+        this.from[numEdges] = from;
+        this.to[numEdges++] = to;
+        }
+
+    /** Adds all the edges of the other list. */
+    public void addAll(EdgeList other)
+        {
+        if (numEdges + other.numEdges > from.length) resize(Math.max(numEdges + other.numEdges, numEdges * 2));
+        System.arraycopy(other.from, 0, from, numEdges, other.numEdges);
+        System.arraycopy(other.to, 0, to, numEdges, other.numEdges);
+        numEdges += other.numEdges;
+        }
+
+    void resize(int size)
+        {
+        int[] f = new int[size];
+        System.arraycopy(from, 0, f, 0, numEdges);
+        from = f;
+        int[] t = new int[size];
+        System.arraycopy(to, 0, t, 0, numEdges);
+        to = t;
+        }
+
+    /** Adds the edges to an IntNetwork, whose node <i>firstNode + i</i> is taken to be node <i>i</i> of the list.
+        The IntNetwork must already have these nodes.  Returns the number of the first edge added. */
+    public int addTo(IntNetwork network, int firstNode)
+        {
+        if (firstNode < 0 || firstNode + numNodes > network.getNumNodes())
+            throw new RuntimeException("IntNetwork does not have nodes " + firstNode + " ... " + (firstNode + numNodes - 1));
+        int[] f = from;
+        int[] t = to;
+        if (firstNode != 0)
+            {
+            f = new int[numEdges];
+            t = new int[numEdges];
+            for(int i = 0; i < numEdges; i++)
+                {
+                f[i] = from[i] + firstNode;
+                t[i] = to[i] + firstNode;
+                }
+            }
+        return network.addEdges(f, t, null, numEdges);
+        }
+
+    /** Returns a new IntNetwork, directed or not as the list is, holding the nodes and edges of the list. */
+    public IntNetwork buildIntNetwork(int weights)
+        {
+        IntNetwork network = new IntNetwork(directed, weights);
+        network.ensureCapacity(numNodes, numEdges);
+        network.addNodes(numNodes);
+        addTo(network, 0);
+        return network;
+        }
+
+    /** Adds the edges to a Network, with nodes[i] as node <i>i</i> of the list, and null info.  Nodes not yet in the
+        Network are added, in order. */
+    public void addTo(Network network, Object[] nodes)
+        {
+        if (nodes.length < numNodes)
+            throw new RuntimeException("EdgeList has " + numNodes + " nodes, but only " + nodes.length + " were provided");
+        network.addEdges(nodes, from, to, null, numEdges);
+        }
+
+    /** Returns a new Network, directed or not as the list is, whose nodes are the Integers 0 ... numNodes - 1. */
+    public Network buildNetwork()
+        {
+        Network network = new Network(directed);
+        Object[] nodes = new Object[numNodes];
+        for(int i = 0; i < numNodes; i++) nodes[i] = Integer.valueOf(i);
+        addTo(network, nodes);
+        return network;
+        }
+    }
@@ -0,0 +1,113 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.network.algo;
+import sim.field.network.*;
+import sim.util.*;
+
+/**
+   k-core decomposition of a NetworkSnapshot.  The k-core is the largest set of nodes in which every node has at least k
+   edges to other nodes in the set, and the core number of a node is the largest k for which it is in the k-core.
+
+   <p>Core numbers are computed with the O(#nodes + #edges) bucket algorithm of Batagelj and Zaversnik, which peels off
+   nodes in order of their remaining degree; this is inherently sequential, so there's no numThreads argument.  The
+   direction of edges is ignored.  Self-loops are ignored, and multiple edges between two nodes each count.
+*/
+
+public class KCore
+    {
+    private KCore() { }
+
+    /** Returns the core number of each node. */
+    public static int[] getCoreNumbers(NetworkSnapshot snapshot)
+        {
+        final int n = snapshot.numNodes;
+        final int[] outOffsets = snapshot.outOffsets;
+        final int[] outTargets = snapshot.outTargets;
+        final int[] inOffsets = snapshot.inOffsets;
+        final int[] inSources = snapshot.inSources;
+        final boolean both = snapshot.directed;     // in undirected snapshots the in-arrays are the out-arrays
+
+        // degrees, not counting self-loops
+        int[] deg = new int[n];
+        int maxDeg = 0;
+        for(int v = 0; v < n; v++)
+            {
+            int d = 0;
+            for(int j = outOffsets[v]; j < outOffsets[v + 1]; j++)
+                if (outTargets[j] != v) d++;
+            if (both)
+                for(int j = inOffsets[v]; j < inOffsets[v + 1]; j++)
+                    if (inSources[j] != v) d++;
+            deg[v] = d;
+            if (d > maxDeg) maxDeg = d;
+            }
+
+        // sort the nodes by degree into vert, with bin[d] the start of degree d, and pos[v] the position of v
+        int[] bin = new int[maxDeg + 1];
+        for(int v = 0; v < n; v++) bin[deg[v]]++;
+        int start = 0;
+        for(int d = 0; d <= maxDeg; d++)
+            {
+            int num = bin[d];
+            bin[d] = start;
+            start += num;
+            }
+        int[] vert = new int[n];
+        int[] pos = new int[n];
+        for(int v = 0; v < n; v++)
+            {
+            pos[v] = bin[deg[v]]++;
+            vert[pos[v]] = v;
+            }
+        for(int d = maxDeg; d > 0; d--) bin[d] = bin[d - 1];
+        bin[0] = 0;
+
+        // peel
+        for(int i = 0; i < n; i++)
+            {
+            int v = vert[i];
+            for(int j = outOffsets[v]; j < outOffsets[v + 1]; j++)
+                lower(outTargets[j], v, deg, bin, vert, pos);
+            if (both)
+                for(int j = inOffsets[v]; j < inOffsets[v + 1]; j++)
+                    lower(inSources[j], v, deg, bin, vert, pos);
+            }
+        return deg;
+        }
+
+    // if neighbor u of v has a higher remaining degree, lowers it by one, moving it to the front of its bin
+    static void lower(int u, int v, int[] deg, int[] bin, int[] vert, int[] pos)
+        {
+        if (u == v || deg[u] <= deg[v]) return;
+        int du = deg[u];
+        int pu = pos[u];
+        int pw = bin[du];
+        int w = vert[pw];
+        if (u != w)
+            {
+            pos[u] = pw; vert[pu] = w;
+            pos[w] = pu; vert[pw] = u;
+            }
+        bin[du]++;
+        deg[u]--;
+        }
+
+    /** Returns the core number of each node of the network, indexed as in its allNodes bag. */
+    public static int[] getCoreNumbers(Network network)
+        {
+        return getCoreNumbers(network.getSnapshot());
+        }
+
+    /** Returns, in increasing order, the nodes whose core number is at least k, given the core numbers from getCoreNumbers(...). */
+    public static IntBag getCore(int[] coreNumbers, int k)
+        {
+        IntBag core = new IntBag();
+        for(int v = 0; v < coreNumbers.length; v++)
+            if (coreNumbers[v] >= k) core.add(v);
+        return core;
+        }
+    }
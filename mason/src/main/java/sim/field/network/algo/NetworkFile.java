@@ -0,0 +1,608 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.network.algo;
+import sim.field.network.*;
+import sim.util.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+   A network as it's stored in a file: an EdgeList, optional columns of per-edge values (such as weights), and optional
+   names for the nodes.  NetworkFile reads and writes a compact binary format through memory-mapped NIO, and reads text edge
+   lists in parallel, and can build an IntNetwork or Network from what it has read in bulk.  To save a network, make a
+   NetworkFile from it and write(...) that.
+
+   <p><b>Text edge lists.</b>  Each line holds a from node, a to node, and then numColumns numbers, separated by spaces, tabs,
+   or commas.  Blank lines, and lines starting with # or %, are skipped.  If numericIds is true, the nodes are non-negative
+   integers, which are used as they are for node numbers; else they're names, numbered in the order in which they first
+   appear.  The file is divided into chunks of about CHUNK_BYTES bytes at line boundaries, which are parsed by different
+   threads and then put together in order, so the result is the same however many threads are used.
+
+   <p><b>Binary format.</b>  All values are little-endian.  The file starts with a 40-byte header:
+
+   <table border=0>
+   <tr><td>0</td><td>int</td><td>MAGIC</td></tr>
+   <tr><td>4</td><td>int</td><td>format VERSION</td></tr>
+   <tr><td>8</td><td>int</td><td>flags: 1 if directed, plus 2 if there are node names</td></tr>
+   <tr><td>12</td><td>int</td><td>number of columns</td></tr>
+   <tr><td>16</td><td>long</td><td>number of nodes</td></tr>
+   <tr><td>24</td><td>long</td><td>number of edges</td></tr>
+   <tr><td>32</td><td>int</td><td>length of the header, including column names and padding</td></tr>
+   <tr><td>36</td><td>int</td><td>reserved (0)</td></tr>
+   </table>
+
+   <p>... followed by each column's name (an int length and then that many bytes of UTF-8), padded with zeros to a multiple of 8 bytes.
+   Then come the from nodes of the edges as ints, and then the to nodes as ints, padded to a multiple of 8 bytes; then each column
+   as doubles; and then, if there are node names, the length in bytes of each name as ints, followed by the UTF-8 bytes of the
+   names one after another.
+*/
+
+public class NetworkFile
+    {
+    /** The first four bytes of a binary network file ("MNET" read as a little-endian int) */
+    public static final int MAGIC = 0x54454E4D;
+    /** The version of the binary format written */
+    public static final int VERSION = 1;
+    /** About how many bytes of a text file each thread parses at a time */
+    public static final int CHUNK_BYTES = 1 << 24;
+
+    // the most bytes mapped at once
+    static final int WINDOW = 1 << 28;
+    static final int HEADER_LENGTH = 40;
+    static final int DIRECTED = 1;
+    static final int NAMED = 2;
+
+    /** The edges, and the number of nodes */
+    public EdgeList edges;
+    /** The name of each node, or null if the nodes have no names */
+    public String[] nodeNames;
+    /** The name of each column */
+    public String[] columnNames = new String[0];
+    /** Each column holds a value per edge */
+    public double[][] columns = new double[0][];
+
+    public NetworkFile(EdgeList edges)
+        {
+        this.edges = edges;
+        }
+
+    /** Makes a NetworkFile holding an IntNetwork's edges, with a "weight" column if the IntNetwork has weights. */
+    public NetworkFile(IntNetwork network)
+        {
+        int numEdges = network.getNumEdges();
+        edges = new EdgeList(network.getNumNodes(), network.isDirected(), numEdges);
+        for(int e = 0; e < numEdges; e++)
+            edges.add(network.getFrom(e), network.getTo(e));
+        if (network.getWeights() != IntNetwork.NO_WEIGHTS)
+            {
+            double[] weights = new double[numEdges];
+            for(int e = 0; e < numEdges; e++)
+                weights[e] = network.getWeight(e);
+            addColumn("weight", weights);
+            }
+        }
+
+    /** Makes a NetworkFile holding a Network's edges, with a "weight" column holding each edge's getWeight().  Nodes are
+        numbered as in the Network's allNodes bag, and named by their toString() values. */
+    public NetworkFile(Network network)
+        {
+        Bag nodes = network.getAllNodes();
+        int n = nodes.numObjs;
+        edges = new EdgeList(n, network.isDirected());
+        DoubleBag weights = new DoubleBag();
+        nodeNames = new String[n];
+        for(int u = 0; u < n; u++)
+            {
+            Object node = nodes.objs[u];
+            nodeNames[u] = String.valueOf(node);
+            Bag out = network.getEdgesOut(node);
+            for(int j = 0; j < out.numObjs; j++)
+                {
+                Edge edge = (Edge)(out.objs[j]);
+                // undirected edges appear with both of their nodes, and self-loops twice with the same node
+                if (!network.isDirected() && (edge.indexFrom() != j || !edge.getFrom().equals(node))) continue;
+                edges.add(u, network.getNodeIndex(edge.getTo()));
+                weights.add(edge.getWeight());
+                }
+            }
+        addColumn("weight", weights.toArray());
+        }
+
+    /** Adds a column, which must have a value for each edge. */
+    public void addColumn(String name, double[] values)
+        {
+        if (values.length < edges.numEdges)
+            throw new RuntimeException("Column " + name + " has " + values.length + " values but there are " + edges.numEdges + " edges");
+        int n = columns.length;
+        String[] newNames = new String[n + 1];
+        System.arraycopy(columnNames, 0, newNames, 0, n);
+        newNames[n] = name;
+        columnNames = newNames;
+        double[][] newColumns = new double[n + 1][];
+        System.arraycopy(columns, 0, newColumns, 0, n);
+        newColumns[n] = values;
+        columns = newColumns;
+        }
+
+    /** Returns the index of the column with the given name, or -1 if there is none. */
+    public int getColumn(String name)
+        {
+        for(int i = 0; i < columnNames.length; i++)
+            if (columnNames[i].equals(name)) return i;
+        return -1;
+        }
+
+    /** Returns a new IntNetwork holding the edges, with DOUBLE_WEIGHTS taken from the given column, or NO_WEIGHTS if
+        weightColumn is -1. */
+    public IntNetwork buildIntNetwork(int weightColumn)
+        {
+        IntNetwork network = new IntNetwork(edges.directed, weightColumn < 0 ? IntNetwork.NO_WEIGHTS : IntNetwork.DOUBLE_WEIGHTS);
+        network.ensureCapacity(edges.numNodes, edges.numEdges);
+        network.addNodes(edges.numNodes);
+        network.addEdges(edges.from, edges.to, (weightColumn < 0 ? null : columns[weightColumn]), edges.numEdges);
+        return network;
+        }
+
+    /** Returns a new Network holding the edges.  Its nodes are the node names, or Integers if there are no names.  Each
+        edge's info is its value in the given column as a Double, or null if weightColumn is -1. */
+    public Network buildNetwork(int weightColumn)
+        {
+        Network network = new Network(edges.directed);
+        int n = edges.numNodes;
+        Object[] nodes = new Object[n];
+        for(int i = 0; i < n; i++)
+            nodes[i] = (nodeNames == null ? (Object)Integer.valueOf(i) : nodeNames[i]);
+        Object[] info = null;
+        if (weightColumn >= 0)
+            {
+            double[] column = columns[weightColumn];
+            info = new Object[edges.numEdges];
+            for(int i = 0; i < edges.numEdges; i++)
+                info[i] = Double.valueOf(column[i]);
+            }
+        network.addEdges(nodes, edges.from, edges.to, info, edges.numEdges);
+        return network;
+        }
+
+
+    //// BINARY FILES
+
+
+    static int pad(long length) { return (int)((8 - (length & 7)) & 7); }
+
+    /** Writes the network in the binary format. */
+    public void write(File file) throws IOException
+        {
+        int numEdges = edges.numEdges;
+        byte[][] names = new byte[columns.length][];
+        int headerLength = HEADER_LENGTH;
+        for(int i = 0; i < names.length; i++)
+            {
+            names[i] = columnNames[i].getBytes("UTF-8");
+            headerLength += 4 + names[i].length;
+            }
+        headerLength += pad(headerLength);
+
+        FileOutputStream stream = new FileOutputStream(file);
+        try
+            {
+            Writer out = new Writer(stream.getChannel());
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt((edges.directed ? DIRECTED : 0) | (nodeNames != null ? NAMED : 0));
+            out.putInt(columns.length);
+            out.putLong(edges.numNodes);
+            out.putLong(numEdges);
+            out.putInt(headerLength);
+            out.putInt(0);
+            for(int i = 0; i < names.length; i++)
+                {
+                out.putInt(names[i].length);
+                out.put(names[i], 0, names[i].length);
+                }
+            out.pad();
+            for(int i = 0; i < numEdges; i++) out.putInt(edges.from[i]);
+            for(int i = 0; i < numEdges; i++) out.putInt(edges.to[i]);
+            out.pad();
+            for(int c = 0; c < columns.length; c++)
+                for(int i = 0; i < numEdges; i++)
+                    out.putDouble(columns[c][i]);
+            if (nodeNames != null)
+                {
+                byte[][] bytes = new byte[edges.numNodes][];
+                for(int i = 0; i < bytes.length; i++)
+                    {
+                    bytes[i] = nodeNames[i].getBytes("UTF-8");
+                    out.putInt(bytes[i].length);
+                    }
+                for(int i = 0; i < bytes.length; i++)
+                    out.put(bytes[i], 0, bytes[i].length);
+                }
+            out.flush();
+            }
+        finally
+            {
+            stream.close();
+            }
+        }
+
+    // Writes little-endian values to a channel through a direct buffer
+    static class Writer
+        {
+        FileChannel channel;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        long position;
+
+        Writer(FileChannel channel) { this.channel = channel; }
+
+        void room(int bytes) throws IOException { if (buffer.remaining() < bytes) flush(); }
+        void putInt(int val) throws IOException { room(4); buffer.putInt(val); position += 4; }
+        void putLong(long val) throws IOException { room(8); buffer.putLong(val); position += 8; }
+        void putDouble(double val) throws IOException { room(8); buffer.putDouble(val); position += 8; }
+        void put(byte[] bytes, int off, int len) throws IOException
+            {
+            while(len > 0)
+                {
+                room(1);
+                int n = Math.min(len, buffer.remaining());
+                buffer.put(bytes, off, n);
+                off += n;
+                len -= n;
+                position += n;
+                }
+            }
+        void pad() throws IOException
+            {
+            for(int i = NetworkFile.pad(position); i > 0; i--)
+                { room(1); buffer.put((byte)0); position++; }
+            }
+        void flush() throws IOException
+            {
+            buffer.flip();
+            while(buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+            }
+        }
+
+    // maps length bytes of the channel from position, little-endian
+    static ByteBuffer map(FileChannel channel, long position, long length) throws IOException
+        {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+    static long readInts(FileChannel channel, long position, int[] array, int length) throws IOException
+        {
+        for(int done = 0; done < length; )
+            {
+            int n = Math.min(length - done, WINDOW / 4);
+            map(channel, position, n * 4L).asIntBuffer().get(array, done, n);
+            done += n;
+            position += n * 4L;
+            }
+        return position;
+        }
+
+    static long readDoubles(FileChannel channel, long position, double[] array, int length) throws IOException
+        {
+        for(int done = 0; done < length; )
+            {
+            int n = Math.min(length - done, WINDOW / 8);
+            map(channel, position, n * 8L).asDoubleBuffer().get(array, done, n);
+            done += n;
+            position += n * 8L;
+            }
+        return position;
+        }
+
+    /** Reads a network in the binary format, through memory-mapped buffers. */
+    public static NetworkFile read(File file) throws IOException
+        {
+        FileInputStream stream = new FileInputStream(file);
+        try
+            {
+            FileChannel channel = stream.getChannel();
+            long size = channel.size();
+            if (size < HEADER_LENGTH) throw new IOException("Not a network file: " + file);
+            ByteBuffer header = map(channel, 0, HEADER_LENGTH);
+            if (header.getInt(0) != MAGIC) throw new IOException("Not a network file: " + file);
+            if (header.getInt(4) != VERSION) throw new IOException("Unknown network file version " + header.getInt(4) + ": " + file);
+            int flags = header.getInt(8);
+            int numColumns = header.getInt(12);
+            long numNodes = header.getLong(16);
+            long numEdges = header.getLong(24);
+            int headerLength = header.getInt(32);
+            if (numNodes < 0 || numNodes > Integer.MAX_VALUE || numEdges < 0 || numEdges > Integer.MAX_VALUE - 8 ||
+                numColumns < 0 || headerLength < HEADER_LENGTH || headerLength > size)
+                throw new IOException("Corrupt network file header: " + file);
+            long expected = headerLength + numEdges * 8 + pad(numEdges * 8) + numEdges * 8 * numColumns +
+                ((flags & NAMED) != 0 ? numNodes * 4 : 0);
+            if (size < expected) throw new IOException("Network file is truncated: " + file);
+
+            ByteBuffer names = map(channel, HEADER_LENGTH, headerLength - HEADER_LENGTH);
+            String[] columnNames = new String[numColumns];
+            for(int i = 0; i < numColumns; i++)
+                {
+                byte[] bytes = new byte[names.getInt()];
+                names.get(bytes);
+                columnNames[i] = new String(bytes, "UTF-8");
+                }
+
+            int n = (int)numEdges;
+            EdgeList edges = new EdgeList((int)numNodes, (flags & DIRECTED) != 0, n);
+            long position = headerLength;
+            position = readInts(channel, position, edges.from, n);
+            position = readInts(channel, position, edges.to, n);
+            position += pad(position);
+            edges.numEdges = n;
+            for(int i = 0; i < n; i++)
+                if (edges.from[i] < 0 || edges.from[i] >= numNodes || edges.to[i] < 0 || edges.to[i] >= numNodes)
+                    throw new IOException("Edge " + i + " has a node out of range in network file: " + file);
+
+            NetworkFile result = new NetworkFile(edges);
+            for(int c = 0; c < numColumns; c++)
+                {
+                double[] column = new double[n];
+                position = readDoubles(channel, position, column, n);
+                result.addColumn(columnNames[c], column);
+                }
+
+            if ((flags & NAMED) != 0)
+                {
+                int[] lengths = new int[(int)numNodes];
+                position = readInts(channel, position, lengths, lengths.length);
+                String[] nodeNames = new String[lengths.length];
+                ByteBuffer window = null;
+                long windowStart = 0;
+                for(int i = 0; i < lengths.length; i++)
+                    {
+                    if (lengths[i] < 0 || position + lengths[i] > size)
+                        throw new IOException("Network file is truncated: " + file);
+                    if (window == null || position + lengths[i] > windowStart + window.capacity())
+                        {
+                        windowStart = position;
+                        window = map(channel, position, Math.min(size - position, Math.max(WINDOW, lengths[i])));
+                        }
+                    byte[] bytes = new byte[lengths[i]];
+                    window.position((int)(position - windowStart));
+                    window.get(bytes);
+                    nodeNames[i] = new String(bytes, "UTF-8");
+                    position += lengths[i];
+                    }
+                result.nodeNames = nodeNames;
+                }
+            return result;
+            }
+        finally
+            {
+            stream.close();
+            }
+        }
+
+
+    //// TEXT FILES
+
+
+    // The edges parsed from one chunk of a text file
+    static class Chunk
+        {
+        long start, end;
+        IntBag from = new IntBag();
+        IntBag to = new IntBag();
+        DoubleBag[] columns;
+        HashMap ids;                // local name -> local Integer number, if not numericIds
+        ArrayList names;            // local names in order
+        int maxId = -1;             // largest node number, if numericIds
+        }
+
+    /** Reads a text edge list, as described in the class comments, into a new NetworkFile with numColumns columns named
+        "column 0", "column 1", and so on. */
+    public static NetworkFile readText(final File file, boolean directed, final boolean numericIds, final int numColumns, int numThreads) throws IOException
+        {
+        if (numColumns < 0) throw new RuntimeException("Invalid number of columns: " + numColumns);
+        FileInputStream stream = new FileInputStream(file);
+        try
+            {
+            final FileChannel channel = stream.getChannel();
+            final long size = channel.size();
+
+            // divide the file into chunks at line boundaries
+            final ArrayList chunks = new ArrayList();
+            long start = 0;
+            while(start < size)
+                {
+                long end = lineStart(channel, Math.min(size, start + CHUNK_BYTES), size);
+                Chunk chunk = new Chunk();
+                chunk.start = start;
+                chunk.end = end;
+                chunks.add(chunk);
+                start = end;
+                }
+
+            Parallel.run(chunks.size(), numThreads, 2, new Parallel.Task()
+                {
+                public void run(int thread, int from, int to)
+                    {
+                    for(int i = from; i < to; i++)
+                        {
+                        Chunk chunk = (Chunk)(chunks.get(i));
+                        try { parse(chunk, map(channel, chunk.start, chunk.end - chunk.start), numericIds, numColumns); }
+                        catch (IOException e) { throw new RuntimeException("Could not read " + file, e); }
+                        }
+                    }
+                });
+
+            // put the chunks together
+            long total = 0;
+            for(int i = 0; i < chunks.size(); i++)
+                total += ((Chunk)(chunks.get(i))).from.numObjs;
+            if (total > Integer.MAX_VALUE - 8) throw new RuntimeException("Too many edges in " + file + ": " + total);
+            int numEdges = (int)total;
+
+            EdgeList edges = new EdgeList(0, directed, numEdges);
+            double[][] columns = new double[numColumns][numEdges];
+            HashMap ids = (numericIds ? null : new HashMap());
+            ArrayList names = (numericIds ? null : new ArrayList());
+            int numNodes = 0;
+            int e = 0;
+            for(int i = 0; i < chunks.size(); i++)
+                {
+                Chunk chunk = (Chunk)(chunks.get(i));
+                int[] global = null;
+                if (numericIds) numNodes = Math.max(numNodes, chunk.maxId + 1);
+                else
+                    {
+                    global = new int[chunk.names.size()];
+                    for(int j = 0; j < global.length; j++)
+                        {
+                        Object name = chunk.names.get(j);
+                        Integer id = (Integer)(ids.get(name));
+                        if (id == null)
+                            {
+                            id = Integer.valueOf(names.size());
+                            ids.put(name, id);
+                            names.add(name);
+                            }
+                        global[j] = id.intValue();
+                        }
+                    }
+                int n = chunk.from.numObjs;
+                for(int j = 0; j < n; j++)
+                    {
+                    edges.from[e + j] = (global == null ? chunk.from.objs[j] : global[chunk.from.objs[j]]);
+                    edges.to[e + j] = (global == null ? chunk.to.objs[j] : global[chunk.to.objs[j]]);
+                    }
+                for(int c = 0; c < numColumns; c++)
+                    System.arraycopy(chunk.columns[c].objs, 0, columns[c], e, n);
+                e += n;
+                chunks.set(i, null);        // let it go
+                }
+            edges.numEdges = numEdges;
+            edges.numNodes = (numericIds ? numNodes : names.size());
+
+            NetworkFile result = new NetworkFile(edges);
+            for(int c = 0; c < numColumns; c++)
+                result.addColumn("column " + c, columns[c]);
+            if (!numericIds)
+                result.nodeNames = (String[])(names.toArray(new String[names.size()]));
+            return result;
+            }
+        finally
+            {
+            stream.close();
+            }
+        }
+
+    // returns the start of the first line beginning at or after position
+    static long lineStart(FileChannel channel, long position, long size) throws IOException
+        {
+        if (position >= size || position == 0) return position;
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long p = position - 1;          // the previous character might be the newline
+        while(p < size)
+            {
+            buffer.clear();
+            int n = channel.read(buffer, p);
+            if (n <= 0) break;
+            for(int i = 0; i < n; i++)
+                if (buffer.get(i) == '\n') return p + i + 1;
+            p += n;
+            }
+        return size;
+        }
+
+    static boolean separator(int b) { return b == ' ' || b == '\t' || b == ',' || b == '\r'; }
+
+    static void parse(Chunk chunk, ByteBuffer buffer, boolean numericIds, int numColumns)
+        {
+        chunk.columns = new DoubleBag[numColumns];
+        for(int c = 0; c < numColumns; c++) chunk.columns[c] = new DoubleBag();
+        if (!numericIds)
+            {
+            chunk.ids = new HashMap();
+            chunk.names = new ArrayList();
+            }
+        byte[] token = new byte[64];
+        int limit = buffer.limit();
+        int p = 0;
+        while(p < limit)
+            {
+            // find the line
+            int lineEnd = p;
+            while(lineEnd < limit && buffer.get(lineEnd) != '\n') lineEnd++;
+            int q = p;
+            while(q < lineEnd && separator(buffer.get(q))) q++;
+            if (q < lineEnd && buffer.get(q) != '#' && buffer.get(q) != '%')
+                {
+                int field = 0;
+                while(q < lineEnd)
+                    {
+                    int tokenEnd = q;
+                    while(tokenEnd < lineEnd && !separator(buffer.get(tokenEnd))) tokenEnd++;
+                    int len = tokenEnd - q;
+                    if (field < 2)
+                        {
+                        int id;
+                        if (numericIds) id = parseId(buffer, q, tokenEnd, chunk);
+                        else
+                            {
+                            if (len > token.length) token = new byte[len * 2];
+                            for(int i = 0; i < len; i++) token[i] = buffer.get(q + i);
+                            String name;
+                            try { name = new String(token, 0, len, "UTF-8"); }
+                            catch (UnsupportedEncodingException e) { throw new RuntimeException(e); }
+                            Integer local = (Integer)(chunk.ids.get(name));
+                            if (local == null)
+                                {
+                                local = Integer.valueOf(chunk.names.size());
+                                chunk.ids.put(name, local);
+                                chunk.names.add(name);
+                                }
+                            id = local.intValue();
+                            }
+                        if (field == 0) chunk.from.add(id);
+                        else chunk.to.add(id);
+                        }
+                    else if (field - 2 < numColumns)
+                        {
+                        StringBuilder s = new StringBuilder(len);
+                        for(int i = q; i < tokenEnd; i++) s.append((char)buffer.get(i));
+                        try { chunk.columns[field - 2].add(Double.parseDouble(s.toString())); }
+                        catch (NumberFormatException e) { throw badLine(chunk, p, "bad number " + s); }
+                        }
+                    field++;
+                    q = tokenEnd;
+                    while(q < lineEnd && separator(buffer.get(q))) q++;
+                    }
+                if (field < 2 + numColumns)
+                    throw badLine(chunk, p, "expected " + (2 + numColumns) + " values but found " + field);
+                }
+            p = lineEnd + 1;
+            }
+        }
+
+    static int parseId(ByteBuffer buffer, int from, int to, Chunk chunk)
+        {
+        long val = 0;
+        for(int i = from; i < to; i++)
+            {
+            int d = buffer.get(i) - '0';
+            if (d < 0 || d > 9) throw badLine(chunk, from, "node is not a non-negative integer");
+            val = val * 10 + d;
+            if (val >= Integer.MAX_VALUE) throw badLine(chunk, from, "node number is too large");
+            }
+        int id = (int)val;
+        if (id > chunk.maxId) chunk.maxId = id;
+        return id;
+        }
+
+    static RuntimeException badLine(Chunk chunk, int offset, String problem)
+        {
+        return new RuntimeException("Malformed line near byte " + (chunk.start + offset) + ": " + problem);
+        }
+    }
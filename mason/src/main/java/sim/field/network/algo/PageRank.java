@@ -0,0 +1,115 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.network.algo;
+import sim.field.network.*;
+import sim.util.*;
+
+/**
+   PageRank of the nodes of a NetworkSnapshot, by power iteration.
+
+   <p>Each iteration pulls rank along the incoming edges of each node, so the nodes can be divided among the threads with
+   no two threads writing the same value, and each node's sum is taken in the same order whatever the number of threads:
+   the ranks are identical however many threads are used.  A node with no outgoing edges spreads its rank evenly over all
+   the nodes.  If <tt>weighted</tt> is true, a node passes its rank along its outgoing edges in proportion to their weights
+   (which must not be negative), else equally.  In an undirected network every edge counts as outgoing from both ends.
+*/
+
+public class PageRank
+    {
+    private PageRank() { }
+
+    public static final double DEFAULT_DAMPING = 0.85;
+    public static final double DEFAULT_TOLERANCE = 1e-10;
+    public static final int DEFAULT_MAX_ITERATIONS = 100;
+
+    /** Returns the PageRank of each node, with the default damping factor, tolerance, and maximum number of iterations. */
+    public static double[] getRanks(NetworkSnapshot snapshot, boolean weighted, int numThreads)
+        {
+        return getRanks(snapshot, DEFAULT_DAMPING, DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS, weighted, numThreads);
+        }
+
+    /** Returns the PageRank of each node of the network, indexed as in its allNodes bag, with the default damping factor,
+        tolerance, and maximum number of iterations. */
+    public static double[] getRanks(Network network, boolean weighted, int numThreads)
+        {
+        return getRanks(network.getSnapshot(), weighted, numThreads);
+        }
+
+    /** Returns the PageRank of each node.  The ranks sum to 1.  Iteration stops when the ranks change by less than
+        the tolerance in total (L1 norm), or after maxIterations iterations. */
+    public static double[] getRanks(NetworkSnapshot snapshot, final double damping, double tolerance, int maxIterations,
+        final boolean weighted, int numThreads)
+        {
+        if (damping < 0 || damping > 1) throw new RuntimeException("Damping must be between 0 and 1: " + damping);
+        final int n = snapshot.numNodes;
+        if (n == 0) return new double[0];
+
+        final int[] outOffsets = snapshot.outOffsets;
+        final double[] outWeights = snapshot.outWeights;
+        final int[] inOffsets = snapshot.inOffsets;
+        final int[] inSources = snapshot.inSources;
+        final double[] inWeights = snapshot.inWeights;
+
+        // the total that each node passes on
+        final double[] outTotal = new double[n];
+        for(int u = 0; u < n; u++)
+            {
+            if (weighted)
+                {
+                double sum = 0;
+                for(int j = outOffsets[u]; j < outOffsets[u + 1]; j++)
+                    {
+                    if (!(outWeights[j] >= 0))
+                        throw new RuntimeException("PageRank requires non-negative weights, but found " + outWeights[j]);
+                    sum += outWeights[j];
+                    }
+                outTotal[u] = sum;
+                }
+            else outTotal[u] = outOffsets[u + 1] - outOffsets[u];
+            }
+
+        double[] rank = new double[n];
+        java.util.Arrays.fill(rank, 1.0 / n);
+        final double[] share = new double[n];
+
+        for(int iteration = 0; iteration < maxIterations; iteration++)
+            {
+            double dangling = 0;
+            for(int u = 0; u < n; u++)
+                {
+                if (outTotal[u] == 0) { dangling += rank[u]; share[u] = 0; }
+                else share[u] = rank[u] / outTotal[u];
+                }
+            final double base = (1 - damping) / n + damping * dangling / n;
+            final double[] next = new double[n];
+            Parallel.run(n, numThreads, Parallel.MIN_PARALLEL_WORK, new Parallel.Task()
+                {
+                public void run(int thread, int from, int to)
+                    {
+                    for(int v = from; v < to; v++)
+                        {
+                        double sum = 0;
+                        if (weighted)
+                            for(int j = inOffsets[v]; j < inOffsets[v + 1]; j++)
+                                sum += share[inSources[j]] * inWeights[j];
+                        else
+                            for(int j = inOffsets[v]; j < inOffsets[v + 1]; j++)
+                                sum += share[inSources[j]];
+                        next[v] = base + damping * sum;
+                        }
+                    }
+                });
+
+            double change = 0;
+            for(int v = 0; v < n; v++)
+                change += Math.abs(next[v] - rank[v]);
+            rank = next;
+            if (change < tolerance) break;
+            }
+        return rank;
+        }
+    }
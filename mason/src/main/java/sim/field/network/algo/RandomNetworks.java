@@ -0,0 +1,388 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.network.algo;
+import ec.util.MersenneTwisterFast;
+import sim.util.*;
+
+/**
+   Generators of large random networks.  Each returns an EdgeList, which you can load in bulk into a new or existing
+   IntNetwork or Network: for example, <tt>RandomNetworks.erdosRenyi(100000, 0.0001, false, false, state.random, Parallel.CPUS).buildNetwork()</tt>.
+   Pass in your SimState's random number generator, so that the networks are reproducible from the model's seed.
+
+   <p><b>Erd&ouml;s-R&eacute;nyi and stochastic block models.</b>  Rather than flipping a coin for each of the O(n^2) possible edges,
+   these skip directly from one edge to the next by drawing the geometrically distributed number of possible edges in between
+   (Batagelj and Brandes), so they take time proportional to the number of edges actually made.  The possible edges are divided
+   into fixed chunks, each given its own generator seeded from <tt>random</tt>, and the chunks are divided among the threads.
+   Because the chunks don't depend on the number of threads, neither does the network.
+
+   <p><b>Barab&aacute;si-Albert.</b>  Picking a node with probability proportional to its degree is done in O(1) by picking
+   uniformly from the list of the ends of all the edges so far, in which each node appears as many times as its degree.  This is the
+   same distribution an alias table would give, without rebuilding the table as the degrees change.  Preferential attachment is
+   inherently sequential, so there's no numThreads argument.
+*/
+
+public class RandomNetworks
+    {
+    private RandomNetworks() { }
+
+    // roughly how many possible edges make up a chunk of the Erdos-Renyi and stochastic block models
+    static final long CHUNK_PAIRS = 1L << 22;
+    static final long MAX_SKIP = 1L << 62;
+
+    // Chunk modes
+    static final int FULL = 0;              // every row has every column
+    static final int LOWER = 1;             // row r has the columns up to but not including r (or including it, with self-loops)
+    static final int NO_DIAGONAL = 2;       // row r has every column but r
+
+    // A range of rows of possible edges, each present with probability p
+    static class Chunk
+        {
+        int rowStart, rowEnd;               // rows, as node numbers
+        int colStart, colSize;              // columns, as node numbers
+        int mode;
+        boolean selfLoops;
+        double p;
+        int[] seed;
+        EdgeList edges;
+
+        long rowLength(int row)
+            {
+            switch(mode)
+                {
+                case LOWER: return row - colStart + (selfLoops ? 1 : 0);
+                case NO_DIAGONAL: return colSize - 1;
+                default: return colSize;
+                }
+            }
+
+        int column(int row, long c)
+            {
+            if (mode == NO_DIAGONAL && c >= row - colStart) return (int)(colStart + c + 1);
+            return (int)(colStart + c);
+            }
+
+        void generate(int numNodes, boolean directed)
+            {
+            MersenneTwisterFast random = new MersenneTwisterFast(seed);
+            long pairs = 0;
+            for(int row = rowStart; row < rowEnd; row++) pairs += rowLength(row);
+            edges = new EdgeList(numNodes, directed, (int)Math.min(pairs * p * 1.1 + 16, Integer.MAX_VALUE - 8));
+            final double logq = Math.log(1.0 - p);
+            int row = rowStart;
+            long len = rowLength(row);
+            long c = -1;
+            while(true)
+                {
+                c += 1 + skip(random, logq);
+                while(c >= len)
+                    {
+                    c -= len;
+                    if (++row >= rowEnd) return;
+                    len = rowLength(row);
+                    }
+                edges.add(row, column(row, c));
+                }
+            }
+        }
+
+    // returns the number of failures before the next success, where failures happen with probability q = e^logq
+    static long skip(MersenneTwisterFast random, double logq)
+        {
+        double s = Math.floor(Math.log(1.0 - random.nextDouble()) / logq);
+        return (s >= MAX_SKIP ? MAX_SKIP : (long)s);
+        }
+
+    // divides the rows into chunks of about CHUNK_PAIRS possible edges each, adding them to the list
+    static void addChunks(java.util.ArrayList chunks, int rowStart, int rowEnd, int colStart, int colSize, int mode,
+        boolean selfLoops, double p, MersenneTwisterFast random)
+        {
+        if (p <= 0 || rowStart >= rowEnd) return;
+        int row = rowStart;
+        while(row < rowEnd)
+            {
+            Chunk chunk = new Chunk();
+            chunk.rowStart = row;
+            chunk.colStart = colStart;
+            chunk.colSize = colSize;
+            chunk.mode = mode;
+            chunk.selfLoops = selfLoops;
+            chunk.p = p;
+            long pairs = 0;
+            while(row < rowEnd && (pairs == 0 || pairs + chunk.rowLength(row) <= CHUNK_PAIRS))
+                pairs += chunk.rowLength(row++);
+            chunk.rowEnd = row;
+            chunk.seed = new int[] { random.nextInt(), random.nextInt(), random.nextInt(), random.nextInt() };
+            chunks.add(chunk);
+            }
+        }
+
+    // generates the chunks, divided among the threads, and gathers their edges in order
+    static EdgeList generate(final java.util.ArrayList chunks, final int numNodes, final boolean directed, int numThreads)
+        {
+        Parallel.run(chunks.size(), numThreads, 2, new Parallel.Task()
+            {
+            public void run(int thread, int from, int to)
+                {
+                for(int i = from; i < to; i++)
+                    ((Chunk)(chunks.get(i))).generate(numNodes, directed);
+                }
+            });
+        long total = 0;
+        for(int i = 0; i < chunks.size(); i++)
+            total += ((Chunk)(chunks.get(i))).edges.numEdges;
+        if (total > Integer.MAX_VALUE - 8)
+            throw new RuntimeException("Too many edges to generate: " + total);
+        EdgeList edges = new EdgeList(numNodes, directed, (int)total);
+        for(int i = 0; i < chunks.size(); i++)
+            {
+            Chunk chunk = (Chunk)(chunks.get(i));
+            edges.addAll(chunk.edges);
+            chunk.edges = null;
+            }
+        return edges;
+        }
+
+    static void checkProbability(double p)
+        {
+        if (!(p >= 0 && p <= 1)) throw new RuntimeException("Probability must be between 0 and 1: " + p);
+        }
+
+    /** Returns an Erd&ouml;s-R&eacute;nyi G(n, p) network, in which each possible edge is present with probability p.
+        If directed, each ordered pair of nodes is a possible edge, else each unordered pair.  If selfLoops, each node may
+        also have an edge to itself. */
+    public static EdgeList erdosRenyi(int n, double p, boolean directed, boolean selfLoops, MersenneTwisterFast random, int numThreads)
+        {
+        return stochasticBlockModel(new int[] { n }, new double[][] { { p } }, directed, selfLoops, random, numThreads);
+        }
+
+    /** Returns a stochastic block model network.  The nodes are divided into consecutive blocks of the given sizes, and
+        each possible edge from a node in block a to a node in block b is present with probability p[a][b].  If the network
+        is undirected, p should be symmetric: only p[a][b] with a &gt;= b is used.  If selfLoops, each node may also have an
+        edge to itself. */
+    public static EdgeList stochasticBlockModel(int[] blockSizes, double[][] p, boolean directed, boolean selfLoops,
+        MersenneTwisterFast random, int numThreads)
+        {
+        int numBlocks = blockSizes.length;
+        int[] start = new int[numBlocks + 1];
+        for(int a = 0; a < numBlocks; a++)
+            {
+            if (blockSizes[a] < 0) throw new RuntimeException("Block sizes must not be negative: " + blockSizes[a]);
+            if ((long)start[a] + blockSizes[a] > Integer.MAX_VALUE) throw new RuntimeException("Too many nodes");
+            start[a + 1] = start[a] + blockSizes[a];
+            }
+        if (p.length != numBlocks) throw new RuntimeException("Need a row of probabilities for each block");
+
+        java.util.ArrayList chunks = new java.util.ArrayList();
+        for(int a = 0; a < numBlocks; a++)
+            {
+            if (p[a].length != numBlocks) throw new RuntimeException("Need a probability for each pair of blocks");
+            for(int b = 0; b < numBlocks; b++)
+                {
+                checkProbability(p[a][b]);
+                if (!directed && b > a) continue;
+                int mode = FULL;
+                if (a == b)
+                    {
+                    if (!directed) mode = LOWER;
+                    else if (!selfLoops) mode = NO_DIAGONAL;
+                    }
+                addChunks(chunks, start[a], start[a + 1], start[b], blockSizes[b], mode, selfLoops, p[a][b], random);
+                }
+            }
+        return generate(chunks, start[numBlocks], directed, numThreads);
+        }
+
+    /** Returns a Barab&aacute;si-Albert preferential attachment network of n nodes.  Nodes 0 ... m - 1 start out
+        unconnected; each later node then adds edges to m distinct earlier nodes, chosen with probability proportional to
+        their degrees (the first such node connects to all of them).  In a directed network, edges go from the later
+        node to the earlier ones.  There are no self-loops or multiple edges. */
+    public static EdgeList barabasiAlbert(int n, int m, boolean directed, MersenneTwisterFast random)
+        {
+        if (m < 1) throw new RuntimeException("Each node must add at least one edge: " + m);
+        if (n < m) throw new RuntimeException("Need at least m = " + m + " nodes, but got " + n);
+        long numEdges = (long)(n - m) * m;
+        if (numEdges * 2 > Integer.MAX_VALUE - 8) throw new RuntimeException("Too many edges to generate: " + numEdges);
+
+        EdgeList edges = new EdgeList(n, directed, (int)numEdges);
+        int[] ends = new int[(int)(numEdges * 2)];      // each node appears once per edge it has
+        int numEnds = 0;
+        int[] chosen = new int[m];
+        for(int v = m; v < n; v++)
+            {
+            for(int i = 0; i < m; i++)
+                {
+                int t;
+                if (v == m) t = i;
+                else
+                    {
+                    t = ends[random.nextInt(numEnds)];
+                    for(int j = 0; j < i; j++)
+                        if (chosen[j] == t)             // already chosen: draw again
+                            {
+                            t = ends[random.nextInt(numEnds)];
+                            j = -1;
+                            }
+                    }
+                chosen[i] = t;
+                }
+            for(int i = 0; i < m; i++)
+                {
+                edges.add(v, chosen[i]);
+                ends[numEnds++] = v;
+                ends[numEnds++] = chosen[i];
+                }
+            }
+        return edges;
+        }
+
+    /** Returns an undirected Watts-Strogatz small-world network.  The n nodes start out in a ring, each connected to its
+        k nearest neighbors (k/2 on each side, so k must be even); then each edge (u, u + j) is rewired with probability beta
+        to go from u to a node chosen uniformly from those which are not u and are not already connected to u.  The edges
+        to be rewired are found by geometric skipping, so for small beta this takes little more time than building the ring. */
+    public static EdgeList wattsStrogatz(int n, int k, double beta, MersenneTwisterFast random)
+        {
+        checkProbability(beta);
+        if (k < 0 || k % 2 != 0 || k >= n) throw new RuntimeException("k must be even, at least 0, and less than n: " + k);
+        long numEdges = (long)n * (k / 2);
+        if (numEdges > Integer.MAX_VALUE - 8) throw new RuntimeException("Too many edges to generate: " + numEdges);
+
+        EdgeList edges = new EdgeList(n, false, (int)numEdges);
+        for(int u = 0; u < n; u++)
+            for(int j = 1; j <= k / 2; j++)
+                edges.add(u, (u + j) % n);
+        if (beta == 0 || numEdges == 0) return edges;
+
+        LongSet existing = new LongSet((int)numEdges);
+        for(int e = 0; e < edges.numEdges; e++)
+            existing.add(key(edges.from[e], edges.to[e], n));
+        int[] degree = new int[n];
+        java.util.Arrays.fill(degree, k);
+
+        final double logq = Math.log(1.0 - beta);
+        for(long e = skip(random, logq); e < edges.numEdges; e += 1 + skip(random, logq))
+            {
+            int u = edges.from[(int)e];
+            int v = edges.to[(int)e];
+            if (degree[u] >= n - 1) continue;       // nowhere else to go
+            int w;
+            do { w = random.nextInt(n); }
+            while(w == u || existing.contains(key(u, w, n)));
+            existing.remove(key(u, v, n));
+            existing.add(key(u, w, n));
+            degree[v]--;
+            degree[w]++;
+            edges.to[(int)e] = w;
+            }
+        return edges;
+        }
+
+    /** Returns an undirected configuration model network, in which node i has degrees[i] edge ends ("stubs"), paired up
+        uniformly at random.  The total of the degrees must be even.  The result may have self-loops and multiple edges; if
+        simple is true, these are then removed (the "erased" configuration model), so some nodes may end up with smaller
+        degrees than asked for. */
+    public static EdgeList configurationModel(int[] degrees, boolean simple, MersenneTwisterFast random)
+        {
+        int n = degrees.length;
+        long total = 0;
+        for(int i = 0; i < n; i++)
+            {
+            if (degrees[i] < 0) throw new RuntimeException("Degrees must not be negative: " + degrees[i]);
+            total += degrees[i];
+            }
+        if (total % 2 != 0) throw new RuntimeException("The degrees must add up to an even number, but add up to " + total);
+        if (total > Integer.MAX_VALUE - 8) throw new RuntimeException("Too many edges to generate: " + total / 2);
+
+        int[] stubs = new int[(int)total];
+        int s = 0;
+        for(int i = 0; i < n; i++)
+            for(int j = 0; j < degrees[i]; j++)
+                stubs[s++] = i;
+        for(int i = stubs.length - 1; i > 0; i--)      // shuffle
+            {
+            int j = random.nextInt(i + 1);
+            int t = stubs[i]; stubs[i] = stubs[j]; stubs[j] = t;
+            }
+
+        EdgeList edges = new EdgeList(n, false, (int)(total / 2));
+        LongSet existing = (simple ? new LongSet((int)(total / 2)) : null);
+        for(int i = 0; i < stubs.length; i += 2)
+            {
+            int u = stubs[i];
+            int v = stubs[i + 1];
+            if (simple && (u == v || !existing.add(key(u, v, n)))) continue;
+            edges.add(u, v);
+            }
+        return edges;
+        }
+
+    // a key for the unordered pair u, v
+    static long key(int u, int v, int n)
+        {
+        return (u < v ? (long)u * n + v : (long)v * n + u);
+        }
+
+    // An open-addressed hash set of non-negative longs
+    static class LongSet
+        {
+        static final long EMPTY = -1;
+        static final long REMOVED = -2;
+        long[] keys;
+        int mask;
+
+        LongSet(int expected)       // room for removals too, which leave markers behind
+            {
+            int size = 16;
+            while(size < expected * 4L && size < (1 << 30)) size <<= 1;
+            keys = new long[size];
+            java.util.Arrays.fill(keys, EMPTY);
+            mask = size - 1;
+            }
+
+        int slot(long key)
+            {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int)(h ^ (h >>> 32)) & mask;
+            }
+
+        boolean contains(long key)
+            {
+            for(int i = slot(key); ; i = (i + 1) & mask)
+                {
+                long k = keys[i];
+                if (k == key) return true;
+                if (k == EMPTY) return false;
+                }
+            }
+
+        /** Adds the key, returning false if it was already there */
+        boolean add(long key)
+            {
+            int free = -1;
+            for(int i = slot(key); ; i = (i + 1) & mask)
+                {
+                long k = keys[i];
+                if (k == key) return false;
+                if (k == REMOVED && free < 0) free = i;
+                if (k == EMPTY)
+                    {
+                    keys[free < 0 ? i : free] = key;
+                    return true;
+                    }
+                }
+            }
+
+        void remove(long key)
+            {
+            for(int i = slot(key); ; i = (i + 1) & mask)
+                {
+                long k = keys[i];
+                if (k == key) { keys[i] = REMOVED; return; }
+                if (k == EMPTY) return;
+                }
+            }
+        }
+    }
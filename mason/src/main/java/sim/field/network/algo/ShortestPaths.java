@@ -0,0 +1,346 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.network.algo;
+import sim.field.network.*;
+import sim.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+   Weighted shortest paths over a NetworkSnapshot, using edge weights as lengths.  Weights must not be negative.
+
+   <p>getDistances(...) with one thread runs Dijkstra's algorithm.  With more threads it runs <b>delta-stepping</b>
+   (Meyer and Sanders), which keeps nodes in buckets of tentative distance delta wide and relaxes the edges of each
+   bucket's nodes in parallel.  Both compute the same distances, whatever the number of threads.  getAllDistances(...)
+   instead runs Dijkstra's algorithm from each source, with the sources divided among the threads.
+
+   <p>Nodes are numbered as in the snapshot (for a Network, as in its allNodes bag).  If <tt>outEdges</tt> is true,
+   paths follow edges from their from nodes to their to nodes, else backwards.  In an undirected network it makes no
+   difference.  Unreachable nodes are at distance Double.POSITIVE_INFINITY.
+*/
+
+public class ShortestPaths
+    {
+    private ShortestPaths() { }
+
+    /** Returns the length of the shortest path from the source to each node. */
+    public static double[] getDistances(NetworkSnapshot snapshot, int source, boolean outEdges, int numThreads)
+        {
+        if (Parallel.threads(numThreads) == 1)
+            return dijkstra(snapshot, source, outEdges, new Heap(snapshot.numNodes), new double[snapshot.numNodes]);
+        return deltaStepping(snapshot, source, outEdges, 0, numThreads);
+        }
+
+    /** Returns the length of the shortest path from the source to each node of the network, indexed as in its allNodes bag. */
+    public static double[] getDistances(Network network, Object source, boolean outEdges, int numThreads)
+        {
+        return getDistances(network.getSnapshot(), network.getNodeIndex(source), outEdges, numThreads);
+        }
+
+    /** Returns the length of the shortest path from every node to every other, as result[from][to].  This
+        takes O(n^2) memory. */
+    public static double[][] getAllDistances(final NetworkSnapshot snapshot, final boolean outEdges, int numThreads)
+        {
+        final int n = snapshot.numNodes;
+        checkWeights(snapshot, outEdges);
+        final double[][] result = new double[n][];
+        Parallel.run(n, numThreads, 2, new Parallel.Task()
+            {
+            public void run(int thread, int from, int to)
+                {
+                Heap heap = new Heap(n);
+                for(int s = from; s < to; s++)
+                    result[s] = dijkstra(snapshot, s, outEdges, heap, new double[n]);
+                }
+            });
+        return result;
+        }
+
+    static void checkWeights(NetworkSnapshot snapshot, boolean outEdges)
+        {
+        double[] weights = (outEdges ? snapshot.outWeights : snapshot.inWeights);
+        for(int j = 0; j < weights.length; j++)
+            if (!(weights[j] >= 0))
+                throw new RuntimeException("Shortest paths require non-negative weights, but found " + weights[j]);
+        }
+
+    static void checkSource(NetworkSnapshot snapshot, int source)
+        {
+        if (source < 0 || source >= snapshot.numNodes)
+            throw new RuntimeException("No such node: " + source);
+        }
+
+    /** Runs Dijkstra's algorithm from the source, filling and returning dist. */
+    static double[] dijkstra(NetworkSnapshot snapshot, int source, boolean outEdges, Heap heap, double[] dist)
+        {
+        checkSource(snapshot, source);
+        final int[] offsets = (outEdges ? snapshot.outOffsets : snapshot.inOffsets);
+        final int[] ends = (outEdges ? snapshot.outTargets : snapshot.inSources);
+        final double[] weights = (outEdges ? snapshot.outWeights : snapshot.inWeights);
+
+        java.util.Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        dist[source] = 0;
+        heap.clear();
+        heap.insert(source, 0);
+        while(heap.size > 0)
+            {
+            int u = heap.removeMin();
+            double du = dist[u];
+            for(int j = offsets[u]; j < offsets[u + 1]; j++)
+                {
+                double w = weights[j];
+                if (w < 0) throw new RuntimeException("Shortest paths require non-negative weights, but found " + w);
+                int v = ends[j];
+                double d = du + w;
+                if (d < dist[v])
+                    {
+                    dist[v] = d;
+                    heap.insertOrDecrease(v, d);
+                    }
+                }
+            }
+        return dist;
+        }
+
+    /** Runs delta-stepping from the source with the given bucket width.  If delta is 0 or less, the mean edge weight is used. */
+    public static double[] deltaStepping(final NetworkSnapshot snapshot, int source, boolean outEdges, double delta, int numThreads)
+        {
+        checkSource(snapshot, source);
+        checkWeights(snapshot, outEdges);
+        final int n = snapshot.numNodes;
+        final int[] offsets = (outEdges ? snapshot.outOffsets : snapshot.inOffsets);
+        final int[] ends = (outEdges ? snapshot.outTargets : snapshot.inSources);
+        final double[] weights = (outEdges ? snapshot.outWeights : snapshot.inWeights);
+        final int threads = Parallel.threads(numThreads);
+
+        if (!(delta > 0))
+            {
+            double sum = 0;
+            for(int j = 0; j < weights.length; j++) sum += weights[j];
+            delta = (weights.length == 0 || sum == 0 ? 1.0 : sum / weights.length);
+            }
+        final double width = delta;
+
+        final AtomicLongArray dist = new AtomicLongArray(n);
+        final long infinity = Double.doubleToLongBits(Double.POSITIVE_INFINITY);
+        for(int i = 0; i < n; i++) dist.set(i, infinity);
+        dist.set(source, Double.doubleToLongBits(0.0));
+
+        Buckets buckets = new Buckets();
+        buckets.add(0, source);
+        final int[] stamp = new int[n];         // dedupes each batch of nodes
+        int batch = 0;
+        final IntBag[] improved = new IntBag[threads];
+        for(int t = 0; t < threads; t++) improved[t] = new IntBag();
+
+        for(int b = buckets.next(0); b >= 0; b = buckets.next(b))        // b again, in case it was refilled
+            {
+            IntBag settled = new IntBag();
+            while(buckets.size(b) > 0)
+                {
+                // take the nodes still in this bucket, once each
+                IntBag current = buckets.take(b);
+                batch++;
+                final IntBag frontier = new IntBag(current.numObjs);
+                for(int i = 0; i < current.numObjs; i++)
+                    {
+                    int u = current.objs[i];
+                    if (stamp[u] != batch && bucket(Double.longBitsToDouble(dist.get(u)), width) == b)
+                        {
+                        stamp[u] = batch;
+                        frontier.add(u);
+                        }
+                    }
+                settled.addAll(frontier);
+                relax(frontier, true, width, offsets, ends, weights, dist, improved, threads);
+                for(int t = 0; t < threads; t++)
+                    {
+                    IntBag imp = improved[t];
+                    for(int i = 0; i < imp.numObjs; i++)
+                        buckets.add(bucket(Double.longBitsToDouble(dist.get(imp.objs[i])), width), imp.objs[i]);
+                    imp.clear();
+                    }
+                }
+            // heavy edges of everything settled in this bucket
+            batch++;
+            IntBag unique = new IntBag(settled.numObjs);
+            for(int i = 0; i < settled.numObjs; i++)
+                if (stamp[settled.objs[i]] != batch)
+                    {
+                    stamp[settled.objs[i]] = batch;
+                    unique.add(settled.objs[i]);
+                    }
+            relax(unique, false, width, offsets, ends, weights, dist, improved, threads);
+            for(int t = 0; t < threads; t++)
+                {
+                IntBag imp = improved[t];
+                for(int i = 0; i < imp.numObjs; i++)
+                    buckets.add(bucket(Double.longBitsToDouble(dist.get(imp.objs[i])), width), imp.objs[i]);
+                imp.clear();
+                }
+            }
+
+        double[] result = new double[n];
+        for(int i = 0; i < n; i++) result[i] = Double.longBitsToDouble(dist.get(i));
+        return result;
+        }
+
+    static int bucket(double d, double width)
+        {
+        double b = Math.floor(d / width);
+        return (b >= Integer.MAX_VALUE ? Integer.MAX_VALUE - 1 : (int) b);
+        }
+
+    // relaxes the light (weight <= width) or heavy edges of the given nodes, recording improved nodes per thread
+    static void relax(final IntBag nodes, final boolean light, final double width, final int[] offsets, final int[] ends,
+        final double[] weights, final AtomicLongArray dist, final IntBag[] improved, int threads)
+        {
+        Parallel.run(nodes.numObjs, threads, Parallel.MIN_PARALLEL_WORK / 16, new Parallel.Task()
+            {
+            public void run(int thread, int from, int to)
+                {
+                IntBag imp = improved[thread];
+                for(int i = from; i < to; i++)
+                    {
+                    int u = nodes.objs[i];
+                    double du = Double.longBitsToDouble(dist.get(u));
+                    for(int j = offsets[u]; j < offsets[u + 1]; j++)
+                        {
+                        double w = weights[j];
+                        if ((w <= width) != light) continue;
+                        int v = ends[j];
+                        double d = du + w;
+                        // atomic minimum
+                        while(true)
+                            {
+                            long old = dist.get(v);
+                            if (d >= Double.longBitsToDouble(old)) break;
+                            if (dist.compareAndSet(v, old, Double.doubleToLongBits(d))) { imp.add(v); break; }
+                            }
+                        }
+                    }
+                }
+            });
+        }
+
+    // Buckets of nodes by bucket number, kept sparsely since distances may be far apart.  Nodes may sit in stale
+    // buckets; they're filtered out when taken.
+    static class Buckets
+        {
+        java.util.TreeMap buckets = new java.util.TreeMap();
+        void add(int b, int node)
+            {
+            Integer key = Integer.valueOf(b);
+            IntBag bag = (IntBag)(buckets.get(key));
+            if (bag == null) buckets.put(key, bag = new IntBag());
+            bag.add(node);
+            }
+        int size(int b)
+            {
+            IntBag bag = (IntBag)(buckets.get(Integer.valueOf(b)));
+            return (bag == null ? 0 : bag.numObjs);
+            }
+        IntBag take(int b) { return (IntBag)(buckets.remove(Integer.valueOf(b))); }
+        /** Returns the first non-empty bucket at or after b, or -1 */
+        int next(int b)
+            {
+            Object key = buckets.ceilingKey(Integer.valueOf(b));
+            return (key == null ? -1 : ((Integer)key).intValue());
+            }
+        }
+
+    // A binary min-heap of nodes keyed by distance, with decrease-key
+    static class Heap
+        {
+        int[] nodes;
+        double[] keys;
+        int[] position;     // position of each node in the heap, or -1
+        int size;
+
+        Heap(int n)
+            {
+            nodes = new int[n];
+            keys = new double[n];
+            position = new int[n];
+            java.util.Arrays.fill(position, -1);
+            }
+
+        void clear()
+            {
+            for(int i = 0; i < size; i++) position[nodes[i]] = -1;
+            size = 0;
+            }
+
+        void insert(int node, double key)
+            {
+            int i = size++;
+            nodes[i] = node;
+            keys[i] = key;
+            position[node] = i;
+            up(i);
+            }
+
+        void insertOrDecrease(int node, double key)
+            {
+            int i = position[node];
+            if (i < 0) insert(node, key);
+            else { keys[i] = key; up(i); }
+            }
+
+        int removeMin()
+            {
+            int min = nodes[0];
+            position[min] = -1;
+            size--;
+            if (size > 0)
+                {
+                nodes[0] = nodes[size];
+                keys[0] = keys[size];
+                position[nodes[0]] = 0;
+                down(0);
+                }
+            return min;
+            }
+
+        void up(int i)
+            {
+            int node = nodes[i];
+            double key = keys[i];
+            while(i > 0)
+                {
+                int parent = (i - 1) >> 1;
+                if (keys[parent] <= key) break;
+                nodes[i] = nodes[parent];
+                keys[i] = keys[parent];
+                position[nodes[i]] = i;
+                i = parent;
+                }
+            nodes[i] = node;
+            keys[i] = key;
+            position[node] = i;
+            }
+
+        void down(int i)
+            {
+            int node = nodes[i];
+            double key = keys[i];
+            while(true)
+                {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+                if (keys[child] >= key) break;
+                nodes[i] = nodes[child];
+                keys[i] = keys[child];
+                position[nodes[i]] = i;
+                i = child;
+                }
+            nodes[i] = node;
+            keys[i] = key;
+            position[node] = i;
+            }
+        }
+    }
@@ -0,0 +1,105 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.network.algo;
+import sim.field.network.*;
+
+/**
+   Strongly connected components of a NetworkSnapshot, found by Tarjan's algorithm in O(#nodes + #edges).
+
+   <p>The depth-first search is iterative, with its own stack of nodes and a position in each node's out-edges, so
+   there is no limit on how deep it may go short of memory.  Components are numbered 0, 1, 2, ... in the order they are
+   completed, which is a reverse topological order: no edge leads from a component to one with a higher number.
+   In an undirected network the strongly connected components are simply the connected components.
+*/
+
+public class StronglyConnectedComponents
+    {
+    private StronglyConnectedComponents() { }
+
+    /** Returns for each node the number of its strongly connected component. */
+    public static int[] getLabels(NetworkSnapshot snapshot)
+        {
+        final int n = snapshot.numNodes;
+        final int[] offsets = snapshot.outOffsets;
+        final int[] targets = snapshot.outTargets;
+
+        int[] labels = new int[n];
+        int[] order = new int[n];       // the order in which each node was reached, or -1
+        int[] low = new int[n];         // the earliest node reachable from each node's subtree and still on the stack
+        int[] position = new int[n];    // the next out-edge of each node to look at
+        int[] path = new int[n];        // the nodes of the search, deepest last
+        int[] stack = new int[n];       // the nodes not yet assigned to a component
+        java.util.Arrays.fill(order, -1);
+        java.util.Arrays.fill(labels, -1);
+
+        int count = 0;
+        int numComponents = 0;
+        int stackSize = 0;
+        for(int s = 0; s < n; s++)
+            {
+            if (order[s] >= 0) continue;
+            int depth = 0;
+            order[s] = low[s] = count++;
+            position[s] = offsets[s];
+            stack[stackSize++] = s;
+            path[depth++] = s;
+            while(depth > 0)
+                {
+                int v = path[depth - 1];
+                if (position[v] < offsets[v + 1])
+                    {
+                    int w = targets[position[v]++];
+                    if (order[w] < 0)                   // descend to w
+                        {
+                        order[w] = low[w] = count++;
+                        position[w] = offsets[w];
+                        stack[stackSize++] = w;
+                        path[depth++] = w;
+                        }
+                    else if (labels[w] < 0 && order[w] < low[v])    // w is still on the stack
+                        low[v] = order[w];
+                    }
+                else                                    // done with v
+                    {
+                    depth--;
+                    if (low[v] == order[v])             // v is the root of a component
+                        {
+                        int w;
+                        do
+                            {
+                            w = stack[--stackSize];
+                            labels[w] = numComponents;
+                            }
+                        while(w != v);
+                        numComponents++;
+                        }
+                    if (depth > 0)
+                        {
+                        int u = path[depth - 1];
+                        if (low[v] < low[u]) low[u] = low[v];
+                        }
+                    }
+                }
+            }
+        return labels;
+        }
+
+    /** Returns for each node of the network, indexed as in its allNodes bag, the number of its strongly connected component. */
+    public static int[] getLabels(Network network)
+        {
+        return getLabels(network.getSnapshot());
+        }
+
+    /** Returns the number of components, given the labels from getLabels(...). */
+    public static int getNumComponents(int[] labels)
+        {
+        int max = -1;
+        for(int i = 0; i < labels.length; i++)
+            if (labels[i] > max) max = labels[i];
+        return max + 1;
+        }
+    }
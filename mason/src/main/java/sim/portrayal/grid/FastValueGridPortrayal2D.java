@@ -10,6 +10,7 @@ import sim.field.grid.*;
 import java.awt.*;
 import java.awt.geom.*;
 import java.awt.image.*;
+import sim.util.*;
 import sim.util.gui.ColorMap;
 
 /**
@@ -27,6 +28,10 @@ import sim.util.gui.ColorMap;
    <p>If your grid does change but only occasionally, you can also use this technique as well; just manually call reset() 
    whenever the grid changes to inform the FastValueGridPortrayal2D that it needs to re-compute the buffer.  reset() is threadsafe.
 
+   <p>If your grid is a DoubleGrid2D or IntGrid2D which is recording its changes in a DirtyTiles (see buildDirtyTiles(...)),
+   and the field is not immutable, then when drawing to the buffer FastValueGridPortrayal2D will reload only those tiles of
+   the buffer which have changed since it last drew.
+
    <h3>Important Note on Drawing Methods</h3>
 
    FastValueGridPortrayal2D can draw a grid in two ways.  First, it can draw each of the rects individually ("USE_BUFFER").  Second, it can create a bitmap the size of the grid (one pixel per grid location), poke the colors into the bitmap, then stretch the bitmap over the area and draw it ("DONT_USE_BUFFER").  You can specify the method by calling the <b>setBuffering()</b> method; optionally you can just let FastValueGridPortrayal2D guess which to use ("DEFAULT").  But you should know what you're doing, as methods can be <i>much</i> faster than each other depending on the situation.  Use the following as guides
@@ -103,6 +108,59 @@ public class FastValueGridPortrayal2D extends ValueGridPortrayal2D
     BufferedImage buffer;
     WritableRaster raster;
     int[] data = new int[0];
+    DirtyTiles loadedTiles;     // the DirtyTiles the buffer was last loaded from, if any
+    int loadedEpoch;            // ... and the epoch at which we did so
+    IntBag tileXs = new IntBag();
+    IntBag tileYs = new IntBag();
+
+    // Loads into the buffer the colors of the cells from (sx, sy) to (ex, ey) exclusive
+    void loadBuffer(final Grid2D field, final int sx, final int sy, final int ex, final int ey)
+        {
+        final ColorMap map = this.map;
+        final double[][] doubleField = (field instanceof DoubleGrid2D ? ((DoubleGrid2D) field).field : null);
+        final int[][] intField = (field instanceof IntGrid2D ? ((IntGrid2D) field).field : null);
+        final short[][] shortField = (field instanceof ShortGrid2D ? ((ShortGrid2D) field).field : null);
+        final byte[][] byteField = (field instanceof ByteGrid2D ? ((ByteGrid2D) field).field : null);
+        final long[][] booleanField = (field instanceof BooleanGrid2D ? ((BooleanGrid2D) field).field : null);
+
+        if (ex-sx > 0 && ey-sy > 0)  // could be otherwise if drawing off-screen...
+            {
+            int[] data = this.data;  // reuse
+            if (data.length < (ex-sx)*(ey-sy)) 
+                data = this.data = new int[(ex-sx)*(ey-sy)];
+            int i = 0;
+            if (doubleField != null)
+                for(int y=sy;y<ey;y++)
+                    for(int x=sx;x<ex;x++)
+                        data[i++] = map.getRGB(doubleField[x][y]);
+            else if (intField != null)
+                for(int y=sy;y<ey;y++)
+                    for(int x=sx;x<ex;x++)
+                        data[i++] = map.getRGB(intField[x][y]);
+            else if (shortField != null)
+                for(int y=sy;y<ey;y++)
+                    for(int x=sx;x<ex;x++)
+                        data[i++] = map.getRGB(shortField[x][y]);
+            else if (byteField != null)
+                for(int y=sy;y<ey;y++)
+                    for(int x=sx;x<ex;x++)
+                        data[i++] = map.getRGB(byteField[x][y]);
+            else
+                {
+                // only two colors are possible, so look them up once
+                final int rgbTrue = map.getRGB(1);
+                final int rgbFalse = map.getRGB(0);
+                for(int y=sy;y<ey;y++)
+                    {
+                    final int word = y >>> 6;
+                    final long bit = 1L << y;
+                    for(int x=sx;x<ex;x++)
+                        data[i++] = ((booleanField[x][word] & bit) != 0 ? rgbTrue : rgbFalse);
+                    }
+                }
+            raster.setDataElements(sx,sy,ex-sx,ey-sy,data);
+            }
+        }
 
     // Should draw itself within the box from (0,0) to (1,1)
     public void draw(Object object, Graphics2D graphics, DrawInfo2D info)
@@ -135,8 +193,11 @@ public class FastValueGridPortrayal2D extends ValueGridPortrayal2D
 
         final boolean isDoubleGrid2D = (field instanceof DoubleGrid2D);
         final double[][] doubleField = (isDoubleGrid2D ? ((DoubleGrid2D) field).field : null);
-        final int[][] intField = (isDoubleGrid2D ? null : ((IntGrid2D) field).field);
-        
+        final int[][] intField = (field instanceof IntGrid2D ? ((IntGrid2D) field).field : null);
+        final short[][] shortField = (field instanceof ShortGrid2D ? ((ShortGrid2D) field).field : null);
+        final byte[][] byteField = (field instanceof ByteGrid2D ? ((ByteGrid2D) field).field : null);
+        final long[][] booleanField = (field instanceof BooleanGrid2D ? ((BooleanGrid2D) field).field : null);
+
         
         if (shouldBuffer(graphics))
             {
@@ -174,42 +235,44 @@ public class FastValueGridPortrayal2D extends ValueGridPortrayal2D
             //_buffer = buffer;
             //}
 
-            if (newBuffer || !immutableField || isDirtyField())  // we have to load the buffer
+            final DirtyTiles dirtyTiles = (field instanceof DoubleGrid2D ? ((DoubleGrid2D) field).getDirtyTiles() :
+                field instanceof IntGrid2D ? ((IntGrid2D) field).getDirtyTiles() : null);
+
+            if (dirtyTiles != null && !immutableField && !newBuffer && !isDirtyField() && dirtyTiles == loadedTiles)
+                {
+                // the whole buffer was up to date as of loadedEpoch, so just reload the tiles which have changed since then
+                final int since = loadedEpoch;
+                loadedEpoch = dirtyTiles.checkpoint();
+                final int tileSize = dirtyTiles.getTileSize();
+                final int n = dirtyTiles.getDirtyTiles(since, tileXs, tileYs);
+                for(int i = 0; i < n; i++)
+                    {
+                    final int sx = tileXs.objs[i] * tileSize;
+                    final int sy = tileYs.objs[i] * tileSize;
+                    loadBuffer(field, sx, sy, Math.min(sx + tileSize, maxX), Math.min(sy + tileSize, maxY));
+                    }
+                }
+            else if (newBuffer || !immutableField || isDirtyField())  // we have to load the buffer
                 {
                 if (endx > maxX) endx = maxX;
                 if (endy > maxY) endy = maxY;
                 if( startx < 0 ) startx = 0;
                 if( starty < 0 ) starty = 0;
                 
-                final int ex = endx;
-                final int ey = endy;
-                final int sx = startx;
-                final int sy = starty;
-                
-                if (immutableField)
+                if (immutableField || dirtyTiles != null)
                     {
                     // must load ENTIRE buffer
                     startx = 0; starty = 0; endx = maxX; endy = maxY;
                     }
 
-                final ColorMap map = this.map;
-            
-                if (ex-sx > 0 && ey-sy > 0)  // could be otherwise if drawing off-screen...
+                if (dirtyTiles != null && !immutableField)
                     {
-                    int[] data = this.data;  // reuse
-                    if (data.length != (ex-sx)*(ey-sy)) 
-                        data = this.data = new int[(ex-sx)*(ey-sy)];
-                    int i = 0;
-                    if (isDoubleGrid2D)
-                        for(int y=sy;y<ey;y++)
-                            for(int x=sx;x<ex;x++)
-                                data[i++] = map.getRGB(doubleField[x][y]);
-                    else
-                        for(int y=sy;y<ey;y++)
-                            for(int x=sx;x<ex;x++)
-                                data[i++] = map.getRGB(intField[x][y]);
-                    raster.setDataElements(sx,sy,ex-sx,ey-sy,data);
+                    loadedTiles = dirtyTiles;
+                    loadedEpoch = dirtyTiles.checkpoint();
                     }
+                else loadedTiles = null;
+
+                loadBuffer(field, startx, starty, endx, endy);
                 }
                 
             // MacOS X 10.3 Panther has a bug which resets the clip, YUCK
@@ -323,7 +386,7 @@ public class FastValueGridPortrayal2D extends ValueGridPortrayal2D
                 for(double x=startxd;x<endxd;x++)
                     for(double y=startyd;y<endyd;y++)
                         {
-                        final Color c = map.getColor(intField[(int)x][(int)y]);
+                        final Color c = map.getColor(intField != null ? intField[(int)x][(int)y] : valueAt(field, (int)x, (int)y));
                         if (c.getAlpha() == 0) continue;
                         graphics.setColor(c);
                             
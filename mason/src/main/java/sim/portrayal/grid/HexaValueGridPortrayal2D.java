@@ -37,6 +37,14 @@ public class HexaValueGridPortrayal2D extends ValueGridPortrayal2D
         super(valueName);
         }
 
+    // hexagonal portrayals only support the DoubleGrid2D and IntGrid2D fields
+    public void setField(Object field)
+        {
+        if (field instanceof DoubleGrid2D ||
+            field instanceof IntGrid2D ) super.setField(field);
+        else throw new RuntimeException("Invalid field for HexaValueGridPortrayal2D: " + field);
+        }
+
     final static void getxyC( final int x, final int y, final double xScale, final double yScale, final double tx, final double ty, final double[] xyC )
         {
         xyC[0] = tx + xScale * (1.5 * x + 1);
@@ -14,7 +14,8 @@ import sim.util.*;
 import sim.util.gui.*;
 
 /**
-   This class is capable of portraying the DoubleGrid2D and IntGrid2D fields (and <b>only</b> those two fields -- or subclasses).
+   This class is capable of portraying the DoubleGrid2D, IntGrid2D, ShortGrid2D, ByteGrid2D, and BooleanGrid2D fields
+   (and <b>only</b> those fields -- or subclasses).  BooleanGrid2D values are portrayed as 1 (true) and 0 (false).
    It is fairly customizable, and this flexibility
    comes at a cost in drawing speed.  If you just need to draw your field as a grid of squares, you might look into
    the much simpler, and faster (and aptly named) FastValueGridPortrayal2D instead.
@@ -56,7 +57,10 @@ public class ValueGridPortrayal2D extends FieldPortrayal2D
     public void setField(Object field)
         {
         if (field instanceof DoubleGrid2D ||
-            field instanceof IntGrid2D ) super.setField(field);
+            field instanceof IntGrid2D ||
+            field instanceof ShortGrid2D ||
+            field instanceof ByteGrid2D ||
+            field instanceof BooleanGrid2D) super.setField(field);
         else throw new RuntimeException("Invalid field for ValueGridPortrayal2D: " + field);
         }
         
@@ -83,19 +87,33 @@ public class ValueGridPortrayal2D extends FieldPortrayal2D
         {
         final Grid2D field = (Grid2D)this.field;
         if (field instanceof IntGrid2D) value = (int) value;
+        else if (field instanceof ShortGrid2D) value = (short) value;
+        else if (field instanceof ByteGrid2D) value = (byte) value;
+        else if (field instanceof BooleanGrid2D) value = (value == 0 ? 0 : 1);
                 
         if (map.validLevel(value)) return value;
         
         // at this point we need to reset to current value
         if (field != null)
-            {
-            if (field instanceof DoubleGrid2D)
-                return ((DoubleGrid2D)field).field[x][y];
-            else return ((IntGrid2D)field).field[x][y];
-            }
+            return valueAt(field, x, y);
         else return map.defaultValue();
         }
 
+    /** Returns the value stored at (x,y) in the given grid, which must be one of the grid types
+        this portrayal supports.  BooleanGrid2D values are returned as 1 or 0. */
+    public static double valueAt(Grid2D field, int x, int y)
+        {
+        if (field instanceof DoubleGrid2D)
+            return ((DoubleGrid2D)field).field[x][y];
+        else if (field instanceof IntGrid2D)
+            return ((IntGrid2D)field).field[x][y];
+        else if (field instanceof ShortGrid2D)
+            return ((ShortGrid2D)field).field[x][y];
+        else if (field instanceof ByteGrid2D)
+            return ((ByteGrid2D)field).field[x][y];
+        else return ((BooleanGrid2D)field).get(x, y) ? 1 : 0;
+        }
+
     public Double2D getScale(DrawInfo2D info)
         {
         synchronized(info.gui.state.schedule)
@@ -202,7 +220,7 @@ public class ValueGridPortrayal2D extends FieldPortrayal2D
         
         final boolean isDoubleGrid2D = (field instanceof DoubleGrid2D);
         final double[][] doubleField = (isDoubleGrid2D ? ((DoubleGrid2D) field).field : null);
-        final int[][] intField = (isDoubleGrid2D ? null : ((IntGrid2D) field).field);
+        final int[][] intField = (field instanceof IntGrid2D ? ((IntGrid2D) field).field : null);
         
 //        final Rectangle clip = (graphics==null ? null : graphics.getClipBounds());
 
@@ -226,7 +244,8 @@ public class ValueGridPortrayal2D extends FieldPortrayal2D
             for(int y=starty;y<endy;y++)
                 {
                 // dunno how much of a hit we get for doing this if/then each and every time...
-                valueToPass.val = (isDoubleGrid2D ?  doubleField[x][y] : intField[x][y]);
+                valueToPass.val = (isDoubleGrid2D ?  doubleField[x][y] : 
+                    (intField != null ? intField[x][y] : valueAt(field, x, y)));
                 
                 // translate --- the   + newinfo.width/2.0  etc. moves us to the center of the object
                 newinfo.draw.x = (int)(info.draw.x + (xScale) * x);
@@ -270,10 +289,7 @@ public class ValueGridPortrayal2D extends FieldPortrayal2D
                 Int2D loc = (Int2D) location;
                 MutableDouble val = (MutableDouble) this.object;
                 // update the current value
-                if (field instanceof DoubleGrid2D) 
-                    val.val = ((DoubleGrid2D)field).field[loc.x][loc.y];
-                else 
-                    val.val = ((IntGrid2D)field).field[loc.x][loc.y];
+                val.val = valueAt(field, loc.x, loc.y);
                 return val;
                 }
             
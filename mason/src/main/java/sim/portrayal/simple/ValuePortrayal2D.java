@@ -65,8 +65,8 @@ public class ValuePortrayal2D extends RectanglePortrayal2D
         public String toString() { return name; }
         }
 
-    // the only reason for these two subclasses is that they differ in the data
-    // type of their property (double vs int).  This allows us to guarantee that
+    // the only reason for these subclasses is that they differ in the data
+    // type of their property (double vs int etc.).  This allows us to guarantee that
     // ints are displayed or set as opposed to doubles in the Inspector.  No
     // big whoop -- it's more a formatting thing than anything else.
     
@@ -86,10 +86,41 @@ public class ValuePortrayal2D extends RectanglePortrayal2D
         // static inner classes don't need serialVersionUIDs
         }
 
+    public static class ShortFilter extends Filter
+        {
+        public ShortFilter(LocationWrapper wrapper) { super(wrapper); }
+        public short getValue() { return ((ShortGrid2D)fieldPortrayal.getField()).field[x][y]; }
+        public void setValue(short val) { ((ShortGrid2D)fieldPortrayal.getField()).field[x][y] = (short)fieldPortrayal.newValue(x,y,val); }
+        // static inner classes don't need serialVersionUIDs
+        }
+        
+    public static class ByteFilter extends Filter
+        {
+        public ByteFilter(LocationWrapper wrapper) { super(wrapper); }
+        public byte getValue() { return ((ByteGrid2D)fieldPortrayal.getField()).field[x][y]; }
+        public void setValue(byte val) { ((ByteGrid2D)fieldPortrayal.getField()).field[x][y] = (byte)fieldPortrayal.newValue(x,y,val); }
+        // static inner classes don't need serialVersionUIDs
+        }
+        
+    public static class BooleanFilter extends Filter
+        {
+        public BooleanFilter(LocationWrapper wrapper) { super(wrapper); }
+        public boolean getValue() { return ((BooleanGrid2D)fieldPortrayal.getField()).get(x,y); }
+        public void setValue(boolean val) { ((BooleanGrid2D)fieldPortrayal.getField()).set(x, y, fieldPortrayal.newValue(x,y,val ? 1 : 0) != 0); }
+        // static inner classes don't need serialVersionUIDs
+        }
+
     public Inspector getInspector(LocationWrapper wrapper, GUIState state)
         {
-        if (((ValueGridPortrayal2D)(wrapper.getFieldPortrayal())).getField() instanceof DoubleGrid2D)
+        Object field = ((ValueGridPortrayal2D)(wrapper.getFieldPortrayal())).getField();
+        if (field instanceof DoubleGrid2D)
             return sim.portrayal.Inspector.getInspector(new DoubleFilter(wrapper), state, "Properties");
+        else if (field instanceof ShortGrid2D)
+            return sim.portrayal.Inspector.getInspector(new ShortFilter(wrapper), state, "Properties");
+        else if (field instanceof ByteGrid2D)
+            return sim.portrayal.Inspector.getInspector(new ByteFilter(wrapper), state, "Properties");
+        else if (field instanceof BooleanGrid2D)
+            return sim.portrayal.Inspector.getInspector(new BooleanFilter(wrapper), state, "Properties");
         else
             return sim.portrayal.Inspector.getInspector(new IntFilter(wrapper) ,state, "Properties");
         // static inner classes don't need serialVersionUIDs
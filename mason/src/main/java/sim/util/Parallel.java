@@ -0,0 +1,84 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.util;
+
+/**
+   Divides a range of work among threads.  Code which can run in parallel, such as the network algorithms in
+   sim.field.network.algo, typically takes a numThreads argument: pass 1 to run in the calling thread, some larger
+   number to use that many threads, or CPUS to use one thread per processor.
+
+   <p>Threads are started afresh for each call to run(...), so work is only divided up if there is enough of it
+   to pay for them: callers pass the minimum number of items, such as MIN_PARALLEL_WORK, below which run(...)
+   simply does all the work in the calling thread.
+*/
+
+public class Parallel
+    {
+    /** Pass this as numThreads to use one thread per available processor. */
+    public static final int CPUS = -1;
+
+    /** Steps with fewer items than this are run in the calling thread. */
+    public static final int MIN_PARALLEL_WORK = 4096;
+
+    private Parallel() { }
+
+    /** A piece of work over items from (inclusive) to to (exclusive), done by the given thread number. */
+    public interface Task
+        {
+        public void run(int thread, int from, int to);
+        }
+
+    /** Returns the actual number of threads which numThreads stands for. */
+    public static int threads(int numThreads)
+        {
+        if (numThreads == CPUS) return Runtime.getRuntime().availableProcessors();
+        if (numThreads < 1) throw new RuntimeException("Invalid number of threads: " + numThreads);
+        return numThreads;
+        }
+
+    /** Divides n items into numThreads contiguous ranges, one per thread, runs them, and waits for them all to finish.
+        If there are fewer than minWork items, or only one thread, the task is run for all the items in the calling thread,
+        as thread 0. */
+    public static void run(final int n, int numThreads, int minWork, final Task task)
+        {
+        numThreads = threads(numThreads);
+        if (numThreads > n) numThreads = n;
+        if (numThreads <= 1 || n < minWork) { task.run(0, 0, n); return; }
+
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[numThreads];
+        for(int t = 0; t < numThreads; t++)
+            {
+            final int thread = t;
+            final int from = (int)(((long) n) * t / numThreads);
+            final int to = (int)(((long) n) * (t + 1) / numThreads);
+            threads[t] = new Thread(new Runnable()
+                {
+                public void run()
+                    {
+                    try { task.run(thread, from, to); }
+                    catch (Throwable e) { synchronized(failure) { if (failure[0] == null) failure[0] = e; } }
+                    }
+                }, "Parallel " + t);
+            threads[t].start();
+            }
+        // keep waiting even if interrupted: the threads are still writing into our arrays
+        boolean interrupted = false;
+        for(int t = 0; t < numThreads; t++)
+            while(true)
+                {
+                try { threads[t].join(); break; }
+                catch (InterruptedException e) { interrupted = true; }
+                }
+        if (interrupted) Thread.currentThread().interrupt();
+        synchronized(failure)
+            {
+            if (failure[0] != null)
+                throw new RuntimeException("Exception in parallel thread", failure[0]);
+            }
+        }
+    }
@@ -0,0 +1,117 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.grid;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import sim.util.*;
+
+/**
+ * Checks that SparseGrid2D and SparseGrid3D accept as locations any key
+ * equal to an Int2D or Int3D, as they did when they were backed by a HashMap.
+ */
+public class LocationMapTest
+    extends TestCase
+{
+    public LocationMapTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( LocationMapTest.class );
+    }
+
+    void checkDoubleKeys2D( SparseGrid2D grid )
+    {
+        Object a = "a";
+        Object b = "b";
+        grid.setObjectLocation(a, 1, 2);
+        grid.setObjectLocation(b, 3, 4);
+
+        assertEquals(1, grid.getObjectsAtLocation(new Double2D(1, 2)).numObjs);
+        assertEquals(1, grid.numObjectsAtLocation(new MutableDouble2D(1, 2)));
+        assertEquals(1, grid.numObjectsAtLocation(new MutableInt2D(1, 2)));
+        assertSame(b, grid.getObjectsAtLocation(3, 4).objs[0]);
+        assertSame(b, grid.getObjectsAtLocation(new Int2D(3, 4)).objs[0]);
+
+        // locations which are not equal to any Int2D are simply not present
+        assertNull(grid.getObjectsAtLocation(new Double2D(1.5, 2)));
+        assertNull(grid.getObjectsAtLocation(new Int3D(1, 2, 0)));
+        assertNull(grid.getObjectsAtLocation("(1, 2)"));
+
+        Bag removed = grid.removeObjectsAtLocation(new Double2D(1, 2));
+        assertEquals(1, removed.numObjs);
+        assertSame(a, removed.objs[0]);
+        assertNull(grid.getObjectsAtLocation(1, 2));
+        assertEquals(1, grid.getAllObjects().numObjs);
+    }
+
+    public void testDoubleKeys2D()
+    {
+        checkDoubleKeys2D(new SparseGrid2D(10, 10));
+    }
+
+    public void testDoubleKeys2DDense()
+    {
+        SparseGrid2D grid = new SparseGrid2D(10, 10);
+        grid.setStorage(SparseGrid2D.DENSE_STORAGE);
+        checkDoubleKeys2D(grid);
+
+        DenseLocationMap map = new DenseLocationMap(10, 10);
+        map.put(new MutableDouble2D(2, 3), "x");
+        map.put(new Double2D(20, 3), "y");
+        assertEquals("x", map.get(new Int2D(2, 3)));
+        assertEquals("y", map.get(new Double2D(20, 3)));
+        assertNull(map.get(new Double2D(2, 3.5)));
+        assertEquals("x", map.remove(new Double2D(2, 3)));
+        assertEquals(1, map.size());
+    }
+
+    public void testDoubleKeys3D()
+    {
+        SparseGrid3D grid = new SparseGrid3D(10, 10, 10);
+        Object a = "a";
+        grid.setObjectLocation(a, 1, 2, 3);
+
+        assertSame(a, grid.getObjectsAtLocation(new Double3D(1, 2, 3)).objs[0]);
+        assertEquals(1, grid.numObjectsAtLocation(new MutableDouble3D(1, 2, 3)));
+        assertNull(grid.getObjectsAtLocation(new Double3D(1, 2, 3.25)));
+        assertNull(grid.getObjectsAtLocation(new Int2D(1, 2)));
+        assertEquals(1, grid.removeObjectsAtLocation(new Double3D(1, 2, 3)).numObjs);
+        assertEquals(0, grid.getAllObjects().numObjs);
+    }
+
+    public void testDirtyTilesDoubleKeys()
+    {
+        SparseGrid2D grid = new SparseGrid2D(16, 16);
+        grid.setObjectLocation("a", 9, 2);
+        DirtyTiles dirty = grid.buildDirtyTiles(8);
+        int since = dirty.checkpoint();
+        grid.removeObjectsAtLocation(new Double2D(9, 2));
+        assertTrue(dirty.isDirty(1, 0, since));
+        assertFalse(dirty.isDirty(0, 0, since));
+    }
+
+    public void testPutRefusesOtherKeys()
+    {
+        LocationMap map = new LocationMap(false);
+        map.put(new Double2D(-1, 5), "x");
+        assertEquals("x", map.get(-1, 5));
+        assertEquals("x", map.get(new Int2D(-1, 5)));
+        try
+        {
+            map.put(new Double2D(0.5, 5), "y");
+            fail();
+        }
+        catch( IllegalArgumentException e ) { }
+        assertEquals(1, map.size());
+        assertFalse(map.containsKey(new Double2D(0.5, 5)));
+    }
+}
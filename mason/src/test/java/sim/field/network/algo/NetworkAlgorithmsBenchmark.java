@@ -0,0 +1,107 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.network.algo;
+
+import sim.field.network.*;
+import sim.util.*;
+import ec.util.MersenneTwisterFast;
+import java.util.*;
+
+/**
+ * Times BreadthFirstSearch, ShortestPaths, ConnectedComponents, PageRank,
+ * and KCore on a random network, once with one thread and once with
+ * several, and checks that both give the same results.  This is not run
+ * as part of the tests.  Usage:
+ *
+ * <pre>
+ * java sim.field.network.algo.NetworkAlgorithmsBenchmark [nodes [degree [threads [repetitions]]]]
+ * </pre>
+ *
+ * The network is a directed Erdos-Renyi network with about degree edges
+ * per node and uniform random weights in [0, 1).  Threads defaults to one
+ * per processor.  Each time printed is the best of the repetitions.
+ */
+public class NetworkAlgorithmsBenchmark
+{
+    interface Algorithm
+    {
+        public Object run( NetworkSnapshot snapshot, int numThreads );
+    }
+
+    static int repetitions;
+
+    // runs the algorithm repetitions times and returns {best time in ms, last result}
+    static Object[] time( Algorithm algorithm, NetworkSnapshot snapshot, int numThreads )
+    {
+        long best = Long.MAX_VALUE;
+        Object result = null;
+        for( int i = 0; i < repetitions; i++ )
+        {
+            long start = System.nanoTime();
+            result = algorithm.run(snapshot, numThreads);
+            long time = System.nanoTime() - start;
+            if( time < best ) best = time;
+        }
+        return new Object[] { Double.valueOf(Math.round(best / 100000.0) / 10.0), result };
+    }
+
+    static boolean same( Object a, Object b )
+    {
+        if( a instanceof int[] ) return Arrays.equals((int[]) a, (int[]) b);
+        else return Arrays.equals((double[]) a, (double[]) b);
+    }
+
+    static void benchmark( String name, Algorithm algorithm, NetworkSnapshot snapshot, int numThreads )
+    {
+        Object[] serial = time(algorithm, snapshot, 1);
+        Object[] parallel = time(algorithm, snapshot, numThreads);
+        double s = ((Double) serial[0]).doubleValue();
+        double p = ((Double) parallel[0]).doubleValue();
+        System.out.println(name + "\t" + s + " ms\t" + p + " ms\t" + (Math.round(s / p * 100) / 100.0) + "x\t"
+            + (same(serial[1], parallel[1]) ? "same" : "DIFFERENT"));
+    }
+
+    public static void main( String[] args )
+    {
+        int n = (args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+        double degree = (args.length > 1 ? Double.parseDouble(args[1]) : 8);
+        int threads = (args.length > 2 ? Integer.parseInt(args[2]) : Parallel.CPUS);
+        repetitions = (args.length > 3 ? Integer.parseInt(args[3]) : 5);
+
+        MersenneTwisterFast random = new MersenneTwisterFast(1);
+        long start = System.nanoTime();
+        IntNetwork network = RandomNetworks.erdosRenyi(n, degree / n, true, false, random, threads).buildIntNetwork(IntNetwork.DOUBLE_WEIGHTS);
+        for( int e = 0; e < network.getNumEdges(); e++ )
+            network.setWeight(e, random.nextDouble());
+        final NetworkSnapshot snapshot = network.getSnapshot();
+        System.out.println(n + " nodes, " + network.getNumEdges() + " edges, built in "
+            + ((System.nanoTime() - start) / 1000000) + " ms; " + Parallel.threads(threads) + " threads, best of " + repetitions);
+        System.out.println("algorithm\t1 thread\t" + Parallel.threads(threads) + " threads\tspeedup\tresults");
+
+        benchmark("BFS", new Algorithm()
+        {
+            public Object run( NetworkSnapshot s, int t ) { return BreadthFirstSearch.getDistances(s, 0, true, t); }
+        }, snapshot, threads);
+        benchmark("ShortestPaths", new Algorithm()
+        {
+            public Object run( NetworkSnapshot s, int t ) { return ShortestPaths.getDistances(s, 0, true, t); }
+        }, snapshot, threads);
+        benchmark("ConnectedComponents", new Algorithm()
+        {
+            public Object run( NetworkSnapshot s, int t ) { return ConnectedComponents.getLabels(s, t); }
+        }, snapshot, threads);
+        benchmark("PageRank", new Algorithm()
+        {
+            public Object run( NetworkSnapshot s, int t ) { return PageRank.getRanks(s, true, t); }
+        }, snapshot, threads);
+        // k-core is serial, so both columns should be about the same
+        benchmark("KCore", new Algorithm()
+        {
+            public Object run( NetworkSnapshot s, int t ) { return KCore.getCoreNumbers(s); }
+        }, snapshot, threads);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+  Copyright 2006 by Sean Luke and George Mason University
+  Licensed under the Academic Free License version 3.0
+  See the file "LICENSE" for more information
+*/
+
+package sim.field.network.algo;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import sim.field.network.*;
+import sim.util.*;
+import ec.util.MersenneTwisterFast;
+import java.util.*;
+
+/**
+ * Checks BreadthFirstSearch, ShortestPaths, ConnectedComponents, PageRank,
+ * and KCore against hand-worked examples and simple serial versions, and
+ * checks that their results don't depend on the number of threads.  The
+ * random networks are large enough that the parallel steps really do run
+ * in parallel.
+ */
+public class NetworkAlgorithmsTest
+    extends TestCase
+{
+    static final int THREADS = 4;
+
+    public NetworkAlgorithmsTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( NetworkAlgorithmsTest.class );
+    }
+
+    // a random network with about degree edges per node and weights in [0, 1)
+    static NetworkSnapshot randomSnapshot( int n, double degree, boolean directed, long seed )
+    {
+        MersenneTwisterFast random = new MersenneTwisterFast(seed);
+        IntNetwork network = RandomNetworks.erdosRenyi(n, degree / n, directed, false, random, 1).buildIntNetwork(IntNetwork.DOUBLE_WEIGHTS);
+        for( int e = 0; e < network.getNumEdges(); e++ )
+            network.setWeight(e, random.nextDouble());
+        return network.getSnapshot();
+    }
+
+    // the network 0-1-2-3, plus the isolated node 4
+    static IntNetwork chain( boolean directed )
+    {
+        IntNetwork network = new IntNetwork(directed, IntNetwork.DOUBLE_WEIGHTS);
+        network.addNodes(5);
+        network.addEdge(0, 1, 1.0);
+        network.addEdge(1, 2, 2.0);
+        network.addEdge(2, 3, 4.0);
+        return network;
+    }
+
+    // serial breadth-first search along out-edges
+    static int[] serialBFS( NetworkSnapshot snapshot, int source )
+    {
+        int[] dist = new int[snapshot.numNodes];
+        Arrays.fill(dist, -1);
+        int[] queue = new int[snapshot.numNodes];
+        int head = 0, tail = 0;
+        dist[source] = 0;
+        queue[tail++] = source;
+        while( head < tail )
+        {
+            int u = queue[head++];
+            for( int j = snapshot.outOffsets[u]; j < snapshot.outOffsets[u + 1]; j++ )
+            {
+                int v = snapshot.outTargets[j];
+                if( dist[v] < 0 )
+                {
+                    dist[v] = dist[u] + 1;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return dist;
+    }
+
+    public void testBreadthFirstSearch()
+    {
+        NetworkSnapshot snapshot = chain(false).getSnapshot();
+        int[] dist = BreadthFirstSearch.getDistances(snapshot, 1, true, 1);
+        assertTrue(Arrays.equals(new int[] { 1, 0, 1, 2, -1 }, dist));
+        dist = BreadthFirstSearch.getDistances(chain(true).getSnapshot(), 3, false, 1);
+        assertTrue(Arrays.equals(new int[] { 3, 2, 1, 0, -1 }, dist));
+
+        IntBag[] layers = BreadthFirstSearch.getLayers(snapshot, 1, true, THREADS);
+        assertEquals(3, layers.length);
+        assertEquals(2, layers[1].numObjs);
+        assertEquals(0, layers[1].get(0));
+        assertEquals(2, layers[1].get(1));
+
+        snapshot = randomSnapshot(50000, 4, true, 1);
+        int[] serial = serialBFS(snapshot, 0);
+        assertTrue(Arrays.equals(serial, BreadthFirstSearch.getDistances(snapshot, 0, true, 1)));
+        assertTrue(Arrays.equals(serial, BreadthFirstSearch.getDistances(snapshot, 0, true, THREADS)));
+    }
+
+    public void testShortestPaths()
+    {
+        NetworkSnapshot snapshot = chain(true).getSnapshot();
+        double inf = Double.POSITIVE_INFINITY;
+        double[] expected = { inf, 0, 2, 6, inf };
+        assertTrue(Arrays.equals(expected, ShortestPaths.getDistances(snapshot, 1, true, 1)));
+        assertTrue(Arrays.equals(expected, ShortestPaths.getDistances(snapshot, 1, true, THREADS)));
+        double[][] all = ShortestPaths.getAllDistances(chain(false).getSnapshot(), true, THREADS);
+        assertEquals(7.0, all[0][3], 0.0);
+        assertEquals(7.0, all[3][0], 0.0);
+        assertEquals(inf, all[0][4], 0.0);
+
+        // Dijkstra and delta-stepping must agree exactly
+        snapshot = randomSnapshot(50000, 4, true, 2);
+        double[] dijkstra = ShortestPaths.getDistances(snapshot, 0, true, 1);
+        assertTrue(Arrays.equals(dijkstra, ShortestPaths.getDistances(snapshot, 0, true, THREADS)));
+        assertTrue(Arrays.equals(dijkstra, ShortestPaths.deltaStepping(snapshot, 0, true, 0.05, THREADS)));
+        int[] hops = serialBFS(snapshot, 0);
+        for( int i = 0; i < hops.length; i++ )
+            assertEquals(hops[i] < 0, dijkstra[i] == inf);
+    }
+
+    public void testConnectedComponents()
+    {
+        IntNetwork network = new IntNetwork(true, IntNetwork.NO_WEIGHTS);
+        network.addNodes(5);
+        network.addEdge(3, 1);
+        network.addEdge(0, 2);
+        int[] labels = ConnectedComponents.getLabels(network.getSnapshot(), THREADS);
+        assertTrue(Arrays.equals(new int[] { 0, 1, 0, 1, 4 }, labels));
+        assertEquals(3, ConnectedComponents.getNumComponents(labels));
+
+        // every component is labelled by its smallest node, which reaches all the others
+        NetworkSnapshot snapshot = randomSnapshot(50000, 1, false, 3);
+        labels = ConnectedComponents.getLabels(snapshot, 1);
+        assertTrue(Arrays.equals(labels, ConnectedComponents.getLabels(snapshot, THREADS)));
+        boolean[] checked = new boolean[snapshot.numNodes];
+        for( int i = 0; i < labels.length; i++ )
+        {
+            assertTrue(labels[i] <= i);
+            if( labels[i] != i || checked[i] )
+                continue;
+            int[] dist = serialBFS(snapshot, i);
+            for( int j = 0; j < dist.length; j++ )
+                assertEquals(dist[j] >= 0, labels[j] == i);
+            checked[i] = true;
+        }
+    }
+
+    public void testPageRank()
+    {
+        // 0 -> 1, where 1 has no out-edges and so spreads its rank over both nodes
+        IntNetwork network = new IntNetwork(true, IntNetwork.NO_WEIGHTS);
+        network.addNodes(2);
+        network.addEdge(0, 1);
+        double[] ranks = PageRank.getRanks(network.getSnapshot(), false, 1);
+        assertEquals(20.0 / 57.0, ranks[0], 1e-8);
+        assertEquals(37.0 / 57.0, ranks[1], 1e-8);
+
+        NetworkSnapshot snapshot = randomSnapshot(50000, 4, true, 4);
+        for( int w = 0; w < 2; w++ )
+        {
+            ranks = PageRank.getRanks(snapshot, w == 1, 1);
+            assertTrue(Arrays.equals(ranks, PageRank.getRanks(snapshot, w == 1, THREADS)));
+            double sum = 0;
+            for( int i = 0; i < ranks.length; i++ )
+                sum += ranks[i];
+            assertEquals(1.0, sum, 1e-6);
+        }
+    }
+
+    public void testKCore()
+    {
+        // the triangle 0-1-2, with 3 hanging off 2, a self-loop at 3, and the isolated node 4
+        IntNetwork network = new IntNetwork(false, IntNetwork.NO_WEIGHTS);
+        network.addNodes(5);
+        network.addEdge(0, 1);
+        network.addEdge(1, 2);
+        network.addEdge(2, 0);
+        network.addEdge(2, 3);
+        network.addEdge(3, 3);
+        int[] core = KCore.getCoreNumbers(network.getSnapshot());
+        assertTrue(Arrays.equals(new int[] { 2, 2, 2, 1, 0 }, core));
+        assertEquals(3, KCore.getCore(core, 2).numObjs);
+
+        // the same from a Network as from an IntNetwork, and every node with core number k has
+        // at least k neighbors with core numbers of k or more
+        EdgeList edges = RandomNetworks.erdosRenyi(20000, 6.0 / 20000, true, false, new MersenneTwisterFast(5), 1);
+        NetworkSnapshot snapshot = edges.buildIntNetwork(IntNetwork.NO_WEIGHTS).getSnapshot();
+        core = KCore.getCoreNumbers(snapshot);
+        assertTrue(Arrays.equals(core, KCore.getCoreNumbers(edges.buildNetwork())));
+        for( int v = 0; v < snapshot.numNodes; v++ )
+        {
+            int count = 0;
+            for( int j = snapshot.outOffsets[v]; j < snapshot.outOffsets[v + 1]; j++ )
+                if( core[snapshot.outTargets[j]] >= core[v] ) count++;
+            for( int j = snapshot.inOffsets[v]; j < snapshot.inOffsets[v + 1]; j++ )
+                if( core[snapshot.inSources[j]] >= core[v] ) count++;
+            assertTrue(count >= core[v]);
+        }
+    }
+}